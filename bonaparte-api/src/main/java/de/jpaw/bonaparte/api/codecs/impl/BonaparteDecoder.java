@@ -6,9 +6,12 @@ import de.jpaw.bonaparte.core.ByteArrayParser;
 import de.jpaw.bonaparte.core.MessageParserException;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 
+/** Decoder for the bonaparte format. The parser instance is reused, therefore instances are not thread safe (same as the encoders). */
 public class BonaparteDecoder<O extends BonaPortable> implements IMessageDecoder<O, byte []> {
+    private static final byte [] EMPTY = new byte [0];
 
     private final Class<O> decoderClass;
+    private final ByteArrayParser bap = new ByteArrayParser(EMPTY, 0, 0);
 
     public BonaparteDecoder(Class<O> decoderClass) {
         this.decoderClass = decoderClass;
@@ -16,7 +19,11 @@ public class BonaparteDecoder<O extends BonaPortable> implements IMessageDecoder
 
     @Override
     public O decode(byte [] data, ObjectReference di) throws MessageParserException {
-        final ByteArrayParser cbap = new ByteArrayParser(data, 0, -1);
-        return cbap.readObject(di, decoderClass);
+        bap.setSource(data);
+        try {
+            return bap.readObject(di, decoderClass);
+        } finally {
+            bap.setSource(EMPTY);       // do not keep references to the message or parsed objects
+        }
     }
 }
@@ -3,15 +3,21 @@ package de.jpaw.bonaparte.api.codecs.impl;
 import de.jpaw.bonaparte.api.codecs.IMessageEncoder;
 import de.jpaw.bonaparte.core.BonaPortable;
 import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.BufferSizeHints;
 
 public class BonaparteEncoder<O extends BonaPortable> implements IMessageEncoder<O, byte []> {
-    private final ByteArrayComposer bac = new ByteArrayComposer();
+    private ByteArrayComposer bac = null;        // created for the first object, with the buffer size hint of its class
 
     @Override
     public byte[] encode(O obj, ObjectReference di) {
-        bac.reset();
+        if (bac == null)
+            bac = new ByteArrayComposer(ObjectReuseStrategy.defaultStrategy, BufferSizeHints.BONAPARTE.getHint(obj));
+        else
+            bac.reset();
         bac.addField(di, obj);
+        BufferSizeHints.BONAPARTE.record(obj, bac.getLength());
         return bac.getBytes();
     }
 }
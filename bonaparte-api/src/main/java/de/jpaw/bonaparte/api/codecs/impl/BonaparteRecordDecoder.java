@@ -6,11 +6,19 @@ import de.jpaw.bonaparte.core.ByteArrayParser;
 import de.jpaw.bonaparte.core.MessageParserException;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 
+/** Decoder for bonaparte records. The parser instance is reused, therefore instances are not thread safe (same as the encoders). */
 public class BonaparteRecordDecoder<O extends BonaPortable> implements IMessageDecoder<O, byte []> {
+    private static final byte [] EMPTY = new byte [0];
+
+    private final ByteArrayParser bap = new ByteArrayParser(EMPTY, 0, 0);
 
     @Override
     public O decode(byte [] data, ObjectReference di) throws MessageParserException {
-        final ByteArrayParser cbap = new ByteArrayParser(data, 0, -1);
-        return (O) cbap.readRecord();
+        bap.setSource(data);
+        try {
+            return (O) bap.readRecord();
+        } finally {
+            bap.setSource(EMPTY);       // do not keep references to the message or parsed objects
+        }
     }
 }
@@ -6,9 +6,12 @@ import de.jpaw.bonaparte.core.CompactByteArrayParser;
 import de.jpaw.bonaparte.core.MessageParserException;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 
+/** Decoder for the compact format. The parser instance is reused, therefore instances are not thread safe (same as the encoders). */
 public class CompactBonaparteDecoder<O extends BonaPortable> implements IMessageDecoder<O, byte []> {
+    private static final byte [] EMPTY = new byte [0];
 
     private final Class<O> decoderClass;
+    private final CompactByteArrayParser cbap = new CompactByteArrayParser(EMPTY, 0, 0);
 
     public CompactBonaparteDecoder(Class<O> decoderClass) {
         this.decoderClass = decoderClass;
@@ -16,7 +19,11 @@ public class CompactBonaparteDecoder<O extends BonaPortable> implements IMessage
 
     @Override
     public O decode(byte [] data, ObjectReference di) throws MessageParserException {
-        final CompactByteArrayParser cbap = new CompactByteArrayParser(data, 0, -1);
-        return cbap.readObject(di, decoderClass);
+        cbap.setSource(data);
+        try {
+            return cbap.readObject(di, decoderClass);
+        } finally {
+            cbap.setSource(EMPTY);      // do not keep references to the message or parsed objects
+        }
     }
 }
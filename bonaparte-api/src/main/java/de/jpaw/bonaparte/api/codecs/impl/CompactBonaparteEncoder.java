@@ -4,14 +4,19 @@ import de.jpaw.bonaparte.api.codecs.IMessageEncoder;
 import de.jpaw.bonaparte.core.BonaPortable;
 import de.jpaw.bonaparte.core.CompactByteArrayComposer;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.BufferSizeHints;
 
 public class CompactBonaparteEncoder<O extends BonaPortable> implements IMessageEncoder<O, byte []> {
-    private final CompactByteArrayComposer bac = new CompactByteArrayComposer();
+    private CompactByteArrayComposer bac = null;        // created for the first object, with the buffer size hint of its class
 
     @Override
     public byte[] encode(O obj, ObjectReference di) {
-        bac.reset();
+        if (bac == null)
+            bac = new CompactByteArrayComposer(BufferSizeHints.COMPACT.getHint(obj), false);
+        else
+            bac.reset();
         bac.addField(di, obj);
+        BufferSizeHints.COMPACT.record(obj, bac.getLength());
         return bac.getBytes();
     }
 }
@@ -6,11 +6,19 @@ import de.jpaw.bonaparte.core.CompactByteArrayParser;
 import de.jpaw.bonaparte.core.MessageParserException;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 
+/** Decoder for compact records. The parser instance is reused, therefore instances are not thread safe (same as the encoders). */
 public class CompactRecordDecoder<O extends BonaPortable> implements IMessageDecoder<O, byte []> {
+    private static final byte [] EMPTY = new byte [0];
+
+    private final CompactByteArrayParser cbap = new CompactByteArrayParser(EMPTY, 0, 0);
 
     @Override
     public O decode(byte [] data, ObjectReference di) throws MessageParserException {
-        final CompactByteArrayParser cbap = new CompactByteArrayParser(data, 0, -1);
-        return (O) cbap.readRecord();
+        cbap.setSource(data);
+        try {
+            return (O) cbap.readRecord();
+        } finally {
+            cbap.setSource(EMPTY);      // do not keep references to the message or parsed objects
+        }
     }
 }
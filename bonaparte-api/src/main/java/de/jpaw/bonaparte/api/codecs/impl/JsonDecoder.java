@@ -2,11 +2,9 @@ package de.jpaw.bonaparte.api.codecs.impl;
 
 import de.jpaw.bonaparte.api.codecs.IMessageDecoder;
 import de.jpaw.bonaparte.core.BonaPortable;
-import de.jpaw.bonaparte.core.MapParser;
+import de.jpaw.bonaparte.core.Utf8JsonParser;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
-import de.jpaw.json.JsonParser;
 import de.jpaw.util.ApplicationException;
-import de.jpaw.util.ByteArray;
 
 public class JsonDecoder<O extends BonaPortable> implements IMessageDecoder<O, byte []> {
 
@@ -18,7 +16,6 @@ public class JsonDecoder<O extends BonaPortable> implements IMessageDecoder<O, b
 
     @Override
     public O decode(byte [] data, ObjectReference di) throws ApplicationException {
-        final JsonParser jp = new JsonParser(new String(data, ByteArray.CHARSET_UTF8), false);
-        return CastIt.castTo(MapParser.asBonaPortable(jp.parseObject(), di), decoderClass);
+        return CastIt.castTo(Utf8JsonParser.asBonaPortable(data, 0, data.length, di), decoderClass);
     }
 }
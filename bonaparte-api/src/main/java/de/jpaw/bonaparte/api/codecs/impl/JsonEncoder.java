@@ -1,15 +1,41 @@
 package de.jpaw.bonaparte.api.codecs.impl;
 
+import java.io.IOException;
+
 import de.jpaw.bonaparte.api.codecs.IMessageEncoder;
 import de.jpaw.bonaparte.core.BonaPortable;
-import de.jpaw.bonaparte.core.BonaparteJsonEscaper;
+import de.jpaw.bonaparte.core.Utf8JsonComposer;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
 
+/** Encoder for JSON. The buffer and composer instance are reused, therefore instances are not thread safe (same as the other encoders).
+ * The JSON is written as UTF-8 bytes directly, with the same result as the BonaparteJsonEscaper. */
 public class JsonEncoder<O extends BonaPortable> implements IMessageEncoder<O, byte []> {
+    private static final int MAX_RETAINED_CAPACITY = 65536;   // do not keep huge buffers after exceptionally big messages
+
+    private Utf8JsonComposer composer = newComposer();
+
+    private static Utf8JsonComposer newComposer() {
+        // same settings as BonaparteJsonEscaper(buff, true).outputJsonElement(obj)
+        return new Utf8JsonComposer(new ByteBuilder(256, ByteArray.CHARSET_UTF8), false, true);
+    }
 
     @Override
     public byte[] encode(O obj, ObjectReference di) {
-        return BonaparteJsonEscaper.asJson(obj).getBytes(ByteArray.CHARSET_UTF8);
+        if (obj == null)
+            return null;
+        if (composer.getBuffer().length > MAX_RETAINED_CAPACITY) {
+            composer = newComposer();
+        } else {
+            composer.reset();
+        }
+        try {
+            composer.writeObject(obj);
+        } catch (IOException e) {
+            // cannot happen, appending to a ByteBuilder
+            throw new RuntimeException(e);
+        }
+        return composer.getBytes();
     }
 }
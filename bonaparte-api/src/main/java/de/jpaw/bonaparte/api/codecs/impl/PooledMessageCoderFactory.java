@@ -0,0 +1,97 @@
+package de.jpaw.bonaparte.api.codecs.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import de.jpaw.bonaparte.api.codecs.IMessageCoderFactory;
+import de.jpaw.bonaparte.api.codecs.IMessageDecoder;
+import de.jpaw.bonaparte.api.codecs.IMessageEncoder;
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.InstancePool;
+import de.jpaw.util.ApplicationException;
+
+/** Thread safe coder factory which hands out one shared encoder / decoder per mime type.
+ * Each encode / decode call borrows a codec instance of the underlying factory from a bounded pool and returns it afterwards,
+ * therefore composers, parsers and their buffers (including the object reuse caches) are reset and reused instead of being allocated per message.
+ * In contrast to SingleThreadCachingMessageCoderFactory, the returned instances can be shared between threads (including virtual threads). */
+public class PooledMessageCoderFactory<D extends BonaPortable, E extends BonaPortable, T> implements IMessageCoderFactory<D, E, T> {
+    private final IMessageCoderFactory<D, E, T> delegate;
+    private final int poolSize;
+    private final ConcurrentMap<String, IMessageDecoder<D, T>> decoders = new ConcurrentHashMap<String, IMessageDecoder<D, T>>(12);
+    private final ConcurrentMap<String, IMessageEncoder<E, T>> encoders = new ConcurrentHashMap<String, IMessageEncoder<E, T>>(12);
+
+    public PooledMessageCoderFactory(IMessageCoderFactory<D, E, T> delegate, int poolSize) {
+        this.delegate = delegate;
+        this.poolSize = poolSize;
+    }
+
+    public PooledMessageCoderFactory(IMessageCoderFactory<D, E, T> delegate) {
+        this(delegate, InstancePool.DEFAULT_SIZE);
+    }
+
+    /** Convenience constructor for byte [] based coders, wrapping a MessageCoderFactory. */
+    public static <D extends BonaPortable, E extends BonaPortable> PooledMessageCoderFactory<D, E, byte []> of(Class<D> decoderClass, Class<E> encoderClass) {
+        return new PooledMessageCoderFactory<D, E, byte []>(new MessageCoderFactory<D, E>(decoderClass, encoderClass));
+    }
+
+    @Override
+    public IMessageEncoder<E, T> getEncoderInstance(String mimeType) {
+        IMessageEncoder<E, T> encoder = encoders.get(mimeType);
+        if (encoder != null)
+            return encoder;
+        if (delegate.getEncoderInstance(mimeType) == null)
+            return null;        // unsupported type
+        encoder = new PooledEncoder<E, T>(new InstancePool<IMessageEncoder<E, T>>(poolSize, () -> delegate.getEncoderInstance(mimeType)));
+        final IMessageEncoder<E, T> existing = encoders.putIfAbsent(mimeType, encoder);
+        return existing != null ? existing : encoder;
+    }
+
+    @Override
+    public IMessageDecoder<D, T> getDecoderInstance(String mimeType) {
+        IMessageDecoder<D, T> decoder = decoders.get(mimeType);
+        if (decoder != null)
+            return decoder;
+        if (delegate.getDecoderInstance(mimeType) == null)
+            return null;        // unsupported type
+        decoder = new PooledDecoder<D, T>(new InstancePool<IMessageDecoder<D, T>>(poolSize, () -> delegate.getDecoderInstance(mimeType)));
+        final IMessageDecoder<D, T> existing = decoders.putIfAbsent(mimeType, decoder);
+        return existing != null ? existing : decoder;
+    }
+
+    private static class PooledEncoder<O extends BonaPortable, T> implements IMessageEncoder<O, T> {
+        private final InstancePool<IMessageEncoder<O, T>> pool;
+
+        private PooledEncoder(InstancePool<IMessageEncoder<O, T>> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public T encode(O obj, ObjectReference di) {
+            final IMessageEncoder<O, T> encoder = pool.borrow();
+            try {
+                return encoder.encode(obj, di);
+            } finally {
+                pool.release(encoder);
+            }
+        }
+    }
+
+    private static class PooledDecoder<O extends BonaPortable, T> implements IMessageDecoder<O, T> {
+        private final InstancePool<IMessageDecoder<O, T>> pool;
+
+        private PooledDecoder(InstancePool<IMessageDecoder<O, T>> pool) {
+            this.pool = pool;
+        }
+
+        @Override
+        public O decode(T data, ObjectReference di) throws ApplicationException {
+            final IMessageDecoder<O, T> decoder = pool.borrow();
+            try {
+                return decoder.decode(data, di);
+            } finally {
+                pool.release(decoder);
+            }
+        }
+    }
+}
@@ -7,8 +7,20 @@ import de.jpaw.bonaparte.core.BonaPortable;
 import de.jpaw.bonaparte.core.ByteArrayComposer;
 import de.jpaw.bonaparte.core.ByteArrayParser;
 import de.jpaw.bonaparte.core.MimeTypes;
+import de.jpaw.bonaparte.util.InstancePool;
 
 public class BatchProcessorMarshallerBonaparte implements BatchProcessorMarshaller<BonaPortable> {
+    private static final byte [] EMPTY = new byte [0];
+
+    // the marshaller is shared by the worker threads, composers and parsers are reused via pools
+    private final InstancePool<ByteArrayComposer> composers = new InstancePool<ByteArrayComposer>(ByteArrayComposer::new);
+    private final InstancePool<ByteArrayParser> parsers = new InstancePool<ByteArrayParser>(() -> new ByteArrayParser(EMPTY, 0, 0));
+
+    // do not keep huge buffers after exceptionally big messages
+    private void release(ByteArrayComposer bac) {
+        if (bac.getBuffer().length <= InstancePool.MAX_RETAINED_CAPACITY)
+            composers.release(bac);
+    }
 
     @Override
     public String getContentType() {
@@ -17,21 +29,39 @@ public class BatchProcessorMarshallerBonaparte implements BatchProcessorMarshall
 
     @Override
     public byte[] marshal(BonaPortable request) throws Exception {
-        ByteArrayComposer bac = new ByteArrayComposer();
-        bac.writeRecord(request);
-        return bac.getBytes();
+        final ByteArrayComposer bac = composers.borrow();
+        try {
+            bac.reset();
+            bac.writeRecord(request);
+            return bac.getBytes();
+        } finally {
+            bac.reset();
+            release(bac);
+        }
     }
     @Override
     public void marshal(BonaPortable request, OutputStream w) throws Exception {
-        ByteArrayComposer bac = new ByteArrayComposer();
-        bac.writeRecord(request);
-        w.write(bac.getBuffer(), 0, bac.getLength());       // this one avoids a byte [] copy
+        final ByteArrayComposer bac = composers.borrow();
+        try {
+            bac.reset();
+            bac.writeRecord(request);
+            w.write(bac.getBuffer(), 0, bac.getLength());       // this one avoids a byte [] copy
+        } finally {
+            bac.reset();
+            release(bac);
+        }
     }
 
 
     @Override
     public BonaPortable unmarshal(byte[] response, int length) throws Exception {
-        ByteArrayParser bap = new ByteArrayParser(response, 0, length);
-        return bap.readRecord();
+        final ByteArrayParser bap = parsers.borrow();
+        try {
+            bap.setSource(response, 0, length);
+            return bap.readRecord();
+        } finally {
+            bap.setSource(EMPTY);
+            parsers.release(bap);
+        }
     }
 }
@@ -0,0 +1,38 @@
+package de.jpaw.bonaparte.batch;
+
+import java.nio.file.Paths;
+
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPResult;
+
+import de.jpaw.batch.api.BatchMainCallback;
+import de.jpaw.batch.api.BatchReader;
+import de.jpaw.bonaparte.core.BonaPortable;
+
+/** Faster alternative to BatchReaderBonaparteFile for big, uncompressed UTF-8 files: memory maps the file and parses ranges of it in parallel.
+ * The records are passed on in file order. */
+public class BatchReaderBonaparteMappedFile implements BatchReader<BonaPortable> {
+    private MappedBonaparteFileReader reader = null;
+
+    @Override
+    public void addCommandlineParameters(JSAP params) throws Exception {
+        params.registerParameter(new FlaggedOption("in", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, 'i', "in", "input filename"));
+        params.registerParameter(new FlaggedOption("parserThreads", JSAP.INTEGER_PARSER, "1", JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG, "parser-threads", "number of threads parsing the input file"));
+        params.registerParameter(new FlaggedOption("rangeSize", JSAP.INTEGER_PARSER, Integer.toString(MappedBonaparteFileReader.DEFAULT_RANGE_SIZE), JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG, "range-size", "size of the chunks of the input file parsed in one go"));
+    }
+
+    @Override
+    public void evalCommandlineParameters(JSAPResult params) throws Exception {
+        reader = new MappedBonaparteFileReader(Paths.get(params.getString("in")), params.getInt("rangeSize"), params.getInt("parserThreads"));
+    }
+
+    @Override
+    public void produceTo(BatchMainCallback<? super BonaPortable> whereToPut) throws Exception {
+        reader.readTo(whereToPut::accept);
+    }
+
+    @Override
+    public void close() throws Exception {
+    }
+}
@@ -0,0 +1,46 @@
+package de.jpaw.bonaparte.batch;
+
+import java.nio.file.Paths;
+
+import com.martiansoftware.jsap.FlaggedOption;
+import com.martiansoftware.jsap.JSAP;
+import com.martiansoftware.jsap.JSAPResult;
+
+import de.jpaw.batch.api.BatchMainCallback;
+import de.jpaw.batch.api.BatchReader;
+import de.jpaw.bonaparte.core.BonaPortable;
+
+/** Reads an indexed binary record file (see CompactRecordFile), optionally starting at a given record and limited to a number of records. */
+public class BatchReaderCompactRecordFile implements BatchReader<BonaPortable> {
+    private CompactRecordFileReader reader = null;
+    private long first = 0L;
+    private long maxRecords = Long.MAX_VALUE;
+
+    @Override
+    public void addCommandlineParameters(JSAP params) throws Exception {
+        params.registerParameter(new FlaggedOption("in", JSAP.STRING_PARSER, JSAP.NO_DEFAULT, JSAP.REQUIRED, 'i', "in", "input filename"));
+        params.registerParameter(new FlaggedOption("firstRecord", JSAP.LONG_PARSER, "0", JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG, "first-record", "number of the first record to process (0 based)"));
+        params.registerParameter(new FlaggedOption("maxRecords", JSAP.LONG_PARSER, JSAP.NO_DEFAULT, JSAP.NOT_REQUIRED, JSAP.NO_SHORTFLAG, "max-records", "maximum number of records to process"));
+    }
+
+    @Override
+    public void evalCommandlineParameters(JSAPResult params) throws Exception {
+        reader = new CompactRecordFileReader(Paths.get(params.getString("in")));
+        first = params.getLong("firstRecord");
+        if (params.contains("maxRecords"))
+            maxRecords = params.getLong("maxRecords");
+    }
+
+    @Override
+    public void produceTo(BatchMainCallback<? super BonaPortable> whereToPut) throws Exception {
+        reader.seek(Math.min(first, reader.getNumberOfRecords()));
+        for (long n = 0; n < maxRecords && reader.hasNext(); ++n)
+            whereToPut.accept(reader.next());
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (reader != null)
+            reader.close();
+    }
+}
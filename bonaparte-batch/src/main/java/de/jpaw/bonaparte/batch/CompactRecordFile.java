@@ -0,0 +1,60 @@
+package de.jpaw.bonaparte.batch;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** Constants and helpers of the binary record file format for compact serialized BonaPortables.
+ *
+ * Layout of a file:
+ * <pre>
+ * header:   magic "BCRF", version (1 byte), flags (1 byte), compression format (1 byte), reserved (1 byte)
+ * blocks:   number of records (varint), uncompressed length (varint), stored length (varint), data
+ *           the (uncompressed) data is a sequence of records, each one prefixed by its length (varint)
+ *           the data is compressed if the stored length is less than the uncompressed length
+ * index:    per block: number of the first record in the block (8 bytes), file offset of the block (8 bytes)
+ * trailer:  file offset of the index (8 bytes), number of records (8 bytes), number of blocks (4 bytes), magic "BCRI"
+ * </pre>
+ * Varints are unsigned, 7 bits per byte, least significant group first. Fixed size numbers are big endian.
+ * The index allows to seek to any record by reading a single block only.
+ */
+public final class CompactRecordFile {
+    public static final byte [] MAGIC_HEADER = { 'B', 'C', 'R', 'F' };
+    public static final byte [] MAGIC_TRAILER = { 'B', 'C', 'R', 'I' };
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 8;
+    public static final int TRAILER_SIZE = 24;
+    public static final int INDEX_ENTRY_SIZE = 16;
+
+    public static final int FLAG_COMPRESSED = 0x01;             // blocks may be compressed, using the compression format of the header
+
+    public static final int DEFAULT_RECORDS_PER_BLOCK = 1024;
+    public static final int DEFAULT_BLOCK_SIZE = 64 * 1024;     // a block is closed when its data exceeds this size
+
+    private CompactRecordFile() {
+    }
+
+    /** Writes an unsigned varint, returns the number of bytes written. */
+    public static int writeVarint(DataOutput out, int n) throws IOException {
+        int written = 1;
+        while ((n & ~0x7f) != 0) {
+            out.write((n & 0x7f) | 0x80);
+            n >>>= 7;
+            ++written;
+        }
+        out.write(n);
+        return written;
+    }
+
+    /** Reads an unsigned varint from the buffer. */
+    public static int readVarint(ByteBuffer in) throws IOException {
+        int n = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.get();
+            n |= (b & 0x7f) << shift;
+            if (b >= 0)
+                return n;
+        }
+        throw new IOException("Malformed varint at position " + (in.position() - 1));
+    }
+}
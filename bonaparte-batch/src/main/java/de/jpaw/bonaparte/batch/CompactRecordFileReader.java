@@ -0,0 +1,228 @@
+package de.jpaw.bonaparte.batch;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactCompressor;
+import de.jpaw.bonaparte.core.CompactCompressors;
+import de.jpaw.bonaparte.core.MessageParserException;
+
+/** Reads files written by CompactRecordFileWriter, sequentially or starting at any record number.
+ * Seeking uses the block index, only the block which contains the requested record is read and decompressed,
+ * preceding records within that block are skipped by their length prefix without parsing them.
+ * Instances are not thread safe. */
+public class CompactRecordFileReader implements Closeable {
+    private static final byte [] EMPTY = new byte [0];
+
+    private final FileChannel channel;
+    private final CompactCompressor decompressor;
+    private final long indexOffset;
+    private final long numberOfRecords;
+    private final long [] blockFirstRecord;
+    private final long [] blockOffset;
+    private final CompactByteArrayParser parser = new CompactByteArrayParser(EMPTY, 0, 0);
+
+    private ByteBuffer stored = ByteBuffer.allocate(0);        // block as stored in the file
+    private byte [] uncompressed = EMPTY;                       // decompressed block data
+    private ByteBuffer block = ByteBuffer.allocate(0);         // current block data, positioned at the next record
+    private int currentBlock = -1;
+    private int recordsRemainingInBlock = 0;
+    private long nextRecord = 0L;
+
+    public CompactRecordFileReader(Path file) throws IOException {
+        channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            final long size = channel.size();
+            if (size < CompactRecordFile.HEADER_SIZE + CompactRecordFile.TRAILER_SIZE)
+                throw new IOException("File " + file + " is too short for a compact record file");
+            final ByteBuffer header = readFully(0L, CompactRecordFile.HEADER_SIZE);
+            final byte [] magic = new byte [4];
+            header.get(magic);
+            if (!Arrays.equals(magic, CompactRecordFile.MAGIC_HEADER))
+                throw new IOException("File " + file + " is not a compact record file");
+            final int version = header.get() & 0xff;
+            if (version != CompactRecordFile.VERSION)
+                throw new IOException("Unsupported version " + version + " of compact record file " + file);
+            final int flags = header.get() & 0xff;
+            final int format = header.get() & 0xff;
+            if ((flags & CompactRecordFile.FLAG_COMPRESSED) != 0) {
+                decompressor = CompactCompressors.get(format);
+                if (decompressor == null)
+                    throw new IOException("Compression format " + format + " of file " + file + " is not supported");
+            } else {
+                decompressor = null;
+            }
+
+            final ByteBuffer trailer = readFully(size - CompactRecordFile.TRAILER_SIZE, CompactRecordFile.TRAILER_SIZE);
+            indexOffset = trailer.getLong();
+            numberOfRecords = trailer.getLong();
+            final int numberOfBlocks = trailer.getInt();
+            trailer.get(magic);
+            if (!Arrays.equals(magic, CompactRecordFile.MAGIC_TRAILER) || numberOfBlocks < 0
+              || indexOffset + (long)numberOfBlocks * CompactRecordFile.INDEX_ENTRY_SIZE != size - CompactRecordFile.TRAILER_SIZE)
+                throw new IOException("File " + file + " has no valid index (incomplete file?)");
+
+            blockFirstRecord = new long [numberOfBlocks];
+            blockOffset = new long [numberOfBlocks];
+            final ByteBuffer index = readFully(indexOffset, numberOfBlocks * CompactRecordFile.INDEX_ENTRY_SIZE);
+            for (int i = 0; i < numberOfBlocks; ++i) {
+                blockFirstRecord[i] = index.getLong();
+                blockOffset[i] = index.getLong();
+            }
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    public int getNumberOfBlocks() {
+        return blockOffset.length;
+    }
+
+    /** Returns the number of the record which will be returned by the next call to next(). */
+    public long getPosition() {
+        return nextRecord;
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(buffer, position);
+        return buffer;
+    }
+
+    private void readFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, position);
+            if (n < 0)
+                throw new IOException("Premature end of compact record file");
+            position += n;
+        }
+        buffer.flip();
+    }
+
+    private void loadBlock(int blockNo) throws IOException {
+        final long start = blockOffset[blockNo];
+        final long end = blockNo + 1 < blockOffset.length ? blockOffset[blockNo + 1] : indexOffset;
+        final int storedSize = (int)(end - start);
+        if (stored.capacity() < storedSize)
+            stored = ByteBuffer.allocate(storedSize);
+        stored.clear().limit(storedSize);
+        readFully(stored, start);
+        try {
+            final int recordsInBlock = CompactRecordFile.readVarint(stored);
+            final int length = CompactRecordFile.readVarint(stored);
+            final int storedLength = CompactRecordFile.readVarint(stored);
+            if (storedLength != stored.remaining())
+                throw new IOException("Corrupt block " + blockNo + " at file offset " + start);
+            if (storedLength < length) {
+                if (decompressor == null)
+                    throw new IOException("Compressed block " + blockNo + " in uncompressed file");
+                if (uncompressed.length < length)
+                    uncompressed = new byte [length];
+                try {
+                    decompressor.decompress(stored.array(), stored.position(), storedLength, uncompressed, 0, length);
+                } catch (RuntimeException e) {
+                    throw new IOException("Cannot decompress block " + blockNo + " at file offset " + start, e);
+                }
+                block = ByteBuffer.wrap(uncompressed, 0, length);
+            } else {
+                block = stored;     // stored uncompressed
+            }
+            currentBlock = blockNo;
+            recordsRemainingInBlock = recordsInBlock;
+            nextRecord = blockFirstRecord[blockNo];
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated block " + blockNo + " at file offset " + start);
+        }
+    }
+
+    /** Positions the reader such that the next call to next() returns the record with the given number (0 based). */
+    public void seek(long recordNo) throws IOException {
+        if (recordNo < 0 || recordNo > numberOfRecords)
+            throw new IOException("Record number " + recordNo + " out of range 0.." + numberOfRecords);
+        if (recordNo == numberOfRecords) {
+            currentBlock = blockOffset.length;
+            recordsRemainingInBlock = 0;
+            nextRecord = recordNo;
+            return;
+        }
+        int blockNo = Arrays.binarySearch(blockFirstRecord, recordNo);
+        if (blockNo < 0)
+            blockNo = -blockNo - 2;     // the block before the insertion point
+        if (blockNo != currentBlock || recordNo < nextRecord)
+            loadBlock(blockNo);
+        skipInBlock(recordNo - nextRecord);
+    }
+
+    private void skipInBlock(long howMany) throws IOException {
+        try {
+            while (howMany-- > 0) {
+                final int length = CompactRecordFile.readVarint(block);
+                block.position(block.position() + length);
+                --recordsRemainingInBlock;
+                ++nextRecord;
+            }
+        } catch (BufferUnderflowException | IllegalArgumentException e) {
+            throw new IOException("Corrupt block " + currentBlock);
+        }
+    }
+
+    /** Skips the next records, without parsing them. */
+    public void skip(long howMany) throws IOException {
+        seek(Math.min(nextRecord + howMany, numberOfRecords));
+    }
+
+    /** Returns true if there are more records. */
+    public boolean hasNext() {
+        return nextRecord < numberOfRecords;
+    }
+
+    /** Parses and returns the next record, or returns null at the end of the file. */
+    public BonaPortable next() throws IOException, MessageParserException {
+        if (nextRecord >= numberOfRecords)
+            return null;
+        if (recordsRemainingInBlock == 0)
+            loadBlock(currentBlock + 1);
+        final int length;
+        try {
+            length = CompactRecordFile.readVarint(block);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Corrupt block " + currentBlock);
+        }
+        final int start = block.arrayOffset() + block.position();
+        if (length > block.remaining())
+            throw new IOException("Corrupt block " + currentBlock);
+        block.position(block.position() + length);
+        --recordsRemainingInBlock;
+        ++nextRecord;
+        parser.setSource(block.array(), start, start + length);     // the parser expects the end index, not the length
+        try {
+            return parser.readRecord();
+        } finally {
+            parser.setSource(EMPTY);
+        }
+    }
+
+    /** Returns the record with the given number (0 based). */
+    public BonaPortable read(long recordNo) throws IOException, MessageParserException {
+        seek(recordNo);
+        return next();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
@@ -0,0 +1,133 @@
+package de.jpaw.bonaparte.batch;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactCompressor;
+import de.jpaw.util.ByteBuilder;
+
+/** Writes BonaPortables in compact format into a file of length prefixed records, with a sparse block index (see CompactRecordFile).
+ * Blocks are optionally compressed. Instances are not thread safe. The index is written by close(). */
+public class CompactRecordFileWriter implements Closeable {
+    private final DataOutputStream out;
+    private final CompactCompressor compressor;
+    private final int recordsPerBlock;
+    private final int blockSize;
+    private final CompactByteArrayComposer composer = new CompactByteArrayComposer();
+    private final ByteBuilder block = new ByteBuilder();
+    private byte [] compressionBuffer = null;
+    private long [] blockFirstRecord = new long [64];
+    private long [] blockOffset = new long [64];
+    private int numberOfBlocks = 0;
+    private long numberOfRecords = 0L;
+    private int recordsInBlock = 0;
+    private long offset = 0L;                   // bytes written so far
+    private boolean closed = false;
+
+    /** Creates a writer. Pass a compressor (for example LZ4CompactCompressor.INSTANCE) to enable block compression, or null. */
+    public CompactRecordFileWriter(OutputStream os, CompactCompressor compressor, int recordsPerBlock, int blockSize) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(os, 65536));
+        this.compressor = compressor;
+        this.recordsPerBlock = recordsPerBlock;
+        this.blockSize = blockSize;
+        out.write(CompactRecordFile.MAGIC_HEADER);
+        out.writeByte(CompactRecordFile.VERSION);
+        out.writeByte(compressor != null ? CompactRecordFile.FLAG_COMPRESSED : 0);
+        out.writeByte(compressor != null ? compressor.getFormat() : 0);
+        out.writeByte(0);
+        offset = CompactRecordFile.HEADER_SIZE;
+    }
+
+    public CompactRecordFileWriter(OutputStream os, CompactCompressor compressor) throws IOException {
+        this(os, compressor, CompactRecordFile.DEFAULT_RECORDS_PER_BLOCK, CompactRecordFile.DEFAULT_BLOCK_SIZE);
+    }
+
+    public CompactRecordFileWriter(Path file, CompactCompressor compressor) throws IOException {
+        this(Files.newOutputStream(file), compressor);
+    }
+
+    /** Serializes and appends a record. */
+    public void write(BonaPortable obj) throws IOException {
+        composer.reset();
+        composer.writeRecord(obj);
+        writeRaw(composer.getBuffer(), 0, composer.getLength());
+    }
+
+    /** Appends a record which has been serialized already. */
+    public void writeRaw(byte [] data, int dataOffset, int length) throws IOException {
+        if (closed)
+            throw new IOException("Writer has been closed");
+        if (recordsInBlock == 0) {
+            // new block: remember it in the index
+            if (numberOfBlocks == blockOffset.length) {
+                blockFirstRecord = Arrays.copyOf(blockFirstRecord, 2 * numberOfBlocks);
+                blockOffset = Arrays.copyOf(blockOffset, 2 * numberOfBlocks);
+            }
+            blockFirstRecord[numberOfBlocks] = numberOfRecords;
+            blockOffset[numberOfBlocks] = offset;
+            ++numberOfBlocks;
+        }
+        CompactRecordFile.writeVarint(block, length);
+        block.write(data, dataOffset, length);
+        ++numberOfRecords;
+        if (++recordsInBlock >= recordsPerBlock || block.length() >= blockSize)
+            flushBlock();
+    }
+
+    /** Returns the number of records written so far. */
+    public long getNumberOfRecords() {
+        return numberOfRecords;
+    }
+
+    private void flushBlock() throws IOException {
+        if (recordsInBlock == 0)
+            return;
+        final int length = block.length();
+        int storedLength = length;
+        byte [] storedData = block.getCurrentBuffer();
+        if (compressor != null) {
+            final int maxCompressedLength = compressor.maxCompressedLength(length);
+            if (compressionBuffer == null || compressionBuffer.length < maxCompressedLength)
+                compressionBuffer = new byte [maxCompressedLength];
+            final int compressedLength = compressor.compress(storedData, 0, length, compressionBuffer, 0, maxCompressedLength);
+            if (compressedLength < length) {
+                storedLength = compressedLength;
+                storedData = compressionBuffer;
+            }
+        }
+        offset += CompactRecordFile.writeVarint(out, recordsInBlock);
+        offset += CompactRecordFile.writeVarint(out, length);
+        offset += CompactRecordFile.writeVarint(out, storedLength);
+        out.write(storedData, 0, storedLength);
+        offset += storedLength;
+        block.setLength(0);
+        recordsInBlock = 0;
+    }
+
+    /** Writes the last block, the index and the trailer, and closes the underlying stream. */
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+        flushBlock();
+        final long indexOffset = offset;
+        for (int i = 0; i < numberOfBlocks; ++i) {
+            out.writeLong(blockFirstRecord[i]);
+            out.writeLong(blockOffset[i]);
+        }
+        out.writeLong(indexOffset);
+        out.writeLong(numberOfRecords);
+        out.writeInt(numberOfBlocks);
+        out.write(CompactRecordFile.MAGIC_TRAILER);
+        closed = true;
+        out.close();
+    }
+}
@@ -0,0 +1,181 @@
+package de.jpaw.bonaparte.batch;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayConstants;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.util.InstancePool;
+
+/** Reads a file of Bonaparte records (one record per line, UTF-8 encoded, as written by BatchWriterBonaparteFile).
+ *
+ * The file is memory mapped and split into ranges which end at a record boundary (RECORD_TERMINATOR).
+ * Each range is copied into a reused byte array in a single bulk operation, and the records are parsed by a reused ByteArrayParser.
+ * With more than one thread, ranges are parsed in parallel, but the records are passed to the consumer in file order, in the calling thread.
+ * The number of ranges in progress is limited, therefore memory usage does not depend on the file size.
+ */
+public class MappedBonaparteFileReader {
+    public static final int DEFAULT_RANGE_SIZE = 16 * 1024 * 1024;
+    private static final byte [] EMPTY = new byte [0];
+
+    /** Receives the parsed records, in file order. */
+    @FunctionalInterface
+    public static interface RecordConsumer {
+        void accept(BonaPortable record) throws Exception;
+    }
+
+    private final Path file;
+    private final int rangeSize;
+    private final int numberOfThreads;
+    private final InstancePool<RangeParser> parsers = new InstancePool<RangeParser>(RangeParser::new);
+
+    public MappedBonaparteFileReader(Path file, int rangeSize, int numberOfThreads) {
+        this.file = file;
+        this.rangeSize = rangeSize;
+        this.numberOfThreads = numberOfThreads;
+    }
+
+    public MappedBonaparteFileReader(Path file) {
+        this(file, DEFAULT_RANGE_SIZE, 1);
+    }
+
+    /** Parses all records of the file and passes them to the consumer, in the order of the file. */
+    public void readTo(RecordConsumer consumer) throws Exception {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (numberOfThreads <= 1)
+                readSequentially(channel, consumer);
+            else
+                readParallel(channel, consumer);
+        }
+    }
+
+    private void readSequentially(FileChannel channel, RecordConsumer consumer) throws Exception {
+        final long size = channel.size();
+        final RangeParser parser = parsers.borrow();
+        try {
+            long start = 0L;
+            while (start < size) {
+                final MappedByteBuffer range = nextRange(channel, start, size);
+                start += range.limit();
+                for (BonaPortable record : parser.parse(range))
+                    consumer.accept(record);
+            }
+        } finally {
+            parsers.release(parser);
+        }
+    }
+
+    private void readParallel(FileChannel channel, RecordConsumer consumer) throws Exception {
+        final long size = channel.size();
+        final int maxInProgress = 2 * numberOfThreads;
+        final ExecutorService executor = Executors.newFixedThreadPool(numberOfThreads);
+        final ArrayDeque<Future<List<BonaPortable>>> inProgress = new ArrayDeque<Future<List<BonaPortable>>>(maxInProgress);
+        try {
+            long start = 0L;
+            while (start < size || !inProgress.isEmpty()) {
+                // keep the workers busy
+                while (start < size && inProgress.size() < maxInProgress) {
+                    final MappedByteBuffer range = nextRange(channel, start, size);
+                    start += range.limit();
+                    inProgress.addLast(executor.submit(() -> {
+                        final RangeParser parser = parsers.borrow();
+                        try {
+                            return parser.parse(range);
+                        } finally {
+                            parsers.release(parser);
+                        }
+                    }));
+                }
+                // output the oldest range, to preserve the order
+                final List<BonaPortable> records;
+                try {
+                    records = inProgress.removeFirst().get();
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Exception ex)
+                        throw ex;
+                    throw e;
+                }
+                for (BonaPortable record : records)
+                    consumer.accept(record);
+            }
+        } finally {
+            for (Future<List<BonaPortable>> f : inProgress)
+                f.cancel(true);
+            executor.shutdownNow();
+        }
+    }
+
+    /** Maps the next range of the file, which starts at start and ends after the last complete record within rangeSize bytes.
+     * The limit of the returned buffer is the length of the range. */
+    protected MappedByteBuffer nextRange(FileChannel channel, long start, long size) throws IOException {
+        int len = (int)Math.min(rangeSize, size - start);
+        for (;;) {
+            final MappedByteBuffer range = channel.map(FileChannel.MapMode.READ_ONLY, start, len);
+            if (start + len == size)
+                return range;       // last range, may lack the final terminator
+            // find the end of the last complete record
+            for (int i = len - 1; i >= 0; --i) {
+                if (range.get(i) == ByteArrayConstants.RECORD_TERMINATOR) {
+                    range.limit(i + 1);
+                    return range;
+                }
+            }
+            // a single record exceeds the range size: retry with a bigger range
+            if (len >= Integer.MAX_VALUE / 2)
+                throw new IOException("Record at file offset " + start + " exceeds the maximum supported record size");
+            len = (int)Math.min(2L * len, size - start);
+        }
+    }
+
+    /** The per thread state: parser and a buffer for the current range. */
+    private static final class RangeParser {
+        private final ByteArrayParser parser = new ByteArrayParser(EMPTY, 0, 0);
+        private byte [] buffer = EMPTY;
+
+        private List<BonaPortable> parse(MappedByteBuffer range) throws MessageParserException {
+            final int len = range.limit();
+            if (buffer.length <= len)
+                buffer = new byte [len + 1];            // space for a missing final terminator
+            range.get(0, buffer, 0, len);
+            final List<BonaPortable> records = new ArrayList<BonaPortable>(len / 100 + 1);
+            int recordStart = 0;
+            while (recordStart < len) {
+                int recordEnd = recordStart;
+                while (recordEnd < len && buffer[recordEnd] != ByteArrayConstants.RECORD_TERMINATOR)
+                    ++recordEnd;
+                if (recordEnd == len)
+                    buffer[len] = ByteArrayConstants.RECORD_TERMINATOR;    // last line of the file without terminator
+                ++recordEnd;        // include the terminator
+                if (!isBlank(recordStart, recordEnd)) {
+                    parser.setSource(buffer, recordStart, recordEnd);       // the parser expects the end index, not the length
+                    records.add(parser.readRecord());
+                }
+                recordStart = recordEnd;
+            }
+            parser.setSource(EMPTY);
+            return records;
+        }
+
+        // tolerate empty lines, for example at the end of the file
+        private boolean isBlank(int from, int to) {
+            for (int i = from; i < to; ++i) {
+                final byte c = buffer[i];
+                if (c != ByteArrayConstants.RECORD_TERMINATOR && c != ByteArrayConstants.RECORD_OPT_TERMINATOR)
+                    return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package de.jpaw.bonaparte.batch.endpoints;
+
+import de.jpaw.batch.api.BatchWriter;
+import de.jpaw.batch.impl.BatchWriterFile;
+import de.jpaw.bonaparte.batch.CompactRecordFileWriter;
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactCompressors;
+import de.jpaw.bonaparte.core.CompactConstants;
+
+/** Writes the records in compact format into an indexed binary record file (see CompactRecordFile).
+ * Blocks are LZ4 compressed if LZ4 is available. The output should not be compressed by other means, because that would prevent seeking. */
+public class BatchWriterCompactRecordFile extends BatchWriterFile implements BatchWriter<BonaPortable> {
+    private CompactRecordFileWriter writer = null;      // created on first use, because the stream is opened during parameter evaluation
+
+    @Override
+    public void accept(int no, BonaPortable response) throws Exception {
+        if (writer == null)
+            writer = new CompactRecordFileWriter(uncompressedStream, CompactCompressors.get(CompactConstants.COMPRESSED_LZ4));
+        writer.write(response);
+        if (delayInMillis > 0)
+            Thread.sleep(delayInMillis);
+    }
+
+    @Override
+    public void close() throws Exception {
+        if (writer == null)
+            writer = new CompactRecordFileWriter(uncompressedStream, CompactCompressors.get(CompactConstants.COMPRESSED_LZ4));   // empty file with index
+        writer.close();     // writes the index
+        super.close();
+    }
+}
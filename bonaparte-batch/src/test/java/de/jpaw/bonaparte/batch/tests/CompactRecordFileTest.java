@@ -0,0 +1,58 @@
+package de.jpaw.bonaparte.batch.tests;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.batch.CompactRecordFileReader;
+import de.jpaw.bonaparte.batch.CompactRecordFileWriter;
+import de.jpaw.bonaparte.core.CompactCompressor;
+import de.jpaw.bonaparte.core.LZ4CompactCompressor;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+public class CompactRecordFileTest {
+    private static final int NUM_RECORDS = 1000;
+
+    private Path createFile(CompactCompressor compressor) throws Exception {
+        Path file = Files.createTempFile("compactRecordFileTest", ".bcr");
+        file.toFile().deleteOnExit();
+        try (CompactRecordFileWriter writer = new CompactRecordFileWriter(Files.newOutputStream(file), compressor, 64, 65536)) {
+            for (int i = 0; i < NUM_RECORDS; ++i) {
+                ObjectReference obj = new ObjectReference();
+                obj.setName("field" + i);
+                writer.write(obj);
+            }
+        }
+        return file;
+    }
+
+    private void runTest(CompactCompressor compressor) throws Exception {
+        Path file = createFile(compressor);
+        try (CompactRecordFileReader reader = new CompactRecordFileReader(file)) {
+            Assertions.assertEquals(NUM_RECORDS, reader.getNumberOfRecords());
+            Assertions.assertEquals((NUM_RECORDS + 63) / 64, reader.getNumberOfBlocks());
+
+            // sequential
+            for (int i = 0; i < NUM_RECORDS; ++i)
+                Assertions.assertEquals("field" + i, ((ObjectReference)reader.next()).getName());
+            Assertions.assertFalse(reader.hasNext());
+            Assertions.assertNull(reader.next());
+
+            // random access, forward and backward
+            for (int i : new int [] { 500, 63, 64, 999, 0, 501, 130 })
+                Assertions.assertEquals("field" + i, ((ObjectReference)reader.read(i)).getName());
+        }
+    }
+
+    @Test
+    public void testUncompressed() throws Exception {
+        runTest(null);
+    }
+
+    @Test
+    public void testCompressed() throws Exception {
+        runTest(LZ4CompactCompressor.INSTANCE);
+    }
+}
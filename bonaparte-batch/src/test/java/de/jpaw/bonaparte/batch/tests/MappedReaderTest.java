@@ -0,0 +1,59 @@
+package de.jpaw.bonaparte.batch.tests;
+
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.batch.MappedBonaparteFileReader;
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+public class MappedReaderTest {
+    private static final int NUM_RECORDS = 500;
+
+    private Path createFile() throws Exception {
+        Path file = Files.createTempFile("mappedReaderTest", ".bon");
+        file.toFile().deleteOnExit();
+        ByteArrayComposer bac = new ByteArrayComposer();
+        try (OutputStream os = Files.newOutputStream(file)) {
+            for (int i = 0; i < NUM_RECORDS; ++i) {
+                ObjectReference obj = new ObjectReference();
+                obj.setName("field" + i);
+                bac.reset();
+                bac.writeRecord(obj);
+                os.write(bac.getBuffer(), 0, bac.getLength());
+            }
+        }
+        return file;
+    }
+
+    private void runTest(int rangeSize, int threads) throws Exception {
+        Path file = createFile();
+        List<BonaPortable> records = new ArrayList<BonaPortable>();
+        new MappedBonaparteFileReader(file, rangeSize, threads).readTo(records::add);
+        Assertions.assertEquals(NUM_RECORDS, records.size());
+        for (int i = 0; i < NUM_RECORDS; ++i)
+            Assertions.assertEquals("field" + i, ((ObjectReference)records.get(i)).getName());    // order preserved
+    }
+
+    @Test
+    public void testSequential() throws Exception {
+        runTest(MappedBonaparteFileReader.DEFAULT_RANGE_SIZE, 1);
+    }
+
+    @Test
+    public void testParallelSmallRanges() throws Exception {
+        runTest(1000, 4);
+    }
+
+    @Test
+    public void testRangeSmallerThanRecord() throws Exception {
+        runTest(10, 2);
+    }
+}
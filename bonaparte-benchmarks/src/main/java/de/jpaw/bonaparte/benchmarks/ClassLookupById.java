@@ -0,0 +1,69 @@
+package de.jpaw.bonaparte.benchmarks;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.jpaw.bonaparte.core.BonaPortableClass;
+import de.jpaw.bonaparte.core.BonaPortableFactoryById;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+// Compares the lookup of classes by factoryId / classId, as performed by the compact parser for every object serialized by ID.
+// The "map" variant corresponds to the previous implementation of BonaPortableFactoryById (ConcurrentHashMap with boxed Long keys),
+// the "registry" variant uses the current dense arrays. Run with -prof gc to see the allocation rate.
+
+//java -jar target/bonaparte-benchmarks.jar -i 3 -f 3 -wf 1 -wi 3 -prof gc ".*ClassLookupById.*"
+
+@State(value = Scope.Thread)
+@OperationsPerInvocation(ClassLookupById.OPERATIONS_PER_INVOCATION)
+public class ClassLookupById {
+    static public final int OPERATIONS_PER_INVOCATION = 1000000;
+
+    private static final BonaPortableClass<?> [] CLASSES = {
+        ClassDefinition.BClass.INSTANCE,
+        EnumDataItem.BClass.INSTANCE,
+        ObjectReference.BClass.INSTANCE,
+        AlphanumericElementaryDataItem.BClass.INSTANCE,
+        BasicNumericElementaryDataItem.BClass.INSTANCE
+    };
+
+    private final ConcurrentHashMap<Long, BonaPortableClass<?>> map = new ConcurrentHashMap<Long, BonaPortableClass<?>>(2048);
+    private final int [] factoryIds = new int [CLASSES.length];
+    private final int [] classIds = new int [CLASSES.length];
+
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < CLASSES.length; ++i) {
+            BonaPortableClass<?> bclass = CLASSES[i];
+            factoryIds[i] = bclass.getFactoryId();
+            classIds[i] = bclass.getId();
+            map.put(Long.valueOf((((long)factoryIds[i]) << 32) | classIds[i]), bclass);
+            BonaPortableFactoryById.registerClass(bclass);
+        }
+    }
+
+    @Benchmark
+    public void lookupByMap(Blackhole bh) {
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; ++i) {
+            final int j = i % CLASSES.length;
+            bh.consume(map.get(Long.valueOf((((long)factoryIds[j]) << 32) | classIds[j])));
+        }
+    }
+
+    @Benchmark
+    public void lookupByRegistry(Blackhole bh) {
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; ++i) {
+            final int j = i % CLASSES.length;
+            bh.consume(BonaPortableFactoryById.getByIds(factoryIds[j], classIds[j]));
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package de.jpaw.bonaparte.benchmarks.formats;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+
+// Serialization and deserialization of the flat payload families with the CSV and fixed width formats.
+// The parsers of these formats do not support nested objects and collections, see PayloadFamily.isFlat().
+// java -jar target/bonaparte-benchmarks.jar -prof gc -rf json -rff flatFormats.json ".*FlatFormatBenchmarks.*"
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class FlatFormatBenchmarks {
+
+    @Param({ "CSV", "FIXED_WIDTH" })
+    public Format format;
+
+    @Param({ "SMALL_FLAT", "WIDE", "DECIMAL_HEAVY" })
+    public PayloadFamily family;
+
+    private FormatCodec codec;
+    private BonaPortable payload;
+    private Object serialized;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        codec = format.newCodec();
+        payload = family.create();
+        codec.compose(payload);
+        serialized = codec.result();
+        final BonaPortable copy = codec.parse(serialized, payload.getClass());
+        if (!payload.equals(copy))   // abort the run, instead of measuring a broken serialization
+            throw new IllegalStateException("Round trip of " + family + " via " + format + " does not reproduce the payload");
+    }
+
+    @Benchmark
+    public int compose() throws Exception {
+        return codec.compose(payload);
+    }
+
+    @Benchmark
+    public BonaPortable parse() throws Exception {
+        return codec.parse(serialized, payload.getClass());
+    }
+}
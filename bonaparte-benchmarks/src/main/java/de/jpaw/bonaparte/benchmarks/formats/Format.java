@@ -0,0 +1,290 @@
+package de.jpaw.bonaparte.benchmarks.formats;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CSVComposer;
+import de.jpaw.bonaparte.core.CSVConfiguration;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.ExternalizableComposer;
+import de.jpaw.bonaparte.core.ExternalizableParser;
+import de.jpaw.bonaparte.core.FixedWidthComposer;
+import de.jpaw.bonaparte.core.JsonComposer;
+import de.jpaw.bonaparte.core.MapComposer;
+import de.jpaw.bonaparte.core.MapParser;
+import de.jpaw.bonaparte.core.MimeTypes;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.core.StringBuilderComposer;
+import de.jpaw.bonaparte.core.StringBuilderParser;
+import de.jpaw.bonaparte.core.StringCSVParser;
+import de.jpaw.bonaparte.core.Utf8JsonComposer;
+import de.jpaw.bonaparte.core.Utf8JsonParser;
+import de.jpaw.json.JsonParser;
+import de.jpaw.util.ByteBuilder;
+
+/** The serialization formats covered by the format benchmarks. Every format provides a codec, which holds the reusable composer state. */
+public enum Format {
+    STRING_BUILDER(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+                private final StringBuilderComposer composer = new StringBuilderComposer(buffer);
+
+                @Override
+                public int compose(BonaPortable obj) {
+                    composer.reset();
+                    composer.writeRecord(obj);
+                    return buffer.length();
+                }
+
+                @Override
+                public Object result() {
+                    return buffer.toString();
+                }
+
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    return new StringBuilderParser((String)data, 0, -1).readRecord();
+                }
+            };
+        }
+    },
+    BYTE_ARRAY(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final ByteArrayComposer composer = new ByteArrayComposer();
+
+                @Override
+                public int compose(BonaPortable obj) {
+                    composer.reset();
+                    composer.writeRecord(obj);
+                    return composer.getLength();
+                }
+
+                @Override
+                public Object result() {
+                    return composer.getBytes();
+                }
+
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    return new ByteArrayParser((byte [])data, 0, -1).readRecord();
+                }
+            };
+        }
+    },
+    COMPACT_ID(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new CompactCodec(true);
+        }
+    },
+    COMPACT_PQON(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new CompactCodec(false);
+        }
+    },
+    EXTERNALIZABLE(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final ByteArrayOutputStream baos = new ByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+
+                @Override
+                public int compose(BonaPortable obj) throws Exception {
+                    baos.reset();
+                    final ObjectOutputStream out = new ObjectOutputStream(baos);
+                    new ExternalizableComposer(out).writeRecord(obj);
+                    out.flush();
+                    return baos.size();
+                }
+
+                @Override
+                public Object result() {
+                    return baos.toByteArray();
+                }
+
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    return new ExternalizableParser(new ObjectInputStream(new ByteArrayInputStream((byte [])data))).readRecord();
+                }
+            };
+        }
+    },
+    JSON(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+
+                @Override
+                public int compose(BonaPortable obj) throws Exception {
+                    buffer.setLength(0);
+                    new JsonComposer(buffer).writeRecord(obj);    // the composer is not reusable for single records, same as in JsonComposer.toJsonString()
+                    return buffer.length();
+                }
+
+                @Override
+                public Object result() {
+                    return buffer.toString();
+                }
+
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    return MapParser.asBonaPortable(new JsonParser((String)data, false).parseObject(), StaticMeta.OUTER_BONAPORTABLE);
+                }
+            };
+        }
+    },
+    JSON_UTF8(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final Utf8JsonComposer composer = new Utf8JsonComposer(new ByteBuilder(INITIAL_BUFFER_SIZE, StandardCharsets.UTF_8));
+
+                @Override
+                public int compose(BonaPortable obj) throws Exception {
+                    composer.reset();
+                    composer.writeRecord(obj);
+                    return composer.getLength();
+                }
+
+                @Override
+                public Object result() {
+                    return composer.getBytes();
+                }
+
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    final byte [] json = (byte [])data;
+                    return Utf8JsonParser.asBonaPortable(json, 0, json.length, StaticMeta.OUTER_BONAPORTABLE);
+                }
+            };
+        }
+    },
+    CSV(false) {
+        @Override
+        public FormatCodec newCodec() {
+            return new CsvCodec(CSV_CONFIGURATION, false);
+        }
+    },
+    FIXED_WIDTH(false) {
+        @Override
+        public FormatCodec newCodec() {
+            return new CsvCodec(FIXED_WIDTH_CONFIGURATION, true);
+        }
+    },
+    MAP(true) {
+        @Override
+        public FormatCodec newCodec() {
+            return new FormatCodec() {
+                private final MapComposer composer = new MapComposer(new HashMap<String, Object>(), false, true);
+
+                @Override
+                public int compose(BonaPortable obj) {
+                    // same as MapComposer.toJsonMap(), but reusing the storage
+                    composer.reset();
+                    composer.getStorage().put(MimeTypes.JSON_FIELD_PQON, obj.ret$PQON());
+                    obj.serializeSub(composer);
+                    return composer.getStorage().size();
+                }
+
+                @Override
+                public Object result() {
+                    return new HashMap<String, Object>(composer.getStorage());
+                }
+
+                @SuppressWarnings("unchecked")
+                @Override
+                public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+                    return MapParser.asBonaPortable((Map<String, Object>)data, StaticMeta.OUTER_BONAPORTABLE);
+                }
+            };
+        }
+    };
+
+    public static final int INITIAL_BUFFER_SIZE = 16000;
+    public static final CSVConfiguration CSV_CONFIGURATION = new CSVConfiguration.Builder().usingSeparator(";").build();
+    public static final CSVConfiguration FIXED_WIDTH_CONFIGURATION = new CSVConfiguration.Builder().usingSeparator("").usingQuoteCharacter(null).usingZeroPadding(true).build();
+
+    private final boolean supportsNesting;
+
+    private Format(boolean supportsNesting) {
+        this.supportsNesting = supportsNesting;
+    }
+
+    /** Returns false for formats which can be parsed for flat payloads only (see PayloadFamily.isFlat()). */
+    public boolean supportsNesting() {
+        return supportsNesting;
+    }
+
+    /** Creates a new codec of this format. Codecs are not thread safe. */
+    public abstract FormatCodec newCodec();
+
+    private static final class CompactCodec extends FormatCodec {
+        private final CompactByteArrayComposer composer;
+
+        private CompactCodec(boolean useClassIds) {
+            composer = new CompactByteArrayComposer(INITIAL_BUFFER_SIZE, useClassIds);
+        }
+
+        @Override
+        public int compose(BonaPortable obj) {
+            composer.reset();
+            composer.writeRecord(obj);
+            return composer.getLength();
+        }
+
+        @Override
+        public Object result() {
+            return composer.getBytes();
+        }
+
+        @Override
+        public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+            return new CompactByteArrayParser((byte [])data, 0, -1).readRecord();
+        }
+    }
+
+    private static final class CsvCodec extends FormatCodec {
+        private final StringBuilder buffer = new StringBuilder(INITIAL_BUFFER_SIZE);
+        private final CSVConfiguration cfg;
+        private final CSVComposer composer;
+
+        private CsvCodec(CSVConfiguration cfg, boolean fixedWidth) {
+            this.cfg = cfg;
+            this.composer = fixedWidth ? new FixedWidthComposer(buffer, cfg) : new CSVComposer(buffer, cfg);
+            composer.setWriteCRs(false);
+        }
+
+        @Override
+        public int compose(BonaPortable obj) throws Exception {
+            buffer.setLength(0);
+            composer.reset();
+            composer.writeRecord(obj);
+            return buffer.length();
+        }
+
+        @Override
+        public Object result() {
+            return buffer.toString();
+        }
+
+        @Override
+        public BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception {
+            return new StringCSVParser(cfg, (String)data).readObject(StaticMeta.OUTER_BONAPORTABLE_FOR_CSV, type);
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package de.jpaw.bonaparte.benchmarks.formats;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+
+/** A composer / parser pair of one format, as used by the format benchmarks. The composer state is reused between calls, as in production code. */
+public abstract class FormatCodec {
+    /** Serializes the object into the reusable output of the codec. Returns the size of the output (bytes, characters or map entries). */
+    public abstract int compose(BonaPortable obj) throws Exception;
+
+    /** Returns a copy of the output of the most recent compose() call, which is a suitable input for parse(). */
+    public abstract Object result();
+
+    /** Deserializes a result of compose(). The type is required by formats which do not transmit the class of the record. */
+    public abstract BonaPortable parse(Object data, Class<? extends BonaPortable> type) throws Exception;
+}
@@ -0,0 +1,33 @@
+package de.jpaw.bonaparte.benchmarks.formats;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs all format benchmarks with the GC profiler (allocation rate per operation) and writes the results as JSON,
+ * in order to compare them between releases.
+ *
+ * java -cp target/bonaparte-benchmarks.jar de.jpaw.bonaparte.benchmarks.formats.FormatSuite [resultFile]
+ */
+public final class FormatSuite {
+    public static final String DEFAULT_RESULT_FILE = "format-benchmarks.json";
+
+    private FormatSuite() {
+    }
+
+    public static void main(String [] args) throws RunnerException {
+        final Options options = new OptionsBuilder()
+            .include(FormatSuite.class.getPackage().getName() + "\\..*Benchmarks\\..*")
+            .addProfiler(GCProfiler.class)
+            .forks(2)
+            .warmupIterations(3)
+            .measurementIterations(5)
+            .resultFormat(ResultFormatType.JSON)
+            .result(args.length > 0 ? args[0] : DEFAULT_RESULT_FILE)
+            .build();
+        new Runner(options).run();
+    }
+}
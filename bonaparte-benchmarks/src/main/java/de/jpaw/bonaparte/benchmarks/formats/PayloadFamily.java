@@ -0,0 +1,198 @@
+package de.jpaw.bonaparte.benchmarks.formats;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.pojos.benchPayloads.CollectionHeavy;
+import de.jpaw.bonaparte.pojos.benchPayloads.DecimalHeavy;
+import de.jpaw.bonaparte.pojos.benchPayloads.Nested;
+import de.jpaw.bonaparte.pojos.benchPayloads.SmallFlat;
+import de.jpaw.bonaparte.pojos.benchPayloads.Status;
+import de.jpaw.bonaparte.pojos.benchPayloads.UnicodeHeavy;
+import de.jpaw.bonaparte.pojos.benchPayloads.Wide;
+
+/** Generators of the benchmark payloads. The data is created by a seeded random generator, therefore it is identical for every run. */
+public enum PayloadFamily {
+    SMALL_FLAT(true) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            return smallFlat(rnd);
+        }
+    },
+    WIDE(true) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            final Wide w = new Wide();
+            w.setId(rnd.nextLong() & Long.MAX_VALUE);
+            w.setAscii1(ascii(rnd, 20));
+            w.setAscii2(ascii(rnd, 12));
+            w.setAscii3(ascii(rnd, 8));
+            w.setAscii4(ascii(rnd, 16));
+            w.setText1(latin(rnd, 60));
+            w.setText2(latin(rnd, 30));
+            w.setText3(latin(rnd, 45));
+            w.setText4(latin(rnd, 10));
+            w.setInt1(rnd.nextInt());
+            w.setInt2(rnd.nextInt(100));
+            w.setInt3(rnd.nextInt(100000));
+            w.setInt4(-rnd.nextInt(1000));
+            w.setLong1(rnd.nextLong());
+            w.setLong2(Long.valueOf(rnd.nextInt(1000000)));
+            w.setAmount1(decimal(rnd, 10, 2));
+            w.setAmount2(decimal(rnd, 4, 2));
+            w.setDay1(LocalDate.of(2000, 1, 1).plusDays(rnd.nextInt(10000)));
+            w.setTimestamp1(LocalDateTime.of(2020, 1, 1, 0, 0).plusSeconds(rnd.nextInt(100000000)).plusNanos(rnd.nextInt(1000) * 1000000L));
+            w.setStatus(Status.values()[rnd.nextInt(3)]);
+            w.setFlag1(rnd.nextBoolean());
+            w.setFlag2(Boolean.FALSE);
+            return w;
+        }
+    },
+    DEEPLY_NESTED(false) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            Nested n = null;
+            for (int level = NESTING_DEPTH; level > 0; --level) {
+                final Nested parent = new Nested();
+                parent.setLevel(level);
+                parent.setLabel(latin(rnd, 20));
+                parent.setChild(n);
+                n = parent;
+            }
+            return n;
+        }
+    },
+    COLLECTION_HEAVY(false) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            final CollectionHeavy c = new CollectionHeavy();
+            c.setId(rnd.nextLong() & Long.MAX_VALUE);
+            final List<Integer> numbers = new ArrayList<Integer>(COLLECTION_SIZE);
+            final List<String> tags = new ArrayList<String>(COLLECTION_SIZE);
+            final List<SmallFlat> items = new ArrayList<SmallFlat>(COLLECTION_SIZE);
+            final Map<String, SmallFlat> itemsByCode = new HashMap<String, SmallFlat>(2 * COLLECTION_SIZE);
+            for (int i = 0; i < COLLECTION_SIZE; ++i) {
+                numbers.add(rnd.nextInt(1 << (i % 31)));
+                tags.add(ascii(rnd, 20));
+                items.add(smallFlat(rnd));
+                final SmallFlat s = smallFlat(rnd);
+                itemsByCode.put(s.getCode(), s);
+            }
+            c.setNumbers(numbers);
+            c.setTags(tags);
+            c.setItems(items);
+            c.setItemsByCode(itemsByCode);
+            return c;
+        }
+    },
+    DECIMAL_HEAVY(true) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            final DecimalHeavy d = new DecimalHeavy();
+            d.setId(rnd.nextLong() & Long.MAX_VALUE);
+            d.setPrice1(decimal(rnd, 12, 6));
+            d.setPrice2(decimal(rnd, 6, 6));
+            d.setPrice3(decimal(rnd, 3, 6));
+            d.setPrice4(decimal(rnd, 1, 6));
+            d.setAmount1(decimal(rnd, 16, 2));
+            d.setAmount2(decimal(rnd, 8, 2));
+            d.setAmount3(decimal(rnd, 4, 2).negate());
+            d.setAmount4(BigDecimal.ZERO.setScale(2));
+            d.setRate1(decimal(rnd, 6, 4));
+            d.setRate2(decimal(rnd, 2, 4));
+            d.setRate3(decimal(rnd, 1, 4));
+            d.setRate4(decimal(rnd, 1, 4).negate());
+            return d;
+        }
+    },
+    UNICODE_HEAVY(false) {
+        @Override
+        public BonaPortable create(Random rnd) {
+            final UnicodeHeavy u = new UnicodeHeavy();
+            u.setId(rnd.nextLong() & Long.MAX_VALUE);
+            u.setText1(unicode(rnd, 200, GREEK));
+            u.setText2(unicode(rnd, 200, CYRILLIC));
+            u.setText3(unicode(rnd, 200, CJK));
+            u.setText4(unicode(rnd, 150, LATIN_EXTENDED));
+            final List<String> lines = new ArrayList<String>(COLLECTION_SIZE);
+            for (int i = 0; i < COLLECTION_SIZE; ++i)
+                lines.add(unicode(rnd, 80, ALPHABETS[i % ALPHABETS.length]));
+            u.setLines(lines);
+            return u;
+        }
+    };
+
+    public static final long SEED = 4711L;
+    public static final int NESTING_DEPTH = 32;
+    public static final int COLLECTION_SIZE = 50;
+
+    private static final String ALNUM = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789";
+    private static final String LATIN = "abcdefghijklmnopqrstuvwxyz ABCDEFGHIJKLMNOPQRSTUVWXYZ äöüßéèàç";
+    private static final String LATIN_EXTENDED = "ąćęłńóśźżĄĆĘŁŃÓŚŹŻřšžťďňůčěŘŠŽÅåøæ ";
+    private static final String GREEK = "αβγδεζηθικλμνξοπρστυφχψω ΑΒΓΔΕΖΗΘΙΚΛΜΝΞΟΠΡΣΤΥΦΧΨΩ";
+    private static final String CYRILLIC = "абвгдеёжзийклмнопрстуфхцчшщъыьэюя АБВГДЕЁЖЗИЙКЛМНОПРСТУФХЦЧШЩЪЫЬЭЮЯ";
+    private static final String CJK = "的一是不了人我在有他这中大来上国个到说们为子和你地出道也时年得就那要下以生会自着去之过家学对可她里后小么心多天而能好都然没日于起还发成事只作当想看文无开手十用主行方又如前所本见经头面公同三已老从动两长知民样现分将外但身些与高意进把法此实回二理美点月明其种声全工己话儿者向情部正名定女问力机给等几很业最间新什打便位因重被走电四第门相次东政海口使教西再平真听世气信北少关并内加化由却代军产入先山五太水万市眼体别处总才场师书比住员九笑性通目华报立马命张活难神数件安表原车白应路期叫死常提感金何更反合放做系计或司利受光王果亲界及今京务制解各任至清物台象记边共风战干接它许八特觉望直服毛林题建南度统色字请交爱让认算论百吃义科怎元社术结六功指思非流每青管夫连远资队跟带花快条院变联言权往展该领传近留红治决周保达办运武半候七必城父强步完革深区即求品士转量空甚众技轻程告江语英基派满式李息写呢识极令黄德收脸钱党倒未持取设始版双历越史商千片容研像找友孩站广改议形委早房音火际则首单据导影失拿网香似斯专石若兵弟谁校读志飞观争究包组造落视济喜离虽坐集编宝谈府拉黑且随格尽剑讲布杀微怕母调局根曾准团段终乐切级克精哪官示冷域读";
+    private static final String [] ALPHABETS = { LATIN, LATIN_EXTENDED, GREEK, CYRILLIC, CJK };
+
+    private final boolean flat;
+
+    private PayloadFamily(boolean flat) {
+        this.flat = flat;
+    }
+
+    /** Returns true if the payload has no nested objects or collections, which is a prerequisite for the CSV and fixed width parsers. */
+    public boolean isFlat() {
+        return flat;
+    }
+
+    /** Creates a payload, using the provided random generator. */
+    public abstract BonaPortable create(Random rnd);
+
+    /** Creates the reference payload of this family. */
+    public BonaPortable create() {
+        return create(new Random(SEED));
+    }
+
+    private static SmallFlat smallFlat(Random rnd) {
+        final SmallFlat s = new SmallFlat();
+        s.setId(rnd.nextInt(1000000));
+        s.setCode(ascii(rnd, 12));
+        s.setName(latin(rnd, 30));
+        s.setActive(rnd.nextBoolean());
+        return s;
+    }
+
+    private static String pick(Random rnd, int length, String alphabet) {
+        final char [] chars = new char [length];
+        for (int i = 0; i < length; ++i)
+            chars[i] = alphabet.charAt(rnd.nextInt(alphabet.length()));
+        return new String(chars);
+    }
+
+    private static String ascii(Random rnd, int length) {
+        return pick(rnd, length, ALNUM);
+    }
+
+    // a Latin text, which starts with a letter, in order to avoid leading spaces (which would be trimmed by some formats)
+    private static String latin(Random rnd, int length) {
+        return pick(rnd, 1, ALNUM) + pick(rnd, length - 1, LATIN).trim();
+    }
+
+    private static String unicode(Random rnd, int length, String alphabet) {
+        return pick(rnd, 1, ALNUM) + pick(rnd, length - 1, alphabet).trim();
+    }
+
+    private static BigDecimal decimal(Random rnd, int integralDigits, int scale) {
+        long unscaled = 0L;
+        for (int i = 0; i < integralDigits + scale; ++i)
+            unscaled = 10L * unscaled + rnd.nextInt(10);
+        return BigDecimal.valueOf(unscaled, scale);
+    }
+}
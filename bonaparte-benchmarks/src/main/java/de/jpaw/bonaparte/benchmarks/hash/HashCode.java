@@ -9,9 +9,12 @@ import org.openjdk.jmh.annotations.Scope;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.infra.Blackhole;
 
+import de.jpaw.bonaparte.core.BonaPortable;
 import de.jpaw.bonaparte.core.BonaPortableClass;
 import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
 import de.jpaw.bonaparte.pojos.meta.Multiplicity;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.Fingerprints;
 
 
 //java -jar target/bonaparte-benchmarks.jar -i 3 -f 3 -wf 1 -wi 3 ".*HashCode.*"
@@ -37,6 +40,32 @@ public class HashCode {
         }
     }
 
+    @Benchmark
+    public void equalsBonaPortable(Blackhole bh) throws Exception {
+        BonaPortable obj1 = ClassDefinition.class$MetaData().ret$FrozenClone();
+        BonaPortable obj2 = ClassDefinition.class$MetaData().ret$FrozenClone();
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; ++i) {
+            bh.consume(obj1.equals(obj2));
+        }
+    }
+
+    @Benchmark
+    public void fingerprintBonaPortable(Blackhole bh) throws Exception {
+        BonaPortable obj1 = ClassDefinition.class$MetaData().ret$FrozenClone();
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; ++i) {
+            bh.consume(Fingerprints.DEFAULT.fingerprint(obj1));
+        }
+    }
+
+    @Benchmark
+    public void mayBeEqualBonaPortable(Blackhole bh) throws Exception {
+        BonaPortable obj1 = ClassDefinition.class$MetaData().ret$FrozenClone();
+        BonaPortable obj2 = ObjectReference.class$MetaData().ret$FrozenClone();
+        for (int i = 0; i < OPERATIONS_PER_INVOCATION; ++i) {
+            bh.consume(Fingerprints.DEFAULT.mayBeEqual(obj1, obj2));
+        }
+    }
+
     @Benchmark
     public void hashCodeBonaPortableClass(Blackhole bh) throws IOException {
         BonaPortableClass<ClassDefinition> obj1 = ClassDefinition.BClass.INSTANCE;
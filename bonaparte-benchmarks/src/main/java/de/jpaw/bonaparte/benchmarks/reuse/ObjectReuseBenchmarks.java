@@ -0,0 +1,100 @@
+package de.jpaw.bonaparte.benchmarks.reuse;
+
+import java.util.IdentityHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jpaw.bonaparte.benchmarks.formats.PayloadFamily;
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.util.ObjectIndexMap;
+import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
+
+// Overhead of the object reuse cache of the composers: composing a message with a reused composer (reset per message) for every ObjectReuseStrategy.
+// NONE is the baseline without cache. The map benchmarks compare the ObjectIndexMap with the previously used IdentityHashMap,
+// for the typical pattern of a few entries per message followed by a reset.
+// java -jar target/bonaparte-benchmarks.jar -prof gc ".*ObjectReuseBenchmarks.*"
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class ObjectReuseBenchmarks {
+
+    @Param({ "NONE", "BY_REFERENCE", "BY_CONTENTS" })
+    public ObjectReuseStrategy strategy;
+
+    @Param({ "SMALL_FLAT", "DEEPLY_NESTED", "COLLECTION_HEAVY" })
+    public PayloadFamily family;
+
+    @Param({ "8" })
+    public int objectsPerMessage;
+
+    private BonaPortable payload;
+    private ByteArrayComposer byteArrayComposer;
+    private CompactByteArrayComposer compactComposer;
+    private Object [] keys;
+    private ObjectIndexMap indexMap;
+    private IdentityHashMap<Object, Integer> identityHashMap;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        payload = family.create();
+        byteArrayComposer = new ByteArrayComposer(strategy);
+        compactComposer = new CompactByteArrayComposer(new ByteBuilder(4000, ByteArray.CHARSET_UTF8), strategy, false);
+        keys = new Object [objectsPerMessage];
+        for (int i = 0; i < objectsPerMessage; ++i)
+            keys[i] = new Object();
+        indexMap = new ObjectIndexMap(250, false);
+        identityHashMap = new IdentityHashMap<Object, Integer>(250);
+    }
+
+    @Benchmark
+    public int composeByteArray() throws Exception {
+        byteArrayComposer.reset();
+        byteArrayComposer.writeRecord(payload);
+        return byteArrayComposer.getLength();
+    }
+
+    @Benchmark
+    public int composeCompact() throws Exception {
+        compactComposer.reset();
+        compactComposer.writeRecord(payload);
+        return compactComposer.getLength();
+    }
+
+    @Benchmark
+    public int mapObjectIndexMap() {
+        indexMap.clear();
+        int found = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            if (indexMap.get(keys[i]) != ObjectIndexMap.NOT_FOUND)
+                ++found;
+            indexMap.put(keys[i], i);
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int mapIdentityHashMap() {
+        identityHashMap.clear();
+        int found = 0;
+        for (int i = 0; i < keys.length; ++i) {
+            if (identityHashMap.get(keys[i]) != null)
+                ++found;
+            identityHashMap.put(keys[i], Integer.valueOf(i));
+        }
+        return found;
+    }
+}
@@ -0,0 +1,134 @@
+package de.jpaw.bonaparte.benchmarks.strings;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.DataCategory;
+import de.jpaw.bonaparte.pojos.meta.IndexType;
+import de.jpaw.bonaparte.pojos.meta.Multiplicity;
+import de.jpaw.bonaparte.pojos.meta.Visibility;
+import de.jpaw.bonaparte.util.Latin1Tools;
+
+// Encoding and decoding of single strings of short, medium and 10 KB length, with ASCII, Latin-1 and other Unicode contents.
+// The legacy* methods are the former per character loops, for comparison with the bulk paths of Latin1Tools.
+// java -jar target/bonaparte-benchmarks.jar -prof gc ".*StringCodingBenchmarks.*"
+
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@BenchmarkMode(Mode.AverageTime)
+public class StringCodingBenchmarks {
+    public static final AlphanumericElementaryDataItem TEXT_META = new AlphanumericElementaryDataItem(Visibility.PRIVATE, false, "text",
+            Multiplicity.SCALAR, IndexType.NONE, 0, 0, DataCategory.STRING, "unicode", "String", false, true, null, null, null, null, false, false, false, false, 100000, 0, null);
+
+    public enum Contents {
+        ASCII("ABCDEFGHIJKLMNOPQRSTUVWXYZ abcdefghijklmnopqrstuvwxyz 0123456789.,-"),
+        LATIN1("abcdefghijklmnopqrstuvwxyz äöüßéèàçÄÖÜ"),
+        UNICODE("abcdefghij αβγδεζηθικλμνξ абвгдежзий");
+
+        private final String alphabet;
+
+        private Contents(String alphabet) {
+            this.alphabet = alphabet;
+        }
+    }
+
+    @Param({ "8", "100", "10240" })
+    public int length;
+
+    @Param({ "ASCII", "LATIN1", "UNICODE" })
+    public Contents contents;
+
+    private String text;
+    private byte [] latin1;
+    private final CompactByteArrayComposer compactComposer = new CompactByteArrayComposer(20000, false);
+    private final ByteArrayComposer byteArrayComposer = new ByteArrayComposer();
+    private byte [] compactData;
+    private byte [] byteArrayData;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        final Random rnd = new Random(4711L);
+        final char [] chars = new char [length];
+        for (int i = 0; i < length; ++i)
+            chars[i] = contents.alphabet.charAt(rnd.nextInt(contents.alphabet.length()));
+        chars[0] = 'X';     // avoid leading and trailing spaces, which would be trimmed
+        chars[length - 1] = 'X';
+        text = new String(chars);
+        latin1 = text.getBytes(StandardCharsets.ISO_8859_1);
+        composeCompact();
+        compactData = compactComposer.getBytes();
+        composeByteArray();
+        byteArrayData = byteArrayComposer.getBytes();
+    }
+
+    @Benchmark
+    public int composeCompact() throws Exception {
+        compactComposer.reset();
+        compactComposer.addField(TEXT_META, text);
+        return compactComposer.getLength();
+    }
+
+    @Benchmark
+    public String parseCompact() throws MessageParserException {
+        return new CompactByteArrayParser(compactData, 0, -1).readString(TEXT_META);
+    }
+
+    @Benchmark
+    public int composeByteArray() {
+        byteArrayComposer.reset();
+        byteArrayComposer.addField(TEXT_META, text);
+        return byteArrayComposer.getLength();
+    }
+
+    @Benchmark
+    public String parseByteArray() throws MessageParserException {
+        return new ByteArrayParser(byteArrayData, 0, -1).readString(TEXT_META);
+    }
+
+    @Benchmark
+    public byte [] toLatin1() {
+        return Latin1Tools.toLatin1(text);
+    }
+
+    @Benchmark
+    public int legacyMaxCode() {
+        int maxCode = 0;
+        final int len = text.length();
+        for (int i = 0; i < len; ++i) {
+            final char c = text.charAt(i);
+            if (c > maxCode)
+                maxCode = c;
+        }
+        return maxCode;
+    }
+
+    @Benchmark
+    public String fromLatin1() {
+        return Latin1Tools.fromLatin1(latin1, 0, latin1.length);
+    }
+
+    @Benchmark
+    public String legacyFromLatin1() {
+        final char [] data = new char [latin1.length];
+        for (int i = 0; i < latin1.length; ++i)
+            data[i] = (char)(0xff & latin1[i]);
+        return new String(data);
+    }
+}
@@ -0,0 +1,116 @@
+package testcases.compression;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteBufferParser;
+import de.jpaw.bonaparte.core.CompactCompressors;
+import de.jpaw.bonaparte.core.CompactConstants;
+import de.jpaw.bonaparte.core.LZ4CompactCompressor;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.very.compact.Complex;
+import de.jpaw.util.ByteBuilder;
+
+public class TestCompactCompression {
+
+    private byte [] compose(BonaPortable obj, int threshold) {
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setCompression(LZ4CompactCompressor.INSTANCE, threshold);
+        cbac.writeRecord(obj);
+        return cbac.getBytes();
+    }
+
+    @Test
+    public void testLZ4IsRegistered() throws Exception {
+        Assertions.assertSame(LZ4CompactCompressor.INSTANCE, CompactCompressors.get(CompactConstants.COMPRESSED_LZ4));
+    }
+
+    @Test
+    public void testRoundTripCompressed() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        byte [] plain = compose(obj1, Integer.MAX_VALUE);
+        byte [] compressed = compose(obj1, 100);
+        System.out.println("Length uncompressed is " + plain.length + ", compressed is " + compressed.length);
+        Assertions.assertEquals(CompactConstants.COMPRESSED, compressed[0] & 0xff);
+        Assertions.assertTrue(compressed.length < plain.length);
+
+        BonaPortable result = new CompactByteArrayParser(compressed, 0, -1).readRecord();
+        Assertions.assertEquals(obj1, result);
+    }
+
+    @Test
+    public void testSmallObjectsUnchanged() throws Exception {
+        Complex obj = new Complex(2.7, 3.14);
+        byte [] plain = CompactByteArrayComposer.marshal(StaticMeta.OUTER_BONAPORTABLE, obj);
+        byte [] withCompression = compose(obj, 1000);
+        Assertions.assertArrayEquals(plain, withCompression);
+    }
+
+    // a COMPRESSED token with the given header, followed by some bytes of "compressed" data
+    private byte [] compressedHeader(int uncompressedLength, int compressedLength) throws Exception {
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(100, false);
+        cbac.addField(StaticMeta.INTERNAL_INTEGER, CompactConstants.COMPRESSED_LZ4);
+        cbac.addField(StaticMeta.INTERNAL_INTEGER, uncompressedLength);
+        cbac.addField(StaticMeta.INTERNAL_INTEGER, compressedLength);
+        byte [] header = cbac.getBytes();
+        byte [] data = new byte [1 + header.length + compressedLength];
+        data[0] = (byte)CompactConstants.COMPRESSED;
+        System.arraycopy(header, 0, data, 1, header.length);
+        return data;
+    }
+
+    @Test
+    public void testImplausibleUncompressedLengthIsRejected() throws Exception {
+        // a few bytes must not cause the allocation of a huge buffer
+        byte [] data = compressedHeader(1_000_000_000, 4);
+        MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> new CompactByteArrayParser(data, 0, -1).readRecord());
+        Assertions.assertEquals(MessageParserException.CORRUPT_COMPRESSED, e.getErrorCode());
+        e = Assertions.assertThrows(MessageParserException.class, () -> new CompactByteBufferParser(ByteBuffer.wrap(data)).readRecord());
+        Assertions.assertEquals(MessageParserException.CORRUPT_COMPRESSED, e.getErrorCode());
+    }
+
+    @Test
+    public void testMaxUncompressedLength() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        byte [] compressed = compose(obj1, 100);
+        CompactByteArrayParser parser = new CompactByteArrayParser(compressed, 0, -1);
+        parser.setMaxUncompressedLength(100);
+        MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> parser.readRecord());
+        Assertions.assertEquals(MessageParserException.CORRUPT_COMPRESSED, e.getErrorCode());
+    }
+
+    @Test
+    public void testSkippedCompressedObjectRegistersDefinitions() throws Exception {
+        // a record with an unknown trailing field, which holds a compressed object with new class and string definitions
+        final ByteBuilder out = new ByteBuilder(4000, StandardCharsets.UTF_8);
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(out, ObjectReuseStrategy.NONE, false);
+        cbac.setUseClassDictionary(true);
+        cbac.setMaxStringTableSize(1000);
+        cbac.setCompression(LZ4CompactCompressor.INSTANCE, 100);
+        final Complex obj = new Complex(2.7, 3.14);
+        cbac.writeRecord(obj);
+        out.setLength(out.length() - 1);            // remove the object terminator
+        final int extraFieldStart = out.length();
+        cbac.addField(StaticMeta.OUTER_BONAPORTABLE, ClassDefinition.class$MetaData());
+        Assertions.assertEquals(CompactConstants.COMPRESSED, out.getCurrentBuffer()[extraFieldStart] & 0xff);
+        out.writeByte(CompactConstants.OBJECT_TERMINATOR);
+        // the next record references the class and string definitions of the skipped one
+        final ClassDefinition obj2 = ObjectReference.class$MetaData();
+        cbac.setCompression(null, 0);
+        cbac.writeRecord(obj2);
+
+        final CompactByteArrayParser cbap = new CompactByteArrayParser(cbac.getBytes(), 0, -1);
+        Assertions.assertEquals(obj, cbap.readRecord());
+        Assertions.assertEquals(obj2, cbap.readRecord());
+    }
+}
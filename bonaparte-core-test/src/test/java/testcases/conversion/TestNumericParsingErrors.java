@@ -0,0 +1,96 @@
+package testcases.conversion;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.MessageParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.StringBuilderComposer;
+import de.jpaw.bonaparte.core.StringBuilderParser;
+import de.jpaw.bonaparte.pojos.csvTests.Test1withMicroUnits;
+import de.jpaw.bonaparte.pojos.jsonTest.TestObj;
+import de.jpaw.fixedpoint.types.MicroUnits;
+
+/** Numeric and temporal fields are parsed by the ByteArrayParser and the StringBuilderParser without intermediate Strings.
+ * The tests modify single fields of a serialized record and verify that both parsers report the same error codes as before. */
+public class TestNumericParsingErrors {
+
+    private Test1withMicroUnits create() {
+        final Test1withMicroUnits t = new Test1withMicroUnits();
+        t.setString1("abc");
+        t.setInt1(4711);
+        t.setTs1(LocalDateTime.of(2019, 11, 12, 13, 14, 15));
+        t.setMu1(MicroUnits.valueOf("3.25"));
+        t.setDay1(LocalDate.of(2020, 2, 3));
+        t.setReally(true);
+        t.setLongNum(987654321L);
+        return t;
+    }
+
+    // serializes the object with both formats, replaces the text of a field and parses the result again
+    private void check(BonaPortable obj, String original, String replacement, int expectedErrorCode, BonaPortable expected) throws Exception {
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        bac.writeRecord(obj);
+        final String bytes = new String(bac.getBytes(), StandardCharsets.ISO_8859_1);
+        Assertions.assertTrue(bytes.contains(original), "field text not found");
+        check(new ByteArrayParser(bytes.replace(original, replacement).getBytes(StandardCharsets.ISO_8859_1), 0, -1), expectedErrorCode, expected);
+
+        final StringBuilder sb = new StringBuilder();
+        new StringBuilderComposer(sb).writeRecord(obj);
+        check(new StringBuilderParser(sb.toString().replace(original, replacement), 0, -1), expectedErrorCode, expected);
+    }
+
+    private void check(MessageParser<MessageParserException> p, int expectedErrorCode, BonaPortable expected) {
+        try {
+            final BonaPortable result = p.readRecord();
+            Assertions.assertEquals(0, expectedErrorCode, "expected an exception, using " + p.getClass().getSimpleName());
+            Assertions.assertEquals(expected, result);
+        } catch (MessageParserException e) {
+            Assertions.assertEquals(expectedErrorCode, e.getErrorCode(), "wrong error code, using " + p.getClass().getSimpleName() + ": " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testValidVariants() throws Exception {
+        final Test1withMicroUnits expected = create();
+        check(create(), "4711", "+4711", 0, expected);
+        check(create(), "4711", "0004711", 0, expected);
+        expected.setInt1(-4711);
+        check(create(), "4711", "-4711", 0, expected);
+    }
+
+    @Test
+    public void testIntegralErrors() throws Exception {
+        check(create(), "4711", "47-11", MessageParserException.SUPERFLUOUS_SIGN, null);
+        check(create(), "4711", "47.11", MessageParserException.SUPERFLUOUS_DECIMAL_POINT, null);
+        check(create(), "4711", "47e11", MessageParserException.SUPERFLUOUS_EXPONENT, null);
+        check(create(), "4711", "47a11", MessageParserException.ILLEGAL_CHAR_NOT_NUMERIC, null);
+        check(create(), "4711", "12345678901", MessageParserException.NUMBER_PARSING_ERROR, null);
+        check(create(), "4711", "12345678901234567890123456789012345678901", MessageParserException.NUMERIC_TOO_LONG, null);
+        check(create(), "987654321", "-987654321", MessageParserException.SUPERFLUOUS_SIGN, null);
+    }
+
+    @Test
+    public void testDayErrors() throws Exception {
+        check(create(), "20200203", "20201303", MessageParserException.ILLEGAL_DAY, null);
+        check(create(), "20200203", "20200230", MessageParserException.ILLEGAL_CALENDAR_VALUE, null);
+        check(create(), "20200203", "2020.0203", MessageParserException.SUPERFLUOUS_DECIMAL_POINT, null);
+    }
+
+    @Test
+    public void testUuids() throws Exception {
+        final TestObj obj = new TestObj();
+        obj.setPrimitiveInt(42);
+        obj.setMyNull(UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0"));
+        check(obj, "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0", "0F1E2D3C-4B5A-6978-8796-A5B4C3D2E1F0", 0, obj);
+        check(obj, "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0", "0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1fx", MessageParserException.BAD_UUID_FORMAT, null);
+    }
+}
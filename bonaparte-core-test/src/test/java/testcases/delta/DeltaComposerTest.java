@@ -0,0 +1,123 @@
+package testcases.delta;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.DeltaComposer;
+import de.jpaw.bonaparte.core.DeltaParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.pojos.fieldGettersTest.Child;
+import de.jpaw.bonaparte.pojos.fieldGettersTest.Parent;
+
+public class DeltaComposerTest {
+
+    private static Parent createParent() {
+        Parent p = new Parent();
+        p.setX(48);
+        p.setY(new Child(47));
+        p.setZ(Collections.singletonMap("key", "some JSON"));
+        p.setList(new ArrayList<Child>(Arrays.asList(new Child(1), new Child(2), new Child(3))));
+        p.setMap(new HashMap<String, Child>(Collections.singletonMap("hello", new Child(4))));
+        return p;
+    }
+
+    private static byte [] serialize(Parent p) {
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        bac.writeRecord(p);
+        return bac.getBytes();
+    }
+
+    /** Writes the delta in both formats, applies it to base and verifies the result. Returns the changed paths. */
+    private static List<String> roundTrip(Parent base, Parent current) throws Exception {
+        final byte [] original = serialize(base);
+        final boolean expectChanges = !base.equals(current);
+
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        final DeltaComposer<RuntimeException> dc = new DeltaComposer<RuntimeException>(bac);
+        Assertions.assertEquals(expectChanges, dc.writeDelta(base, current));
+        final BonaPortable result = new DeltaParser<MessageParserException>(new ByteArrayParser(bac.getBytes())).readDelta(base);
+        Assertions.assertEquals(current, result);
+
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer();
+        final DeltaComposer<IOException> cdc = new DeltaComposer<IOException>(cbac);
+        Assertions.assertEquals(expectChanges, cdc.writeDelta(base, current));
+        final BonaPortable compactResult = new DeltaParser<MessageParserException>(new CompactByteArrayParser(cbac.getBytes(), 0, -1)).readDelta(base);
+        Assertions.assertEquals(current, compactResult);
+        Assertions.assertEquals(dc.getChangedPaths(), cdc.getChangedPaths());
+
+        Assertions.assertArrayEquals(original, serialize(base));      // the base object is not modified
+        return dc.getChangedPaths();
+    }
+
+    @Test
+    public void testNoChanges() throws Exception {
+        Assertions.assertEquals(Collections.emptyList(), roundTrip(createParent(), createParent()));
+    }
+
+    @Test
+    public void testScalarAndNestedChanges() throws Exception {
+        final Parent current = createParent();
+        current.setX(49);
+        current.getY().setX(11);
+        Assertions.assertEquals(Arrays.asList("x", "y.x"), roundTrip(createParent(), current));
+
+        current.setY(null);
+        current.setZ(null);
+        Assertions.assertEquals(Arrays.asList("x", "y", "z"), roundTrip(createParent(), current));
+    }
+
+    @Test
+    public void testListElementChanges() throws Exception {
+        final Parent current = createParent();
+        current.getList().get(1).setX(22);
+        current.getList().set(2, null);
+        Assertions.assertEquals(Arrays.asList("list[1].x", "list[2]"), roundTrip(createParent(), current));
+    }
+
+    @Test
+    public void testCollectionsReplacedAsWhole() throws Exception {
+        final Parent current = createParent();
+        current.getList().add(new Child(4));
+        current.getMap().put("world", new Child(5));
+        Assertions.assertEquals(Arrays.asList("map", "list"), roundTrip(createParent(), current));
+
+        final Parent empty = new Parent();
+        Assertions.assertEquals(Arrays.asList("x", "y", "z", "map", "list"), roundTrip(empty, createParent()));
+        Assertions.assertEquals(Arrays.asList("x", "y", "z", "map", "list"), roundTrip(createParent(), empty));
+    }
+
+    @Test
+    public void testUnchangedObjectsAreShared() throws Exception {
+        final Parent base = createParent();
+        final Parent current = createParent();
+        current.setX(1);
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        new DeltaComposer<RuntimeException>(bac).writeDelta(base, current);
+        final Parent result = (Parent)new DeltaParser<MessageParserException>(new ByteArrayParser(bac.getBytes())).readDelta(base);
+        Assertions.assertEquals(current, result);
+        Assertions.assertSame(base.getY(), result.getY());
+        Assertions.assertSame(base.getList().get(0), result.getList().get(0));
+        Assertions.assertSame(base.getMap().get("hello"), result.getMap().get("hello"));
+    }
+
+    @Test
+    public void testDifferentClassReplacesObject() throws Exception {
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        final DeltaComposer<RuntimeException> dc = new DeltaComposer<RuntimeException>(bac);
+        Assertions.assertTrue(dc.writeDelta(new Child(1), createParent()));
+        Assertions.assertEquals(Collections.singletonList(""), dc.getChangedPaths());
+        Assertions.assertEquals(createParent(), new DeltaParser<MessageParserException>(new ByteArrayParser(bac.getBytes())).readDelta(new Child(1)));
+    }
+}
@@ -0,0 +1,66 @@
+package testcases.dictionary;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactConstants;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+public class TestCompactClassDictionary {
+
+    private byte [] compose(boolean useClassDictionary, BonaPortable... objs) {
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setUseClassDictionary(useClassDictionary);
+        for (BonaPortable obj : objs)
+            cbac.writeRecord(obj);
+        return cbac.getBytes();
+    }
+
+    @Test
+    public void testRoundTripWithDictionary() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        byte [] plain = compose(false, obj1);
+        byte [] withDictionary = compose(true, obj1);
+        System.out.println("Length without dictionary is " + plain.length + ", with dictionary " + withDictionary.length);
+        Assertions.assertEquals(CompactConstants.OBJECT_BEGIN_NEW_CLASS, withDictionary[0] & 0xff);
+        Assertions.assertTrue(withDictionary.length < plain.length);
+
+        BonaPortable result = new CompactByteArrayParser(withDictionary, 0, -1).readRecord();
+        Assertions.assertEquals(obj1, result);
+    }
+
+    @Test
+    public void testDictionaryIsValidForTheWholeStream() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        ClassDefinition obj2 = ObjectReference.class$MetaData();   // shares most classes with obj1
+        byte [] data = compose(true, obj1, obj2);
+
+        CompactByteArrayParser cbap = new CompactByteArrayParser(data, 0, -1);
+        Assertions.assertEquals(obj1, cbap.readRecord());
+        Assertions.assertEquals(obj2, cbap.readRecord());
+    }
+
+    @Test
+    public void testResetClearsDictionary() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setUseClassDictionary(true);
+        cbac.writeRecord(obj1);
+        byte [] first = cbac.getBytes();
+        cbac.reset();
+        cbac.writeRecord(obj1);
+        Assertions.assertArrayEquals(first, cbac.getBytes());
+    }
+
+    @Test
+    public void testUndefinedDictionaryIndex() throws Exception {
+        byte [] data = { (byte)CompactConstants.OBJECT_BEGIN_CLASS_REF, 0, (byte)CompactConstants.OBJECT_TERMINATOR };
+        MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> new CompactByteArrayParser(data, 0, -1).readRecord());
+        Assertions.assertEquals(MessageParserException.INVALID_CLASS_DICTIONARY_REF, e.getErrorCode());
+    }
+}
@@ -0,0 +1,101 @@
+package testcases.dictionary;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactConstants;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.MimeTypes;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+
+public class TestCompactStringReferences {
+
+    private byte [] compose(BonaPortable obj, int maxStringTableSize) {
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setMaxStringTableSize(maxStringTableSize);
+        cbac.writeRecord(obj);
+        return cbac.getBytes();
+    }
+
+    @Test
+    public void testRoundTripWithStringReferences() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        byte [] plain = compose(obj1, 0);
+        byte [] withReferences = compose(obj1, 1000);
+        System.out.println("Length without string references is " + plain.length + ", with string references " + withReferences.length);
+        Assertions.assertTrue(withReferences.length < plain.length);
+
+        BonaPortable result = new CompactByteArrayParser(withReferences, 0, -1).readRecord();
+        Assertions.assertEquals(obj1, result);
+    }
+
+    @Test
+    public void testRepeatedStringsAreIdenticalInstances() throws Exception {
+        ClassDefinition result = (ClassDefinition)new CompactByteArrayParser(compose(ClassDefinition.class$MetaData(), 1000), 0, -1).readRecord();
+        Map<String, String> seen = new HashMap<String, String>();
+        int numberOfRepeats = 0;
+        for (FieldDefinition fd : result.getFields()) {
+            String type = fd.getBonaparteType();
+            if (type.length() >= CompactConstants.MIN_LENGTH_STRING_REFERENCE) {
+                String previous = seen.putIfAbsent(type, type);
+                if (previous != null) {
+                    Assertions.assertSame(previous, type);
+                    ++numberOfRepeats;
+                }
+            }
+        }
+        Assertions.assertTrue(numberOfRepeats > 0);
+    }
+
+    @Test
+    public void testBoundedTable() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        byte [] small = compose(obj1, 2);
+        byte [] large = compose(obj1, 1000);
+        Assertions.assertTrue(small.length > large.length);
+        Assertions.assertEquals(obj1, new CompactByteArrayParser(small, 0, -1).readRecord());
+    }
+
+    @Test
+    public void testUndefinedStringReference() throws Exception {
+        byte [] data = { (byte)CompactConstants.STRING_AGAIN, 0 };
+        MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> new CompactByteArrayParser(data, 0, -1).readElement(null));
+        Assertions.assertEquals(MessageParserException.INVALID_STRING_REFERENCE, e.getErrorCode());
+    }
+
+    @Test
+    public void testNegotiation() throws Exception {
+        CompactByteArrayParser receiver = new CompactByteArrayParser(new byte [0], 0, -1);
+        receiver.setMaxStringTableSize(500);
+        Assertions.assertEquals("application/cbon;strings=500", receiver.getAcceptedMimeType());
+
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.negotiateStringTableSize(receiver.getAcceptedMimeType());
+        Assertions.assertEquals(500, cbac.getMaxStringTableSize());
+        cbac.negotiateStringTableSize(MimeTypes.MIME_TYPE_COMPACT_BONAPARTE);     // receiver without string table support
+        Assertions.assertEquals(0, cbac.getMaxStringTableSize());
+
+        receiver.setMaxStringTableSize(0);
+        Assertions.assertEquals(MimeTypes.MIME_TYPE_COMPACT_BONAPARTE, receiver.getAcceptedMimeType());
+    }
+
+    @Test
+    public void testReceiverLimit() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        CompactByteArrayParser parser = new CompactByteArrayParser(compose(obj1, 1000), 0, -1);
+        parser.setMaxStringTableSize(2);
+        MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> parser.readRecord());
+        Assertions.assertEquals(MessageParserException.STRING_TABLE_EXCEEDED, e.getErrorCode());
+
+        CompactByteArrayParser limited = new CompactByteArrayParser(compose(obj1, 2), 0, -1);
+        limited.setMaxStringTableSize(2);
+        Assertions.assertEquals(obj1, limited.readRecord());
+    }
+}
@@ -0,0 +1,77 @@
+package testcases.fieldGetters;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactProjection;
+import de.jpaw.bonaparte.pojos.fieldGettersTest.Child;
+import de.jpaw.bonaparte.pojos.fieldGettersTest.Parent;
+import de.jpaw.bonaparte.util.UtilException;
+
+public class CompactProjectionTest {
+
+    private static byte [] serialize(Parent p) {
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer();
+        cbac.writeRecord(p);
+        return cbac.getBytes();
+    }
+
+    private static Parent createParent() {
+        Parent p = new Parent();
+        p.setX(48);
+        p.setY(new Child(47));
+        p.setZ(Collections.singletonMap("ignored", "some JSON"));
+        p.setList(Arrays.asList(new Child(1), new Child(2), new Child(3)));
+        p.setMap(Collections.singletonMap("hello", new Child(4)));
+        return p;
+    }
+
+    @Test
+    public void testProjectionOfScalarsAndIndexes() throws Exception {
+        CompactProjection projection = new CompactProjection(Parent.class$MetaData(),
+          Arrays.asList("x", "y.x", "list[1].x", "list[99].x", "map[hello].x", "map[not].x"));
+        List<Object> values = projection.project(serialize(createParent()));
+        Assertions.assertEquals(Arrays.asList(48, 47, 2, null, 4, null), values);
+    }
+
+    @Test
+    public void testProjectionWithNullComponents() throws Exception {
+        Parent p = new Parent();
+        p.setX(48);
+        CompactProjection projection = new CompactProjection(Parent.class$MetaData(), Arrays.asList("y.x", "list[0].x", "map[hello].x", "x"));
+        Assertions.assertEquals(Arrays.asList(null, null, null, 48), projection.project(serialize(p)));
+    }
+
+    @Test
+    public void testProjectionOfObjectsAndCollections() throws Exception {
+        Parent p = createParent();
+        CompactProjection projection = new CompactProjection(Parent.class$MetaData(), Arrays.asList("y", "list", "map", "list[2]"));
+        List<Object> values = projection.project(serialize(p));
+        Assertions.assertEquals(p.getY(), values.get(0));
+        Assertions.assertEquals(p.getList(), values.get(1));
+        Assertions.assertEquals(p.getMap(), values.get(2));
+        Assertions.assertEquals(p.getList().get(2), values.get(3));
+    }
+
+    @Test
+    public void testBackreferenceToSkippedObject() throws Exception {
+        // the same instance is serialized once, the second occurrence is a backreference to the skipped field y
+        Parent p = createParent();
+        Child shared = new Child(11);
+        p.setY(shared);
+        p.setList(Arrays.asList(new Child(1), shared));
+        CompactProjection projection = new CompactProjection(Parent.class$MetaData(), Arrays.asList("list[1].x", "x"));
+        Assertions.assertEquals(Arrays.asList(11, 48), projection.project(serialize(p)));
+    }
+
+    @Test
+    public void testInvalidPath() throws Exception {
+        Assertions.assertThrows(UtilException.class, () -> new CompactProjection(Parent.class$MetaData(), Arrays.asList("x.y")));
+        Assertions.assertThrows(UtilException.class, () -> new CompactProjection(Parent.class$MetaData(), Arrays.asList("nonExisting")));
+    }
+}
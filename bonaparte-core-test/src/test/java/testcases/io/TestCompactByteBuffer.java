@@ -0,0 +1,57 @@
+package testcases.io;
+
+import java.nio.ByteBuffer;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteBufferAllocator;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteBufferComposer;
+import de.jpaw.bonaparte.core.CompactByteBufferParser;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+
+public class TestCompactByteBuffer {
+
+    private void runRoundTrip(ByteBufferAllocator allocator) throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        CompactByteBufferComposer cbbc = new CompactByteBufferComposer(allocator, 16);   // small initial size: buffer must grow
+        cbbc.writeRecord(obj1);
+
+        // same bytes as the byte array composer
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer();
+        cbac.writeRecord(obj1);
+        Assertions.assertArrayEquals(cbac.getBytes(), cbbc.getBytes());
+
+        BonaPortable result = new CompactByteBufferParser(cbbc.getContents()).readRecord();
+        Assertions.assertEquals(obj1, result);
+    }
+
+    @Test
+    public void testHeapBuffer() throws Exception {
+        runRoundTrip(ByteBufferAllocator.HEAP);
+    }
+
+    @Test
+    public void testDirectBuffer() throws Exception {
+        runRoundTrip(ByteBufferAllocator.DIRECT);
+    }
+
+    @Test
+    public void testParseFromPosition() throws Exception {
+        ClassDefinition obj1 = ClassDefinition.class$MetaData();
+        CompactByteArrayComposer cbac = new CompactByteArrayComposer();
+        cbac.writeRecord(obj1);
+        byte [] data = cbac.getBytes();
+        ByteBuffer direct = ByteBuffer.allocateDirect(data.length + 10);
+        direct.put(new byte [10]);
+        direct.put(data);
+        direct.flip();
+        direct.position(10);
+        CompactByteBufferParser parser = new CompactByteBufferParser(direct);
+        Assertions.assertEquals(obj1, parser.readRecord());
+        Assertions.assertEquals(direct.limit(), parser.getCurrentPosition());
+        Assertions.assertEquals(10, direct.position());     // not modified
+    }
+}
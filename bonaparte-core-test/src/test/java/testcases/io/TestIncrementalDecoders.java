@@ -0,0 +1,113 @@
+package testcases.io;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.AbstractIncrementalDecoder;
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayIncrementalDecoder;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactIncrementalDecoder;
+import de.jpaw.bonaparte.core.LZ4CompactCompressor;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+// Feeds serialized streams to the incremental decoders in chunks of different sizes, and compares the emitted records with the original ones.
+public class TestIncrementalDecoders {
+    private static final int [] CHUNK_SIZES = { 1, 2, 7, 64, 1000, Integer.MAX_VALUE };
+
+    private List<BonaPortable> records() {
+        final List<BonaPortable> records = new ArrayList<BonaPortable>();
+        records.add(ClassDefinition.class$MetaData());
+        records.add(ObjectReference.class$MetaData());
+        records.add(EnumDefinition.class$MetaData());
+        records.add(ClassDefinition.class$MetaData());
+        return records;
+    }
+
+    private void runChunks(AbstractIncrementalDecoder decoder, byte [] data, List<BonaPortable> expected, boolean useByteBuffer) throws Exception {
+        for (int chunkSize : CHUNK_SIZES) {
+            decoder.reset();
+            final List<BonaPortable> results = new ArrayList<BonaPortable>();
+            for (int pos = 0; pos < data.length; ) {
+                final int len = Math.min(chunkSize, data.length - pos);
+                if (useByteBuffer)
+                    decoder.feed(ByteBuffer.wrap(data, pos, len), results::add);
+                else
+                    decoder.feed(data, pos, len, results::add);
+                pos += len;
+                Assertions.assertTrue(decoder.bytesNeeded() > 0);
+                if (pos < data.length && results.size() < expected.size())
+                    Assertions.assertTrue(decoder.bytesNeeded() <= data.length - pos, "more bytes requested than remaining");
+            }
+            Assertions.assertEquals(expected, results, "chunk size " + chunkSize);
+            Assertions.assertFalse(decoder.hasPartialRecord());
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        final List<BonaPortable> records = records();
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        for (BonaPortable obj : records)
+            cbac.writeRecord(obj);
+        runChunks(new CompactIncrementalDecoder(16), cbac.getBytes(), records, false);
+    }
+
+    @Test
+    public void testCompactWithStreamState() throws Exception {
+        // class dictionary, string table and compression: the decoder must keep the state of the stream across records
+        final List<BonaPortable> records = records();
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setUseClassDictionary(true);
+        cbac.setMaxStringTableSize(1000);
+        cbac.setCompression(LZ4CompactCompressor.INSTANCE, 500);
+        for (BonaPortable obj : records)
+            cbac.writeRecord(obj);
+        runChunks(new CompactIncrementalDecoder(), cbac.getBytes(), records, true);
+    }
+
+    @Test
+    public void testByteArray() throws Exception {
+        final List<BonaPortable> records = records();
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE);
+        bac.setWriteCRs(true);
+        bac.writeRecord(records.get(0));
+        bac.writeTransmission(records.subList(1, records.size()));
+        runChunks(new ByteArrayIncrementalDecoder(16), bac.getBytes(), records, false);
+        runChunks(new ByteArrayIncrementalDecoder(), bac.getBytes(), records, true);
+    }
+
+    @Test
+    public void testPartialRecord() throws Exception {
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.writeRecord(ClassDefinition.class$MetaData());
+        final byte [] data = cbac.getBytes();
+
+        final CompactIncrementalDecoder decoder = new CompactIncrementalDecoder();
+        final List<BonaPortable> results = new ArrayList<BonaPortable>();
+        Assertions.assertEquals(0, decoder.feed(data, 0, data.length - 1, results::add));
+        Assertions.assertTrue(decoder.hasPartialRecord());
+        Assertions.assertEquals(data.length - 1, decoder.getBufferedLength());
+        Assertions.assertEquals(1, decoder.bytesNeeded());
+        Assertions.assertEquals(1, decoder.feed(data, data.length - 1, 1, results::add));
+        Assertions.assertFalse(decoder.hasPartialRecord());
+        Assertions.assertEquals(List.of(ClassDefinition.class$MetaData()), results);
+    }
+
+    @Test
+    public void testCorruptData() throws Exception {
+        final CompactIncrementalDecoder decoder = new CompactIncrementalDecoder();
+        final byte [] data = { (byte)0xdf, (byte)0xd3 };
+        final MessageParserException e = Assertions.assertThrows(MessageParserException.class, () -> decoder.feed(data, 0, data.length, r -> { }));
+        Assertions.assertEquals(MessageParserException.UNSUPPORTED_TOKEN, e.getErrorCode());
+    }
+}
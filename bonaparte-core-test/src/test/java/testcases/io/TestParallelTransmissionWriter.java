@@ -0,0 +1,130 @@
+package testcases.io;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.Pipe;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CSVComposer;
+import de.jpaw.bonaparte.core.CSVConfiguration;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.ParallelTransmissionWriter;
+import de.jpaw.bonaparte.pojos.csvTests.UnixPasswd;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+// The parallel writer must produce the same bytes as a sequential composer which is reset before every record.
+public class TestParallelTransmissionWriter {
+    private static final int NUM_RECORDS = 100;
+    private static final int [] CHUNK_SIZES = { 1, 7, 50, 100, 1000 };
+    private static final ForkJoinPool POOL = new ForkJoinPool(4);
+
+    private List<BonaPortable> records() {
+        final List<BonaPortable> records = new ArrayList<BonaPortable>(NUM_RECORDS);
+        for (int i = 0; i < NUM_RECORDS; ++i) {
+            switch (i % 3) {
+            case 0:
+                records.add(ClassDefinition.class$MetaData());
+                break;
+            case 1:
+                records.add(ObjectReference.class$MetaData());
+                break;
+            default:
+                records.add(EnumDefinition.class$MetaData());
+                break;
+            }
+        }
+        return records;
+    }
+
+    private byte [] concat(List<ByteBuffer> buffers) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        for (ByteBuffer buffer : buffers)
+            os.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+        return os.toByteArray();
+    }
+
+    @Test
+    public void testByteArray() throws Exception {
+        final List<BonaPortable> records = records();
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        bac.startTransmission();
+        bac.flushTo(expected);
+        for (BonaPortable obj : records) {
+            bac.reset();
+            bac.writeRecord(obj);
+            bac.flushTo(expected);
+        }
+        bac.terminateTransmission();
+        bac.flushTo(expected);
+
+        for (int chunkSize : CHUNK_SIZES) {
+            final ParallelTransmissionWriter writer = new ParallelTransmissionWriter(() -> ParallelTransmissionWriter.buffered(new ByteArrayComposer()), POOL, chunkSize);
+            final byte [] data = concat(writer.compose(records));
+            Assertions.assertArrayEquals(expected.toByteArray(), data, "chunk size " + chunkSize);
+            Assertions.assertEquals(records, new ByteArrayParser(data).readTransmission());
+
+            final ByteArrayOutputStream os = new ByteArrayOutputStream();
+            writer.writeTransmission(records, os);
+            Assertions.assertArrayEquals(data, os.toByteArray());
+        }
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        final List<BonaPortable> records = records();
+        final ParallelTransmissionWriter writer = new ParallelTransmissionWriter(
+          () -> ParallelTransmissionWriter.buffered(new CompactByteArrayComposer(4000, false)), POOL, 7);
+        final byte [] data = concat(writer.compose(records));
+        Assertions.assertEquals(records, new CompactByteArrayParser(data, 0, -1).readTransmission());
+
+        // gathering write
+        final Pipe pipe = Pipe.open();
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final Thread reader = new Thread(() -> {
+            try {
+                Channels.newInputStream(pipe.source()).transferTo(os);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        reader.start();
+        writer.writeTransmission(records, pipe.sink());
+        pipe.sink().close();
+        reader.join();
+        Assertions.assertArrayEquals(data, os.toByteArray());
+
+        final CompactByteArrayComposer withDictionary = new CompactByteArrayComposer(4000, false);
+        withDictionary.setUseClassDictionary(true);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> ParallelTransmissionWriter.buffered(withDictionary));
+    }
+
+    @Test
+    public void testCsv() throws Exception {
+        final CSVConfiguration cfg = new CSVConfiguration.Builder().usingSeparator(":").build();
+        final List<BonaPortable> records = new ArrayList<BonaPortable>(NUM_RECORDS);
+        final StringBuilder expected = new StringBuilder();
+        final CSVComposer cc = new CSVComposer(expected, cfg);
+        for (int i = 0; i < NUM_RECORDS; ++i) {
+            final UnixPasswd pw = new UnixPasswd("user" + i, "x", 1000 + i, 100, "Jürgen Müller " + i, "/home/user" + i, "/bin/sh");
+            records.add(pw);
+            cc.writeRecord(pw);
+        }
+        final ParallelTransmissionWriter writer = new ParallelTransmissionWriter(
+          () -> ParallelTransmissionWriter.appendable(sb -> new CSVComposer(sb, cfg), StandardCharsets.UTF_8), POOL, 16);
+        Assertions.assertEquals(expected.toString(), new String(concat(writer.compose(records)), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,214 @@
+package testcases.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.core.StringBuilderComposer;
+import de.jpaw.bonaparte.core.StringBuilderParser;
+import de.jpaw.bonaparte.core.TransmissionStreams;
+import de.jpaw.bonaparte.core.TransmissionSubscriber;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.very.compact.Complex;
+
+// Reads and writes transmissions record by record, and compares the results with readTransmission() / writeTransmission().
+public class TestTransmissionStreams {
+
+    private List<BonaPortable> records() {
+        final List<BonaPortable> records = new ArrayList<BonaPortable>();
+        for (int i = 0; i < 5; ++i) {
+            records.add(ClassDefinition.class$MetaData());
+            records.add(ObjectReference.class$MetaData());
+            records.add(EnumDefinition.class$MetaData());
+        }
+        return records;
+    }
+
+    private byte [] transmission(List<BonaPortable> records) {
+        return transmission(records, ObjectReuseStrategy.BY_REFERENCE);
+    }
+
+    private byte [] transmission(List<BonaPortable> records, ObjectReuseStrategy strategy) {
+        final ByteArrayComposer bac = new ByteArrayComposer(strategy);
+        bac.writeTransmission(records);
+        return bac.getBytes();
+    }
+
+    @Test
+    public void testIterators() throws Exception {
+        final List<BonaPortable> records = records();
+        final byte [] data = transmission(records);
+        Assertions.assertEquals(new ByteArrayParser(data).readTransmission(),
+          TransmissionStreams.stream(new ByteArrayParser(data)).collect(Collectors.toList()));
+
+        final StringBuilder sb = new StringBuilder();
+        new StringBuilderComposer(sb).writeTransmission(records);
+        Assertions.assertEquals(records, TransmissionStreams.stream(new StringBuilderParser(sb, 0, -1)).collect(Collectors.toList()));
+
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setUseClassDictionary(true);
+        cbac.writeTransmission(records);
+        Assertions.assertEquals(records, TransmissionStreams.stream(new CompactByteArrayParser(cbac.getBytes(), 0, -1)).collect(Collectors.toList()));
+        final CompactParser streamParser = new CompactParser(new DataInputStream(new ByteArrayInputStream(cbac.getBytes())));
+        Assertions.assertEquals(records, TransmissionStreams.stream(streamParser).collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testRecordsWithoutEnvelope() throws Exception {
+        final ByteArrayComposer bac = new ByteArrayComposer();
+        for (BonaPortable obj : records())
+            bac.writeRecord(obj);
+        Assertions.assertEquals(records(), TransmissionStreams.stream(new ByteArrayParser(bac.getBytes())).collect(Collectors.toList()));
+        Assertions.assertFalse(TransmissionStreams.iterator(new ByteArrayParser(new byte [0])).hasNext());
+    }
+
+    @Test
+    public void testTruncatedTransmission() throws Exception {
+        final byte [] data = transmission(records());
+        final byte [] truncated = new byte [data.length - 2];      // cut off the terminators
+        System.arraycopy(data, 0, truncated, 0, truncated.length);
+        final Iterator<BonaPortable> iter = TransmissionStreams.iterator(new ByteArrayParser(truncated));
+        final RuntimeException e = Assertions.assertThrows(RuntimeException.class, () -> iter.forEachRemaining(r -> { }));
+        Assertions.assertEquals(MessageParserException.PREMATURE_END, ((MessageParserException)e.getCause()).getErrorCode());
+    }
+
+    @Test
+    public void testBackpressure() throws Exception {
+        final List<BonaPortable> received = new ArrayList<BonaPortable>();
+        final Flow.Subscription [] subscription = new Flow.Subscription[1];
+        final boolean [] completed = new boolean[1];
+        TransmissionStreams.publisher(new ByteArrayParser(transmission(records())), Runnable::run).subscribe(new Flow.Subscriber<BonaPortable>() {
+            @Override
+            public void onSubscribe(Flow.Subscription s) {
+                subscription[0] = s;
+            }
+            @Override
+            public void onNext(BonaPortable item) {
+                received.add(item);
+            }
+            @Override
+            public void onError(Throwable throwable) {
+                Assertions.fail(throwable);
+            }
+            @Override
+            public void onComplete() {
+                completed[0] = true;
+            }
+        });
+        Assertions.assertEquals(0, received.size());
+        subscription[0].request(2);
+        Assertions.assertEquals(2, received.size());
+        subscription[0].request(3);
+        Assertions.assertEquals(5, received.size());
+        subscription[0].request(Long.MAX_VALUE);
+        Assertions.assertEquals(records(), received);
+        Assertions.assertTrue(completed[0]);
+    }
+
+    @Test
+    public void testPipeline() throws Exception {
+        // import and export record by record: the output is flushed after every batch of 4 records
+        final List<BonaPortable> records = records();
+        final byte [] data = transmission(records, ObjectReuseStrategy.NONE);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.NONE);
+        final int [] maxBuffered = new int[1];
+        final TransmissionSubscriber subscriber = new TransmissionSubscriber(bac, 4) {
+            @Override
+            protected void flush() throws IOException {
+                maxBuffered[0] = Math.max(maxBuffered[0], bac.getLength());
+                bac.flushTo(os);
+            }
+        };
+        TransmissionStreams.publisher(new ByteArrayParser(data), Runnable::run).subscribe(subscriber);
+        subscriber.getCompletion().get();
+        Assertions.assertArrayEquals(data, os.toByteArray());
+        Assertions.assertTrue(maxBuffered[0] < data.length / 2);
+    }
+
+    @Test
+    public void testCompactFlush() throws Exception {
+        // flushing must keep the backreferences and the class dictionary
+        final List<BonaPortable> records = records();
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setUseClassDictionary(true);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        cbac.startTransmission();
+        for (BonaPortable obj : records) {
+            cbac.writeRecord(obj);
+            cbac.flushTo(os);
+        }
+        cbac.terminateTransmission();
+        cbac.flushTo(os);
+        Assertions.assertEquals(records, new CompactByteArrayParser(os.toByteArray(), 0, -1).readTransmission());
+
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE);
+        TransmissionStreams.writeTransmission(bac, records.stream());
+        Assertions.assertArrayEquals(transmission(records), bac.getBytes());
+    }
+
+    @Test
+    public void testBackreferencesWithinRecord() throws Exception {
+        // with backreferences limited to a record, the caches of composer and parser must not grow with the number of records
+        final List<BonaPortable> records = records();
+        for (int i = 0; i < 1000; ++i)
+            records.add(new Complex(i, -i));
+        final int maxCacheSize = 500;       // enough for the objects of a single record, but less than the number of records
+
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE);
+        bac.setBackreferencesWithinRecord(true);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        bac.startTransmission();
+        for (BonaPortable obj : records) {
+            bac.writeRecord(obj);
+            bac.flushTo(os);
+            Assertions.assertTrue(bac.getCacheSize() < maxCacheSize);
+        }
+        bac.terminateTransmission();
+        bac.flushTo(os);
+        final ByteArrayParser bap = new ByteArrayParser(os.toByteArray());
+        bap.setBackreferencesWithinRecord(true);
+        final List<BonaPortable> parsed = new ArrayList<BonaPortable>();
+        for (BonaPortable obj = bap.readNextRecord(); obj != null; obj = bap.readNextRecord()) {
+            parsed.add(obj);
+            Assertions.assertTrue(bap.getCacheSize() < maxCacheSize);
+        }
+        Assertions.assertEquals(records, parsed);
+
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(4000, false);
+        cbac.setBackreferencesWithinRecord(true);
+        final ByteArrayOutputStream cos = new ByteArrayOutputStream();
+        for (BonaPortable obj : records) {
+            cbac.writeRecord(obj);
+            cbac.flushTo(cos);
+            Assertions.assertTrue(cbac.getCacheSize() < maxCacheSize);
+        }
+        final CompactParser cp = new CompactParser(new DataInputStream(new ByteArrayInputStream(cos.toByteArray())));
+        cp.setBackreferencesWithinRecord(true);
+        parsed.clear();
+        for (BonaPortable obj = cp.readNextRecord(); obj != null; obj = cp.readNextRecord()) {
+            parsed.add(obj);
+            Assertions.assertTrue(cp.getCacheSize() < maxCacheSize);
+        }
+        Assertions.assertEquals(records, parsed);
+    }
+}
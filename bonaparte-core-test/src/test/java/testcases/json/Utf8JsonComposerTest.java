@@ -0,0 +1,165 @@
+package testcases.json;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.BonaparteJsonEscaper;
+import de.jpaw.bonaparte.core.JsonComposer;
+import de.jpaw.bonaparte.core.Utf8JsonComposer;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorAlnum;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorAlnumSet;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorNum;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorNumSet;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonEnumAndList;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonEnumSets;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonFieldTest;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithIntegerMap;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithList;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithMapOfObjects;
+import de.jpaw.bonaparte.pojos.jsonTest.TestObj;
+import de.jpaw.bonaparte.pojos.jsonTest.TestT;
+import de.jpaw.bonaparte.pojos.jsonTest.TestTS;
+import de.jpaw.bonaparte.pojos.jsonTest.WrapperForJsonEnumSets;
+import de.jpaw.bonaparte.pojos.jsonTest.XColor;
+import de.jpaw.bonaparte.pojos.jsonTest.XColorSet;
+import de.jpaw.util.ByteBuilder;
+
+// The Utf8JsonComposer must produce exactly the UTF-8 encoding of the JsonComposer output, for all settings.
+public class Utf8JsonComposerTest {
+
+    private TestObj createTestObj(int n, String text) {
+        final TestObj obj = new TestObj();
+        obj.setPrimitiveInt(n);
+        obj.setWrappedLong(-1234567890123L);
+        obj.setMyDay(LocalDate.of(2020, 2, 29));
+        obj.setMyInstant(Instant.ofEpochMilli(1571234567089L));
+        obj.setMyText(text);
+        obj.setMyBoolean(Boolean.TRUE);
+        obj.setMyNull(UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0"));
+        return obj;
+    }
+
+    private List<BonaPortable> testObjects() {
+        final List<BonaPortable> objects = new ArrayList<BonaPortable>();
+        objects.add(createTestObj(42, "Hello, world"));
+        objects.add(createTestObj(-7, "äöü \"quoted\" \\ / €"));
+        objects.add(createTestObj(Integer.MIN_VALUE, "😀 \t<tag>"));
+        objects.add(new TestObj());
+
+        final TestTS ts = new TestTS();
+        ts.setTs0(LocalDateTime.of(2019, 11, 12, 13, 14, 15, 999999999));
+        ts.setTs3(LocalDateTime.of(19, 1, 2, 3, 4, 5, 6000000));
+        objects.add(ts);
+        final TestTS farFuture = new TestTS();
+        farFuture.setTs0(LocalDateTime.of(12345, 1, 2, 3, 4, 5));
+        objects.add(farFuture);
+        final TestT t = new TestT();
+        t.setT0(LocalTime.of(23, 59, 58, 123456789));
+        t.setT3(LocalTime.of(0, 0, 1, 2000000));
+        objects.add(t);
+
+        final JsonWithList lists = new JsonWithList();
+        lists.setCiList(new ArrayList<Integer>(List.of(3, -1, 4)));
+        lists.setNum1(1);
+        lists.setCaList(new ArrayList<String>(List.of("a", "ß")));
+        lists.setNum2(2);
+        objects.add(lists);
+
+        final JsonWithIntegerMap intMap = new JsonWithIntegerMap(new HashMap<Integer, Integer>(), 12, new HashMap<Integer, String>(), 24);
+        intMap.getCiMap().put(33, 17);
+        intMap.getCaMap().put(-66, "Hello, world");
+        objects.add(intMap);
+
+        final JsonWithMapOfObjects objMap = new JsonWithMapOfObjects(ColorAlnum.RED, new HashMap<String, TestObj>(), 12);
+        objMap.getMap().put("DE", createTestObj(49, "Deutschland"));
+        objMap.getMap().put("Zürich \"CH\"", new TestObj());
+        objects.add(objMap);
+
+        objects.add(new JsonEnumAndList(ColorNum.RED, ColorAlnum.GREEN, XColor.forName("BLUE"), null));
+        final JsonEnumSets sets = new JsonEnumSets();
+        sets.setCn(ColorNumSet.ofTokens(ColorNum.RED, ColorNum.BLUE));
+        sets.setCa(ColorAlnumSet.ofTokens(ColorAlnum.GREEN));
+        sets.setCx(XColorSet.ofTokens(XColor.forName("BLUE")));
+        objects.add(sets);
+        objects.add(new WrapperForJsonEnumSets(sets));
+
+        final JsonFieldTest fields = new JsonFieldTest();
+        fields.setText("mytext");
+        final Map<String, Object> varStuff = new HashMap<String, Object>();
+        varStuff.put("a", 1);
+        varStuff.put("b", null);
+        varStuff.put("c", "x\ny");
+        fields.setVarStuff(varStuff);
+        fields.setVarField(createTestObj(1, "nested"));
+        fields.setVarList(new ArrayList<Object>(List.of(42, 3.14, "Hello, world")));
+        objects.add(fields);
+        return objects;
+    }
+
+    private void check(BonaPortable obj, boolean writeNulls, boolean writeTypeInfo, boolean writePqonInfo, boolean writeEnumOrdinals, boolean writeEnumTokens)
+      throws Exception {
+        final StringBuilder buff = new StringBuilder();
+        final JsonComposer jc = new JsonComposer(buff, writeNulls, writeTypeInfo, writePqonInfo, true, new BonaparteJsonEscaper(buff));
+        jc.setWriteEnumOrdinals(writeEnumOrdinals);
+        jc.setWriteEnumTokens(writeEnumTokens);
+        jc.writeRecord(obj);
+
+        final Utf8JsonComposer ujc = new Utf8JsonComposer(new ByteBuilder(), writeNulls, writeTypeInfo, writePqonInfo, true);
+        ujc.setWriteEnumOrdinals(writeEnumOrdinals);
+        ujc.setWriteEnumTokens(writeEnumTokens);
+        ujc.writeRecord(obj);
+        Assertions.assertEquals(buff.toString(), new String(ujc.getBytes(), StandardCharsets.UTF_8));
+        Assertions.assertArrayEquals(buff.toString().getBytes(StandardCharsets.UTF_8), ujc.getBytes(), buff.toString());
+    }
+
+    @Test
+    public void testAllSettings() throws Exception {
+        for (BonaPortable obj : testObjects()) {
+            for (int i = 0; i < 32; ++i) {
+                check(obj, (i & 1) != 0, (i & 2) != 0, (i & 4) != 0, (i & 8) != 0, (i & 16) != 0);
+            }
+        }
+    }
+
+    @Test
+    public void testStaticMethods() throws Exception {
+        final List<BonaPortable> objects = testObjects();
+        for (BonaPortable obj : objects) {
+            Assertions.assertArrayEquals(JsonComposer.toJsonString(obj).getBytes(StandardCharsets.UTF_8), Utf8JsonComposer.toJsonBytes(obj));
+            Assertions.assertArrayEquals(JsonComposer.toJsonString(obj, false, false).getBytes(StandardCharsets.UTF_8), Utf8JsonComposer.toJsonBytes(obj, false, false));
+            Assertions.assertArrayEquals(JsonComposer.toJsonStringNoPQON(obj).getBytes(StandardCharsets.UTF_8), Utf8JsonComposer.toJsonBytesNoPQON(obj));
+            Assertions.assertArrayEquals(BonaparteJsonEscaper.asJson((Object)obj).getBytes(StandardCharsets.UTF_8), toJsonElementBytes(obj));
+        }
+        Assertions.assertArrayEquals(JsonComposer.toJsonString(objects).getBytes(StandardCharsets.UTF_8), Utf8JsonComposer.toJsonBytes(objects));
+        Assertions.assertNull(Utf8JsonComposer.toJsonBytes((BonaPortable)null));
+    }
+
+    // as used by the JsonEncoder
+    private byte [] toJsonElementBytes(BonaPortable obj) throws Exception {
+        final Utf8JsonComposer ujc = new Utf8JsonComposer(new ByteBuilder(), false, true);
+        ujc.writeObject(obj);
+        return ujc.getBytes();
+    }
+
+    @Test
+    public void testReuse() throws Exception {
+        final Utf8JsonComposer ujc = new Utf8JsonComposer();
+        for (BonaPortable obj : testObjects()) {
+            ujc.reset();
+            ujc.writeRecord(obj);
+            Assertions.assertArrayEquals(JsonComposer.toJsonString(obj).getBytes(StandardCharsets.UTF_8), ujc.getBytes());
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package testcases.json;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.JsonComposer;
+import de.jpaw.bonaparte.core.MapParser;
+import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.core.Utf8JsonParser;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorAlnum;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorAlnumSet;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorNum;
+import de.jpaw.bonaparte.pojos.jsonTest.ColorNumSet;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonEnumAndList;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonEnumSets;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithIntegerMap;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithList;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithLongMap;
+import de.jpaw.bonaparte.pojos.jsonTest.JsonWithMapOfObjects;
+import de.jpaw.bonaparte.pojos.jsonTest.TestObj;
+import de.jpaw.bonaparte.pojos.jsonTest.TestT;
+import de.jpaw.bonaparte.pojos.jsonTest.TestTS;
+import de.jpaw.bonaparte.pojos.jsonTest.WrapperForJsonEnumSets;
+import de.jpaw.bonaparte.pojos.jsonTest.XColor;
+import de.jpaw.bonaparte.pojos.jsonTest.XColorSet;
+import de.jpaw.json.JsonParser;
+
+// Parses JsonComposer output with the Utf8JsonParser and compares the result with the original object and the result of the MapParser.
+// Also checks input which has not been created by the JsonComposer: keys in a different order, unknown members, escapes.
+public class Utf8JsonParserTest {
+
+    private TestObj createTestObj(int n, String text) {
+        final TestObj obj = new TestObj();
+        obj.setPrimitiveInt(n);
+        obj.setWrappedLong(-1234567890123L);
+        obj.setMyDay(LocalDate.of(2020, 2, 29));
+        obj.setMyInstant(Instant.ofEpochSecond(1571234567L));
+        obj.setMyText(text);
+        obj.setMyBoolean(Boolean.FALSE);
+        obj.setMyNull(UUID.fromString("0f1e2d3c-4b5a-6978-8796-a5b4c3d2e1f0"));
+        return obj;
+    }
+
+    private void runTest(BonaPortable in, boolean useOrdinals, boolean useTokens) throws Exception {
+        runTest(in, useOrdinals, useTokens, true);
+    }
+
+    // the MapParser does not remove the "_" prefix of integral map keys, therefore a comparison is not possible for those
+    private void runTest(BonaPortable in, boolean useOrdinals, boolean useTokens, boolean compareWithMapParser) throws Exception {
+        JsonComposer.setDefaultWriteCRs(false);
+        final String json = JsonComposer.toJsonString(in, useOrdinals, useTokens);
+        final byte [] bytes = json.getBytes(StandardCharsets.UTF_8);
+
+        final BonaPortable out = new Utf8JsonParser(bytes, 0, bytes.length, false, useOrdinals, useTokens).readRecord();
+        Assertions.assertEquals(in, out, json);
+        if (!compareWithMapParser)
+            return;
+
+        final Map<String, Object> intermediate = (new JsonParser(json, false)).parseObject();
+        final BonaPortable outMap = MapParser.allocObject(intermediate, StaticMeta.OUTER_BONAPORTABLE);
+        outMap.deserialize(new MapParser(intermediate, false, useOrdinals, useTokens));
+        Assertions.assertEquals(outMap, out, json);
+    }
+
+    @Test
+    public void testScalars() throws Exception {
+        runTest(createTestObj(42, "Hello, world"), true, true);
+        runTest(createTestObj(-7, "äöü \"quoted\" \\ €"), true, true);
+        runTest(new TestObj(), true, true);
+    }
+
+    @Test
+    public void testTemporals() throws Exception {
+        final TestTS ts = new TestTS();
+        ts.setTs0(LocalDateTime.of(2019, 11, 12, 13, 14, 15));
+        ts.setTs3(LocalDateTime.of(2019, 11, 12, 13, 14, 15, 678000000));
+        runTest(ts, true, true);
+
+        final TestT t = new TestT();
+        t.setT0(LocalTime.of(23, 59, 58));
+        t.setT3(LocalTime.of(0, 0, 1, 2000000));
+        runTest(t, true, true);
+    }
+
+    @Test
+    public void testCollections() throws Exception {
+        final JsonWithList lists = new JsonWithList();
+        lists.setCiList(new ArrayList<Integer>(List.of(3, 1, 4)));
+        lists.setNum1(1);
+        lists.setCaList(new ArrayList<String>());
+        lists.setNum2(2);
+        runTest(lists, true, true);
+
+        final JsonWithIntegerMap intMap = new JsonWithIntegerMap(new HashMap<Integer, Integer>(), 12, new HashMap<Integer, String>(), 24);
+        intMap.getCiMap().put(33, 17);
+        intMap.getCiMap().put(-5, 0);
+        intMap.getCaMap().put(66, "Hello, world");
+        runTest(intMap, true, true, false);
+
+        final JsonWithLongMap longMap = new JsonWithLongMap(new HashMap<Long, Integer>(), 12, new HashMap<Long, String>(), 24);
+        longMap.getCiMap().put(33L, 17);
+        longMap.getCaMap().put(6666666666L, "Hello, world");
+        runTest(longMap, true, true, false);
+
+        final JsonWithMapOfObjects objMap = new JsonWithMapOfObjects(ColorAlnum.RED, new HashMap<String, TestObj>(), 12);
+        objMap.getMap().put("DE", createTestObj(49, "Deutschland"));
+        objMap.getMap().put("FR", new TestObj());
+        runTest(objMap, true, true);
+    }
+
+    @Test
+    public void testEnums() throws Exception {
+        final JsonEnumAndList enums = new JsonEnumAndList(ColorNum.RED, ColorAlnum.GREEN, XColor.forName("BLUE"), null);
+        final JsonEnumSets sets = new JsonEnumSets();
+        sets.setCn(ColorNumSet.ofTokens(ColorNum.RED, ColorNum.GREEN));
+        sets.setCa(ColorAlnumSet.ofTokens(ColorAlnum.GREEN));
+        sets.setCx(XColorSet.ofTokens(XColor.forName("BLUE")));
+        sets.setCn2(ColorNumSet.ofTokens());
+        sets.setCa2(ColorAlnumSet.ofTokens());
+        sets.setCx2(XColorSet.ofTokens());
+        for (int i = 0; i < 4; ++i) {
+            runTest(enums, (i & 1) != 0, (i & 2) != 0);
+            runTest(sets, (i & 1) != 0, (i & 2) != 0);
+            runTest(new WrapperForJsonEnumSets(sets), (i & 1) != 0, (i & 2) != 0);
+        }
+    }
+
+    @Test
+    public void testOutOfOrderAndUnknownKeys() throws Exception {
+        final String json = " {\n  \"myText\" : \"Gr\\u00fc\\u00dfe\", \"unknown\": [1, {\"a\": null, \"b\": \"}\"}, -2.5e3],\n"
+          + "  \"@PQON\": \"jsonTest.TestObj\", \"myBoolean\": true, \"primitiveInt\": 5, \"myDay\": \"2020-02-03\", \"myNull\": null }\n";
+        final TestObj expected = new TestObj();
+        expected.setPrimitiveInt(5);
+        expected.setMyText("Grüße");
+        expected.setMyBoolean(Boolean.TRUE);
+        expected.setMyDay(LocalDate.of(2020, 2, 3));
+        Assertions.assertEquals(expected, new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8)).readRecord());
+    }
+
+    @Test
+    public void testTransmission() throws Exception {
+        final List<BonaPortable> records = List.of(createTestObj(1, "one"), new TestTS(), createTestObj(2, "two"));
+        final String json = JsonComposer.toJsonString(records);
+        Assertions.assertEquals(records, new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8)).readTransmission());
+    }
+
+    @Test
+    public void testErrors() throws Exception {
+        checkError("{\"primitiveInt\": 5}", MessageParserException.JSON_NO_PQON);
+        checkError("{\"@PQON\": \"jsonTest.TestObj\", \"primitiveInt\": 5, \"myText\": \"abc}", MessageParserException.MISSING_CLOSING_QUOTE);
+        checkError("{\"@PQON\": \"jsonTest.TestObj\", \"primitiveInt\": 5 \"myText\": \"abc\"}", MessageParserException.JSON_EXCEPTION);
+        checkError("{\"@PQON\": \"jsonTest.TestObj\", \"primitiveInt\": [5]}", MessageParserException.UNSUPPORTED_CONVERSION);
+        checkError("{\"@PQON\": \"jsonTest.TestObj\", \"primitiveInt\": null}", MessageParserException.ILLEGAL_EXPLICIT_NULL);
+    }
+
+    private void checkError(String json, int expectedErrorCode) {
+        try {
+            new Utf8JsonParser(json.getBytes(StandardCharsets.UTF_8)).readRecord();
+            Assertions.fail("expected an exception for " + json);
+        } catch (MessageParserException e) {
+            Assertions.assertEquals(expectedErrorCode, e.getErrorCode(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package testcases.reuse;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.util.IMarshaller;
+import de.jpaw.bonaparte.util.InstancePool;
+import de.jpaw.bonaparte.util.impl.RecordMarshallerCompactBonaparte;
+import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
+
+public class TestPooledMarshaller {
+
+    @Test
+    public void testPoolReusesInstances() throws Exception {
+        InstancePool<StringBuilder> pool = new InstancePool<StringBuilder>(2, StringBuilder::new);
+        StringBuilder a = pool.borrow();
+        StringBuilder b = pool.borrow();
+        Assertions.assertNotSame(a, b);
+        pool.release(a);
+        Assertions.assertSame(a, pool.borrow());
+        pool.release(a);
+        pool.release(b);
+        pool.release(new StringBuilder());      // pool full, dropped
+        StringBuilder c = pool.borrow();
+        StringBuilder d = pool.borrow();
+        Assertions.assertTrue((c == a && d == b) || (c == b && d == a));
+    }
+
+    @Test
+    public void testConcurrentRoundTrips() throws Exception {
+        final IMarshaller marshaller = new RecordMarshallerCompactBonaparte();
+        final ClassDefinition obj = ClassDefinition.class$MetaData();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<BonaPortable>> results = new ArrayList<Future<BonaPortable>>();
+            for (int i = 0; i < 40; ++i) {
+                results.add(executor.submit(new Callable<BonaPortable>() {
+                    @Override
+                    public BonaPortable call() throws Exception {
+                        ByteArray data = marshaller.marshal(obj);
+                        ByteBuilder buffer = new ByteBuilder();
+                        buffer.write(data.getBytes());
+                        return marshaller.unmarshal(buffer);
+                    }
+                }));
+            }
+            for (Future<BonaPortable> f : results)
+                Assertions.assertEquals(obj, f.get());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
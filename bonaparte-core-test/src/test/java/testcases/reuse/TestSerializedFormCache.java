@@ -0,0 +1,133 @@
+package testcases.reuse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.pojos.selfRefs.AnotherElementWithRef;
+import de.jpaw.bonaparte.pojos.selfRefs.ElementWithRef;
+import de.jpaw.bonaparte.util.SerializedFormCache;
+
+// Frozen objects serialized via the SerializedFormCache must produce the same data as without cache, and encodings which depend on the context must not be cached.
+public class TestSerializedFormCache {
+
+    private AnotherElementWithRef another(String text, ElementWithRef ref1, AnotherElementWithRef ref2) {
+        final AnotherElementWithRef a = new AnotherElementWithRef();
+        a.text = text;
+        a.ref1 = ref1;
+        a.ref2 = ref2;
+        return a;
+    }
+
+    private ElementWithRef element(String text, AnotherElementWithRef ref) {
+        final ElementWithRef e = new ElementWithRef();
+        e.text = text;
+        e.ref = ref;
+        return e;
+    }
+
+    private ElementWithRef frozenRecord() {
+        final ElementWithRef e = element("reference data", another("nested", null, another("nested twice", null, null)));
+        e.freeze();
+        return e;
+    }
+
+    private byte [] compose(ByteArrayComposer bac, BonaPortable obj) {
+        bac.reset();
+        bac.writeRecord(obj);
+        return bac.getBytes();
+    }
+
+    @Test
+    public void testSameBytesAsWithoutCache() throws Exception {
+        final ElementWithRef record = frozenRecord();
+        for (ObjectReuseStrategy strategy : ObjectReuseStrategy.values()) {
+            final byte [] expected = compose(new ByteArrayComposer(strategy), record);
+            final SerializedFormCache cache = new SerializedFormCache();
+            final ByteArrayComposer bac = new ByteArrayComposer(strategy);
+            bac.setSerializedFormCache(cache);
+            for (int i = 0; i < 5; ++i)
+                Assertions.assertArrayEquals(expected, compose(bac, record), strategy.name());
+            Assertions.assertEquals(4, cache.getHits(), strategy.name());
+            Assertions.assertEquals(record, new ByteArrayParser(expected).readRecord());
+        }
+    }
+
+    @Test
+    public void testTransmission() throws Exception {
+        // the second occurrence of the record is spliced in, or written as backreference
+        final ElementWithRef record = frozenRecord();
+        final ElementWithRef other = element("mutable", record.ref);
+        final List<BonaPortable> records = new ArrayList<BonaPortable>();
+        records.add(record);
+        records.add(other);
+        records.add(record);
+        for (ObjectReuseStrategy strategy : ObjectReuseStrategy.values()) {
+            final ByteArrayComposer bac = new ByteArrayComposer(strategy);
+            bac.setSerializedFormCache(new SerializedFormCache());
+            bac.writeTransmission(records);
+            Assertions.assertEquals(records, new ByteArrayParser(bac.getBytes()).readTransmission(), strategy.name());
+        }
+    }
+
+    @Test
+    public void testContextDependentEncodingIsNotCached() throws Exception {
+        // the frozen object refers to an object which has been serialized before, outside of it, by a backreference
+        final AnotherElementWithRef shared = another("shared", null, null);
+        final AnotherElementWithRef frozen = another("frozen", null, shared);
+        frozen.freeze();
+        final AnotherElementWithRef top = another("top", element("first", shared), frozen);
+
+        final SerializedFormCache cache = new SerializedFormCache();
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE);
+        bac.setSerializedFormCache(cache);
+        Assertions.assertEquals(top, new ByteArrayParser(compose(bac, top)).readRecord());
+
+        // on its own, the frozen object must be written including the shared object
+        final byte [] alone = compose(bac, frozen);
+        Assertions.assertArrayEquals(compose(new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE), frozen), alone);
+        Assertions.assertEquals(frozen, new ByteArrayParser(alone).readRecord());
+    }
+
+    @Test
+    public void testCompact() throws Exception {
+        final ElementWithRef record = frozenRecord();
+        final CompactByteArrayComposer plain = new CompactByteArrayComposer(1000, false);
+        plain.writeRecord(record);
+        final byte [] expected = plain.getBytes();
+
+        final SerializedFormCache cache = new SerializedFormCache();
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(1000, false);
+        cbac.setSerializedFormCache(cache);
+        for (int i = 0; i < 3; ++i) {
+            cbac.reset();
+            cbac.writeRecord(record);
+            Assertions.assertArrayEquals(expected, cbac.getBytes());
+        }
+        Assertions.assertEquals(2, cache.getHits());
+        Assertions.assertEquals(record, new CompactByteArrayParser(expected, 0, -1).readRecord());
+
+        // the class dictionary makes the encoding depend on the stream, therefore the cache is not used
+        final SerializedFormCache unused = new SerializedFormCache();
+        final CompactByteArrayComposer withDictionary = new CompactByteArrayComposer(1000, false);
+        withDictionary.setUseClassDictionary(true);
+        withDictionary.setSerializedFormCache(unused);
+        withDictionary.startTransmission();
+        withDictionary.writeRecord(record);
+        withDictionary.writeRecord(record);
+        withDictionary.terminateTransmission();
+        Assertions.assertEquals(0, unused.getHits() + unused.getMisses());
+        final List<BonaPortable> expectedRecords = new ArrayList<BonaPortable>();
+        expectedRecords.add(record);
+        expectedRecords.add(record);
+        Assertions.assertEquals(expectedRecords, new CompactByteArrayParser(withDictionary.getBytes(), 0, -1).readTransmission());
+    }
+}
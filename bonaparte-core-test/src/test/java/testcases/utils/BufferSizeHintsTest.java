@@ -0,0 +1,53 @@
+package testcases.utils;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDefinition;
+import de.jpaw.bonaparte.util.BufferSizeHints;
+
+public class BufferSizeHintsTest {
+
+    @Test
+    public void testPercentile() {
+        final BufferSizeHints hints = new BufferSizeHints("test");
+        Assertions.assertEquals(BufferSizeHints.DEFAULT_HINT, hints.getHint(ClassDefinition.BClass.INSTANCE));
+        final Random rnd = new Random(4711L);
+        for (int i = 0; i < 20000; ++i)
+            hints.record(ClassDefinition.BClass.INSTANCE, 1 + rnd.nextInt(1000));
+        // the 90th percentile of uniformly distributed sizes 1..1000
+        final int hint = hints.getHint(ClassDefinition.BClass.INSTANCE);
+        Assertions.assertTrue(hint > 850 && hint < 980, "hint is " + hint);
+        Assertions.assertEquals(BufferSizeHints.DEFAULT_HINT, hints.getHint(EnumDefinition.BClass.INSTANCE));
+        Assertions.assertEquals(20000L, hints.getSamples().get(ClassDefinition.BClass.INSTANCE.getPqon()));
+    }
+
+    @Test
+    public void testAdaptsToChangedSizes() {
+        final BufferSizeHints hints = new BufferSizeHints("test");
+        for (int i = 0; i < 1000; ++i)
+            hints.record(ClassDefinition.BClass.INSTANCE, 100);
+        Assertions.assertTrue(Math.abs(hints.getHint(ClassDefinition.BClass.INSTANCE) - 100) <= 10);
+        for (int i = 0; i < 1000; ++i)
+            hints.record(ClassDefinition.BClass.INSTANCE, 5000);
+        Assertions.assertTrue(Math.abs(hints.getHint(ClassDefinition.BClass.INSTANCE) - 5000) <= 500);
+    }
+
+    @Test
+    public void testMarshallersRecordSizes() throws Exception {
+        final ClassDefinition obj = ClassDefinition.class$MetaData();
+        final String pqon = obj.ret$BonaPortableClass().getPqon();
+        final byte [] data = ByteArrayComposer.marshal(StaticMeta.OUTER_BONAPORTABLE, obj);
+        Assertions.assertTrue(BufferSizeHints.BONAPARTE.getHints().containsKey(pqon));
+        Assertions.assertTrue(BufferSizeHints.BONAPARTE.getHint(obj) >= data.length / 2);
+        final byte [] compact = CompactByteArrayComposer.marshal(StaticMeta.OUTER_BONAPORTABLE, obj);
+        Assertions.assertTrue(BufferSizeHints.COMPACT.getHints().containsKey(pqon));
+        Assertions.assertTrue(BufferSizeHints.COMPACT.getHint(obj) >= compact.length / 2);
+    }
+}
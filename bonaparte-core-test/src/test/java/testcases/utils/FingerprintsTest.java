@@ -0,0 +1,98 @@
+package testcases.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.selfRefs.AnotherElementWithRef;
+import de.jpaw.bonaparte.pojos.selfRefs.ElementWithRef;
+import de.jpaw.bonaparte.util.Fingerprints;
+import de.jpaw.bonaparte.util.XxHash64;
+
+public class FingerprintsTest {
+
+    private AnotherElementWithRef element(String text, boolean frozen) {
+        final AnotherElementWithRef a = new AnotherElementWithRef();
+        a.text = text;
+        if (frozen)
+            a.freeze();
+        return a;
+    }
+
+    @Test
+    public void testXxHash64ReferenceValues() throws Exception {
+        Assertions.assertEquals(0xEF46DB3751D8E999L, XxHash64.hash(new byte [0]));
+        Assertions.assertEquals(0xD24EC4F1A98C6E5BL, XxHash64.hash("a".getBytes(StandardCharsets.US_ASCII)));
+        Assertions.assertEquals(0x44BC2CF5AD770999L, XxHash64.hash("abc".getBytes(StandardCharsets.US_ASCII)));
+        Assertions.assertEquals(0xFBCEA83C8A378BF1L, XxHash64.hash("Nobody inspects the spammish repetition".getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    @Test
+    public void testMemoization() throws Exception {
+        final Fingerprints fingerprints = new Fingerprints(64);
+        final AnotherElementWithRef a = element("some text", true);
+        final AnotherElementWithRef b = element("some text", true);
+        final long fp = fingerprints.fingerprint(a);
+        Assertions.assertEquals(fp, fingerprints.fingerprint(a));
+        Assertions.assertEquals(fp, fingerprints.fingerprint(b));
+        Assertions.assertEquals(1, fingerprints.getHits());
+        Assertions.assertEquals(2, fingerprints.getMisses());
+
+        // mutable objects are not memoized
+        final AnotherElementWithRef m = element("some text", false);
+        Assertions.assertEquals(fp, fingerprints.fingerprint(m));
+        m.text = "other text";
+        Assertions.assertNotEquals(fp, fingerprints.fingerprint(m));
+        Assertions.assertEquals(1, fingerprints.getHits());
+        Assertions.assertEquals(2, fingerprints.getMisses());
+    }
+
+    @Test
+    public void testMayBeEqual() throws Exception {
+        final Fingerprints fingerprints = new Fingerprints(64);
+        final AnotherElementWithRef a = element("A", true);
+        Assertions.assertTrue(fingerprints.mayBeEqual(a, element("A", true)));
+        Assertions.assertFalse(fingerprints.mayBeEqual(a, element("B", true)));
+        Assertions.assertTrue(fingerprints.mayBeEqual(a, element("B", false)));       // not decided by fingerprint
+        Assertions.assertFalse(fingerprints.equals(a, element("B", false)));
+        Assertions.assertTrue(fingerprints.equals(a, element("A", false)));
+        Assertions.assertFalse(fingerprints.equals(a, null));
+        Assertions.assertTrue(fingerprints.equals(null, null));
+        Assertions.assertFalse(fingerprints.mayBeEqual(ClassDefinition.class$MetaData().ret$FrozenClone(), ObjectReference.class$MetaData().ret$FrozenClone()));
+    }
+
+    @Test
+    public void testDuplicateDetection() throws Exception {
+        final Fingerprints fingerprints = new Fingerprints(64);
+        final Set<Fingerprints.Key> keys = new HashSet<Fingerprints.Key>();
+        Assertions.assertTrue(keys.add(fingerprints.keyOf(element("A", true))));
+        Assertions.assertTrue(keys.add(fingerprints.keyOf(element("B", true))));
+        Assertions.assertFalse(keys.add(fingerprints.keyOf(element("A", true))));
+        Assertions.assertFalse(keys.add(fingerprints.keyOf(element("B", false))));
+        Assertions.assertEquals(2, keys.size());
+    }
+
+    @Test
+    public void testReuseByContents() throws Exception {
+        // equal frozen objects are written once, different ones in full
+        final AnotherElementWithRef a = element("A", false);
+        a.ref2 = element("B", true);
+        a.ref1 = new ElementWithRef();
+        a.ref1.ref = element("B", true);
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_CONTENTS);
+        bac.writeRecord(a);
+        final BonaPortable result = new ByteArrayParser(bac.getBytes()).readRecord();
+        Assertions.assertEquals(a, result);
+        final AnotherElementWithRef parsed = (AnotherElementWithRef)result;
+        Assertions.assertSame(parsed.ref1.ref, parsed.ref2);
+    }
+}
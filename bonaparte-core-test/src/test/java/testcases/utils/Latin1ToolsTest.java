@@ -0,0 +1,49 @@
+package testcases.utils;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.util.Latin1Tools;
+
+public class Latin1ToolsTest {
+
+    private static byte [] ascii(int length) {
+        byte [] data = new byte [length];
+        for (int i = 0; i < length; ++i)
+            data[i] = (byte)('A' + i % 26);
+        return data;
+    }
+
+    @Test
+    public void testNonPrintableAsciiAtEveryPosition() {
+        for (int len = 0; len < 40; ++len) {
+            Assertions.assertEquals(len + 3, Latin1Tools.indexOfNonPrintableAscii(ascii(len + 6), 3, len));
+            for (int pos = 0; pos < len; ++pos) {
+                for (byte b : new byte [] { 0x00, 0x06, 0x1f, 0x7f, (byte)0x80, (byte)0xe4, (byte)0xff }) {
+                    byte [] data = ascii(len);
+                    data[pos] = b;
+                    Assertions.assertEquals(pos, Latin1Tools.indexOfNonPrintableAscii(data, 0, len));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIndexOf() {
+        for (int len = 1; len < 40; ++len) {
+            byte [] data = ascii(len);
+            Assertions.assertEquals(-1, Latin1Tools.indexOf(data, 0, len, (byte)'?'));
+            data[len - 1] = '?';
+            Assertions.assertEquals(len - 1, Latin1Tools.indexOf(data, 0, len, (byte)'?'));
+        }
+    }
+
+    @Test
+    public void testToLatin1() {
+        Assertions.assertArrayEquals("Hello? Wörld?".getBytes(StandardCharsets.ISO_8859_1), Latin1Tools.toLatin1("Hello? Wörld?"));
+        Assertions.assertNull(Latin1Tools.toLatin1("Hello? W€rld"));
+        Assertions.assertEquals("Grüße", Latin1Tools.fromLatin1("xGrüßex".getBytes(StandardCharsets.ISO_8859_1), 1, 5));
+    }
+}
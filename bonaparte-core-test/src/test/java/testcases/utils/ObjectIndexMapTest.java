@@ -0,0 +1,89 @@
+package testcases.utils;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.util.ObjectIndexMap;
+
+public class ObjectIndexMapTest {
+
+    @Test
+    public void testIdentity() {
+        final ObjectIndexMap map = new ObjectIndexMap(4, false);
+        final String a = new String("abc");
+        final String b = new String("abc");
+        map.put(a, 0);
+        Assertions.assertEquals(0, map.get(a));
+        Assertions.assertEquals(ObjectIndexMap.NOT_FOUND, map.get(b));
+        map.put(b, 1);
+        map.put(a, 2);
+        Assertions.assertEquals(2, map.get(a));
+        Assertions.assertEquals(1, map.get(b));
+        Assertions.assertEquals(2, map.size());
+    }
+
+    @Test
+    public void testContents() {
+        final ObjectIndexMap map = new ObjectIndexMap(4, true);
+        map.put(new String("abc"), 7);
+        Assertions.assertEquals(7, map.get(new String("abc")));
+        Assertions.assertEquals(ObjectIndexMap.NOT_FOUND, map.get("abd"));
+    }
+
+    @Test
+    public void testGrowAndClear() {
+        final ObjectIndexMap map = new ObjectIndexMap(1, false);
+        final Object [] keys = new Object [1000];
+        for (int round = 0; round < 3; ++round) {
+            for (int i = 0; i < keys.length; ++i) {
+                keys[i] = new Object();
+                map.put(keys[i], i);
+            }
+            Assertions.assertEquals(keys.length, map.size());
+            for (int i = 0; i < keys.length; ++i)
+                Assertions.assertEquals(i, map.get(keys[i]));
+            map.clear();
+            Assertions.assertEquals(0, map.size());
+            for (int i = 0; i < keys.length; ++i)
+                Assertions.assertEquals(ObjectIndexMap.NOT_FOUND, map.get(keys[i]));
+        }
+    }
+
+    // the key is created in a separate method, in order not to keep it on the stack of the test
+    private static WeakReference<Object> putTemporaryKey(ObjectIndexMap map) {
+        final Object key = new Object();
+        map.put(key, 0);
+        return new WeakReference<Object>(key);
+    }
+
+    @Test
+    public void testClearReleasesKeys() throws Exception {
+        final ObjectIndexMap map = new ObjectIndexMap(4, false);
+        final WeakReference<Object> ref = putTemporaryKey(map);
+        map.clear();
+        for (int i = 0; i < 20 && ref.get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        Assertions.assertNull(ref.get(), "key still referenced after clear()");
+    }
+
+    @Test
+    public void testComposerReset() throws Exception {
+        // objects of a previous message must not be referenced after reset()
+        final ClassDefinition obj = ClassDefinition.class$MetaData();
+        final ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.BY_REFERENCE);
+        bac.writeRecord(obj);
+        final byte [] first = bac.getBytes();
+        bac.reset();
+        bac.writeRecord(obj);
+        Assertions.assertArrayEquals(first, bac.getBytes());
+        Assertions.assertEquals(obj, new ByteArrayParser(first).readRecord());
+    }
+}
@@ -0,0 +1,66 @@
+package testcases.utils;
+
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.core.ByteArrayComposer;
+import de.jpaw.bonaparte.core.ByteArrayParser;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.util.StringPool;
+
+public class StringPoolTest {
+
+    @Test
+    public void testCanonicalInstances() {
+        StringPool pool = new StringPool(64, 16);
+        String a = pool.canonicalize(new String("EUR"));
+        Assertions.assertSame(a, pool.canonicalize(new String("EUR")));
+        Assertions.assertSame(a, pool.canonicalize("EUR".getBytes(StandardCharsets.ISO_8859_1), 0, 3));
+        Assertions.assertEquals(1L, pool.getMisses());
+        Assertions.assertEquals(2L, pool.getHits());
+        Assertions.assertNull(pool.canonicalize(null));
+    }
+
+    @Test
+    public void testPoolIsBounded() {
+        StringPool pool = new StringPool(64, 16);
+        for (int i = 0; i < 10000; ++i)
+            pool.canonicalize(Integer.toString(i));
+        Assertions.assertTrue(pool.size() <= 64);
+    }
+
+    @Test
+    public void testCompactParserReturnsPooledInstances() throws Exception {
+        StringPool pool = new StringPool(1024, 1000);   // all fields of the meta data qualify
+        byte [] data = CompactByteArrayComposer.marshal(StaticMeta.OUTER_BONAPORTABLE, ClassDefinition.class$MetaData());
+        CompactByteArrayParser p1 = new CompactByteArrayParser(data, 0, -1);
+        CompactByteArrayParser p2 = new CompactByteArrayParser(data, 0, -1);
+        p1.setStringPool(pool);
+        p2.setStringPool(pool);
+        ClassDefinition r1 = (ClassDefinition)p1.readRecord();
+        ClassDefinition r2 = (ClassDefinition)p2.readRecord();
+        Assertions.assertEquals(r1, r2);
+        Assertions.assertSame(r1.getName(), r2.getName());
+        Assertions.assertSame(r1.getFields().get(0).getName(), r2.getFields().get(0).getName());
+    }
+
+    @Test
+    public void testByteArrayParserReturnsPooledInstances() throws Exception {
+        StringPool pool = new StringPool(1024, 1000);
+        ByteArrayComposer bac = new ByteArrayComposer();
+        bac.writeRecord(ClassDefinition.class$MetaData());
+        byte [] data = bac.getBytes();
+        ByteArrayParser p1 = new ByteArrayParser(data, 0, -1);
+        ByteArrayParser p2 = new ByteArrayParser(data, 0, -1);
+        p1.setStringPool(pool);
+        p2.setStringPool(pool);
+        ClassDefinition r1 = (ClassDefinition)p1.readRecord();
+        ClassDefinition r2 = (ClassDefinition)p2.readRecord();
+        Assertions.assertSame(r1.getName(), r2.getName());
+    }
+}
@@ -10,7 +10,6 @@ import java.time.LocalDateTime;
 import java.time.LocalTime;
 import java.time.temporal.Temporal;
 import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,6 +29,9 @@ import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
 import de.jpaw.bonaparte.util.DayTime;
+import de.jpaw.bonaparte.util.Latin1Tools;
+import de.jpaw.bonaparte.util.ObjectIndexMap;
+import de.jpaw.bonaparte.util.SerializedFormCache;
 import de.jpaw.enums.AbstractByteEnumSet;
 import de.jpaw.enums.AbstractIntEnumSet;
 import de.jpaw.enums.AbstractLongEnumSet;
@@ -42,6 +44,7 @@ import de.jpaw.enums.TokenizableEnum;
 import de.jpaw.enums.XEnum;
 import de.jpaw.fixedpoint.FixedPointBase;
 import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
 
 public abstract class AbstractCompactComposer extends AbstractMessageComposer<IOException> implements CompactConstants {
 
@@ -58,7 +61,7 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
 //    }
     private final boolean useJsonForBonaCustomInElements;       // if true, the subobjects inside Element will be output as JSON. This kills enums on deserialization, but allows to deserialize objects not known on receiver side.
     private final boolean useCache;
-    private final Map<BonaCustom, Integer> objectCache;
+    private final ObjectIndexMap objectCache;
     private int numberOfObjectsSerialized;
     private int numberOfObjectReuses;
     // variables set by constructor
@@ -66,15 +69,23 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
     protected final boolean recommendIdentifiable;              // if true, then factoryId and classId will be used to identify the object (requires prior registration of factories before parsing)
     protected boolean skipLowerBoundObjectDescription = true;   // if true and the object to serialize corresponds to its lower bound, then do not output the class description
     protected AbstractCompactComposer jsonComposer = null;      // derived composer on same DataOutput, which also creates field names. Will be initialized on demand.
+    private Map<String, Integer> classDictionary = null;       // if not null, PQONs are written only once per stream, later by dictionary index
+    private Map<String, Integer> stringTable = null;           // if not null, repeated strings are written as reference into the string table
+    private int maxStringTableSize = 0;
+    private int numberOfStringReuses = 0;
+    private boolean backreferencesWithinRecord = false;         // if true, backreferences do not span records (the parser must use the same setting)
+    private SerializedFormCache serializedFormCache = null;
+    private final ByteBuilder outBuffer;                        // out, if it is a memory buffer, else null. Required to store serialized forms
+    private int minReferencedObject = Integer.MAX_VALUE;        // lowest index referenced by a backreference since the start of the current frozen object
 
     protected AbstractCompactComposer(final DataOutput out, final ObjectReuseStrategy reuseStrategy, final boolean recommendIdentifiable, final boolean useJsonForBonaCustomInElements) {
         switch (reuseStrategy) {
         case BY_CONTENTS:
-            this.objectCache = new HashMap<BonaCustom, Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, true);
             this.useCache = true;
             break;
         case BY_REFERENCE:
-            this.objectCache = new IdentityHashMap<BonaCustom, Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, false);
             this.useCache = true;
             break;
         default:
@@ -83,6 +94,7 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
             break;
         }
         this.out = out;
+        this.outBuffer = out instanceof ByteBuilder ? (ByteBuilder)out : null;
         this.recommendIdentifiable = recommendIdentifiable;
         this.useJsonForBonaCustomInElements = useJsonForBonaCustomInElements;
         numberOfObjectsSerialized = 0;
@@ -97,12 +109,96 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
         this.skipLowerBoundObjectDescription = skipLowerBoundObjectDescription;
     }
 
+    public boolean isUseClassDictionary() {
+        return classDictionary != null;
+    }
+
+    /** Enables the per stream class dictionary: the PQON of a class is written only for its first object, subsequent objects of the same class
+     * refer to it by a small index. The dictionary is valid until reset(), the receiving parser must parse the whole stream with the same instance.
+     * Does not affect objects written by factoryId / classId. Parsers before this version cannot read the resulting data. */
+    public void setUseClassDictionary(boolean useClassDictionary) {
+        if (!useClassDictionary)
+            classDictionary = null;
+        else if (classDictionary == null)
+            classDictionary = new HashMap<String, Integer>(32);
+    }
+
+    public int getMaxStringTableSize() {
+        return maxStringTableSize;
+    }
+
+    /** Enables back-references for repeated strings of at least MIN_LENGTH_STRING_REFERENCE characters. The first occurrence of such a string
+     * is written with a STRING_DEFINITION prefix, subsequent occurrences as STRING_AGAIN with the index into the string table.
+     * At most maxEntries strings are stored, further new strings are written in full. A value of 0 disables the feature (default).
+     * The table is valid until reset(), the receiving parser must parse the whole stream with the same instance.
+     * Parsers before this version cannot read the resulting data, and parsers accept at most their own getMaxStringTableSize() entries,
+     * therefore the feature should only be enabled if the receiver supports it, preferably via negotiateStringTableSize(). */
+    public void setMaxStringTableSize(int maxEntries) {
+        maxStringTableSize = maxEntries;
+        if (maxEntries <= 0)
+            stringTable = null;
+        else if (stringTable == null)
+            stringTable = new HashMap<String, Integer>(Math.min(maxEntries, 1024));
+    }
+
+    public SerializedFormCache getSerializedFormCache() {
+        return serializedFormCache;
+    }
+
+    /** Sets a cache for the serialized form of frozen objects (null to disable, which is the default).
+     * The cache must only be shared with composers of the same configuration. It is not used while the class dictionary or the string table is enabled,
+     * because their entries are valid only within a stream. Serialized forms are stored only if the composer writes into a ByteBuilder. */
+    public void setSerializedFormCache(SerializedFormCache serializedFormCache) {
+        this.serializedFormCache = serializedFormCache;
+    }
+
+    /** Configures the string table as advertised by the receiver, see AbstractCompactParser.getAcceptedMimeType().
+     * The table is enabled with the size of the MIME type parameter "strings" of the given type, and disabled if the parameter
+     * is missing or invalid, which is the case for receivers which do not support string tables. */
+    public void negotiateStringTableSize(String acceptedMimeType) {
+        int maxEntries = 0;
+        if (acceptedMimeType != null) {
+            for (String parameter : acceptedMimeType.split(";")) {
+                final int eq = parameter.indexOf('=');
+                if (eq > 0 && MimeTypes.MIME_PARAMETER_STRING_TABLE.equals(parameter.substring(0, eq).trim())) {
+                    try {
+                        maxEntries = Integer.parseInt(parameter.substring(eq + 1).trim());
+                    } catch (NumberFormatException e) {
+                        maxEntries = 0;
+                    }
+                }
+            }
+        }
+        setMaxStringTableSize(maxEntries);
+    }
+
     // must be overridden / called if caching / reuse is active!
     public void reset() {
         numberOfObjectsSerialized = 0;
         numberOfObjectReuses = 0;
+        numberOfStringReuses = 0;
         if (useCache)
             objectCache.clear();
+        if (classDictionary != null)
+            classDictionary.clear();
+        if (stringTable != null)
+            stringTable.clear();
+    }
+
+    /** Returns the number of objects which can be referenced by backreferences. */
+    public int getCacheSize() {
+        return useCache ? objectCache.size() : 0;
+    }
+
+    public boolean getBackreferencesWithinRecord() {
+        return backreferencesWithinRecord;
+    }
+
+    /** Limits backreferences to the current record, the parser must use the same setting. The object cache is cleared at the start of every record,
+     * therefore the memory used by a transmission written record by record does not grow.
+     * The class dictionary and the string table still span the stream, they are bounded by the number of classes and the maximum string table size. */
+    public void setBackreferencesWithinRecord(boolean backreferencesWithinRecord) {
+        this.backreferencesWithinRecord = backreferencesWithinRecord;
     }
 
     // for statistics
@@ -110,6 +206,11 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
         return numberOfObjectReuses;
     }
 
+    // for statistics
+    public int getNumberOfStringReuses() {
+        return numberOfStringReuses;
+    }
+
 
 
     protected void writeNull() throws IOException {
@@ -130,9 +231,19 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
 
     // write a non-empty string (using charAt())
     protected void writeLongString(String s) throws IOException {
+        int len = s.length();
+        if (len > 16) {
+            // bulk path: let the JDK encode the string, which is a plain copy for Latin-1 data, and check the result
+            final byte [] latin1 = Latin1Tools.toLatin1(s);
+            if (latin1 != null) {
+                out.writeByte(ISO_STRING);
+                intOut(len);
+                out.write(latin1, 0, len);
+                return;
+            }
+        }
         char maxCode = 0;
         int numWith2Byte = 0;
-        int len = s.length();
         for (int i = 0; i < len; ++ i) {
             char c = s.charAt(i);
             if (c > maxCode)
@@ -342,11 +453,31 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
         charOut(c);
     }
 
+    /** Writes a string which is in the string table as STRING_AGAIN with its index and returns true.
+     * Otherwise, the string is added to the table if there is space, with a STRING_DEFINITION prefix, and false is returned,
+     * the caller then writes the string in its regular encoding. */
+    protected boolean stringReferenceOut(String s) throws IOException {
+        final Integer index = stringTable.get(s);
+        if (index != null) {
+            out.writeByte(STRING_AGAIN);
+            intOut(index.intValue());
+            ++numberOfStringReuses;
+            return true;
+        }
+        if (stringTable.size() < maxStringTableSize) {
+            stringTable.put(s, Integer.valueOf(stringTable.size()));
+            out.writeByte(STRING_DEFINITION);
+        }
+        return false;
+    }
+
     protected void stringOut(String s) throws IOException {
         if (s.length() == 0) {
             out.writeByte(EMPTY_FIELD);
         } else if (s.length() == 1) {
             charOut(s.charAt(0));
+        } else if (stringTable != null && s.length() >= MIN_LENGTH_STRING_REFERENCE && stringReferenceOut(s)) {
+            return;
         } else if (s.length() > 8) {
             writeLongString(s);  // writeLongStringStealArray
         } else {
@@ -661,6 +792,11 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
 
     @Override
     public void startRecord() throws IOException {
+        if (backreferencesWithinRecord) {
+            numberOfObjectsSerialized = 0;
+            if (useCache)
+                objectCache.clear();
+        }
     }
 
     @Override
@@ -702,6 +838,18 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
                 out.writeByte(OBJECT_BEGIN_ID);
                 intOut(meta.getFactoryId());
                 intOut(meta.getId());
+            } else if (classDictionary != null) {
+                final Integer index = classDictionary.get(meta.getName());
+                if (index != null) {
+                    out.writeByte(OBJECT_BEGIN_CLASS_REF);
+                    intOut(index.intValue());
+                } else {
+                    // the first occurrence implicitly defines the next dictionary entry
+                    classDictionary.put(meta.getName(), Integer.valueOf(classDictionary.size()));
+                    out.writeByte(OBJECT_BEGIN_NEW_CLASS);
+                    writeLongString(meta.getName());
+                    addField(REVISION_META, meta.getRevision());
+                }
             } else {
                 out.writeByte(OBJECT_BEGIN_PQON);
                 writeLongString(meta.getName());  // writeLongStringStealArray
@@ -721,19 +869,25 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
             writeNull();
         } else {
             if (useCache) {
-                Integer previousIndex = objectCache.get(obj);
-                if (previousIndex != null) {
+                final int previousIndex = objectCache.get(obj);
+                if (previousIndex != ObjectIndexMap.NOT_FOUND) {
                     // reuse this instance
                     out.writeByte(OBJECT_AGAIN);
-                    intOut(numberOfObjectsSerialized - previousIndex.intValue() - 1);
+                    intOut(numberOfObjectsSerialized - previousIndex - 1);
                     ++numberOfObjectReuses;
+                    if (previousIndex < minReferencedObject)
+                        minReferencedObject = previousIndex;
                     return;
                 }
                 // add the new object to the cache of known objects. This is
                 // done despite we are not yet done with the object!
-                objectCache.put(obj, Integer.valueOf(numberOfObjectsSerialized++));
+                objectCache.put(obj, numberOfObjectsSerialized++);
                 // fall through
             }
+            if (serializedFormCache != null && classDictionary == null && stringTable == null && obj instanceof BonaPortable bp && bp.was$Frozen()) {
+                addFrozenObject(di, bp);
+                return;
+            }
             // start a new object
             startObject(di, obj);
             // do all fields (now includes terminator)
@@ -743,6 +897,32 @@ public abstract class AbstractCompactComposer extends AbstractMessageComposer<IO
         }
     }
 
+    // serializes a frozen object, which has been registered in the object reuse cache already, via the SerializedFormCache
+    private void addFrozenObject(ObjectReference di, BonaPortable obj) throws IOException {
+        final SerializedFormCache.Entry cached = serializedFormCache.get(obj, di);
+        if (cached != null && (!useCache || cached.getNumberOfNestedObjects() != SerializedFormCache.UNKNOWN)) {
+            out.write(cached.getBytes());
+            if (useCache)
+                numberOfObjectsSerialized += cached.getNumberOfNestedObjects();
+            return;
+        }
+        final int objectIndex = numberOfObjectsSerialized - 1;
+        final int start = outBuffer == null ? 0 : outBuffer.length();
+        final int outerMinReferencedObject = minReferencedObject;
+        minReferencedObject = Integer.MAX_VALUE;
+        startObject(di, obj);
+        obj.serializeSub(this);
+        terminateObject(di, obj);
+        if (outBuffer != null) {
+            if (!useCache)
+                serializedFormCache.put(obj, di, outBuffer.getCurrentBuffer(), start, outBuffer.length(), SerializedFormCache.UNKNOWN);
+            else if (minReferencedObject >= objectIndex)  // no backreference to objects outside of this one
+                serializedFormCache.put(obj, di, outBuffer.getCurrentBuffer(), start, outBuffer.length(), numberOfObjectsSerialized - objectIndex - 1);
+        }
+        if (outerMinReferencedObject < minReferencedObject)
+            minReferencedObject = outerMinReferencedObject;
+    }
+
     // enum with numeric expansion: delegate to Null/Int
     @Override
     public void addEnum(EnumDataItem di, BasicNumericElementaryDataItem ord, BonaNonTokenizableEnum n) throws IOException {
@@ -30,13 +30,14 @@ import de.jpaw.bonaparte.pojos.meta.XEnumDefinition;
 import de.jpaw.bonaparte.util.BigDecimalTools;
 import de.jpaw.bonaparte.util.DayTime;
 import de.jpaw.bonaparte.util.FreezeTools;
+import de.jpaw.bonaparte.util.StringPool;
 import de.jpaw.enums.AbstractXEnumBase;
 import de.jpaw.enums.XEnumFactory;
 import de.jpaw.fixedpoint.FixedPointBase;
 import de.jpaw.util.ByteArray;
 
 
-public abstract class AbstractCompactParser<E extends Exception>  extends Settings implements MessageParser<E>, CompactConstants {
+public abstract class AbstractCompactParser<E extends Exception>  extends Settings implements MessageParser<E>, RecordSource<E>, CompactConstants {
     private static final Logger LOGGER = LoggerFactory.getLogger(AbstractCompactParser.class);
     protected static final byte [] EMPTY_BYTE_ARRAY = new byte [0];
 
@@ -66,6 +67,12 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
     protected String currentClass;
     private final boolean useCache = true;
     private List<BonaPortable> objects;
+    private final List<String> dictionaryPqons = new ArrayList<String>(16);                     // the class dictionary of the stream (see OBJECT_BEGIN_NEW_CLASS)
+    private final List<BonaPortableClass<?>> dictionaryClasses = new ArrayList<BonaPortableClass<?>>(16); // resolved entries, null until first instantiation
+    private final List<String> strings = new ArrayList<String>(64);                             // the string table of the stream (see STRING_DEFINITION)
+    private int maxStringTableSize = DEFAULT_MAX_STRING_TABLE_SIZE;
+    private int maxUncompressedLength = DEFAULT_MAX_UNCOMPRESSED_LENGTH;
+    private boolean backreferencesWithinRecord = false;   // if true, backreferences do not span records (the writer must use the same setting)
 //    private int skipDepth = 0;
 
     protected AbstractCompactParser() {
@@ -76,6 +83,140 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
     protected void clearCache() {
         if (useCache)
             objects.clear();
+        dictionaryPqons.clear();
+        dictionaryClasses.clear();
+        strings.clear();
+    }
+
+    /** Returns the number of objects which can be referenced by backreferences. */
+    public int getCacheSize() {
+        return useCache ? objects.size() : 0;
+    }
+
+    public boolean getBackreferencesWithinRecord() {
+        return backreferencesWithinRecord;
+    }
+
+    /** Limits backreferences to the current record, which must match the setting of the composer which wrote the data.
+     * The parsed objects are forgotten at the start of every record, therefore the memory used by a transmission read record by record does not grow.
+     * The class dictionary and the string table still span the stream, they are bounded by the number of classes and the maximum string table size. */
+    public void setBackreferencesWithinRecord(boolean backreferencesWithinRecord) {
+        this.backreferencesWithinRecord = backreferencesWithinRecord;
+    }
+
+    /** Forgets all objects registered after the cache had the given size, used when data is parsed again. */
+    protected void truncateCache(int size) {
+        if (useCache && size < objects.size())
+            objects.subList(size, objects.size()).clear();
+    }
+
+    /** Registers an object which has been skipped without creating it, to keep the indexes of subsequent backreferences in sync. */
+    protected void addSkippedObject() {
+        if (useCache)
+            objects.add(null);
+    }
+
+    /** Returns the number of classes defined in the class dictionary of the stream. */
+    protected int getClassDictionarySize() {
+        return dictionaryPqons.size();
+    }
+
+    /** Forgets all classes defined after the class dictionary had the given size, used when data is parsed again. */
+    protected void truncateClassDictionary(int size) {
+        if (size < dictionaryPqons.size()) {
+            dictionaryPqons.subList(size, dictionaryPqons.size()).clear();
+            dictionaryClasses.subList(size, dictionaryClasses.size()).clear();
+        }
+    }
+
+    /** Reads the PQON and revision following an OBJECT_BEGIN_NEW_CLASS token and adds it as the next entry of the class dictionary.
+     * The class is not resolved yet, because the object may just be skipped. Returns the index of the new entry. */
+    protected int readNewDictionaryClass(String fieldname) throws E {
+        final String pqon = readString(fieldname);
+        if (pqon == null || pqon.length() == 0)
+            throw newMPE(MessageParserException.BAD_OBJECT_NAME, fieldname);
+        needToken(NULL_FIELD); // version not yet allowed
+        dictionaryPqons.add(pqon);
+        dictionaryClasses.add(null);
+        return dictionaryPqons.size() - 1;
+    }
+
+    /** Reads the index following an OBJECT_BEGIN_CLASS_REF token and validates it. */
+    protected int readDictionaryIndex(String fieldname) throws E {
+        final int index = readInt(needToken(), fieldname);
+        if (index < 0 || index >= dictionaryPqons.size())
+            throw newMPE(MessageParserException.INVALID_CLASS_DICTIONARY_REF, String.format("at %s: requested class %d of only %d defined", fieldname, index, dictionaryPqons.size()));
+        return index;
+    }
+
+    /** Returns the PQON of a class of the class dictionary. */
+    protected String getDictionaryPqon(int index) {
+        return dictionaryPqons.get(index);
+    }
+
+    /** Creates a new instance of a class of the class dictionary. The class is resolved by name only once per stream. */
+    protected BonaPortable newDictionaryInstance(int index) throws E {
+        final BonaPortableClass<?> bclass = dictionaryClasses.get(index);
+        if (bclass != null)
+            return bclass.newInstance();
+        final BonaPortable newObject = createObject(dictionaryPqons.get(index));
+        dictionaryClasses.set(index, newObject.ret$BonaPortableClass());
+        return newObject;
+    }
+
+    public int getMaxStringTableSize() {
+        return maxStringTableSize;
+    }
+
+    /** Limits the number of strings which the sender may define in the string table, further definitions are rejected.
+     * A value of 0 disables the support for string tables. */
+    public void setMaxStringTableSize(int maxEntries) {
+        maxStringTableSize = maxEntries;
+    }
+
+    /** Returns the MIME type to be advertised to senders, which includes the size of the supported string table, see AbstractCompactComposer.negotiateStringTableSize(). */
+    public String getAcceptedMimeType() {
+        if (maxStringTableSize <= 0)
+            return MimeTypes.MIME_TYPE_COMPACT_BONAPARTE;
+        return MimeTypes.MIME_TYPE_COMPACT_BONAPARTE + ";" + MimeTypes.MIME_PARAMETER_STRING_TABLE + "=" + maxStringTableSize;
+    }
+
+    /** Returns the number of strings in the string table of the stream. */
+    protected int getStringTableSize() {
+        return strings.size();
+    }
+
+    /** Forgets all strings added after the string table had the given size, used when data is parsed again. */
+    protected void truncateStringTable(int size) {
+        if (size < strings.size())
+            strings.subList(size, strings.size()).clear();
+    }
+
+    /** Reads the string following a STRING_DEFINITION token and adds it to the string table. */
+    protected String readStringDefinition(String fieldname) throws E {
+        if (strings.size() >= maxStringTableSize)
+            throw newMPE(MessageParserException.STRING_TABLE_EXCEEDED, String.format("at %s: more than %d strings", fieldname, maxStringTableSize));
+        final String s = readString(fieldname);
+        strings.add(s);
+        return s;
+    }
+
+    /** Reads the index following a STRING_AGAIN token and returns the identical instance which has been added to the string table before. */
+    protected String readStringAgain(String fieldname) throws E {
+        final int index = readInt(needToken(), fieldname);
+        if (index < 0 || index >= strings.size())
+            throw newMPE(MessageParserException.INVALID_STRING_REFERENCE, String.format("at %s: requested string %d of only %d defined", fieldname, index, strings.size()));
+        return strings.get(index);
+    }
+
+    /** Returns a previously parsed object, referenced by a backreference index (0 = the most recent one). */
+    protected BonaPortable getPreviousObject(int objectIndex, String fieldname) throws E {
+        if (objectIndex < 0 || objectIndex >= objects.size())
+            throw newMPE(MessageParserException.INVALID_BACKREFERENCE, String.format("at %s: requested object %d of only %d available", fieldname, objectIndex, objects.size()));
+        final BonaPortable previousObject = objects.get(objects.size() - 1 - objectIndex);  // 0 is the last one put in, 1 the one before last etc...
+        if (previousObject == null)
+            throw newMPE(MessageParserException.BACKREFERENCE_TO_SKIPPED, String.format("at %s: requested object %d", fieldname, objectIndex));
+        return previousObject;
     }
 
     // provide a parser position, if possible. Only used for diagnostic output, return -1 if not available
@@ -241,13 +382,38 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
                 // special treatment bytes. These are cases where the length is dynamically determined, or which require recursive processing
                 switch (c) {
                 case OBJECT_BEGIN_JSON: // 0xab: new object (by string
+                    skipUntilNext(OBJECT_TERMINATOR);
+                    break;
                 case OBJECT_BEGIN_BASE: // 0xac: new object (by string
                 case OBJECT_BEGIN_ID:   // 0xde: 2 numeric, recurse!
                 case OBJECT_BEGIN_PQON: // 0xdf: object / PQON
+                    addSkippedObject(); // keep the indexes of subsequent backreferences in sync (as skipElement() does)
+                    skipUntilNext(OBJECT_TERMINATOR);
+                    break;
+                case OBJECT_BEGIN_NEW_CLASS:    // 0xe9: the class definition must be registered, it can be referenced later
+                    readNewDictionaryClass("(skipping)");
+                    addSkippedObject();
                     skipUntilNext(OBJECT_TERMINATOR);
                     break;
-                case COMPRESSED:
-                    throw newMPE(MessageParserException.UNSUPPORTED_COMPRESSED, null); // TODO: compressed object not yet supported
+                case OBJECT_BEGIN_CLASS_REF:    // 0xea: dictionary index
+                    readInt(needToken(), "(skipping)");
+                    addSkippedObject();
+                    skipUntilNext(OBJECT_TERMINATOR);
+                    break;
+                case STRING_DEFINITION:         // 0xeb: the string must be registered, it can be referenced later
+                    readStringDefinition("(skipping)");
+                    break;
+                case STRING_AGAIN:              // 0xec: string table index
+                    readInt(needToken(), "(skipping)");
+                    break;
+                case COMPRESSED:        // 0xd5: must be decompressed, because it can contain class and string definitions, and objects count for backreferences
+                    enterCompressed("(skipping)");
+                    try {
+                        skipElement();
+                    } finally {
+                        leaveCompressed();
+                    }
+                    break;
                 case COMPACT_BIGINTEGER:
                 case ISO_STRING:
                 case COMPACT_BINARY:
@@ -313,9 +479,7 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
 
     @Override
     public String readAscii(AlphanumericElementaryDataItem di) throws E {
-        if (checkForNull(di))
-            return null;
-        return readString(di.getName());
+        return readString(di);
     }
 
     // read a non-null string
@@ -340,6 +504,10 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
         case UTF16_STRING:
             len = readInt(needToken(), fieldname);
             return readUTF16(len);
+        case STRING_DEFINITION:
+            return readStringDefinition(fieldname);
+        case STRING_AGAIN:
+            return readStringAgain(fieldname);
         default:
             throw newMPE(MessageParserException.UNEXPECTED_CHARACTER, String.format("(expected STRING*, got 0x%02x)", c));
         }
@@ -350,9 +518,18 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
     public String readString(AlphanumericElementaryDataItem di) throws E {
         if (checkForNull(di))
             return null;
+        final StringPool pool = getStringPool();
+        if (pool != null && pool.isCandidate(di))
+            return readPooledString(di.getName(), pool);
         return readString(di.getName());
     }
 
+    /** Reads a non-null string and returns its canonical instance. Parsers with direct access to the input can override this to avoid
+     * the creation of a new String if it is already pooled. */
+    protected String readPooledString(String fieldname, StringPool pool) throws E {
+        return pool.canonicalize(readString(fieldname));
+    }
+
 
     @Override
     public ByteArray readByteArray(BinaryElementaryDataItem di) throws E {
@@ -671,12 +848,12 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
         boolean allowSubtypes = di.getAllowSubclasses();
         String fieldname = di.getName();
         int c = needToken();
+        if (c == COMPRESSED) {
+            return readCompressedObject(di, type);
+        }
         if (useCache && c == OBJECT_AGAIN) {
             // we reuse an object
-            int objectIndex = readInt(needToken(), fieldname);
-            if (objectIndex >= objects.size())
-                throw newMPE(MessageParserException.INVALID_BACKREFERENCE, String.format("at %s: requested object %d of only %d available", fieldname, objectIndex, objects.size()));
-            BonaPortable newObject = objects.get(objects.size() - 1 - objectIndex);  // 0 is the last one put in, 1 the one before last etc...
+            BonaPortable newObject = getPreviousObject(readInt(needToken(), fieldname), fieldname);
             // check if the object is of expected type
             if (newObject.getClass() != type) {
                 // check if it is a superclass
@@ -686,7 +863,7 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
                 }
             }
             return type.cast(newObject);
-        } else if (c == OBJECT_BEGIN_PQON || c == OBJECT_BEGIN_ID || c == OBJECT_BEGIN_BASE) {
+        } else if (c == OBJECT_BEGIN_PQON || c == OBJECT_BEGIN_ID || c == OBJECT_BEGIN_BASE || c == OBJECT_BEGIN_NEW_CLASS || c == OBJECT_BEGIN_CLASS_REF) {
             String previousClass = currentClass;
             BonaPortable newObject;
             String classname;
@@ -698,6 +875,10 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
                     throw newMPE(MessageParserException.BAD_CLASS_IDS, factoryId + "/" + classId);
                 classname = bclass.getPqon();
                 newObject = bclass.newInstance();
+            } else if (c == OBJECT_BEGIN_NEW_CLASS || c == OBJECT_BEGIN_CLASS_REF) {
+                final int index = c == OBJECT_BEGIN_NEW_CLASS ? readNewDictionaryClass(fieldname) : readDictionaryIndex(fieldname);
+                classname = getDictionaryPqon(index);
+                newObject = newDictionaryInstance(index);
             } else {
                 if (c == OBJECT_BEGIN_BASE) {
                     if (di.getLowerBound() == null)
@@ -740,6 +921,65 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
     }
 
 
+    /** Reads an object which has been stored in compressed form. Upon entry, the COMPRESSED token has been consumed. */
+    protected <R extends BonaPortable> R readCompressedObject(ObjectReference di, Class<R> type) throws E {
+        enterCompressed(di.getName());
+        try {
+            return readObject(di, type);
+        } finally {
+            leaveCompressed();
+        }
+    }
+
+    public int getMaxUncompressedLength() {
+        return maxUncompressedLength;
+    }
+
+    /** Limits the announced uncompressed length of compressed data, to avoid huge allocations caused by corrupt or malicious input.
+     * Longer data is rejected with CORRUPT_COMPRESSED. */
+    public void setMaxUncompressedLength(int maxUncompressedLength) {
+        this.maxUncompressedLength = maxUncompressedLength;
+    }
+
+    /** Switches the input to the decompressed contents of compressed data. Upon entry, the COMPRESSED token has been consumed.
+     * The announced lengths are validated before any buffer is allocated: the uncompressed length must not exceed getMaxUncompressedLength(),
+     * nor the maximum expansion of the compression format. The decompressed contents is parsed within the same object backreference context.
+     * Parsers which support decompression must override isInCompressed(), decompressInput(), switchToUncompressed() and leaveCompressed(). */
+    protected void enterCompressed(String fieldname) throws E {
+        if (isInCompressed())
+            throw newMPE(MessageParserException.CORRUPT_COMPRESSED, String.format("(nested compressed data for field %s)", fieldname));
+        final int format = readInt(needToken(), "$compressionFormat");
+        final int uncompressedLength = readInt(needToken(), "$uncompressedLength");
+        final int compressedLength = readInt(needToken(), "$compressedLength");
+        final CompactCompressor decompressor = CompactCompressors.get(format);
+        if (decompressor == null)
+            throw newMPE(MessageParserException.UNSUPPORTED_COMPRESSED, String.format("(format %d for field %s)", format, fieldname));
+        if (uncompressedLength <= 0 || compressedLength <= 0 || uncompressedLength > maxUncompressedLength
+          || uncompressedLength > decompressor.maxUncompressedLength(compressedLength))
+            throw newMPE(MessageParserException.CORRUPT_COMPRESSED, String.format("(lengths %d / %d for field %s)", uncompressedLength, compressedLength, fieldname));
+        final byte [] uncompressed = decompressInput(decompressor, compressedLength, uncompressedLength);
+        switchToUncompressed(uncompressed, compressedLength);
+    }
+
+    /** Returns true while the contents of compressed data is parsed. */
+    protected boolean isInCompressed() {
+        return false;
+    }
+
+    /** Decompresses the compressedLength bytes at the current position and returns the uncompressedLength bytes of contents.
+     * The lengths have been validated. */
+    protected byte [] decompressInput(CompactCompressor decompressor, int compressedLength, int uncompressedLength) throws E {
+        throw newMPE(MessageParserException.UNSUPPORTED_COMPRESSED, currentClass);
+    }
+
+    /** Continues parsing with the uncompressed contents, and after it, with the data following the compressedLength bytes at the current position. */
+    protected void switchToUncompressed(byte [] uncompressed, int compressedLength) {
+    }
+
+    /** Switches the input back to the data following the compressed data, after a successful enterCompressed(). */
+    protected void leaveCompressed() {
+    }
+
     @Override
     public int parseMapStart(FieldDefinition di) throws E {
         if (checkForNullOrNeedToken(di.getName(), di.getIsAggregateRequired(), MAP_BEGIN))
@@ -764,6 +1004,8 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
     @Override
     public BonaPortable readRecord() throws E {
         // there are no record start/end markers in this format
+        if (useCache && backreferencesWithinRecord)
+            objects.clear();
         return readObject(StaticMeta.OUTER_BONAPORTABLE, BonaPortable.class);
     }
 
@@ -776,6 +1018,12 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
         return results;
     }
 
+    /** Returns the records of the stream one by one, without materializing the whole transmission. */
+    @Override
+    public BonaPortable readNextRecord() throws E {
+        return atEnd() ? null : readRecord();
+    }
+
 
     @Override
     public boolean readPrimitiveBoolean(MiscElementaryDataItem di) throws E {
@@ -945,9 +1193,12 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
         case COMPACT_DATETIME_MILLIS:       //0xdc
             return readDateTime("$jsonElemDateTimeMs", true);
 
+        case COMPRESSED:                    //0xd5
         case OBJECT_AGAIN:                  //0xdd
         case OBJECT_BEGIN_ID:               //0xde
         case OBJECT_BEGIN_PQON:             //0xdf
+        case OBJECT_BEGIN_NEW_CLASS:        //0xe9
+        case OBJECT_BEGIN_CLASS_REF:        //0xea
             // object within JSON
             pushback(c);
             return readObject(StaticMeta.INNER_BONAPORTABLE, BonaPortable.class);
@@ -972,6 +1223,10 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
             return Long.valueOf(readFixed6ByteLong());
         case INT_8BYTE:                     //0xe8
             return Long.valueOf(readFixed8ByteLong());
+        case STRING_DEFINITION:             //0xeb
+            return readStringDefinition("$jsonElemString");
+        case STRING_AGAIN:                  //0xec
+            return readStringAgain("$jsonElemString");
 
         case COMPACT_BIGDECIMAL:            //0xf0
             {
@@ -1008,11 +1263,158 @@ public abstract class AbstractCompactParser<E extends Exception>  extends Settin
                 return readUTF8(len);
             }
 
-        default:  // compressed, unsupported float types etc...
+        default:  // unsupported float types etc...
             throw newMPE(MessageParserException.UNEXPECTED_CHARACTER, String.format("0x%02x in JSON element", c));
         }
     }
 
+    /** Skips a single element (a field, an object or a collection, including all nested data), without creating any objects for it.
+     * Other than skipUntilNext(), the length of every token is evaluated exactly. An implicit null (parent separator or object terminator)
+     * is not consumed. Skipped objects are registered as placeholders, to keep subsequent backreference indexes valid. */
+    protected void skipElement() throws E {
+        final int c = needToken();
+        if (c <= 0xaa || c == EMPTY_FIELD)
+            return;                         // single byte items
+        if (c >= 0xb0 && c <= 0xcf) {
+            skipBytes(c <= 0xbf ? c - 0xaf : 1);    // short ISO string or 2 byte integer
+            return;
+        }
+        switch (c) {
+        case OBJECT_TERMINATOR:             //0xad
+        case PARENT_SEPARATOR:              //0xae
+            pushback(c);                    // implicit null
+            return;
+        case OBJECT_BEGIN_JSON:             //0xab
+            for (;;) {
+                final int d = needToken();
+                if (d == OBJECT_TERMINATOR)
+                    return;
+                pushback(d);
+                skipElement();              // key
+                skipElement();              // value
+            }
+        case OBJECT_BEGIN_ID:               //0xde
+            readInt(needToken(), "$factoryId");
+            readInt(needToken(), "$classId");
+            skipObjectBody();
+            return;
+        case OBJECT_BEGIN_PQON:             //0xdf
+            skipElement();                  // PQON
+            skipElement();                  // revision
+            skipObjectBody();
+            return;
+        case OBJECT_BEGIN_BASE:             //0xac
+            skipObjectBody();
+            return;
+        case OBJECT_BEGIN_NEW_CLASS:        //0xe9
+            readNewDictionaryClass("(skipping)");   // must be registered even if skipped
+            skipObjectBody();
+            return;
+        case OBJECT_BEGIN_CLASS_REF:        //0xea
+            readDictionaryIndex("(skipping)");
+            skipObjectBody();
+            return;
+        case STRING_DEFINITION:             //0xeb
+            readStringDefinition("(skipping)");     // must be registered even if skipped
+            return;
+        case STRING_AGAIN:                  //0xec
+            readInt(needToken(), "(skipping)");
+            return;
+        case OBJECT_AGAIN:                  //0xdd
+            readInt(needToken(), "$objectIndex");
+            return;
+        case COMPRESSED:                    //0xd5
+            // must be decompressed, because the contained objects count for backreferences
+            enterCompressed("(skipping)");
+            try {
+                skipElement();
+            } finally {
+                leaveCompressed();
+            }
+            return;
+        case COMPACT_FLOAT:                 //0xd1
+        case INT_4BYTE:                     //0xe4
+            skipBytes(4);
+            return;
+        case COMPACT_DOUBLE:                //0xd2
+        case INT_8BYTE:                     //0xe8
+            skipBytes(8);
+            return;
+        case UNICODE_CHAR:                  //0xd6
+        case INT_2BYTE:                     //0xe2
+            skipBytes(2);
+            return;
+        case INT_3BYTE:                     //0xe3
+            skipBytes(3);
+            return;
+        case INT_6BYTE:                     //0xe6
+            skipBytes(6);
+            return;
+        case COMPACT_UUID:                  //0xd7
+            skipBytes(16);
+            return;
+        case COMPACT_DATE:                  //0xd8
+            skipElements(3);
+            return;
+        case COMPACT_TIME:                  //0xd9
+        case COMPACT_TIME_MILLIS:           //0xda
+            skipElement();
+            return;
+        case COMPACT_DATETIME:              //0xdb
+        case COMPACT_DATETIME_MILLIS:       //0xdc
+            skipElements(4);
+            return;
+        case COMPACT_BIGINTEGER:            //0xe0
+        case ISO_STRING:                    //0xe1
+        case COMPACT_BINARY:                //0xfe
+        case UTF8_STRING:                   //0xff
+            skipBytes(readInt(needToken(), "(skipping)"));
+            return;
+        case UTF16_STRING:                  //0xfd
+            skipBytes(2 * readInt(needToken(), "(skipping UTF16)"));
+            return;
+        case COMPACT_BIGDECIMAL:            //0xf0
+            skipElements(2);                // scale and mantissa
+            return;
+        case 0xf1:
+        case 0xf2:
+        case 0xf3:
+        case 0xf4:
+        case 0xf5:
+        case 0xf6:
+        case 0xf7:
+        case 0xf8:
+        case 0xf9:
+            skipElement();                  // mantissa
+            return;
+        case MAP_BEGIN:                     //0xfa
+            skipElements(2 * readInt(needToken(), "$mapNumElem"));
+            return;
+        case ARRAY_BEGIN:                   //0xfc
+            skipElements(readInt(needToken(), "$arrayNumElem"));
+            return;
+        default:
+            throw newMPE(MessageParserException.UNSUPPORTED_TOKEN, String.format("(0x%02x while skipping)", c));
+        }
+    }
+
+    private void skipElements(int howMany) throws E {
+        while (howMany-- > 0)
+            skipElement();
+    }
+
+    // skips the fields of all class levels of an object, including the object terminator. The header has been consumed already.
+    private void skipObjectBody() throws E {
+        addSkippedObject();
+        int c;
+        while ((c = needToken()) != OBJECT_TERMINATOR) {
+            if (c != PARENT_SEPARATOR) {
+                pushback(c);
+                skipElement();
+            }
+        }
+    }
+
     // reads a single element
     @Override
     public Object readElement(ObjectReference di) throws E {
@@ -0,0 +1,115 @@
+package de.jpaw.bonaparte.core;
+
+import java.nio.ByteBuffer;
+import java.util.function.Consumer;
+
+/** Base class of push based decoders, which accept the serialized form of a stream of records in arbitrary chunks, as received from the network.
+ *
+ * Incoming bytes are appended to an internal buffer. A resumable scanner, implemented by the subclasses, determines the end of the next top level record,
+ * continuing where the previous chunk ended. Every record is decoded as soon as all of its bytes have been received and passed to the consumer,
+ * therefore decoding overlaps with receiving, and only the incomplete record at the end of the input is buffered.
+ * The bytes of decoded records are discarded, the buffer is reused.
+ *
+ * The decoder keeps the state of the stream (backreferences, class dictionary, string table) across records, like a parser which reads the whole stream.
+ * After an exception, the position in the stream is undefined, and the decoder must be reset before it is used again.
+ *
+ * Instances are not thread safe.
+ */
+public abstract class AbstractIncrementalDecoder {
+    protected static final int DEFAULT_BUFFER_SIZE = 8192;
+    private static final int MAX_RETAINED_CAPACITY = 65536;     // do not keep huge buffers after exceptionally big records
+
+    protected byte [] buffer;
+    protected int begin = 0;                // index of the first byte which does not belong to a decoded record
+    protected int limit = 0;                // index after the last byte received
+    protected int recordEnd = 0;            // set by scan(): the index after the last byte of the complete record starting at begin
+    private int bytesNeeded = 1;
+
+    protected AbstractIncrementalDecoder(int initialBufferSize) {
+        buffer = new byte [initialBufferSize];
+    }
+
+    /** Scans the received data, continuing where the previous call stopped.
+     * Returns 0 if a complete record is found, in which case the record starts at begin and ends at recordEnd,
+     * or the minimum number of further bytes which are required to continue. Framing bytes outside of records may be consumed by advancing begin. */
+    protected abstract int scan() throws MessageParserException;
+
+    /** Decodes the record from begin to recordEnd, and resets the scanner for the next record. */
+    protected abstract BonaPortable decode() throws MessageParserException;
+
+    /** Resets the state of the stream in the parser. */
+    protected abstract void resetStream();
+
+    /** Adds the next chunk of data. All records which have been completed by this chunk are passed to the consumer, in order.
+     * Returns the number of records passed to the consumer. */
+    public int feed(byte [] chunk, int offset, int length, Consumer<? super BonaPortable> consumer) throws MessageParserException {
+        makeRoom(length);
+        System.arraycopy(chunk, offset, buffer, limit, length);
+        limit += length;
+        return decodeAvailable(consumer);
+    }
+
+    /** Adds the next chunk of data, all remaining bytes of the buffer are consumed. Returns the number of records passed to the consumer. */
+    public int feed(ByteBuffer chunk, Consumer<? super BonaPortable> consumer) throws MessageParserException {
+        final int length = chunk.remaining();
+        makeRoom(length);
+        chunk.get(buffer, limit, length);
+        limit += length;
+        return decodeAvailable(consumer);
+    }
+
+    /** Returns the minimum number of bytes which must be received before the next record can be completed. Useful to size the next read. */
+    public int bytesNeeded() {
+        return bytesNeeded;
+    }
+
+    /** Returns true if the bytes of an incomplete record have been received, i.e. the input did not end at a record boundary. */
+    public boolean hasPartialRecord() {
+        return limit > begin;
+    }
+
+    /** Returns the number of buffered bytes of the incomplete record. */
+    public int getBufferedLength() {
+        return limit - begin;
+    }
+
+    /** Discards all buffered data and the state of the stream, for a new connection or after an exception. */
+    public void reset() {
+        if (buffer.length > MAX_RETAINED_CAPACITY)
+            buffer = new byte [DEFAULT_BUFFER_SIZE];
+        begin = 0;
+        limit = 0;
+        recordEnd = 0;
+        bytesNeeded = 1;
+        resetStream();
+    }
+
+    private int decodeAvailable(Consumer<? super BonaPortable> consumer) throws MessageParserException {
+        int count = 0;
+        int needed;
+        while ((needed = scan()) == 0) {
+            final BonaPortable record = decode();
+            begin = recordEnd;
+            consumer.accept(record);
+            ++count;
+        }
+        bytesNeeded = needed;
+        return count;
+    }
+
+    // ensures that length more bytes fit into the buffer. The scanners keep their position relative to begin, therefore the data can be moved.
+    private void makeRoom(int length) {
+        if (limit + length <= buffer.length)
+            return;
+        final int buffered = limit - begin;
+        if (buffered + length <= buffer.length / 2) {
+            System.arraycopy(buffer, begin, buffer, 0, buffered);
+        } else {
+            final byte [] newBuffer = new byte [Math.max(buffer.length * 2, buffered + length)];
+            System.arraycopy(buffer, begin, newBuffer, 0, buffered);
+            buffer = newBuffer;
+        }
+        begin = 0;
+        limit = buffered;
+    }
+}
@@ -22,8 +22,6 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -42,6 +40,7 @@ import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
 import de.jpaw.bonaparte.util.DayTime;
 import de.jpaw.bonaparte.util.FixASCII;
+import de.jpaw.bonaparte.util.ObjectIndexMap;
 import de.jpaw.enums.XEnum;
 import de.jpaw.fixedpoint.FixedPointBase;
 import de.jpaw.json.JsonEscaper;
@@ -67,7 +66,7 @@ import de.jpaw.util.ByteBuilder;
 public class AppendableComposer extends AbstractMessageComposer<IOException> implements StringBuilderConstants {
     //private static final Logger LOGGER = LoggerFactory.getLogger(ByteArrayComposer.class);
     private final boolean useCache;
-    private final Map<BonaCustom,Integer> objectCache;
+    private final ObjectIndexMap objectCache;
     private int numberOfObjectsSerialized;
     private int numberOfObjectReuses;
     // variables set by constructor
@@ -82,11 +81,11 @@ public class AppendableComposer extends AbstractMessageComposer<IOException> imp
     public AppendableComposer(Appendable work, ObjectReuseStrategy reuseStrategy) {
         switch (reuseStrategy) {
         case BY_CONTENTS:
-            this.objectCache = new HashMap<BonaCustom, Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, true);
             this.useCache = true;
             break;
         case BY_REFERENCE:
-            this.objectCache = new IdentityHashMap<BonaCustom, Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, false);
             this.useCache = true;
             break;
         default:
@@ -468,16 +467,16 @@ public class AppendableComposer extends AbstractMessageComposer<IOException> imp
             writeNull();
         } else {
             if (useCache) {
-                Integer previousIndex = objectCache.get(obj);
-                if (previousIndex != null) {
+                final int previousIndex = objectCache.get(obj);
+                if (previousIndex != ObjectIndexMap.NOT_FOUND) {
                     // reuse this instance
                     work.append(OBJECT_AGAIN);
-                    addField(StaticMeta.INTERNAL_INTEGER, numberOfObjectsSerialized - previousIndex.intValue() - 1);  // 0 is same object as previous, 1 = the one before etc...
+                    addField(StaticMeta.INTERNAL_INTEGER, numberOfObjectsSerialized - previousIndex - 1);  // 0 is same object as previous, 1 = the one before etc...
                     ++numberOfObjectReuses;
                     return;
                 }
                 // add the new object to the cache of known objects. This is done despite we are not yet done with the object!
-                objectCache.put(obj, Integer.valueOf(numberOfObjectsSerialized++));
+                objectCache.put(obj, numberOfObjectsSerialized++);
                 // fall through
             }
             // start a new object
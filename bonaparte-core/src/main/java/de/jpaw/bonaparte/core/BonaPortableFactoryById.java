@@ -1,5 +1,6 @@
 package de.jpaw.bonaparte.core;
 
+import java.util.Arrays;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.slf4j.Logger;
@@ -7,6 +8,13 @@ import org.slf4j.LoggerFactory;
 
 import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
 
+/** Registry of BonaPortable classes by factoryId and classId.
+ *
+ * Lookups are performed on the parser hot path (once per object parsed by ID), and should not allocate.
+ * Therefore, for small IDs, the classes are stored in a table of dense arrays (one per factoryId, indexed by classId).
+ * Registrations are rare, they replace the affected arrays (copy on write), which allows lookups without any locking.
+ * Classes with IDs outside the dense range are stored in a map as before.
+ */
 public class BonaPortableFactoryById {
     private static final Logger LOG = LoggerFactory.getLogger(BonaPortableFactoryById.class);
 
@@ -19,15 +27,32 @@ public class BonaPortableFactoryById {
     public static void init() {
     }
 
-    // the big factory lookup map
-    private static ConcurrentHashMap<Long,BonaPortableClass<?>> lookup = new ConcurrentHashMap<Long,BonaPortableClass<?>>(2048);
+    /** IDs below these limits are stored in the dense arrays. */
+    public static final int MAX_DENSE_FACTORY_ID = 1024;
+    public static final int MAX_DENSE_CLASS_ID = 65536;
+
+    // the dense lookup table. The outer array is replaced when a new factoryId is registered, an inner array when a class is added to it.
+    private static volatile BonaPortableClass<?> [][] denseLookup = new BonaPortableClass<?> [0][];
+
+    // the fallback for big IDs
+    private static final ConcurrentHashMap<Long,BonaPortableClass<?>> lookup = new ConcurrentHashMap<Long,BonaPortableClass<?>>(64);
 
     /** Adds a new class to the registry. Returns true if the class has been accepted and was not known before. */
     public static boolean registerClass(BonaPortableClass<?> bclass) {
         if (bclass.getMetaData().getIsAbstract() || bclass.getFactoryId() == 0 || bclass.getId() == 0)
             return false;  // not relevant
-        Long id = keyByIds(bclass.getFactoryId(), bclass.getId());
-        BonaPortableClass<?> existing = lookup.putIfAbsent(id, bclass);
+        final int factoryId = bclass.getFactoryId();
+        final int classId = bclass.getId();
+        BonaPortableClass<?> existing;
+        if (isDense(factoryId, classId)) {
+            synchronized (BonaPortableFactoryById.class) {
+                existing = getByIds(factoryId, classId);
+                if (existing == null)
+                    putDense(factoryId, classId, bclass);
+            }
+        } else {
+            existing = lookup.putIfAbsent(keyByIds(factoryId, classId), bclass);
+        }
         if (existing != null) {
             // might at least issue a warning...
             if (existing != bclass) {
@@ -40,9 +65,36 @@ public class BonaPortableFactoryById {
         return true;
     }
 
+    private static boolean isDense(int factoryId, int classId) {
+        return factoryId > 0 && factoryId < MAX_DENSE_FACTORY_ID && classId > 0 && classId < MAX_DENSE_CLASS_ID;
+    }
+
+    // must be called while holding the class lock. Creates new arrays and publishes them via the volatile field.
+    private static void putDense(int factoryId, int classId, BonaPortableClass<?> bclass) {
+        final BonaPortableClass<?> [][] oldTable = denseLookup;
+        final BonaPortableClass<?> [][] newTable = factoryId < oldTable.length ? oldTable.clone() : Arrays.copyOf(oldTable, factoryId + 1);
+        final BonaPortableClass<?> [] oldClasses = newTable[factoryId];
+        final BonaPortableClass<?> [] newClasses;
+        if (oldClasses == null) {
+            newClasses = new BonaPortableClass<?> [classId + 1];
+        } else if (classId < oldClasses.length) {
+            newClasses = oldClasses.clone();
+        } else {
+            newClasses = Arrays.copyOf(oldClasses, classId + 1);
+        }
+        newClasses[classId] = bclass;
+        newTable[factoryId] = newClasses;
+        denseLookup = newTable;
+    }
+
     /** Composes the factoryId and the classId into a single Long, which is used as a key. */
     public static Long keyByIds(int factoryId, int classId) {
-        return Long.valueOf((((long)factoryId) << 32) | classId);
+        return Long.valueOf(primitiveKeyByIds(factoryId, classId));
+    }
+
+    /** Composes the factoryId and the classId into a single long, without boxing. */
+    public static long primitiveKeyByIds(int factoryId, int classId) {
+        return (((long)factoryId) << 32) | classId;
     }
 
     /** Returns the factory Id portion of a composed long value. */
@@ -57,11 +109,21 @@ public class BonaPortableFactoryById {
 
     /** Returns the BClass for the baked key. */
     public static BonaPortableClass<?> getByKey(Long key) {
-        return lookup.get(key);
+        final long k = key.longValue();
+        final int factoryId = factoryIdByKey(k);
+        final int classId = classIdByKey(k);
+        return isDense(factoryId, classId) ? getByIds(factoryId, classId) : lookup.get(key);
     }
 
-    /** Returns the BClass for the ids. */
+    /** Returns the BClass for the ids, or null if no class has been registered for them. Does not allocate for IDs in the dense range. */
     public static BonaPortableClass<?> getByIds(int factoryId, int classId) {
-        return getByKey(keyByIds(factoryId, classId));
+        if (isDense(factoryId, classId)) {
+            final BonaPortableClass<?> [][] table = denseLookup;
+            if (factoryId >= table.length)
+                return null;
+            final BonaPortableClass<?> [] classes = table[factoryId];
+            return classes == null || classId >= classes.length ? null : classes[classId];
+        }
+        return lookup.get(keyByIds(factoryId, classId));
     }
 }
@@ -16,6 +16,7 @@
 package de.jpaw.bonaparte.core;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.nio.charset.Charset;
@@ -23,8 +24,6 @@ import java.time.Instant;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
-import java.util.HashMap;
-import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -44,8 +43,12 @@ import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
+import de.jpaw.bonaparte.util.BufferSizeHints;
 import de.jpaw.bonaparte.util.DayTime;
 import de.jpaw.bonaparte.util.FixASCII;
+import de.jpaw.bonaparte.util.Latin1Tools;
+import de.jpaw.bonaparte.util.ObjectIndexMap;
+import de.jpaw.bonaparte.util.SerializedFormCache;
 import de.jpaw.enums.XEnum;
 import de.jpaw.fixedpoint.FixedPointBase;
 import de.jpaw.util.Base64;
@@ -61,9 +64,12 @@ import de.jpaw.util.ByteBuilder;
 public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException> implements BufferedMessageComposer<RuntimeException>, ByteArrayConstants {
     private static final Logger LOGGER = LoggerFactory.getLogger(ByteArrayComposer.class);
     private final boolean useCache;
-    private final Map<BonaCustom,Integer> objectCache;
+    private final ObjectIndexMap objectCache;
     private int numberOfObjectsSerialized;
     private int numberOfObjectReuses;
+    private boolean backreferencesWithinRecord = false;  // if true, backreferences do not span records (the parser must use the same setting)
+    private SerializedFormCache serializedFormCache = null;
+    private int minReferencedObject = Integer.MAX_VALUE;    // lowest index referenced by a backreference since the start of the current frozen object
 
     // variables for serialization
     private ByteBuilder work;
@@ -72,8 +78,9 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
     public static byte [] marshal(ObjectReference di, BonaPortable x) {
         if (x == null)
             return null;
-        ByteArrayComposer bac = new ByteArrayComposer();
+        ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.defaultStrategy, BufferSizeHints.BONAPARTE.getHint(x));
         bac.addField(di, x);
+        BufferSizeHints.BONAPARTE.record(x, bac.getLength());
         return bac.getBytes();
     }
 
@@ -81,8 +88,9 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
     public static ByteArray marshalAsByteArray(ObjectReference di, BonaPortable x) {
         if (x == null)
             return null; // consistent with the other methods: f(null) = null  //  ByteArray.ZERO_BYTE_ARRAY;
-        ByteArrayComposer bac = new ByteArrayComposer();
+        ByteArrayComposer bac = new ByteArrayComposer(ObjectReuseStrategy.defaultStrategy, BufferSizeHints.BONAPARTE.getHint(x));
         bac.addField(di, x);
+        BufferSizeHints.BONAPARTE.record(x, bac.getLength());
         return new ByteArray(bac.getBuffer(), 0, bac.getLength());
     }
 
@@ -93,13 +101,18 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
 
     /** Creates a new ByteArrayComposer, using this classes static default Charset **/
     public ByteArrayComposer(ObjectReuseStrategy reuseStrategy) {
+        this(reuseStrategy, 0);
+    }
+
+    /** Creates a new ByteArrayComposer with an initial buffer size, for example obtained from BufferSizeHints. **/
+    public ByteArrayComposer(ObjectReuseStrategy reuseStrategy, int initialBufferSize) {
         switch (reuseStrategy) {
         case BY_CONTENTS:
-            this.objectCache = new HashMap<BonaCustom,Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, true);
             this.useCache = true;
             break;
         case BY_REFERENCE:
-            this.objectCache = new IdentityHashMap<BonaCustom,Integer>(250);
+            this.objectCache = new ObjectIndexMap(250, false);
             this.useCache = true;
             break;
         default:
@@ -107,7 +120,7 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
             this.useCache = false;
             break;
         }
-        this.work = new ByteBuilder(0, getDefaultCharset());
+        this.work = new ByteBuilder(initialBufferSize, getDefaultCharset());
         numberOfObjectsSerialized = 0;
         numberOfObjectReuses = 0;
     }
@@ -116,6 +129,16 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
         return numberOfObjectsSerialized;
     }
 
+    public SerializedFormCache getSerializedFormCache() {
+        return serializedFormCache;
+    }
+
+    /** Sets a cache for the serialized form of frozen objects (null to disable, which is the default).
+     * The cache must only be shared with composers of the same configuration. */
+    public void setSerializedFormCache(SerializedFormCache serializedFormCache) {
+        this.serializedFormCache = serializedFormCache;
+    }
+
     @Override
     public void setCharset(Charset charset) {
         super.setCharset(charset);
@@ -133,6 +156,21 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
             objectCache.clear();
     }
 
+    /** Returns the number of objects which can be referenced by backreferences. */
+    public int getCacheSize() {
+        return useCache ? objectCache.size() : 0;
+    }
+
+    public boolean getBackreferencesWithinRecord() {
+        return backreferencesWithinRecord;
+    }
+
+    /** Limits backreferences to the current record, the parser must use the same setting. The object cache is cleared at the start of every record,
+     * therefore the memory used by a transmission written record by record (see flushTo()) does not grow. */
+    public void setBackreferencesWithinRecord(boolean backreferencesWithinRecord) {
+        this.backreferencesWithinRecord = backreferencesWithinRecord;
+    }
+
     /** Returns the number of bytes written. */
     @Override
     public int getLength() {    // obtain the number of written bytes (composer)
@@ -155,6 +193,14 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
         return work.getBytes();  // slow!
     }
 
+    /** Writes the bytes composed so far to the stream and discards them from the buffer. Other than reset(), the backreferences remain valid,
+     * therefore a transmission of any size can be written record by record, with constant buffer memory.
+     * The object cache still grows with every written object, unless backreferences are limited to records (see setBackreferencesWithinRecord()). */
+    public void flushTo(OutputStream os) throws IOException {
+        os.write(work.getCurrentBuffer(), 0, work.length());
+        work.setLength(0);
+    }
+
     /** allows to add raw data to the produced byte array. Use this for protocol support at beginning or end of a message */
     public void addRawData(byte [] data) {
         work.write(data);
@@ -214,6 +260,11 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
 
     @Override
     public void startRecord() {
+        if (backreferencesWithinRecord) {
+            numberOfObjectsSerialized = 0;
+            if (useCache)
+                objectCache.clear();
+        }
         work.append(RECORD_BEGIN);
         writeNull();  // blank version number
     }
@@ -239,6 +290,15 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
     }
 
     protected void unicodeOut(String s) {
+        if (s.length() > 16) {
+            // bulk path for printable ASCII, which needs neither escaping nor encoding
+            final byte [] latin1 = Latin1Tools.toLatin1(s);
+            if (latin1 != null && Latin1Tools.indexOfNonPrintableAscii(latin1, 0, latin1.length) == latin1.length) {
+                work.write(latin1);
+                terminateField();
+                return;
+            }
+        }
         // take care not to break multi-Sequences
         for (int i = 0; i < s.length();) {
             int c = s.codePointAt(i);
@@ -521,19 +581,25 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
             writeNull();
         } else {
             if (useCache) {
-                Integer previousIndex = objectCache.get(obj);
-                if (previousIndex != null) {
+                final int previousIndex = objectCache.get(obj);
+                if (previousIndex != ObjectIndexMap.NOT_FOUND) {
                     // reuse this instance
                     work.append(OBJECT_AGAIN);
-                    addField(StaticMeta.INTERNAL_INTEGER, numberOfObjectsSerialized - previousIndex.intValue() - 1);  // 0 is same object as previous, 1 = the one before etc...
+                    addField(StaticMeta.INTERNAL_INTEGER, numberOfObjectsSerialized - previousIndex - 1);  // 0 is same object as previous, 1 = the one before etc...
                     ++numberOfObjectReuses;
+                    if (previousIndex < minReferencedObject)
+                        minReferencedObject = previousIndex;
                     notifyReuse(previousIndex);
                     return;
                 }
                 // add the new object to the cache of known objects
-                objectCache.put(obj, Integer.valueOf(numberOfObjectsSerialized++));
+                objectCache.put(obj, numberOfObjectsSerialized++);
                 // fall through
             }
+            if (serializedFormCache != null && obj instanceof BonaPortable bp && bp.was$Frozen()) {
+                addFrozenObject(di, bp);
+                return;
+            }
             // start a new object
             startObject(di, obj);
 
@@ -545,6 +611,30 @@ public class ByteArrayComposer extends AbstractMessageComposer<RuntimeException>
         }
     }
 
+    // serializes a frozen object, which has been registered in the object reuse cache already, via the SerializedFormCache
+    private void addFrozenObject(ObjectReference di, BonaPortable obj) {
+        final SerializedFormCache.Entry cached = serializedFormCache.get(obj, di);
+        if (cached != null && (!useCache || cached.getNumberOfNestedObjects() != SerializedFormCache.UNKNOWN)) {
+            work.write(cached.getBytes());
+            if (useCache)
+                numberOfObjectsSerialized += cached.getNumberOfNestedObjects();
+            return;
+        }
+        final int objectIndex = numberOfObjectsSerialized - 1;
+        final int start = work.length();
+        final int outerMinReferencedObject = minReferencedObject;
+        minReferencedObject = Integer.MAX_VALUE;
+        startObject(di, obj);
+        obj.serializeSub(this);
+        terminateObject(di, obj);
+        if (!useCache)
+            serializedFormCache.put(obj, di, work.getCurrentBuffer(), start, work.length(), SerializedFormCache.UNKNOWN);
+        else if (minReferencedObject >= objectIndex)  // no backreference to objects outside of this one
+            serializedFormCache.put(obj, di, work.getCurrentBuffer(), start, work.length(), numberOfObjectsSerialized - objectIndex - 1);
+        if (outerMinReferencedObject < minReferencedObject)
+            minReferencedObject = outerMinReferencedObject;
+    }
+
     // enum with numeric expansion: delegate to Null/Int
     @Override
     public void addEnum(EnumDataItem di, BasicNumericElementaryDataItem ord, BonaNonTokenizableEnum n) {
@@ -0,0 +1,73 @@
+package de.jpaw.bonaparte.core;
+
+import de.jpaw.bonaparte.util.Latin1Tools;
+
+/** Push based decoder for a stream of records in the Bonaparte byte format, as written by the ByteArrayComposer.
+ *
+ * Control characters within fields are escaped by the composer, therefore every record ends at the first RECORD_TERMINATOR.
+ * The scanner searches for it in the newly received bytes only. Records can be sent individually or as part of transmissions,
+ * the transmission begin and terminator characters between records are skipped.
+ * Complete records are decoded by a ByteArrayParser, which keeps the backreferences of the stream.
+ */
+public class ByteArrayIncrementalDecoder extends AbstractIncrementalDecoder implements ByteArrayConstants {
+    private final ByteArrayParser parser = new ByteArrayParser(new byte [0], 0, 0);
+    private int scanned = 0;                // number of bytes of the current record which do not contain the terminator, relative to begin
+
+    public ByteArrayIncrementalDecoder() {
+        super(DEFAULT_BUFFER_SIZE);
+    }
+
+    public ByteArrayIncrementalDecoder(int initialBufferSize) {
+        super(initialBufferSize);
+    }
+
+    /** Provides access to the parser, for example to change the handling of extra fields. */
+    public ByteArrayParser getParser() {
+        return parser;
+    }
+
+    @Override
+    protected void resetStream() {
+        scanned = 0;
+        parser.setSource(buffer, 0, 0);      // clears the backreferences
+    }
+
+    @Override
+    protected BonaPortable decode() throws MessageParserException {
+        scanned = 0;
+        parser.continueWith(buffer, begin, recordEnd - begin);
+        return parser.readRecord();
+    }
+
+    @Override
+    protected int scan() throws MessageParserException {
+        if (scanned == 0) {
+            // skip the framing of transmissions
+            while (begin < limit) {
+                final byte c = buffer[begin];
+                if (c == TRANSMISSION_TERMINATOR || c == TRANSMISSION_TERMINATOR2) {
+                    ++begin;
+                } else if (c == TRANSMISSION_BEGIN) {
+                    if (begin + 2 > limit)
+                        return 1;
+                    if (buffer[begin + 1] != NULL_FIELD)
+                        throw new MessageParserException(MessageParserException.BAD_TRANSMISSION_START,
+                          String.format("(got 0x%02x as version)", (int)buffer[begin + 1]), begin + 1, "(scanning)");
+                    begin += 2;
+                } else {
+                    break;
+                }
+            }
+            if (begin >= limit)
+                return 1;
+        }
+        final int start = begin + scanned;
+        final int terminator = Latin1Tools.indexOf(buffer, start, limit - start, RECORD_TERMINATOR);
+        if (terminator < 0) {
+            scanned = limit - begin;
+            return 1;
+        }
+        recordEnd = terminator + 1;
+        return 0;
+    }
+}
@@ -40,6 +40,7 @@ import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
 import de.jpaw.bonaparte.pojos.meta.XEnumDefinition;
+import de.jpaw.bonaparte.util.Latin1Tools;
 import de.jpaw.enums.AbstractXEnumBase;
 import de.jpaw.enums.XEnumFactory;
 import de.jpaw.fixedpoint.FixedPointBase;
@@ -57,7 +58,7 @@ import de.jpaw.util.ByteTestsASCII;
  *          Implementation of the MessageParser, using byte arrays.
  */
 
-public class ByteArrayParser extends AbstractMessageParser<MessageParserException> implements MessageParser<MessageParserException>, ByteArrayConstants {
+public class ByteArrayParser extends AbstractMessageParser<MessageParserException> implements MessageParser<MessageParserException>, RecordSource<MessageParserException>, ByteArrayConstants {
     private static final Logger LOGGER = LoggerFactory.getLogger(ByteArrayParser.class);
     private int parseIndex;
     private int messageLength;
@@ -67,6 +68,8 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     private final boolean compatibility179;
     private static final boolean DEFAULT_COMPATIBILITY179 = true;
     private List<BonaPortable> objects;
+    private boolean inTransmission = false;     // set by readNextRecord() after the transmission header has been consumed
+    private boolean backreferencesWithinRecord = false;   // if true, backreferences do not span records (the writer must use the same setting)
 
     protected final StringParserUtil stringParser = new StringParserUtil(new ParsePositionProvider() {
 
@@ -81,6 +84,13 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         }
     });
 
+    // accumulates numeric fields, in order to avoid intermediate Strings
+    private final NumericToken numeric = new NumericToken(stringParser) {
+        @Override
+        protected String text() {
+            return Latin1Tools.fromLatin1(inputdata, start, end - start);
+        }
+    };
 
     /** Quick conversion utility method, for use by code generators. (null safe) */
     public static <T extends BonaPortable> T unmarshal(byte [] x, ObjectReference di, Class<T> expectedClass) throws MessageParserException {
@@ -94,6 +104,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         inputdata = src;
         parseIndex = offset;
         messageLength = length;
+        inTransmission = false;
         if (useCache)
             objects.clear();
     }
@@ -103,10 +114,34 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         inputdata = src;
         parseIndex = 0;
         messageLength = src.length;
+        inTransmission = false;
         if (useCache)
             objects.clear();
     }
 
+    /** Returns the number of objects which can be referenced by backreferences. */
+    public int getCacheSize() {
+        return useCache ? objects.size() : 0;
+    }
+
+    public boolean getBackreferencesWithinRecord() {
+        return backreferencesWithinRecord;
+    }
+
+    /** Limits backreferences to the current record, which must match the setting of the composer which wrote the data.
+     * The parsed objects are forgotten at the start of every record, therefore the memory used by a transmission read record by record does not grow. */
+    public void setBackreferencesWithinRecord(boolean backreferencesWithinRecord) {
+        this.backreferencesWithinRecord = backreferencesWithinRecord;
+    }
+
+    /** Assigns the next part of the same stream to subsequent parsing operations. Other than setSource(), the backreferences remain valid.
+     * Used by the ByteArrayIncrementalDecoder. */
+    public final void continueWith(byte [] src, int offset, int length) {
+        inputdata = src;
+        parseIndex = offset;
+        messageLength = offset + length;
+    }
+
     /** Create a processor for parsing a buffer. */
     public ByteArrayParser(byte [] buffer, int offset, int length, boolean compatibility179) {
         inputdata = buffer;
@@ -163,7 +198,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     }
     protected int readInteger(String fieldname) throws MessageParserException {
         checkForNull(fieldname, true);
-        return Integer.parseInt(nextIndexParseAscii(fieldname, false, false, false));
+        return nextIndexParseNumeric(fieldname, false, false, false).intValue();
     }
 
     // check for Null called for field members inside a class
@@ -212,10 +247,14 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     }
 
     private String nextIndexParseAscii(String fieldname, boolean allowSign, boolean allowDecimalPoint, boolean allowExponent) throws MessageParserException {
+        return nextIndexParseNumeric(fieldname, allowSign, allowDecimalPoint, allowExponent).text();
+    }
+
+    // scans a numeric field including its terminator, without creating objects. The value is evaluated by the returned token.
+    private NumericToken nextIndexParseNumeric(String fieldname, boolean allowSign, boolean allowDecimalPoint, boolean allowExponent) throws MessageParserException {
         final int BUFFER_SIZE = 40;
         boolean allowSignNextIteration = false;
         boolean gotAnyDigit = false;
-        StringBuilder tmp = new StringBuilder(BUFFER_SIZE);
 
         // skipBlanks: does not hurt!
         skipLeadingSpaces();
@@ -224,14 +263,17 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
             ++parseIndex;
             allowSign = false;
         }
+        final int start = parseIndex;
+        numeric.start(start);
         while (parseIndex < messageLength) {
             byte c = inputdata[parseIndex];
             if (c == FIELD_TERMINATOR) {
                 if (!gotAnyDigit) {
                     throw new MessageParserException(MessageParserException.NO_DIGITS_FOUND, fieldname, parseIndex, currentClass);
                 }
+                numeric.end(parseIndex);
                 ++parseIndex;  // eat it!
-                return tmp.toString();
+                return numeric;
             }
 
             if (c == MINUS_SIGN) {
@@ -258,10 +300,10 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
             } else {
                 throw new MessageParserException(MessageParserException.ILLEGAL_CHAR_NOT_NUMERIC, fieldname, parseIndex, currentClass);
             }
-            if (tmp.length() >= BUFFER_SIZE) {
+            if (parseIndex - start >= BUFFER_SIZE) {
                 throw new MessageParserException(MessageParserException.NUMERIC_TOO_LONG, fieldname, parseIndex, currentClass);
             }
-            tmp.appendCodePoint(c);
+            numeric.append(c);
             ++parseIndex;
             allowSign = allowSignNextIteration;
             allowSignNextIteration = false;
@@ -279,7 +321,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     // readString does the job for Unicode as well as ASCII
     @Override
     public String readString(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true);
+        return canonical(di, readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true));
     }
 
     // readString does the job for Unicode as well as ASCII, but only used for Unicode (have an optimized version for ASCII)
@@ -296,6 +338,18 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         int currentIndex = parseIndex;
         int lastNonBlank = parseIndex-1;
         while (currentIndex < messageLength) {
+            // skip runs of printable ASCII in bulk, they need neither escape processing nor validation
+            final int runEnd = Latin1Tools.indexOfNonPrintableAscii(inputdata, currentIndex, messageLength - currentIndex);
+            if (runEnd > currentIndex) {
+                int k = runEnd - 1;
+                while (k >= currentIndex && inputdata[k] == ' ')
+                    --k;
+                if (k >= currentIndex)
+                    lastNonBlank = k;
+                currentIndex = runEnd;
+                if (currentIndex >= messageLength)
+                    break;
+            }
             byte b = inputdata[currentIndex];
             if (b == FIELD_TERMINATOR) {
                 // regular end of string
@@ -369,7 +423,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     // specialized version without charset conversion
     @Override
     public String readAscii(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readAscii(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate());
+        return canonical(di, readAscii(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate()));
     }
 
     protected String readAscii(String fieldname, boolean isRequired, int length, boolean doTrim, boolean doTruncate) throws MessageParserException {
@@ -380,6 +434,32 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
             // skip leading spaces
             skipLeadingSpaces();
         }
+        // fast path: printable ASCII up to the field terminator can be converted in bulk
+        final int end = Latin1Tools.indexOfNonPrintableAscii(inputdata, parseIndex, messageLength - parseIndex);
+        if (end < messageLength && inputdata[end] == FIELD_TERMINATOR) {
+            int resultEnd = end;
+            if (doTrim) {
+                while (resultEnd > parseIndex && inputdata[resultEnd - 1] == ' ')
+                    --resultEnd;
+            }
+            final int resultLength = resultEnd - parseIndex;
+            if (resultLength == 0) {
+                parseIndex = end + 1;
+                return EMPTY_STRING;
+            }
+            String result = Latin1Tools.fromLatin1(inputdata, parseIndex, resultLength);
+            parseIndex = end + 1;
+            if ((length > 0) && (resultLength > length)) {
+                if (doTruncate) {
+                    result = result.substring(0, length);
+                } else {
+                    throw new MessageParserException(MessageParserException.STRING_TOO_LONG,
+                            String.format("(exceeds length %d for %s, got so far %s)", length, fieldname, result),
+                            parseIndex, currentClass);
+                }
+            }
+            return result;
+        }
         StringBuilder tmp = new StringBuilder(length);
         while (parseIndex < messageLength) {
             byte b = inputdata[parseIndex++];
@@ -506,7 +586,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readDayTime(di, nextIndexParseAscii(di.getName(), false, di.getFractionalSeconds() >= 0, false));
+        return nextIndexParseNumeric(di.getName(), false, di.getFractionalSeconds() >= 0, false).readDayTime(di);
     }
 
     @Override
@@ -514,7 +594,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readDay(di, nextIndexParseAscii(di.getName(), false, false, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, false, false).readDay(di);  // parse an unsigned numeric string without exponent
     }
 
     @Override
@@ -522,7 +602,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readTime(di, nextIndexParseAscii(di.getName(), false, di.getFractionalSeconds() > 0, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, di.getFractionalSeconds() > 0, false).readTime(di);  // parse an unsigned numeric string without exponent
     }
 
 
@@ -531,7 +611,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readInstant(di, nextIndexParseAscii(di.getName(), false, true, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, true, false).readInstant(di);  // parse an unsigned numeric string without exponent
     }
 
     @Override
@@ -591,6 +671,8 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
     @Override
     public BonaPortable readRecord() throws MessageParserException {
         BonaPortable result;
+        if (useCache && backreferencesWithinRecord)
+            objects.clear();
         skipOptionalBom();
         needToken(RECORD_BEGIN);
         needToken(NULL_FIELD); // version no
@@ -605,7 +687,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readByte(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Byte.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readByte(di));
     }
 
     @Override
@@ -613,7 +695,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readShort(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Short.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readShort(di));
     }
 
     @Override
@@ -621,7 +703,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readInteger(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Integer.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readInteger(di));
     }
 
     @Override
@@ -629,7 +711,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readLong(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Long.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readLong(di));
     }
 
     @Override
@@ -661,7 +743,7 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readBigDecimal(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), true, false));
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), true, false).readBigDecimal(di);
     }
 
     @Override
@@ -669,7 +751,32 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readFixedPoint(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), true, false), factory);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), true, false).readFixedPoint(di, factory);
+    }
+
+    // primitives are never null, therefore they do not need the boxed result of the methods above
+    @Override
+    public byte readPrimitiveByte(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readByte(di);
+    }
+
+    @Override
+    public short readPrimitiveShort(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readShort(di);
+    }
+
+    @Override
+    public int readPrimitiveInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readInteger(di);
+    }
+
+    @Override
+    public long readPrimitiveLong(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readLong(di);
     }
 
     @Override
@@ -801,12 +908,68 @@ public class ByteArrayParser extends AbstractMessageParser<MessageParserExceptio
         return results;
     }
 
+    /** Returns the records of a transmission one by one. A sequence of records without transmission envelope is accepted as well,
+     * in which case null is returned at the end of the input. */
+    @Override
+    public BonaPortable readNextRecord() throws MessageParserException {
+        if (parseIndex >= messageLength) {
+            if (inTransmission)
+                throw new MessageParserException(MessageParserException.PREMATURE_END, "(expected transmission terminator)", parseIndex, currentClass);
+            return null;
+        }
+        if (!inTransmission && inputdata[parseIndex] == TRANSMISSION_BEGIN) {
+            ++parseIndex;
+            needToken(NULL_FIELD);  // version
+            inTransmission = true;
+            return readNextRecord();
+        }
+        if (inTransmission && inputdata[parseIndex] == TRANSMISSION_TERMINATOR) {
+            ++parseIndex;
+            skipByte(TRANSMISSION_TERMINATOR2);
+            inTransmission = false;
+            return null;
+        }
+        return readRecord();
+    }
+
 
     @Override
     public UUID readUUID(MiscElementaryDataItem di) throws MessageParserException {
+        if (checkForNull(di)) {
+            return null;
+        }
+        final UUID uuid = readCanonicalUUID();
+        if (uuid != null)
+            return uuid;
         return stringParser.readUUID(di, readString(di.getName(), di.getIsRequired(), 36, false, false, false, false));
     }
 
+    // parses the canonical form of 36 characters (8-4-4-4-12 hex digits) directly. Returns null for anything else, without consuming input.
+    private UUID readCanonicalUUID() {
+        final int end = parseIndex + 36;
+        if (end >= messageLength || inputdata[end] != FIELD_TERMINATOR)
+            return null;
+        long msb = 0L;
+        long lsb = 0L;
+        for (int i = 0; i < 36; ++i) {
+            final int c = inputdata[parseIndex + i];
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-')
+                    return null;
+            } else {
+                final int digit = NumericToken.hexDigit(c);
+                if (digit < 0)
+                    return null;
+                if (i < 18)
+                    msb = (msb << 4) | digit;
+                else
+                    lsb = (lsb << 4) | digit;
+            }
+        }
+        parseIndex = end + 1;
+        return new UUID(msb, lsb);
+    }
+
 
     @Override
     public MessageParserException enumExceptionConverter(IllegalArgumentException e) {
@@ -0,0 +1,21 @@
+package de.jpaw.bonaparte.core;
+
+import java.nio.ByteBuffer;
+
+/** Provides the buffers for the CompactByteBufferComposer, initially and whenever the current buffer must grow.
+ * Implementations may return heap buffers, direct buffers, buffers taken from a pool, or buffers backed by a MemorySegment
+ * (via MemorySegment.asByteBuffer()). The byte order of the returned buffer is irrelevant, it will be set to big endian. */
+@FunctionalInterface
+public interface ByteBufferAllocator {
+    /** Allocates buffers on the Java heap. */
+    public static final ByteBufferAllocator HEAP = ByteBuffer::allocate;
+    /** Allocates direct (off heap) buffers, suitable for channel I/O without copying. */
+    public static final ByteBufferAllocator DIRECT = ByteBuffer::allocateDirect;
+
+    /** Returns a new buffer of at least the requested capacity, with position 0 and limit = capacity. */
+    ByteBuffer allocate(int minCapacity);
+
+    /** Called when a buffer has been replaced by a bigger one and is no longer used by the composer (allows to return it to a pool). */
+    default void release(ByteBuffer buffer) {
+    }
+}
@@ -1,12 +1,14 @@
 package de.jpaw.bonaparte.core;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.BufferSizeHints;
 import de.jpaw.fixedpoint.FixedPointBase;
 import de.jpaw.util.ByteArray;
 import de.jpaw.util.ByteBuilder;
@@ -23,15 +25,25 @@ import de.jpaw.util.ByteBuilder;
 public class CompactByteArrayComposer extends AbstractCompactComposer implements BufferedMessageComposer<IOException> {
 
     private static final int DEFAULT_BUFFER_SIZE = 8000;
+    private static final int MAX_COMPRESSION_HEADER_SIZE = 12;     // COMPRESSED token, format, 2 lengths of up to 5 bytes each
     protected final ByteBuilder out;
 
+    // optional compression of (sub) objects
+    private CompactCompressor compressor = null;
+    private int compressionThreshold = Integer.MAX_VALUE;
+    private boolean withinCompressedObject = false;
+    private byte [] compressionBuffer = null;
+    private long bytesBeforeCompression = 0L;
+    private long bytesAfterCompression = 0L;
+
 
     /** Quick conversion utility method, for use by code generators. (null safe).   Treats embedded JSONs differently than marshal().  */
     public static byte [] marshal(ObjectReference di, BonaPortable x, boolean useJsonForBonaCustomInElements) {
         if (x == null)
             return null;
-        final ByteBuilder b = new ByteBuilder();
+        final ByteBuilder b = new ByteBuilder(BufferSizeHints.COMPACT.getHint(x), getDefaultCharset());
         new CompactByteArrayComposer(b, ObjectReuseStrategy.defaultStrategy, false, useJsonForBonaCustomInElements).addField(di, x);
+        BufferSizeHints.COMPACT.record(x, b.length());
         return b.getBytes();
     }
 
@@ -44,8 +56,9 @@ public class CompactByteArrayComposer extends AbstractCompactComposer implements
     public static ByteArray marshalAsByteArray(ObjectReference di, BonaPortable x, boolean useJsonForBonaCustomInElements) {
         if (x == null)
             return null; // consistent with the other methods: f(null) = null  //  ByteArray.ZERO_BYTE_ARRAY;
-        ByteBuilder b = new ByteBuilder();
+        ByteBuilder b = new ByteBuilder(BufferSizeHints.COMPACT.getHint(x), getDefaultCharset());
         new CompactByteArrayComposer(b, ObjectReuseStrategy.defaultStrategy, false, useJsonForBonaCustomInElements).addField(di, x);
+        BufferSizeHints.COMPACT.record(x, b.length());
         return new ByteArray(b.getCurrentBuffer(), 0, b.length());
     }
     public static ByteArray marshalAsByteArray(ObjectReference di, BonaPortable x) {
@@ -139,6 +152,31 @@ public class CompactByteArrayComposer extends AbstractCompactComposer implements
         this.out = out;
     }
 
+    /** Enables compression of objects whose serialized form is at least threshold bytes long. Pass null as compressor to disable compression.
+     * Compression is performed for the outermost object which exceeds the threshold only, nested objects are compressed as part of it.
+     * Parsers must have the same compression format registered in {@link CompactCompressors}. */
+    public void setCompression(CompactCompressor compressor, int threshold) {
+        this.compressor = compressor;
+        this.compressionThreshold = threshold;
+    }
+
+    public CompactCompressor getCompressor() {
+        return compressor;
+    }
+
+    public int getCompressionThreshold() {
+        return compressionThreshold;
+    }
+
+    // for statistics: total size of the objects which have been compressed, before and after
+    public long getBytesBeforeCompression() {
+        return bytesBeforeCompression;
+    }
+
+    public long getBytesAfterCompression() {
+        return bytesAfterCompression;
+    }
+
     // must be overridden / called if caching / reuse is active!
     @Override
     public void reset() {
@@ -146,6 +184,14 @@ public class CompactByteArrayComposer extends AbstractCompactComposer implements
         out.setLength(0);
     }
 
+    /** Writes the bytes composed so far to the stream and discards them from the buffer. Other than reset(), the backreferences,
+     * the class dictionary and the string table remain valid, therefore a stream of any size can be written record by record, with constant buffer memory.
+     * The object cache still grows with every written object, unless backreferences are limited to records (see setBackreferencesWithinRecord()). */
+    public void flushTo(OutputStream os) throws IOException {
+        os.write(out.getCurrentBuffer(), 0, out.length());
+        out.setLength(0);
+    }
+
     public ByteBuilder getBuilder() {
         return out;
     }
@@ -179,13 +225,46 @@ public class CompactByteArrayComposer extends AbstractCompactComposer implements
     @Override
     public void addField(ObjectReference di, BonaCustom obj) {
         try {
-            super.addField(di, obj);
+            if (compressor == null || withinCompressedObject || obj == null) {
+                super.addField(di, obj);
+            } else {
+                final int start = out.length();
+                withinCompressedObject = true;
+                try {
+                    super.addField(di, obj);
+                } finally {
+                    withinCompressedObject = false;
+                }
+                compressFrom(start);
+            }
         } catch (IOException e) {
             // IOException from ByteArray operation???
             throw new RuntimeException(e);
         }
     }
 
+    /** Replaces the serialized data from start to the current end of the buffer by its compressed form,
+     * if it exceeds the threshold and compression yields a benefit. */
+    protected void compressFrom(int start) throws IOException {
+        final int length = out.length() - start;
+        if (length < compressionThreshold)
+            return;
+        final int maxCompressedLength = compressor.maxCompressedLength(length);
+        if (compressionBuffer == null || compressionBuffer.length < maxCompressedLength)
+            compressionBuffer = new byte [maxCompressedLength];
+        final int compressedLength = compressor.compress(out.getCurrentBuffer(), start, length, compressionBuffer, 0, maxCompressedLength);
+        if (compressedLength + MAX_COMPRESSION_HEADER_SIZE >= length)
+            return;   // not compressible, keep the original form
+        out.setLength(start);
+        out.writeByte(COMPRESSED);
+        intOut(compressor.getFormat());
+        intOut(length);
+        intOut(compressedLength);
+        out.write(compressionBuffer, 0, compressedLength);
+        bytesBeforeCompression += length;
+        bytesAfterCompression += out.length() - start;
+    }
+
     @Override
     public void writeRecord(BonaCustom o) {
         try {
@@ -23,6 +23,8 @@ import java.util.Map;
 import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
 import de.jpaw.bonaparte.pojos.meta.ObjectReference;
 import de.jpaw.bonaparte.util.BigDecimalTools;
+import de.jpaw.bonaparte.util.Latin1Tools;
+import de.jpaw.bonaparte.util.StringPool;
 import de.jpaw.util.ByteArray;
 
 /**
@@ -38,6 +40,9 @@ public class CompactByteArrayParser extends AbstractCompactParser<MessageParserE
     private int parseIndex;
     private int messageLength;
     private byte [] inputdata;
+    private byte [] savedInputdata = null;      // the enclosing input while decompressed data is parsed
+    private int savedMessageLength;
+    private int resumeIndex;
 
     /** Quick conversion utility method, for use by code generators. (null safe) */
     public static <T extends BonaPortable> T unmarshal(byte [] x, ObjectReference di, Class<T> expectedClass) throws MessageParserException {
@@ -80,6 +85,15 @@ public class CompactByteArrayParser extends AbstractCompactParser<MessageParserE
         inputdata = src;
         parseIndex = 0;
         messageLength = src.length;
+        clearCache();
+    }
+
+    /** Assigns the next part of the same stream to subsequent parsing operations. Other than setSource(), the backreferences,
+     * the class dictionary and the string table remain valid. Used by the CompactIncrementalDecoder. */
+    public final void continueWith(byte [] src, int offset, int length) {
+        inputdata = src;
+        parseIndex = offset;
+        messageLength = offset + length;
     }
 
     /** Create a processor for parsing a buffer. */
@@ -96,6 +110,11 @@ public class CompactByteArrayParser extends AbstractCompactParser<MessageParserE
         return parseIndex;
     }
 
+    /** Continues parsing at a position of the current source which has been obtained by getParseIndex() before. */
+    protected void rewind(int index) {
+        parseIndex = index;
+    }
+
     /**************************************************************************************************
      * Deserialization goes here. Code below does not use the ByteBuilder class,
      * but reads from the byte[] directly
@@ -224,16 +243,28 @@ public class CompactByteArrayParser extends AbstractCompactParser<MessageParserE
         return ByteArray.ZERO_BYTE_ARRAY;
     }
 
-    // faster implementation: expect that new String (char []) is faster than anything with charset encoder, because the loop in this code will be inline
+    // the Latin-1 decoder of the JDK is a plain copy into the compact string representation, without intermediate char []
     @Override
     protected String readISO(int len) throws MessageParserException {
         require(len);
-        char data [] = new char [len];
-        for (int i = 0; i < len; ++i)
-            data[i] = (char) (0xff & (char)inputdata[parseIndex++]);
-        return new String(data);
-//        byte data [] = readBytes(len);
-//        return new String(data, "ISO-8859-1");
+        final String result = Latin1Tools.fromLatin1(inputdata, parseIndex, len);
+        parseIndex += len;
+        return result;
+    }
+
+    // short ISO strings are looked up in the pool directly from the input data, a new String is created only if it is not yet pooled
+    @Override
+    protected String readPooledString(String fieldname, StringPool pool) throws MessageParserException {
+        final int c = needToken();
+        if (c > EMPTY_FIELD && c <= SHORT_ISO_STRING + 15) {
+            final int len = c - EMPTY_FIELD;
+            require(len);
+            final String s = pool.canonicalize(inputdata, parseIndex, len);
+            parseIndex += len;
+            return s;
+        }
+        pushback(c);
+        return super.readPooledString(fieldname, pool);
     }
 
     // read len characters
@@ -264,6 +295,42 @@ public class CompactByteArrayParser extends AbstractCompactParser<MessageParserE
     }
 
 
+    @Override
+    protected boolean isInCompressed() {
+        return savedInputdata != null;
+    }
+
+    @Override
+    protected byte [] decompressInput(CompactCompressor decompressor, int compressedLength, int uncompressedLength) throws MessageParserException {
+        require(compressedLength);
+        final byte [] uncompressed = new byte [uncompressedLength];
+        try {
+            decompressor.decompress(inputdata, parseIndex, compressedLength, uncompressed, 0, uncompressedLength);
+        } catch (RuntimeException e) {
+            throw newMPE(MessageParserException.CORRUPT_COMPRESSED, e.getMessage());
+        }
+        return uncompressed;
+    }
+
+    @Override
+    protected void switchToUncompressed(byte [] uncompressed, int compressedLength) {
+        // parse the decompressed data as if it was inline. The object cache is shared, therefore backreferences remain valid.
+        savedInputdata = inputdata;
+        savedMessageLength = messageLength;
+        resumeIndex = parseIndex + compressedLength;
+        inputdata = uncompressed;
+        parseIndex = 0;
+        messageLength = uncompressed.length;
+    }
+
+    @Override
+    protected void leaveCompressed() {
+        inputdata = savedInputdata;
+        messageLength = savedMessageLength;
+        parseIndex = resumeIndex;
+        savedInputdata = null;
+    }
+
     @Override
     protected void skipBytes(int howMany) throws MessageParserException {
         if (parseIndex + howMany >= messageLength) {
@@ -0,0 +1,258 @@
+package de.jpaw.bonaparte.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
+import java.util.Collection;
+
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+/**
+ * Composer for the compact format which writes into a java.nio.ByteBuffer (heap or direct).
+ * Allows to serialize directly into buffers used for socket or file channel I/O, without an intermediate byte array.
+ * If the current buffer is too small, a bigger one is obtained from the allocator and the data written so far is copied,
+ * therefore getBuffer() must be called after serialization to obtain the current buffer.
+ *
+ * Off heap memory segments can be used by an allocator which returns MemorySegment.asByteBuffer() views.
+ */
+public class CompactByteBufferComposer extends AbstractCompactComposer {
+    private static final int DEFAULT_BUFFER_SIZE = 8000;
+
+    private final Output buffer;
+
+    public CompactByteBufferComposer() {
+        this(ByteBufferAllocator.HEAP, DEFAULT_BUFFER_SIZE);
+    }
+
+    public CompactByteBufferComposer(ByteBufferAllocator allocator, int initialSize) {
+        this(new Output(allocator.allocate(initialSize), allocator), ObjectReuseStrategy.defaultStrategy, false, true);
+    }
+
+    /** Creates a composer which writes into the given buffer, starting at its current position. */
+    public CompactByteBufferComposer(ByteBuffer initialBuffer, ByteBufferAllocator allocator, ObjectReuseStrategy reuseStrategy, boolean recommendIdentifiable, boolean useJsonForBonaCustomInElements) {
+        this(new Output(initialBuffer, allocator), reuseStrategy, recommendIdentifiable, useJsonForBonaCustomInElements);
+    }
+
+    private CompactByteBufferComposer(Output buffer, ObjectReuseStrategy reuseStrategy, boolean recommendIdentifiable, boolean useJsonForBonaCustomInElements) {
+        super(buffer, reuseStrategy, recommendIdentifiable, useJsonForBonaCustomInElements);
+        this.buffer = buffer;
+    }
+
+    // must be overridden / called if caching / reuse is active!
+    @Override
+    public void reset() {
+        super.reset();
+        buffer.buff.clear();
+    }
+
+    /** Returns the current buffer. Its position is the end of the serialized data. */
+    public ByteBuffer getBuffer() {
+        return buffer.buff;
+    }
+
+    /** Returns the number of bytes written into the current buffer. */
+    public int getLength() {
+        return buffer.buff.position();
+    }
+
+    /** Returns a view of the serialized data, with position 0 and limit = length. Position and limit of the buffer itself are not changed. */
+    public ByteBuffer getContents() {
+        final ByteBuffer view = buffer.buff.duplicate();
+        view.flip();
+        return view;
+    }
+
+    /** Returns a copy of the serialized data. */
+    public byte [] getBytes() {
+        final byte [] result = new byte [buffer.buff.position()];
+        buffer.buff.get(0, result);
+        return result;
+    }
+
+    /** Writes the serialized data to a channel. */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        final ByteBuffer view = getContents();
+        while (view.hasRemaining())
+            channel.write(view);
+    }
+
+    // overwrite some methods in order to eat the checked IOException
+    @Override
+    public void close() {
+        try {
+            super.close();
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void addField(ObjectReference di, BonaCustom obj) {
+        try {
+            super.addField(di, obj);
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void writeRecord(BonaCustom o) {
+        try {
+            super.writeRecord(o);
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void writeObject(BonaCustom o) {
+        try {
+            super.writeObject(o);
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void writeTransmission(Iterable<? extends BonaCustom> coll) {
+        try {
+            super.writeTransmission(coll);
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public void writeTransmission(Collection<? extends BonaCustom> coll) {
+        try {
+            super.writeTransmission(coll);
+        } catch (IOException e) {
+            // IOException from ByteBuffer operation???
+            throw new RuntimeException(e);
+        }
+    }
+
+    /** DataOutput on top of a growable ByteBuffer. Uses the ByteBuffer's bulk operations, which are intrinsified for heap and direct buffers. */
+    private static final class Output implements DataOutput {
+        private final ByteBufferAllocator allocator;
+        private ByteBuffer buff;
+
+        private Output(ByteBuffer initialBuffer, ByteBufferAllocator allocator) {
+            this.allocator = allocator;
+            this.buff = initialBuffer.order(ByteOrder.BIG_ENDIAN);
+        }
+
+        private void ensure(int howMany) {
+            if (buff.remaining() >= howMany)
+                return;
+            final ByteBuffer oldBuff = buff;
+            final int minCapacity = oldBuff.position() + howMany;
+            final ByteBuffer newBuff = allocator.allocate(Math.max(minCapacity, 2 * oldBuff.capacity())).order(ByteOrder.BIG_ENDIAN);
+            if (newBuff.remaining() < minCapacity)
+                throw new IllegalStateException("Allocator returned a buffer of " + newBuff.remaining() + " bytes, but " + minCapacity + " were requested");
+            oldBuff.flip();
+            newBuff.put(oldBuff);
+            buff = newBuff;
+            allocator.release(oldBuff);
+        }
+
+        @Override
+        public void write(int b) {
+            ensure(1);
+            buff.put((byte)b);
+        }
+
+        @Override
+        public void write(byte [] b) {
+            ensure(b.length);
+            buff.put(b);
+        }
+
+        @Override
+        public void write(byte [] b, int off, int len) {
+            ensure(len);
+            buff.put(b, off, len);
+        }
+
+        @Override
+        public void writeBoolean(boolean v) {
+            ensure(1);
+            buff.put(v ? (byte)1 : (byte)0);
+        }
+
+        @Override
+        public void writeByte(int v) {
+            ensure(1);
+            buff.put((byte)v);
+        }
+
+        @Override
+        public void writeShort(int v) {
+            ensure(2);
+            buff.putShort((short)v);
+        }
+
+        @Override
+        public void writeChar(int v) {
+            ensure(2);
+            buff.putChar((char)v);
+        }
+
+        @Override
+        public void writeInt(int v) {
+            ensure(4);
+            buff.putInt(v);
+        }
+
+        @Override
+        public void writeLong(long v) {
+            ensure(8);
+            buff.putLong(v);
+        }
+
+        @Override
+        public void writeFloat(float v) {
+            ensure(4);
+            buff.putFloat(v);
+        }
+
+        @Override
+        public void writeDouble(double v) {
+            ensure(8);
+            buff.putDouble(v);
+        }
+
+        @Override
+        public void writeBytes(String s) {
+            final int len = s.length();
+            ensure(len);
+            for (int i = 0; i < len; ++i)
+                buff.put((byte)s.charAt(i));
+        }
+
+        @Override
+        public void writeChars(String s) {
+            final int len = s.length();
+            ensure(2 * len);
+            for (int i = 0; i < len; ++i)
+                buff.putChar(s.charAt(i));
+        }
+
+        @Override
+        public void writeUTF(String s) throws IOException {
+            // not used by the compact format, delegate to the JDK implementation for the modified UTF-8 encoding
+            final ByteArrayOutputStream tmp = new ByteArrayOutputStream(s.length() + 2);
+            new DataOutputStream(tmp).writeUTF(s);
+            write(tmp.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,298 @@
+package de.jpaw.bonaparte.core;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.util.BigDecimalTools;
+import de.jpaw.bonaparte.util.Latin1Tools;
+import de.jpaw.util.ByteArray;
+
+/**
+ * Implementation of the MessageParser for the binary compact protocol, reading from a java.nio.ByteBuffer (heap or direct).
+ * Allows to parse data received via socket or file channels without copying it into a byte array first.
+ *
+ * The data from position to limit of the buffer is parsed, using absolute reads. Position and limit of the buffer are not modified,
+ * the end of the consumed data can be obtained via getCurrentPosition().
+ * Off heap memory segments can be parsed via their MemorySegment.asByteBuffer() view.
+ */
+public class CompactByteBufferParser extends AbstractCompactParser<MessageParserException> {
+    private static final ByteBuffer EMPTY_BUFFER = ByteBuffer.allocate(0);
+
+    private ByteBuffer inputdata;
+    private int parseIndex;
+    private int messageLength;      // absolute end index (exclusive)
+    private byte [] scratch = EMPTY_BYTE_ARRAY;     // reused for strings read from direct buffers
+    private ByteBuffer savedInputdata = null;       // the enclosing input while decompressed data is parsed
+    private int savedMessageLength;
+    private int resumeIndex;
+
+    /** Quick conversion utility method. (null safe) */
+    public static <T extends BonaPortable> T unmarshal(ByteBuffer x, ObjectReference di, Class<T> expectedClass) throws MessageParserException {
+        if (x == null || !x.hasRemaining())
+            return null;
+        return new CompactByteBufferParser(x).readObject(di, expectedClass);
+    }
+
+    /** Create a processor for parsing the remaining data of a buffer. */
+    public CompactByteBufferParser(ByteBuffer buffer) {
+        super();
+        inputdata = buffer;
+        parseIndex = buffer.position();
+        messageLength = buffer.limit();
+        currentClass = "N/A";
+    }
+
+    /** Create a processor without input, for subsequent use of setSource(). */
+    public CompactByteBufferParser() {
+        this(EMPTY_BUFFER);
+    }
+
+    /** Assigns a new source to subsequent parsing operations. The data from position to limit will be parsed. */
+    public final void setSource(ByteBuffer src) {
+        inputdata = src;
+        parseIndex = src.position();
+        messageLength = src.limit();
+        clearCache();
+    }
+
+    /** Returns the absolute index of the next byte to be parsed, for example to set the position of the buffer after parsing. */
+    public int getCurrentPosition() {
+        return parseIndex;
+    }
+
+    @Override
+    protected int getParseIndex() {
+        return parseIndex;
+    }
+
+    @Override
+    protected MessageParserException newMPE(int errorCode, String msg) {
+        return new MessageParserException(errorCode, msg, parseIndex, currentClass);
+    }
+
+    @Override
+    protected BonaPortable createObject(String classname) throws MessageParserException {           // same method - overloading required for possible exception mapping
+        return BonaPortableFactory.createObject(classname);
+    }
+
+    @Override
+    protected BigDecimal checkAndScale(BigDecimal num, NumericElementaryDataItem di) throws MessageParserException {
+        return BigDecimalTools.checkAndScale(num, di, parseIndex, currentClass);
+    }
+
+    protected void require(int length) throws MessageParserException {
+        if (length < 0 || parseIndex + length > messageLength) {
+            throw newMPE(MessageParserException.PREMATURE_END, null);
+        }
+    }
+
+    // copies len bytes at the current position into the scratch buffer (for direct buffers)
+    private byte [] toScratch(int len) {
+        if (scratch.length < len)
+            scratch = new byte [Math.max(len, 2 * scratch.length)];
+        inputdata.get(parseIndex, scratch, 0, len);
+        return scratch;
+    }
+
+    @Override
+    protected boolean atEnd() throws MessageParserException {
+        return parseIndex >= messageLength;
+    }
+
+    @Override
+    protected int needToken() throws MessageParserException {
+        if (parseIndex >= messageLength) {
+            throw newMPE(MessageParserException.PREMATURE_END, null);
+        }
+        return inputdata.get(parseIndex++) & 0xff;
+    }
+
+    @Override
+    protected void needToken(int c) throws MessageParserException {
+        if (parseIndex >= messageLength) {
+            throw newMPE(MessageParserException.PREMATURE_END, String.format("(expected 0x%02x)", c));
+        }
+        int d = inputdata.get(parseIndex++) & 0xff;
+        if (c != d) {
+            throw newMPE(MessageParserException.UNEXPECTED_CHARACTER, String.format("(expected 0x%02x, got 0x%02x)", c, d));
+        }
+    }
+
+    @Override
+    protected void pushback(int c) {
+        // ignore c, just decrement the position
+        --parseIndex;
+    }
+
+    // the multi byte reads use the big endian absolute getters of the ByteBuffer, independent of the byte order setting of the buffer
+
+    @Override
+    protected char readChar() throws MessageParserException {
+        require(2);
+        char cc = (char)(((inputdata.get(parseIndex) & 0xff) << 8) | (inputdata.get(parseIndex+1) & 0xff));
+        parseIndex += 2;
+        return cc;
+    }
+
+    @Override
+    protected int readFixed2ByteInt() throws MessageParserException {
+        require(2);
+        int nn = inputdata.get(parseIndex++) << 8;
+        return nn | inputdata.get(parseIndex++) & 0xff;
+    }
+
+    @Override
+    protected int readFixed3ByteInt() throws MessageParserException {
+        require(3);
+        int nn = inputdata.get(parseIndex++) << 16;             // does sign-extend as required
+        nn |= (inputdata.get(parseIndex++) & 0xff) << 8;
+        nn |= inputdata.get(parseIndex++) & 0xff;
+        return nn;
+    }
+
+    @Override
+    protected int readFixed4ByteInt() throws MessageParserException {
+        require(4);
+        int nn = (inputdata.get(parseIndex++) & 0xff) << 24;
+        nn |= (inputdata.get(parseIndex++) & 0xff) << 16;
+        nn |= (inputdata.get(parseIndex++) & 0xff) << 8;
+        nn |= inputdata.get(parseIndex++) & 0xff;
+        return nn;
+    }
+
+    @Override
+    protected long readFixed6ByteLong() throws MessageParserException {
+        require(6);
+        int nn1 = inputdata.get(parseIndex++) << 8;
+        nn1 |= inputdata.get(parseIndex++) & 0xff;
+        int nn2 = readFixed4ByteInt();
+        return ((long)nn1 << 32) | (nn2 & 0xffffffffL);
+    }
+
+    @Override
+    protected long readFixed8ByteLong() throws MessageParserException {
+        int nn1 = readFixed4ByteInt();
+        int nn2 = readFixed4ByteInt();
+        return ((long)nn1 << 32) | (nn2 & 0xffffffffL);
+    }
+
+    @Override
+    protected byte [] readBytes(int len) throws MessageParserException {
+        if (len == 0)
+            return EMPTY_BYTE_ARRAY;
+        require(len);
+        byte [] data = new byte [len];
+        inputdata.get(parseIndex, data, 0, len);
+        parseIndex += len;
+        return data;
+    }
+
+    @Override
+    protected ByteArray readByteArray(int len) throws MessageParserException {
+        if (len > 0) {
+            require(len);
+            final ByteArray result;
+            if (inputdata.hasArray()) {
+                result = new ByteArray(inputdata.array(), inputdata.arrayOffset() + parseIndex, len);
+            } else {
+                result = new ByteArray(toScratch(len), 0, len);
+            }
+            parseIndex += len;
+            return result;
+        }
+        return ByteArray.ZERO_BYTE_ARRAY;
+    }
+
+    @Override
+    protected String readISO(int len) throws MessageParserException {
+        require(len);
+        final String result;
+        if (inputdata.hasArray()) {
+            result = Latin1Tools.fromLatin1(inputdata.array(), inputdata.arrayOffset() + parseIndex, len);
+        } else {
+            result = Latin1Tools.fromLatin1(toScratch(len), 0, len);
+        }
+        parseIndex += len;
+        return result;
+    }
+
+    // read len characters
+    @Override
+    protected String readUTF16(int len) throws MessageParserException {
+        len *= 2;
+        require(len);
+        final String result;
+        if (inputdata.hasArray()) {
+            result = new String(inputdata.array(), inputdata.arrayOffset() + parseIndex, len, StandardCharsets.UTF_16BE);
+        } else {
+            result = new String(toScratch(len), 0, len, StandardCharsets.UTF_16BE);
+        }
+        parseIndex += len;
+        return result;
+    }
+
+    // read len bytes
+    @Override
+    protected String readUTF8(int len) throws MessageParserException {
+        require(len);
+        final String result;
+        if (inputdata.hasArray()) {
+            result = new String(inputdata.array(), inputdata.arrayOffset() + parseIndex, len, StandardCharsets.UTF_8);
+        } else {
+            result = new String(toScratch(len), 0, len, StandardCharsets.UTF_8);
+        }
+        parseIndex += len;
+        return result;
+    }
+
+    @Override
+    protected boolean isInCompressed() {
+        return savedInputdata != null;
+    }
+
+    @Override
+    protected byte [] decompressInput(CompactCompressor decompressor, int compressedLength, int uncompressedLength) throws MessageParserException {
+        require(compressedLength);
+        final byte [] uncompressed = new byte [uncompressedLength];
+        try {
+            if (inputdata.hasArray()) {
+                decompressor.decompress(inputdata.array(), inputdata.arrayOffset() + parseIndex, compressedLength, uncompressed, 0, uncompressedLength);
+            } else {
+                decompressor.decompress(toScratch(compressedLength), 0, compressedLength, uncompressed, 0, uncompressedLength);
+            }
+        } catch (RuntimeException e) {
+            throw newMPE(MessageParserException.CORRUPT_COMPRESSED, e.getMessage());
+        }
+        return uncompressed;
+    }
+
+    @Override
+    protected void switchToUncompressed(byte [] uncompressed, int compressedLength) {
+        // parse the decompressed data as if it was inline. The object cache is shared, therefore backreferences remain valid.
+        savedInputdata = inputdata;
+        savedMessageLength = messageLength;
+        resumeIndex = parseIndex + compressedLength;
+        inputdata = ByteBuffer.wrap(uncompressed);
+        parseIndex = 0;
+        messageLength = uncompressed.length;
+    }
+
+    @Override
+    protected void leaveCompressed() {
+        inputdata = savedInputdata;
+        messageLength = savedMessageLength;
+        parseIndex = resumeIndex;
+        savedInputdata = null;
+    }
+
+    @Override
+    protected void skipBytes(int howMany) throws MessageParserException {
+        if (howMany < 0 || parseIndex + howMany > messageLength) {
+            throw newMPE(MessageParserException.PREMATURE_END, String.format("(while skipping  %d characters from pos %d (0x%04x))", howMany, parseIndex, parseIndex));
+        }
+        parseIndex += howMany;
+    }
+}
@@ -0,0 +1,30 @@
+package de.jpaw.bonaparte.core;
+
+/**
+ * Block compression algorithm which can be used for compressed elements (token COMPRESSED, 0xd5) in the compact format.
+ * The serialized form of a compressed element is
+ *   0xd5, format, uncompressed length, compressed length, compressed bytes
+ * where format, and both lengths are written as compact integers.
+ *
+ * Implementations must be stateless or thread safe, because a single instance is shared by all parsers via {@link CompactCompressors}.
+ */
+public interface CompactCompressor {
+
+    /** Returns the format ID written after the COMPRESSED token (for example CompactConstants.COMPRESSED_LZ4). */
+    int getFormat();
+
+    /** Returns the maximum number of bytes a compressed block of uncompressedLength input bytes may occupy. */
+    int maxCompressedLength(int uncompressedLength);
+
+    /** Returns the maximum number of bytes a compressed block of compressedLength bytes can decompress to, used to reject implausible lengths. */
+    default long maxUncompressedLength(int compressedLength) {
+        return Long.MAX_VALUE;
+    }
+
+    /** Compresses length bytes of src starting at srcOffset into dest (starting at destOffset) and returns the compressed length. */
+    int compress(byte [] src, int srcOffset, int length, byte [] dest, int destOffset, int maxDestLength);
+
+    /** Decompresses compressedLength bytes of src into exactly uncompressedLength bytes of dest.
+     * Throws some RuntimeException if the data is corrupt or does not decompress to the expected size. */
+    void decompress(byte [] src, int srcOffset, int compressedLength, byte [] dest, int destOffset, int uncompressedLength);
+}
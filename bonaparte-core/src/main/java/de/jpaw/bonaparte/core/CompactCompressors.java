@@ -0,0 +1,41 @@
+package de.jpaw.bonaparte.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/** Registry of the compression algorithms known to the compact parsers, indexed by the format ID.
+ * LZ4 is registered automatically if the lz4 library is on the classpath. */
+public final class CompactCompressors {
+    private static final Logger LOGGER = LoggerFactory.getLogger(CompactCompressors.class);
+    public static final int MAX_FORMATS = 16;
+
+    private static final CompactCompressor [] COMPRESSORS = new CompactCompressor [MAX_FORMATS];
+
+    static {
+        try {
+            register(LZ4CompactCompressor.INSTANCE);
+        } catch (LinkageError e) {
+            // optional dependency not present
+            LOGGER.debug("LZ4 compression not available for compact format: {}", e.getMessage());
+        }
+    }
+
+    private CompactCompressors() { }
+
+    /** Registers a compressor for its format. An existing registration for the same format is replaced. */
+    public static void register(CompactCompressor compressor) {
+        final int format = compressor.getFormat();
+        if (format < 0 || format >= MAX_FORMATS)
+            throw new IllegalArgumentException("Compression format ID must be in range 0.." + (MAX_FORMATS - 1) + ", got " + format);
+        synchronized (COMPRESSORS) {
+            COMPRESSORS[format] = compressor;
+        }
+    }
+
+    /** Returns the compressor registered for the format ID, or null if none has been registered. */
+    public static CompactCompressor get(int format) {
+        if (format < 0 || format >= MAX_FORMATS)
+            return null;
+        return COMPRESSORS[format];
+    }
+}
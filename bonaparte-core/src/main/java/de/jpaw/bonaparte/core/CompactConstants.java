@@ -54,6 +54,7 @@ package de.jpaw.bonaparte.core;
  *          d3   long double (IEEE 754, 128 bit): next 16 bytes define the value
  *          d4   extended double (non-IEEE, 80 bit), reserved for non-Java languages, 10 bytes follow
  *          d5   compressed element. Next is format, then uncompressed length, then compressed length, then bytes. The element is not null. The contained element can be a string, byte [] or object.
+ *               Currently only objects are written in compressed form (see CompactByteArrayComposer.setCompression()), format 0 is LZ4.
  *          d6   char (2 bytes follow)
  *          d7   UUID (next 8 bytes define the value)
  *
@@ -72,7 +73,17 @@ package de.jpaw.bonaparte.core;
  *          e1  long String ISO (next is length, then bytes)
  *          e2..e8  integer (short, int, long) with 2..8 bytes, next is mantissa, in 2's complement  (5 and 7 currently unused)
  *
- *          e9..ef  RESERVED
+ *          e9  object of a new class of the class dictionary: next is String (PQON), then revision (as for df). The class is assigned the next free dictionary index.
+ *          ea  object of a class of the class dictionary: next is the dictionary index (int, 0 = the first class defined via e9)
+ *              The class dictionary is written only if enabled in the composer, it is valid until the composer is reset.
+ *
+ *          eb  string definition: next is a string (any string token), which is added to the string table
+ *          ec  string backreference: next is the index into the string table (int, 0 = the first string defined via eb)
+ *              The string table is written only if enabled in the composer, it is valid until the composer is reset.
+ *              Parsers advertise their support and table size by the MIME type parameter "strings" (see MimeTypes),
+ *              a composer must not define more strings than the receiver accepts.
+ *
+ *          ed..ef  RESERVED
  *
  *          f0  long fractional, next is scale, then big integer of mantissa
  *          f1..f9  fractional, with 1..9 decimal places, next is big integer of mantissa
@@ -138,6 +149,12 @@ public interface CompactConstants {
     public static final int OBJECT_BEGIN_BASE = 0xac;
     public static final int OBJECT_TERMINATOR = 0xad;
     public static final int OBJECT_AGAIN = 0xdd;
+    public static final int OBJECT_BEGIN_NEW_CLASS = 0xe9;
+    public static final int OBJECT_BEGIN_CLASS_REF = 0xea;
+    public static final int STRING_DEFINITION = 0xeb;
+    public static final int STRING_AGAIN = 0xec;
+    public static final int MIN_LENGTH_STRING_REFERENCE = 4;    // shorter strings are not added to the string table, a reference would not be shorter
+    public static final int DEFAULT_MAX_STRING_TABLE_SIZE = 65536;  // number of string table entries a parser accepts by default
 
     public static final int NULL_FIELD = 0xa0;
     public static final int MAP_BEGIN = 0xfa;
@@ -181,14 +198,15 @@ public interface CompactConstants {
 
     public static final int COMPRESSED = 0xd5;
     public static final int COMPRESSED_LZ4 = 0;  // first type
+    public static final int DEFAULT_MAX_UNCOMPRESSED_LENGTH = 64 * 1024 * 1024;    // parsers reject compressed data which announces a longer contents
 
     // declares the number of bytes following a token which are not to be interpreted but must be skipped
     public static final int [] SKIP_BYTES = {
         -1, 0, 0, 0,        // 0xa?
         1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13, 14, 15, 16,   // 0xb?: ASCII strings of length 1..16
         1,1,1,1,       1,1,1,1,         1,1,1,1,     1,1,1,1, /* 0xc?: 2 byte integers */
-        2,4,8,16,      10, -1, 2, 8,    4, 0, 0, 4,  4, 0, -1, -1,   // 0xd?: date fields have 4 fixed fields, time is always treated as separate field.
-        -1, -1, 2, 3,  4, 5, 6, 7,      8, -2,-2,-2, -2,-2,-2,-2,
+        2,4,8,16,      10, -1, 2, 16,   0, 0, 0, 0,  0, 0, -1, -1,   // 0xd?: the components of date and time fields are separate integral tokens.
+        -1, -1, 2, 3,  4, 5, 6, 7,      8, -1,-1,-1, -1,-2,-2,-2,
         0, 0,0,0, 0,0,0,0,   0, 0,  0,0,   0, -1, -1, -1
     };
 }
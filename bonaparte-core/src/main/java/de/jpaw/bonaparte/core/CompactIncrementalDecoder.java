@@ -0,0 +1,250 @@
+package de.jpaw.bonaparte.core;
+
+/** Push based decoder for a stream of records in the compact format, as written by the CompactByteArrayComposer.
+ *
+ * The scanner evaluates the length of every token, as AbstractCompactParser.skipElement() does, but keeps its state in an explicit stack,
+ * in order to resume with the next chunk. A token is evaluated only once all of its bytes (including the data of strings, binary data and
+ * compressed elements) have been received, the number of missing bytes is reported by bytesNeeded().
+ * Complete records are decoded by a CompactByteArrayParser, which keeps the backreferences, class dictionary and string table of the stream.
+ */
+public class CompactIncrementalDecoder extends AbstractIncrementalDecoder implements CompactConstants {
+    private static final int OBJECT_BODY = -1;      // stack entry for the fields of an object or a JSON object, up to the object terminator
+
+    private final CompactByteArrayParser parser = new CompactByteArrayParser(new byte [0], 0, 0);
+    private int scanned = 0;                        // number of bytes of the current record which have been scanned, relative to begin
+    private int [] stack = new int [16];            // number of elements still expected, or OBJECT_BODY
+    private int depth = 0;
+    private int headerInt;                          // value of the last integer decoded by readHeaderInt()
+
+    public CompactIncrementalDecoder() {
+        super(DEFAULT_BUFFER_SIZE);
+    }
+
+    public CompactIncrementalDecoder(int initialBufferSize) {
+        super(initialBufferSize);
+    }
+
+    /** Provides access to the parser, for example to change the handling of extra fields. */
+    public CompactByteArrayParser getParser() {
+        return parser;
+    }
+
+    @Override
+    protected void resetStream() {
+        scanned = 0;
+        depth = 0;
+        parser.setSource(buffer, 0, 0);      // clears the backreferences, class dictionary and string table
+    }
+
+    @Override
+    protected BonaPortable decode() throws MessageParserException {
+        scanned = 0;
+        parser.continueWith(buffer, begin, recordEnd - begin);
+        return parser.readRecord();
+    }
+
+    private MessageParserException error(int errorCode, String msg) {
+        return new MessageParserException(errorCode, msg, begin + scanned, "(scanning)");
+    }
+
+    private void push(int entry) {
+        if (depth == stack.length) {
+            final int [] newStack = new int [2 * depth];
+            System.arraycopy(stack, 0, newStack, 0, depth);
+            stack = newStack;
+        }
+        stack[depth++] = entry;
+    }
+
+    // decodes an integer at index pos, if it is complete, and returns the index after it, or -1 if more data is required
+    private int readHeaderInt(int pos) throws MessageParserException {
+        if (pos >= limit)
+            return -1;
+        final int c = buffer[pos] & 0xff;
+        if (c <= 31 || (c >= 0x80 && c < 0xa0)) {
+            headerInt = c <= 31 ? c : c - 0x60;
+            return pos + 1;
+        }
+        if (c <= 0xaa && c > NULL_FIELD) {
+            headerInt = 0xa0 - c;
+            return pos + 1;
+        }
+        if (c >= 0xc0 && c <= 0xd0) {
+            if (pos + 2 > limit)
+                return -1;
+            headerInt = (buffer[pos + 1] & 0xff) + ((c & 0x0f) << 8);
+            return pos + 2;
+        }
+        if (c >= INT_2BYTE && c <= INT_4BYTE) {
+            final int len = c - INT_2BYTE + 2;
+            if (pos + 1 + len > limit)
+                return -1;
+            int n = buffer[pos + 1];             // sign extended
+            for (int i = 2; i <= len; ++i)
+                n = (n << 8) | (buffer[pos + i] & 0xff);
+            headerInt = n;
+            return pos + 1 + len;
+        }
+        throw error(MessageParserException.NUMBER_PARSING_ERROR, String.format("(numeric token expected but got 0x%02x)", c));
+    }
+
+    private int readLength(int pos) throws MessageParserException {
+        final int next = readHeaderInt(pos);
+        if (next >= 0 && headerInt < 0)
+            throw error(MessageParserException.ARRAY_SIZE_OUT_OF_BOUNDS, String.format("(length %d)", headerInt));
+        return next;
+    }
+
+    // returns the number of missing bytes if a token starting at pos requires up to index end, else 0
+    private int missing(int end) {
+        return end > limit ? end - limit : 0;
+    }
+
+    @Override
+    protected int scan() throws MessageParserException {
+        if (depth == 0 && scanned == 0) {
+            if (begin >= limit)
+                return 1;
+            push(1);                        // a record is a single element
+        }
+        for (;;) {
+            final int pos = begin + scanned;
+            if (stack[depth - 1] == 0) {
+                // all expected elements have been seen
+                if (--depth == 0) {
+                    recordEnd = pos;
+                    return 0;
+                }
+                continue;
+            }
+            if (pos >= limit)
+                return 1;
+            final int c = buffer[pos] & 0xff;
+            if (c == OBJECT_TERMINATOR || c == PARENT_SEPARATOR) {
+                if (stack[depth - 1] == OBJECT_BODY) {
+                    if (c == OBJECT_TERMINATOR)
+                        stack[depth - 1] = 0;
+                    ++scanned;
+                } else if (depth == 1) {
+                    throw error(MessageParserException.UNEXPECTED_CHARACTER, String.format("(0x%02x at the start of a record)", c));
+                } else {
+                    --stack[depth - 1];     // implicit null, the token is not consumed
+                }
+                continue;
+            }
+            // a new element: evaluate the token, before it is counted
+            int end = pos + 1;              // index after the token, if it has no data following
+            int children = 0;               // number of elements following as part of this element
+            boolean body = false;           // the element is followed by the fields of an object
+            if (c <= 0xaa || c == EMPTY_FIELD) {
+                // single byte items
+            } else if (c >= SHORT_ISO_STRING && c <= 0xcf) {
+                end += c <= 0xbf ? c - EMPTY_FIELD : 1;
+            } else {
+                switch (c) {
+                case OBJECT_BEGIN_JSON:
+                case OBJECT_BEGIN_BASE:
+                    body = true;
+                    break;
+                case OBJECT_BEGIN_ID:           // factory ID and class ID
+                case OBJECT_BEGIN_PQON:         // PQON and revision
+                case OBJECT_BEGIN_NEW_CLASS:    // PQON and revision
+                    children = 2;
+                    body = true;
+                    break;
+                case OBJECT_BEGIN_CLASS_REF:    // dictionary index
+                    children = 1;
+                    body = true;
+                    break;
+                case STRING_DEFINITION:
+                case STRING_AGAIN:
+                case OBJECT_AGAIN:
+                case COMPACT_TIME:
+                case COMPACT_TIME_MILLIS:
+                case 0xf1:
+                case 0xf2:
+                case 0xf3:
+                case 0xf4:
+                case 0xf5:
+                case 0xf6:
+                case 0xf7:
+                case 0xf8:
+                case 0xf9:
+                    children = 1;
+                    break;
+                case COMPACT_BIGDECIMAL:        // scale and mantissa
+                    children = 2;
+                    break;
+                case COMPACT_DATE:
+                    children = 3;
+                    break;
+                case COMPACT_DATETIME:
+                case COMPACT_DATETIME_MILLIS:
+                    children = 4;
+                    break;
+                case COMPACT_FLOAT:
+                case INT_4BYTE:
+                    end += 4;
+                    break;
+                case COMPACT_DOUBLE:
+                case INT_8BYTE:
+                    end += 8;
+                    break;
+                case UNICODE_CHAR:
+                case INT_2BYTE:
+                    end += 2;
+                    break;
+                case INT_3BYTE:
+                    end += 3;
+                    break;
+                case INT_6BYTE:
+                    end += 6;
+                    break;
+                case COMPACT_UUID:
+                    end += 16;
+                    break;
+                case COMPACT_BIGINTEGER:
+                case ISO_STRING:
+                case COMPACT_BINARY:
+                case UTF8_STRING:
+                case UTF16_STRING:
+                    end = readLength(end);
+                    if (end < 0)
+                        return 1;
+                    end += c == UTF16_STRING ? 2 * headerInt : headerInt;
+                    break;
+                case COMPRESSED:                // format, uncompressed length, compressed length, data
+                    end = readHeaderInt(end);
+                    if (end >= 0)
+                        end = readHeaderInt(end);
+                    if (end >= 0)
+                        end = readLength(end);
+                    if (end < 0)
+                        return 1;
+                    end += headerInt;
+                    break;
+                case MAP_BEGIN:
+                case ARRAY_BEGIN:
+                    end = readLength(end);
+                    if (end < 0)
+                        return 1;
+                    children = c == MAP_BEGIN ? 2 * headerInt : headerInt;
+                    break;
+                default:
+                    throw error(MessageParserException.UNSUPPORTED_TOKEN, String.format("(0x%02x)", c));
+                }
+            }
+            final int missingBytes = missing(end);
+            if (missingBytes > 0)
+                return missingBytes;
+            // the token is complete: consume it
+            scanned = end - begin;
+            if (stack[depth - 1] != OBJECT_BODY)
+                --stack[depth - 1];
+            if (body)
+                push(OBJECT_BODY);
+            if (children > 0)
+                push(children);
+        }
+    }
+}
@@ -0,0 +1,509 @@
+package de.jpaw.bonaparte.core;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BinaryElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+import de.jpaw.bonaparte.pojos.meta.MiscElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.Multiplicity;
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.meta.ParsedFoldingComponent;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.bonaparte.util.FieldGetter;
+import de.jpaw.bonaparte.util.FreezeTools;
+import de.jpaw.bonaparte.util.UtilException;
+import de.jpaw.util.ByteBuilder;
+
+/** Reads selected fields of objects serialized in compact format, without deserializing the whole object.
+ *
+ * The fields are specified by path names, as understood by FieldGetter and FoldingComposer ("a.b.c", "list[2].x", "map[key].x").
+ * The serialized data is walked token by token. Fields which are not referenced by any path are skipped, including all contained
+ * objects and collections, without creating any objects for them. Only the requested values are created.
+ *
+ * The result contains one entry per path, in the sequence of the paths, null if the path does not lead to a value for the given data
+ * (null fields or indexes out of range). Enums are returned in their serialized form (ordinal or token), the same applies for
+ * enum sets, fixed point numbers and external types. A path which ends at an object reference returns the object.
+ * A List, Set, array or Map referenced without index is returned as a whole, a path which descends into a collection without index
+ * uses its first element, as does a negative index.
+ *
+ * Instances are immutable and thread safe. The execution plan per encountered class is computed once and cached.
+ */
+public final class CompactProjection {
+    private static final int [] NO_SLOTS = new int [0];
+
+    private final ClassDefinition rootClass;
+    private final List<String> paths;
+    private final Selection root = new Selection();
+
+    /** Creates a projection for the given paths, which are validated against the meta data of the root class. */
+    public CompactProjection(ClassDefinition rootClass, List<String> paths) throws UtilException {
+        this.rootClass = rootClass;
+        this.paths = Collections.unmodifiableList(new ArrayList<String>(paths));
+        for (int slot = 0; slot < paths.size(); ++slot)
+            addPath(paths.get(slot), slot);
+    }
+
+    public ClassDefinition getRootClass() {
+        return rootClass;
+    }
+
+    public List<String> getPaths() {
+        return paths;
+    }
+
+    /** Returns the number of values produced per record. */
+    public int size() {
+        return paths.size();
+    }
+
+    private void addPath(String path, int slot) throws UtilException {
+        Selection sel = root;
+        ClassDefinition cls = rootClass;
+        String remaining = path;
+        for (;;) {
+            final int dotIndex = remaining.indexOf('.');
+            final ParsedFoldingComponent pfc = FoldingComposer.createRecursiveFoldingComponent(dotIndex < 0 ? remaining : remaining.substring(0, dotIndex));
+            final FieldDefinition fd = FieldGetter.lookupField(cls, pfc.getFieldname());
+            if (fd == null)
+                throw new UtilException(UtilException.PATH_COMPONENT_NOT_FOUND, pfc.getFieldname() + " in " + cls.getName());
+            final FieldRequest fr = sel.fields.computeIfAbsent(fd.getName(), x -> new FieldRequest(fd));
+            final Node node = fr.nodeFor(pfc, dotIndex >= 0);
+            if (dotIndex < 0) {
+                node.slots = Arrays.copyOf(node.slots, node.slots.length + 1);
+                node.slots[node.slots.length - 1] = slot;
+                return;
+            }
+            // must descend further. For that, fd must be a class reference
+            if (!(fd instanceof ObjectReference oRef))
+                throw new UtilException(UtilException.DESCEND_TO_NON_REFERENCE, pfc.getFieldname() + " in " + cls.getName());
+            if (oRef.getLowerBound() == null)
+                throw new UtilException(UtilException.DESCEND_TO_GENERIC_OBJECT, pfc.getFieldname() + " in " + cls.getName());
+            if (node.child == null)
+                node.child = new Selection();
+            sel = node.child;
+            cls = oRef.getSecondaryLowerBound() == null ? oRef.getLowerBound() : oRef.getSecondaryLowerBound();
+            remaining = remaining.substring(dotIndex + 1);
+        }
+    }
+
+    /** Projects the object in compact format at the position of the parser, and stores the values into result, which must have at least size() entries.
+     * The parser is positioned behind the object afterwards. Data which contains a backreference to an object which has been skipped
+     * cannot be projected, this is signalled by an exception with error code BACKREFERENCE_TO_SKIPPED. */
+    public <E extends Exception> void project(AbstractCompactParser<E> p, Object [] result) throws E {
+        Arrays.fill(result, 0, paths.size(), null);
+        descend(p, StaticMeta.OUTER_BONAPORTABLE, root, result);
+    }
+
+    /** Projects a record in compact format, from data[offset] to data[offset + length - 1]. */
+    public List<Object> project(byte [] data, int offset, int length) throws MessageParserException {
+        final Object [] result = new Object [paths.size()];
+        final CompactByteArrayParser p = new CompactByteArrayParser(data, offset, offset + length);     // the parser expects the end index
+        try {
+            project(p, result);
+        } catch (MessageParserException e) {
+            if (e.getErrorCode() != MessageParserException.BACKREFERENCE_TO_SKIPPED)
+                throw e;
+            // some requested object is shared with a skipped one: no way around parsing the whole record
+            Arrays.fill(result, null);
+            p.setSource(data, offset, offset + length);
+            projectFrom(p.readRecord(), StaticMeta.OUTER_BONAPORTABLE, root, result);
+        }
+        return Arrays.asList(result);
+    }
+
+    /** Projects a record in compact format. */
+    public List<Object> project(byte [] data) throws MessageParserException {
+        return project(data, 0, data.length);
+    }
+
+    /** Projects a record in compact format, from position to limit of the buffer. Position and limit are not modified. */
+    public List<Object> project(ByteBuffer data) throws MessageParserException {
+        final Object [] result = new Object [paths.size()];
+        final CompactByteBufferParser p = new CompactByteBufferParser(data);
+        try {
+            project(p, result);
+        } catch (MessageParserException e) {
+            if (e.getErrorCode() != MessageParserException.BACKREFERENCE_TO_SKIPPED)
+                throw e;
+            // some requested object is shared with a skipped one: no way around parsing the whole record
+            Arrays.fill(result, null);
+            p.setSource(data);
+            projectFrom(p.readRecord(), StaticMeta.OUTER_BONAPORTABLE, root, result);
+        }
+        return Arrays.asList(result);
+    }
+
+    // projects an object which is available already, by serializing it again without backreferences. This ensures identical results.
+    private static void projectFrom(BonaPortable obj, ObjectReference di, Selection sel, Object [] result) throws MessageParserException {
+        final ByteBuilder buffer = new ByteBuilder();
+        new CompactByteArrayComposer(buffer, ObjectReuseStrategy.NONE, false).addField(di, obj);
+        descend(new CompactByteArrayParser(buffer.getCurrentBuffer(), 0, buffer.length()), di, sel, result);
+    }
+
+    // processes an object field, of which only some fields are requested
+    private static <E extends Exception> void descend(AbstractCompactParser<E> p, ObjectReference di, Selection sel, Object [] result) throws E {
+        if (p.checkForNull(di))
+            return;
+        final int c = p.needToken();
+        final ClassDefinition cls;
+        switch (c) {
+        case CompactConstants.COMPRESSED:
+            p.enterCompressed(di.getName());
+            try {
+                descend(p, di, sel, result);
+            } finally {
+                p.leaveCompressed();
+            }
+            return;
+        case CompactConstants.OBJECT_AGAIN:
+            final BonaPortable previous = p.getPreviousObject(p.readInt(p.needToken(), di.getName()), di.getName());
+            try {
+                projectFrom(previous, di, sel, result);
+            } catch (MessageParserException e) {
+                throw p.newMPE(e.getErrorCode(), e.getMessage());
+            }
+            return;
+        case CompactConstants.OBJECT_BEGIN_ID:
+            final int factoryId = p.readInt(p.needToken(), "$factoryId");
+            final int classId = p.readInt(p.needToken(), "$classId");
+            final BonaPortableClass<?> bclass = BonaPortableFactoryById.getByIds(factoryId, classId);
+            if (bclass == null)
+                throw p.newMPE(MessageParserException.BAD_CLASS_IDS, factoryId + "/" + classId);
+            cls = bclass.getMetaData();
+            break;
+        case CompactConstants.OBJECT_BEGIN_BASE:
+            if (di.getLowerBound() == null)
+                throw p.newMPE(MessageParserException.INVALID_BASE_CLASS_REFERENCE, "");
+            cls = di.getLowerBound();
+            break;
+        case CompactConstants.OBJECT_BEGIN_PQON:
+            final String pqon = p.readString(di.getName());
+            p.needToken(CompactConstants.NULL_FIELD);       // version not yet allowed
+            if (pqon == null || pqon.length() == 0) {
+                if (di.getLowerBound() == null)
+                    throw p.newMPE(MessageParserException.INVALID_BASE_CLASS_REFERENCE, "");
+                cls = di.getLowerBound();
+            } else {
+                try {
+                    cls = BonaPortableFactory.getBClassForPqon(pqon).getMetaData();
+                } catch (MessageParserException e) {
+                    throw p.newMPE(e.getErrorCode(), pqon);
+                }
+            }
+            break;
+        case CompactConstants.OBJECT_BEGIN_NEW_CLASS:
+        case CompactConstants.OBJECT_BEGIN_CLASS_REF:
+            final int dictionaryIndex = c == CompactConstants.OBJECT_BEGIN_NEW_CLASS ? p.readNewDictionaryClass(di.getName()) : p.readDictionaryIndex(di.getName());
+            final String dictionaryPqon = p.getDictionaryPqon(dictionaryIndex);
+            try {
+                cls = BonaPortableFactory.getBClassForPqon(dictionaryPqon).getMetaData();
+            } catch (MessageParserException e) {
+                throw p.newMPE(e.getErrorCode(), dictionaryPqon);
+            }
+            break;
+        default:
+            throw p.newMPE(MessageParserException.UNEXPECTED_CHARACTER, String.format("(expected OBJECT_START*, got 0x%02x)", c));
+        }
+        // the object is not created, but it counts for backreferences
+        p.addSkippedObject();
+        final String previousClass = p.currentClass;
+        p.currentClass = cls.getName();
+        for (FieldRequest [] level : sel.planFor(cls)) {
+            for (FieldRequest fr : level) {
+                if (fr == null)
+                    p.skipElement();
+                else
+                    readField(p, fr, result);
+            }
+            p.eatParentSeparator();
+        }
+        p.eatObjectTerminator();
+        p.currentClass = previousClass;
+    }
+
+    private static <E extends Exception> void readField(AbstractCompactParser<E> p, FieldRequest fr, Object [] result) throws E {
+        final FieldDefinition fd = fr.fd;
+        if (fr.multiplicity == Multiplicity.SCALAR) {
+            readNode(p, fr, fr.whole, result);
+            return;
+        }
+        if (fr.whole != null) {
+            // the whole collection is requested: read it completely, and serve the indexed requests from it
+            final Object value = readCollection(p, fr);
+            fr.whole.store(value, result);
+            if (value != null && (fr.byPosition != null || fr.byKey != null))
+                serveFromCollection(value, fr, result);
+            return;
+        }
+        // read the requested elements only
+        final boolean isMap = fr.multiplicity == Multiplicity.MAP;
+        final int n = isMap ? p.parseMapStart(fd) : p.parseArrayStart(fd, 0);
+        for (int i = 0; i < n; ++i) {
+            Node byKey = null;
+            if (isMap) {
+                if (fr.byKey != null)
+                    byKey = fr.byKey.get(String.valueOf(readMapKey(p, fd)));
+                else
+                    p.skipElement();
+            }
+            final Node byPosition = fr.byPosition != null ? fr.byPosition.get(i) : null;
+            if (byKey != null && byPosition != null) {
+                final Object value = readLeaf(p, fr);
+                serve(value, byKey, result);
+                serve(value, byPosition, result);
+            } else if (byKey != null || byPosition != null) {
+                readNode(p, fr, byKey != null ? byKey : byPosition, result);
+            } else {
+                p.skipElement();
+            }
+        }
+    }
+
+    // reads a single value for which paths end here, or which is descended into, or both
+    private static <E extends Exception> void readNode(AbstractCompactParser<E> p, FieldRequest fr, Node node, Object [] result) throws E {
+        if (node.child == null) {
+            node.store(readLeaf(p, fr), result);
+        } else if (node.slots.length == 0) {
+            descend(p, fr.anyObject, node.child, result);
+        } else {
+            serve(readLeaf(p, fr), node, result);
+        }
+    }
+
+    // stores a value which has been read completely, and evaluates the deeper paths on it
+    private static void serve(Object value, Node node, Object [] result) {
+        node.store(value, result);
+        if (node.child != null && value instanceof BonaPortable obj)
+            node.child.evaluateOn(obj, result);
+    }
+
+    private static void serveFromCollection(Object value, FieldRequest fr, Object [] result) {
+        if (value instanceof Map<?, ?> map) {
+            int i = 0;
+            for (Map.Entry<?, ?> entry : map.entrySet()) {
+                final Node byKey = fr.byKey != null ? fr.byKey.get(String.valueOf(entry.getKey())) : null;
+                final Node byPosition = fr.byPosition != null ? fr.byPosition.get(i++) : null;
+                if (byKey != null)
+                    serve(entry.getValue(), byKey, result);
+                if (byPosition != null)
+                    serve(entry.getValue(), byPosition, result);
+            }
+        } else if (fr.byPosition != null) {
+            int i = 0;
+            for (Object element : (Collection<?>)value) {
+                final Node byPosition = fr.byPosition.get(i++);
+                if (byPosition != null)
+                    serve(element, byPosition, result);
+            }
+        }
+    }
+
+    private static <E extends Exception> Object readCollection(AbstractCompactParser<E> p, FieldRequest fr) throws E {
+        final FieldDefinition fd = fr.fd;
+        if (fr.multiplicity == Multiplicity.MAP) {
+            final int n = p.parseMapStart(fd);
+            if (n < 0)
+                return null;
+            final Map<Object, Object> map = new HashMap<Object, Object>(FreezeTools.getInitialHashMapCapacity(n));
+            for (int i = 0; i < n; ++i) {
+                final Object key = readMapKey(p, fd);
+                map.put(key, readLeaf(p, fr));
+            }
+            return map;
+        }
+        final int n = p.parseArrayStart(fd, 0);
+        if (n < 0)
+            return null;
+        final Collection<Object> elements = fr.multiplicity == Multiplicity.SET
+          ? new HashSet<Object>(FreezeTools.getInitialHashMapCapacity(n))
+          : new ArrayList<Object>(n);
+        for (int i = 0; i < n; ++i)
+            elements.add(readLeaf(p, fr));
+        return elements;
+    }
+
+    private static <E extends Exception> Object readMapKey(AbstractCompactParser<E> p, FieldDefinition fd) throws E {
+        switch (fd.getMapIndexType()) {
+        case STRING:
+            return p.readString(StaticMeta.MAP_INDEX_META_STRING);
+        case INTEGER:
+            return p.readInteger(StaticMeta.MAP_INDEX_META_INTEGER);
+        case LONG:
+            return p.readLong(StaticMeta.MAP_INDEX_META_LONG);
+        default:
+            return p.readElementSub();
+        }
+    }
+
+    // reads a single value of the field (or a single element of a collection)
+    private static <E extends Exception> Object readLeaf(AbstractCompactParser<E> p, FieldRequest fr) throws E {
+        final FieldDefinition fd = fr.fd;
+        if (fd instanceof ObjectReference) {
+            final int c = p.needToken();
+            p.pushback(c);
+            switch (c) {
+            case CompactConstants.COMPRESSED:
+            case CompactConstants.OBJECT_AGAIN:
+            case CompactConstants.OBJECT_BEGIN_ID:
+            case CompactConstants.OBJECT_BEGIN_PQON:
+            case CompactConstants.OBJECT_BEGIN_BASE:
+            case CompactConstants.OBJECT_BEGIN_NEW_CLASS:
+            case CompactConstants.OBJECT_BEGIN_CLASS_REF:
+                return p.readObject(fr.anyObject, BonaPortable.class);
+            default:
+                return p.readElementSub();      // JSON, arrays, elements, and single field adapters
+            }
+        }
+        final String type = fr.dataType;
+        if (fd instanceof AlphanumericElementaryDataItem ad)
+            return p.readString(ad);
+        if (fd instanceof NumericElementaryDataItem nd)
+            return p.readBigDecimal(nd);
+        if (fd instanceof BasicNumericElementaryDataItem bd) {
+            switch (type) {
+            case "int":
+            case "integer":
+                return p.readInteger(bd);
+            case "long":
+                return p.readLong(bd);
+            case "short":
+                return p.readShort(bd);
+            case "byte":
+                return p.readByte(bd);
+            case "float":
+                return p.readFloat(bd);
+            case "double":
+                return p.readDouble(bd);
+            case "biginteger":
+                return p.readBigInteger(bd);
+            }
+        } else if (fd instanceof TemporalElementaryDataItem td) {
+            switch (type) {
+            case "localdate":
+                return p.readDay(td);
+            case "localtime":
+                return p.readTime(td);
+            case "localdatetime":
+                return p.readDayTime(td);
+            case "instant":
+                return p.readInstant(td);
+            }
+        } else if (fd instanceof MiscElementaryDataItem md) {
+            switch (type) {
+            case "boolean":
+                return p.readBoolean(md);
+            case "char":
+            case "character":
+                return p.readCharacter(md);
+            case "uuid":
+                return p.readUUID(md);
+            }
+        } else if (fd instanceof BinaryElementaryDataItem bd) {
+            return "bytearray".equals(type) ? p.readByteArray(bd) : p.readRaw(bd);
+        }
+        // enums, xenums, enum sets, fixed point numbers: serialized form
+        return p.readElementSub();
+    }
+
+    /** The requested fields within an object, independent of its actual class. */
+    private static final class Selection {
+        private final Map<String, FieldRequest> fields = new HashMap<String, FieldRequest>();
+        private final ConcurrentHashMap<String, FieldRequest [][]> plans = new ConcurrentHashMap<String, FieldRequest [][]>();
+
+        /** Returns, per class level (starting at the root class), per field, the request, or null if the field is not required. */
+        private FieldRequest [][] planFor(ClassDefinition cls) {
+            final FieldRequest [][] plan = plans.get(cls.getName());
+            return plan != null ? plan : plans.computeIfAbsent(cls.getName(), x -> createPlan(cls));
+        }
+
+        private FieldRequest [][] createPlan(ClassDefinition cls) {
+            final List<ClassDefinition> levels = new ArrayList<ClassDefinition>();
+            for (ClassDefinition c = cls; c != null; c = c.getParentMeta())
+                levels.add(0, c);
+            final FieldRequest [][] plan = new FieldRequest [levels.size()][];
+            for (int i = 0; i < plan.length; ++i) {
+                final List<FieldDefinition> levelFields = levels.get(i).getFields();
+                plan[i] = new FieldRequest [levelFields.size()];
+                for (int j = 0; j < plan[i].length; ++j)
+                    plan[i][j] = fields.get(levelFields.get(j).getName());
+            }
+            return plan;
+        }
+
+        // evaluates the paths on an object which has been created already
+        private void evaluateOn(BonaPortable obj, Object [] result) {
+            try {
+                projectFrom(obj, StaticMeta.INNER_BONAPORTABLE, this, result);
+            } catch (MessageParserException e) {
+                throw new RuntimeException(e);     // cannot happen for data which has just been serialized
+            }
+        }
+    }
+
+    /** The requests for a single field: the value as a whole, or elements of a collection by position or by key. */
+    private static final class FieldRequest {
+        private final FieldDefinition fd;
+        private final Multiplicity multiplicity;
+        private final String dataType;
+        private final ObjectReference anyObject;        // the field, but accepting any subclass, if an object reference
+        private Node whole = null;
+        private Map<Integer, Node> byPosition = null;
+        private Map<String, Node> byKey = null;
+
+        private FieldRequest(FieldDefinition fd) {
+            this.fd = fd;
+            this.multiplicity = fd.getMultiplicity();
+            this.dataType = fd.getDataType().toLowerCase();
+            if (fd instanceof ObjectReference or) {
+                // returned objects are checked against the declared type by the generated classes, not here
+                this.anyObject = new ObjectReference(or.getVisibility(), or.getIsRequired(), or.getName(), or.getMultiplicity(), or.getMapIndexType(),
+                  or.getMinCount(), or.getMaxCount(), or.getDataCategory(), or.getBonaparteType(), or.getDataType(), or.getIsPrimitive(),
+                  or.getIsAggregateRequired(), or.getProperties(), null, null, null,
+                  true, or.getObjectName(), or.getLowerBound(), or.getSecondaryLowerBound(), or.getSecondaryAllowSubclasses());
+            } else {
+                this.anyObject = null;
+            }
+        }
+
+        private Node nodeFor(ParsedFoldingComponent pfc, boolean descends) {
+            if (multiplicity == Multiplicity.SCALAR || (pfc.getAlphaIndex() == null && !descends)) {
+                if (whole == null)
+                    whole = new Node();
+                return whole;
+            }
+            if (multiplicity == Multiplicity.MAP && pfc.getAlphaIndex() != null) {
+                if (byKey == null)
+                    byKey = new HashMap<String, Node>();
+                return byKey.computeIfAbsent(pfc.getAlphaIndex(), x -> new Node());
+            }
+            if (byPosition == null)
+                byPosition = new TreeMap<Integer, Node>();
+            return byPosition.computeIfAbsent(Math.max(pfc.getIndex(), 0), x -> new Node());
+        }
+    }
+
+    /** A single value: paths may end here, or continue into the object. */
+    private static final class Node {
+        private int [] slots = NO_SLOTS;
+        private Selection child = null;
+
+        private void store(Object value, Object [] result) {
+            for (int slot : slots)
+                result[slot] = value;
+        }
+    }
+}
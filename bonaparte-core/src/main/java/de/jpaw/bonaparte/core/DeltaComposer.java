@@ -0,0 +1,104 @@
+package de.jpaw.bonaparte.core;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.jpaw.bonaparte.core.DeltaFields.Unit;
+import de.jpaw.bonaparte.pojos.meta.Multiplicity;
+
+/** Writes the difference between two versions of an object, as input for the DeltaParser, which applies it to the first version.
+ *
+ * The delta contains the changed fields only, identified by their index in the sequence of serialization (superclass fields first).
+ * Each change is introduced by an integer header, which specifies the field index and the kind of change:
+ * REPLACE (followed by the new value, written by the same composer call as in regular serialization),
+ * NESTED (for objects of unchanged class: followed by the delta of the nested object) or
+ * ELEMENTS (for Lists and arrays of unchanged size: followed by the changes of individual elements, with element indexes).
+ * A list of changes is terminated by END. Sets and Maps, collections of different size and objects of different class are replaced as a whole.
+ *
+ * The delta is written using any MessageComposer, and must be read with the parser which corresponds to it.
+ * It contains no record framing, the caller can embed it into a record or transmission.
+ */
+public class DeltaComposer<E extends Exception> {
+    static final int END      = 0;
+    static final int REPLACE  = 0;
+    static final int NESTED   = 1;
+    static final int ELEMENTS = 2;
+
+    private final MessageComposer<E> out;
+    private final List<String> changedPaths = new ArrayList<String>();
+
+    public DeltaComposer(MessageComposer<E> out) {
+        this.out = out;
+    }
+
+    /** Returns the header of a change, 0 is reserved for END. */
+    static int header(int index, int kind) {
+        return ((index + 1) << 2) | kind;
+    }
+
+    /** Writes the delta which converts base into current. Returns false if there is no difference, in which case the delta just says so.
+     * base and current must not be null. */
+    public boolean writeDelta(BonaPortable base, BonaPortable current) throws E {
+        changedPaths.clear();
+        if (!DeltaFields.sameClass(base, current)) {
+            out.addField(StaticMeta.INTERNAL_INTEGER, header(0, REPLACE));
+            out.addField(StaticMeta.OUTER_BONAPORTABLE, current);
+            changedPaths.add("");
+            return true;
+        }
+        out.addField(StaticMeta.INTERNAL_INTEGER, header(0, NESTED));
+        writeObjectDelta(DeltaFields.capture(base), DeltaFields.capture(current), "");
+        return !changedPaths.isEmpty();
+    }
+
+    /** Returns the paths of the fields which have been written by the last writeDelta(), in the syntax of FieldGetter ("a.b", "list[2].x").
+     * A path which ends at an object or collection denotes its replacement as a whole. The top level object is denoted by an empty path. */
+    public List<String> getChangedPaths() {
+        return changedPaths;
+    }
+
+    private void writeObjectDelta(List<Unit> base, List<Unit> current, String prefix) throws E {
+        if (base.size() != current.size())
+            throw new IllegalArgumentException("Different number of fields for objects of the same class at " + prefix);
+        for (int i = 0; i < current.size(); ++i) {
+            final Unit b = base.get(i);
+            final Unit c = current.get(i);
+            if (!DeltaFields.same(b, c))
+                writeChange(i, b, c, prefix + c.di.getName());
+        }
+        out.addField(StaticMeta.INTERNAL_INTEGER, END);
+    }
+
+    private void writeChange(int index, Unit b, Unit c, String path) throws E {
+        if (b.isObject() && c.isObject() && DeltaFields.sameClass(b.value, c.value)) {
+            out.addField(StaticMeta.INTERNAL_INTEGER, header(index, NESTED));
+            writeObjectDelta(DeltaFields.capture((BonaPortable)b.value), DeltaFields.capture((BonaPortable)c.value), path + ".");
+            return;
+        }
+        final Multiplicity m = c.di.getMultiplicity();
+        if (b.type == DeltaFields.Type.COLLECTION && c.type == DeltaFields.Type.COLLECTION && b.size() == c.size()
+          && (m == Multiplicity.LIST || m == Multiplicity.ARRAY)) {
+            out.addField(StaticMeta.INTERNAL_INTEGER, header(index, ELEMENTS));
+            for (int j = 0; j < c.elements.size(); ++j) {
+                final Unit be = b.elements.get(j);
+                final Unit ce = c.elements.get(j);
+                if (!DeltaFields.same(be, ce)) {
+                    final String elementPath = path + "[" + j + "]";
+                    if (be.isObject() && ce.isObject() && DeltaFields.sameClass(be.value, ce.value)) {
+                        out.addField(StaticMeta.INTERNAL_INTEGER, header(j, NESTED));
+                        writeObjectDelta(DeltaFields.capture((BonaPortable)be.value), DeltaFields.capture((BonaPortable)ce.value), elementPath + ".");
+                    } else {
+                        out.addField(StaticMeta.INTERNAL_INTEGER, header(j, REPLACE));
+                        DeltaFields.write(ce, out);
+                        changedPaths.add(elementPath);
+                    }
+                }
+            }
+            out.addField(StaticMeta.INTERNAL_INTEGER, END);
+            return;
+        }
+        out.addField(StaticMeta.INTERNAL_INTEGER, header(index, REPLACE));
+        DeltaFields.write(c, out);
+        changedPaths.add(path);
+    }
+}
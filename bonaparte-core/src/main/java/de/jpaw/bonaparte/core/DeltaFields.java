@@ -0,0 +1,463 @@
+package de.jpaw.bonaparte.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+import de.jpaw.bonaparte.enums.BonaByteEnumSet;
+import de.jpaw.bonaparte.enums.BonaIntEnumSet;
+import de.jpaw.bonaparte.enums.BonaLongEnumSet;
+import de.jpaw.bonaparte.enums.BonaNonTokenizableEnum;
+import de.jpaw.bonaparte.enums.BonaShortEnumSet;
+import de.jpaw.bonaparte.enums.BonaStringEnumSet;
+import de.jpaw.bonaparte.enums.BonaTokenizableEnum;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BinaryElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.EnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+import de.jpaw.bonaparte.pojos.meta.MiscElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumSetDataItem;
+import de.jpaw.bonaparte.util.Fingerprints;
+import de.jpaw.enums.TokenizableEnum;
+import de.jpaw.enums.XEnum;
+import de.jpaw.fixedpoint.FixedPointBase;
+import de.jpaw.util.ByteArray;
+
+/** The fields of an object, as captured from its serializeSub() calls, for the computation and the application of deltas (see DeltaComposer and DeltaParser).
+ *
+ * Every field results in one unit, in the sequence of serialization (superclass fields first), which is the field index used by the deltas.
+ * A unit records the composer method, the field definition and the value, which allows to compare units, to write them again to any composer,
+ * and to return their values to the deserialize() method of a new instance. Lists, Sets, arrays and Maps result in a single unit with the elements
+ * as nested units (keys and values alternating for Maps). Objects are kept by reference and not expanded. */
+final class DeltaFields {
+    private DeltaFields() { }
+
+    /** The composer method which produced a unit. */
+    enum Type {
+        NULL, NULL_COLLECTION, COLLECTION, MAP,
+        BOOLEAN, CHARACTER, DOUBLE, FLOAT, BYTE, SHORT, INTEGER, LONG, FIXEDPOINT, BIGINTEGER, BIGDECIMAL,
+        STRING, UUID, BYTEARRAY, RAW, INSTANT, DAY, TIME, DAYTIME,
+        OBJECT, JSON, ARRAY, ELEMENT,
+        ENUM, TOKENIZABLE_ENUM, XENUM,
+        BYTE_ENUMSET, SHORT_ENUMSET, INT_ENUMSET, LONG_ENUMSET, STRING_ENUMSET, STRING_XENUMSET
+    }
+
+    static final class Unit {
+        final Type type;
+        final FieldDefinition di;
+        final FieldDefinition expandedDi;       // ordinal / token field of enums, else null
+        final Object value;
+        final int sizeOfElement;                // for collections
+        final List<Unit> elements;              // for collections and Maps, else null
+
+        Unit(Type type, FieldDefinition di, FieldDefinition expandedDi, Object value, int sizeOfElement, List<Unit> elements) {
+            this.type = type;
+            this.di = di;
+            this.expandedDi = expandedDi;
+            this.value = value;
+            this.sizeOfElement = sizeOfElement;
+            this.elements = elements;
+        }
+
+        Unit(Type type, FieldDefinition di, Object value) {
+            this(type, di, null, value, 0, null);
+        }
+
+        /** Returns the number of elements of a collection, or -1 for a null collection. */
+        int size() {
+            return elements == null ? -1 : type == Type.MAP ? elements.size() / 2 : elements.size();
+        }
+
+        boolean isObject() {
+            return type == Type.OBJECT && value instanceof BonaPortable;
+        }
+    }
+
+    /** Returns the units of the fields of an object. */
+    static List<Unit> capture(BonaCustom obj) {
+        final Collector collector = new Collector();
+        obj.serializeSub(collector);
+        return collector.units;
+    }
+
+    /** Returns true if both objects are BonaPortables of the same class, which allows to describe their difference by a delta. */
+    static boolean sameClass(Object a, Object b) {
+        return a instanceof BonaPortable && b instanceof BonaPortable && a.getClass() == b.getClass();
+    }
+
+    /** Compares two units. Objects are compared by equals(), using the fingerprints of frozen objects as shortcut. */
+    static boolean same(Unit a, Unit b) {
+        if (a.type != b.type)
+            return false;
+        if (a.elements != null || b.elements != null) {
+            if (a.elements == null || b.elements == null || a.elements.size() != b.elements.size())
+                return false;
+            for (int i = 0; i < a.elements.size(); ++i) {
+                if (!same(a.elements.get(i), b.elements.get(i)))
+                    return false;
+            }
+            return true;
+        }
+        if (a.type == Type.RAW)
+            return Arrays.equals((byte [])a.value, (byte [])b.value);
+        if (a.type == Type.OBJECT)
+            return Fingerprints.DEFAULT.equals(a.value, b.value);
+        return Objects.equals(a.value, b.value);
+    }
+
+    /** Writes a unit, by the same composer calls as the original serialization. */
+    @SuppressWarnings("unchecked")
+    static <E extends Exception> void write(Unit u, MessageComposer<E> w) throws E {
+        final FieldDefinition di = u.di;
+        final Object v = u.value;
+        switch (u.type) {
+        case NULL:
+            w.writeNull(di);
+            break;
+        case NULL_COLLECTION:
+            w.writeNullCollection(di);
+            break;
+        case COLLECTION:
+            w.startArray(di, u.elements.size(), u.sizeOfElement);
+            for (Unit e : u.elements)
+                write(e, w);
+            w.terminateArray();
+            break;
+        case MAP:
+            w.startMap(di, u.size());
+            for (Unit e : u.elements)
+                write(e, w);
+            w.terminateMap();
+            break;
+        case BOOLEAN:
+            w.addField((MiscElementaryDataItem)di, ((Boolean)v).booleanValue());
+            break;
+        case CHARACTER:
+            w.addField((MiscElementaryDataItem)di, ((Character)v).charValue());
+            break;
+        case DOUBLE:
+            w.addField((BasicNumericElementaryDataItem)di, ((Double)v).doubleValue());
+            break;
+        case FLOAT:
+            w.addField((BasicNumericElementaryDataItem)di, ((Float)v).floatValue());
+            break;
+        case BYTE:
+            w.addField((BasicNumericElementaryDataItem)di, ((Byte)v).byteValue());
+            break;
+        case SHORT:
+            w.addField((BasicNumericElementaryDataItem)di, ((Short)v).shortValue());
+            break;
+        case INTEGER:
+            w.addField((BasicNumericElementaryDataItem)di, ((Integer)v).intValue());
+            break;
+        case LONG:
+            w.addField((BasicNumericElementaryDataItem)di, ((Long)v).longValue());
+            break;
+        case FIXEDPOINT:
+            addFixedPoint(w, (BasicNumericElementaryDataItem)di, v);
+            break;
+        case BIGINTEGER:
+            w.addField((BasicNumericElementaryDataItem)di, (BigInteger)v);
+            break;
+        case BIGDECIMAL:
+            w.addField((NumericElementaryDataItem)di, (BigDecimal)v);
+            break;
+        case STRING:
+            w.addField((AlphanumericElementaryDataItem)di, (String)v);
+            break;
+        case UUID:
+            w.addField((MiscElementaryDataItem)di, (UUID)v);
+            break;
+        case BYTEARRAY:
+            w.addField((BinaryElementaryDataItem)di, (ByteArray)v);
+            break;
+        case RAW:
+            w.addField((BinaryElementaryDataItem)di, (byte [])v);
+            break;
+        case INSTANT:
+            w.addField((TemporalElementaryDataItem)di, (Instant)v);
+            break;
+        case DAY:
+            w.addField((TemporalElementaryDataItem)di, (LocalDate)v);
+            break;
+        case TIME:
+            w.addField((TemporalElementaryDataItem)di, (LocalTime)v);
+            break;
+        case DAYTIME:
+            w.addField((TemporalElementaryDataItem)di, (LocalDateTime)v);
+            break;
+        case OBJECT:
+            w.addField((ObjectReference)di, (BonaCustom)v);
+            break;
+        case JSON:
+            w.addField((ObjectReference)di, (Map<String, Object>)v);
+            break;
+        case ARRAY:
+            w.addField((ObjectReference)di, (List<Object>)v);
+            break;
+        case ELEMENT:
+            w.addField((ObjectReference)di, v);
+            break;
+        case ENUM:
+            w.addEnum((EnumDataItem)di, (BasicNumericElementaryDataItem)u.expandedDi, (BonaNonTokenizableEnum)v);
+            break;
+        case TOKENIZABLE_ENUM:
+            w.addEnum((EnumDataItem)di, (AlphanumericElementaryDataItem)u.expandedDi, (BonaTokenizableEnum)v);
+            break;
+        case XENUM:
+            w.addEnum((XEnumDataItem)di, (AlphanumericElementaryDataItem)u.expandedDi, (XEnum<?>)v);
+            break;
+        case BYTE_ENUMSET:
+            w.addField((NumericEnumSetDataItem)di, (BonaByteEnumSet<?>)v);
+            break;
+        case SHORT_ENUMSET:
+            w.addField((NumericEnumSetDataItem)di, (BonaShortEnumSet<?>)v);
+            break;
+        case INT_ENUMSET:
+            w.addField((NumericEnumSetDataItem)di, (BonaIntEnumSet<?>)v);
+            break;
+        case LONG_ENUMSET:
+            w.addField((NumericEnumSetDataItem)di, (BonaLongEnumSet<?>)v);
+            break;
+        case STRING_ENUMSET:
+            w.addField((AlphanumericEnumSetDataItem)di, (BonaStringEnumSet<?>)v);
+            break;
+        case STRING_XENUMSET:
+            w.addField((XEnumSetDataItem)di, (BonaStringEnumSet<?>)v);
+            break;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <F extends FixedPointBase<F>, E extends Exception> void addFixedPoint(MessageComposer<E> w, BasicNumericElementaryDataItem di, Object v) throws E {
+        w.addField(di, (F)v);
+    }
+
+    /** Composer which records the units of an object. Collections cannot be nested in Bonaparte, therefore a single level of elements is sufficient. */
+    private static final class Collector extends NoOpComposer<RuntimeException> {
+        private final List<Unit> units = new ArrayList<Unit>();
+        private List<Unit> currentElements = null;          // elements of the collection in progress, or null
+        private Unit currentCollection = null;
+
+        private void add(Unit u) {
+            if (currentElements != null)
+                currentElements.add(u);
+            else
+                units.add(u);
+        }
+
+        private void add(Type type, FieldDefinition di, Object value) {
+            add(new Unit(type, di, value));
+        }
+
+        @Override
+        public void writeNull(FieldDefinition di) {
+            add(Type.NULL, di, null);
+        }
+
+        @Override
+        public void writeNullCollection(FieldDefinition di) {
+            add(Type.NULL_COLLECTION, di, null);
+        }
+
+        @Override
+        public void startArray(FieldDefinition di, int currentMembers, int sizeOfElement) {
+            currentElements = new ArrayList<Unit>(currentMembers);
+            currentCollection = new Unit(Type.COLLECTION, di, null, null, sizeOfElement, currentElements);
+        }
+
+        @Override
+        public void startMap(FieldDefinition di, int currentMembers) {
+            currentElements = new ArrayList<Unit>(2 * currentMembers);
+            currentCollection = new Unit(Type.MAP, di, null, null, 0, currentElements);
+        }
+
+        @Override
+        public void terminateArray() {
+            currentElements = null;
+            units.add(currentCollection);
+            currentCollection = null;
+        }
+
+        @Override
+        public void terminateMap() {
+            terminateArray();
+        }
+
+        @Override
+        public void addField(AlphanumericElementaryDataItem di, String s) {
+            add(Type.STRING, di, s);
+        }
+
+        @Override
+        public void addField(MiscElementaryDataItem di, boolean b) {
+            add(Type.BOOLEAN, di, Boolean.valueOf(b));
+        }
+
+        @Override
+        public void addField(MiscElementaryDataItem di, char c) {
+            add(Type.CHARACTER, di, Character.valueOf(c));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, double d) {
+            add(Type.DOUBLE, di, Double.valueOf(d));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, float f) {
+            add(Type.FLOAT, di, Float.valueOf(f));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, byte n) {
+            add(Type.BYTE, di, Byte.valueOf(n));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, short n) {
+            add(Type.SHORT, di, Short.valueOf(n));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, int n) {
+            add(Type.INTEGER, di, Integer.valueOf(n));
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, long n) {
+            add(Type.LONG, di, Long.valueOf(n));
+        }
+
+        @Override
+        public <F extends FixedPointBase<F>> void addField(BasicNumericElementaryDataItem di, F n) {
+            add(Type.FIXEDPOINT, di, n);
+        }
+
+        @Override
+        public void addField(BasicNumericElementaryDataItem di, BigInteger n) {
+            add(Type.BIGINTEGER, di, n);
+        }
+
+        @Override
+        public void addField(NumericElementaryDataItem di, BigDecimal n) {
+            add(Type.BIGDECIMAL, di, n);
+        }
+
+        @Override
+        public void addField(MiscElementaryDataItem di, UUID n) {
+            add(Type.UUID, di, n);
+        }
+
+        @Override
+        public void addField(BinaryElementaryDataItem di, ByteArray b) {
+            add(Type.BYTEARRAY, di, b);
+        }
+
+        @Override
+        public void addField(BinaryElementaryDataItem di, byte [] b) {
+            add(Type.RAW, di, b);
+        }
+
+        @Override
+        public void addField(TemporalElementaryDataItem di, Instant t) {
+            add(Type.INSTANT, di, t);
+        }
+
+        @Override
+        public void addField(TemporalElementaryDataItem di, LocalDate t) {
+            add(Type.DAY, di, t);
+        }
+
+        @Override
+        public void addField(TemporalElementaryDataItem di, LocalTime t) {
+            add(Type.TIME, di, t);
+        }
+
+        @Override
+        public void addField(TemporalElementaryDataItem di, LocalDateTime t) {
+            add(Type.DAYTIME, di, t);
+        }
+
+        @Override
+        public void addField(ObjectReference di, BonaCustom obj) {
+            add(Type.OBJECT, di, obj);
+        }
+
+        @Override
+        public void addField(ObjectReference di, Map<String, Object> obj) {
+            add(Type.JSON, di, obj);
+        }
+
+        @Override
+        public void addField(ObjectReference di, List<Object> obj) {
+            add(Type.ARRAY, di, obj);
+        }
+
+        @Override
+        public void addField(ObjectReference di, Object obj) {
+            add(Type.ELEMENT, di, obj);
+        }
+
+        @Override
+        public void addEnum(EnumDataItem di, BasicNumericElementaryDataItem ord, BonaNonTokenizableEnum n) {
+            add(new Unit(Type.ENUM, di, ord, n, 0, null));
+        }
+
+        @Override
+        public void addEnum(EnumDataItem di, AlphanumericElementaryDataItem token, BonaTokenizableEnum n) {
+            add(new Unit(Type.TOKENIZABLE_ENUM, di, token, n, 0, null));
+        }
+
+        @Override
+        public void addEnum(XEnumDataItem di, AlphanumericElementaryDataItem token, XEnum<?> n) {
+            add(new Unit(Type.XENUM, di, token, n, 0, null));
+        }
+
+        @Override
+        public <S extends Enum<S>> void addField(NumericEnumSetDataItem di, BonaByteEnumSet<S> n) {
+            add(Type.BYTE_ENUMSET, di, n);
+        }
+
+        @Override
+        public <S extends Enum<S>> void addField(NumericEnumSetDataItem di, BonaShortEnumSet<S> n) {
+            add(Type.SHORT_ENUMSET, di, n);
+        }
+
+        @Override
+        public <S extends Enum<S>> void addField(NumericEnumSetDataItem di, BonaIntEnumSet<S> n) {
+            add(Type.INT_ENUMSET, di, n);
+        }
+
+        @Override
+        public <S extends Enum<S>> void addField(NumericEnumSetDataItem di, BonaLongEnumSet<S> n) {
+            add(Type.LONG_ENUMSET, di, n);
+        }
+
+        @Override
+        public <S extends TokenizableEnum> void addField(AlphanumericEnumSetDataItem di, BonaStringEnumSet<S> e) {
+            add(Type.STRING_ENUMSET, di, e);
+        }
+
+        @Override
+        public <S extends TokenizableEnum> void addField(XEnumSetDataItem di, BonaStringEnumSet<S> e) {
+            add(Type.STRING_XENUMSET, di, e);
+        }
+    }
+}
@@ -0,0 +1,611 @@
+package de.jpaw.bonaparte.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongFunction;
+
+import de.jpaw.bonaparte.core.DeltaFields.Unit;
+import de.jpaw.bonaparte.enums.BonaByteEnumSet;
+import de.jpaw.bonaparte.enums.BonaEnum;
+import de.jpaw.bonaparte.enums.BonaIntEnumSet;
+import de.jpaw.bonaparte.enums.BonaLongEnumSet;
+import de.jpaw.bonaparte.enums.BonaShortEnumSet;
+import de.jpaw.bonaparte.enums.BonaStringEnumSet;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BinaryElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.EnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+import de.jpaw.bonaparte.pojos.meta.MiscElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumSetDataItem;
+import de.jpaw.enums.AbstractXEnumBase;
+import de.jpaw.enums.TokenizableEnum;
+import de.jpaw.enums.XEnumFactory;
+import de.jpaw.fixedpoint.FixedPointBase;
+import de.jpaw.util.ByteArray;
+
+/** Reads a delta written by the DeltaComposer and applies it to the base object, which must be equal to the one used to write the delta.
+ *
+ * The result is a new object, the base object is not modified. The new object is populated by its regular deserialize() method,
+ * which reads the changed fields from the delta, and all other fields from the base object. Values of unchanged fields are shared with
+ * the base object, except raw byte arrays, therefore unchanged nested objects are not copied.
+ */
+public class DeltaParser<E extends Exception> {
+    private static final int BASE = -1;         // kind of values taken from the base object
+
+    private final MessageParser<E> in;
+
+    public DeltaParser(MessageParser<E> in) {
+        this.in = in;
+    }
+
+    /** Reads a delta and returns the base object with the delta applied. */
+    public BonaPortable readDelta(BonaPortable base) throws E {
+        final int header = in.readPrimitiveInteger(StaticMeta.INTERNAL_INTEGER);
+        switch (header) {
+        case (1 << 2) | DeltaComposer.REPLACE:
+            return in.readObject(StaticMeta.OUTER_BONAPORTABLE, BonaPortable.class);
+        case (1 << 2) | DeltaComposer.NESTED:
+            return apply(base);
+        default:
+            throw in.customExceptionConverter("Invalid delta header " + header, null);
+        }
+    }
+
+    /** Reads the changes of an object, up to the terminating END, and returns a modified copy of base. */
+    private BonaPortable apply(BonaPortable base) throws E {
+        final BonaPortable copy = base.ret$BonaPortableClass().newInstance();
+        final Merger merger = new Merger(DeltaFields.capture(base));
+        copy.deserialize(merger);
+        merger.finish();
+        return copy;
+    }
+
+    private static int kindOf(int header, int index) {
+        return header != DeltaComposer.END && (header >>> 2) - 1 == index ? header & 3 : BASE;
+    }
+
+    /** The parser passed to deserialize() of the copy, for a single object level. */
+    private final class Merger implements MessageParser<E> {
+        private final List<Unit> units;
+        private int index = 0;                  // field index
+        private int header;                     // header of the next changed field
+        private int kind = BASE;                // kind of the current value
+
+        // state of a collection in progress
+        private boolean inCollection = false;
+        private List<Unit> elements = null;     // elements of the base collection
+        private int collectionKind = BASE;
+        private int elementIndex = 0;
+        private int elementHeader = DeltaComposer.END;
+
+        private Merger(List<Unit> units) throws E {
+            this.units = units;
+            this.header = readHeader(0);
+        }
+
+        /** Reads the next header, which must be END or refer to an index not less than minIndex. */
+        private int readHeader(int minIndex) throws E {
+            final int h = in.readPrimitiveInteger(StaticMeta.INTERNAL_INTEGER);
+            if (h != DeltaComposer.END && ((h >>> 2) - 1 < minIndex || (h & 3) > DeltaComposer.ELEMENTS))
+                throw in.customExceptionConverter("Invalid delta header " + h + " at field index " + minIndex, null);
+            return h;
+        }
+
+        /** Determines the kind of the next value and returns the corresponding unit of the base object. */
+        private Unit next() throws E {
+            if (inCollection) {
+                if (collectionKind == DeltaComposer.REPLACE) {
+                    kind = DeltaComposer.REPLACE;
+                    return null;
+                }
+                if (elementIndex >= elements.size())
+                    throw in.customExceptionConverter("Too many elements for " + units.get(index).di.getName(), null);
+                kind = kindOf(elementHeader, elementIndex);
+                return elements.get(elementIndex);
+            }
+            if (index >= units.size())
+                throw in.customExceptionConverter("More fields than in the base object", null);
+            kind = kindOf(header, index);
+            return units.get(index);
+        }
+
+        /** Returns true if the next value must be read from the delta, false if it is taken from the base object. */
+        private boolean isReplaced() throws E {
+            next();
+            if (kind == DeltaComposer.NESTED || kind == DeltaComposer.ELEMENTS)
+                throw in.customExceptionConverter("Invalid kind of change " + kind + " for a field of scalar type", null);
+            return kind == DeltaComposer.REPLACE;
+        }
+
+        private Object base() {
+            return (inCollection ? elements.get(elementIndex) : units.get(index)).value;
+        }
+
+        /** Completes the current value. */
+        private void consumed() throws E {
+            if (inCollection) {
+                if (collectionKind == DeltaComposer.REPLACE)
+                    return;
+                if (kind != BASE)
+                    elementHeader = readHeader(elementIndex + 1);
+                ++elementIndex;
+            } else {
+                if (kind != BASE)
+                    header = readHeader(index + 1);
+                ++index;
+            }
+        }
+
+        /** Verifies that all fields and changes have been processed. */
+        private void finish() throws E {
+            if (index != units.size() || header != DeltaComposer.END)
+                throw in.customExceptionConverter("Delta does not match the base object at field index " + index, null);
+        }
+
+        private int startCollection(FieldDefinition di, int sizeOfElement, boolean isMap) throws E {
+            final Unit u = next();
+            switch (kind) {
+            case DeltaComposer.REPLACE:
+                final int n = isMap ? in.parseMapStart(di) : in.parseArrayStart(di, sizeOfElement);
+                if (n < 0) {
+                    consumed();
+                } else {
+                    inCollection = true;
+                    collectionKind = DeltaComposer.REPLACE;
+                }
+                return n;
+            case DeltaComposer.ELEMENTS:
+                if (isMap || u.elements == null)
+                    throw in.customExceptionConverter("Invalid element changes for " + di.getName(), null);
+                elementHeader = readHeader(0);
+                break;
+            case DeltaComposer.NESTED:
+                throw in.customExceptionConverter("Invalid object changes for " + di.getName(), null);
+            default:
+                if (u.elements == null) {
+                    consumed();
+                    return -1;
+                }
+                elementHeader = DeltaComposer.END;
+            }
+            inCollection = true;
+            collectionKind = kind;
+            elements = u.elements;
+            elementIndex = 0;
+            return u.size();
+        }
+
+        @Override
+        public int parseMapStart(FieldDefinition di) throws E {
+            return startCollection(di, 0, true);
+        }
+
+        @Override
+        public int parseArrayStart(FieldDefinition di, int sizeOfElement) throws E {
+            return startCollection(di, sizeOfElement, false);
+        }
+
+        @Override
+        public void parseArrayEnd() throws E {
+            if (!inCollection)
+                throw in.customExceptionConverter("End of collection without start", null);
+            if (collectionKind == DeltaComposer.REPLACE) {
+                in.parseArrayEnd();
+            } else if (elementIndex != elements.size() || elementHeader != DeltaComposer.END) {
+                throw in.customExceptionConverter("Element changes do not match the base collection " + units.get(index).di.getName(), null);
+            }
+            kind = collectionKind;
+            inCollection = false;
+            elements = null;
+            consumed();
+        }
+
+        @Override
+        public <R extends BonaPortable> R readObject(ObjectReference di, Class<R> type) throws E {
+            final Unit u = next();
+            final R result;
+            switch (kind) {
+            case DeltaComposer.REPLACE:
+                result = in.readObject(di, type);
+                break;
+            case DeltaComposer.NESTED:
+                if (!u.isObject())
+                    throw in.customExceptionConverter("Invalid object changes for " + di.getName(), null);
+                result = type.cast(apply((BonaPortable)u.value));
+                break;
+            case DeltaComposer.ELEMENTS:
+                throw in.customExceptionConverter("Invalid element changes for " + di.getName(), null);
+            default:
+                result = type.cast(u.value);
+            }
+            consumed();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public Map<String, Object> readJson(ObjectReference di) throws E {
+            final Map<String, Object> result = isReplaced() ? in.readJson(di) : (Map<String, Object>)base();
+            consumed();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public List<Object> readArray(ObjectReference di) throws E {
+            final List<Object> result = isReplaced() ? in.readArray(di) : (List<Object>)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Object readElement(ObjectReference di) throws E {
+            final Object result = isReplaced() ? in.readElement(di) : base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public BigDecimal readBigDecimal(NumericElementaryDataItem di) throws E {
+            final BigDecimal result = isReplaced() ? in.readBigDecimal(di) : (BigDecimal)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Character readCharacter(MiscElementaryDataItem di) throws E {
+            final Character result = isReplaced() ? in.readCharacter(di) : (Character)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public UUID readUUID(MiscElementaryDataItem di) throws E {
+            final UUID result = isReplaced() ? in.readUUID(di) : (UUID)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Boolean readBoolean(MiscElementaryDataItem di) throws E {
+            final Boolean result = isReplaced() ? in.readBoolean(di) : (Boolean)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Double readDouble(BasicNumericElementaryDataItem di) throws E {
+            final Double result = isReplaced() ? in.readDouble(di) : (Double)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Float readFloat(BasicNumericElementaryDataItem di) throws E {
+            final Float result = isReplaced() ? in.readFloat(di) : (Float)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Long readLong(BasicNumericElementaryDataItem di) throws E {
+            final Long result = isReplaced() ? in.readLong(di) : (Long)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Integer readInteger(BasicNumericElementaryDataItem di) throws E {
+            final Integer result = isReplaced() ? in.readInteger(di) : (Integer)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Short readShort(BasicNumericElementaryDataItem di) throws E {
+            final Short result = isReplaced() ? in.readShort(di) : (Short)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Byte readByte(BasicNumericElementaryDataItem di) throws E {
+            final Byte result = isReplaced() ? in.readByte(di) : (Byte)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public BigInteger readBigInteger(BasicNumericElementaryDataItem di) throws E {
+            final BigInteger result = isReplaced() ? in.readBigInteger(di) : (BigInteger)base();
+            consumed();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <F extends FixedPointBase<F>> F readFixedPoint(BasicNumericElementaryDataItem di, LongFunction<F> factory) throws E {
+            final F result = isReplaced() ? in.readFixedPoint(di, factory) : (F)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public String readAscii(AlphanumericElementaryDataItem di) throws E {
+            final String result = isReplaced() ? in.readAscii(di) : (String)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public String readString(AlphanumericElementaryDataItem di) throws E {
+            final String result = isReplaced() ? in.readString(di) : (String)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public ByteArray readByteArray(BinaryElementaryDataItem di) throws E {
+            final ByteArray result = isReplaced() ? in.readByteArray(di) : (ByteArray)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public byte [] readRaw(BinaryElementaryDataItem di) throws E {
+            final byte [] result;
+            if (isReplaced()) {
+                result = in.readRaw(di);
+            } else {
+                final byte [] b = (byte [])base();
+                result = b == null ? null : b.clone();      // byte arrays are mutable
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Instant readInstant(TemporalElementaryDataItem di) throws E {
+            final Instant result = isReplaced() ? in.readInstant(di) : (Instant)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public LocalDate readDay(TemporalElementaryDataItem di) throws E {
+            final LocalDate result = isReplaced() ? in.readDay(di) : (LocalDate)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public LocalTime readTime(TemporalElementaryDataItem di) throws E {
+            final LocalTime result = isReplaced() ? in.readTime(di) : (LocalTime)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public LocalDateTime readDayTime(TemporalElementaryDataItem di) throws E {
+            final LocalDateTime result = isReplaced() ? in.readDayTime(di) : (LocalDateTime)base();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Integer readEnum(EnumDataItem edi, BasicNumericElementaryDataItem di) throws E {
+            final Integer result;
+            if (isReplaced()) {
+                result = in.readEnum(edi, di);
+            } else {
+                final Object e = base();
+                result = e == null ? null : Integer.valueOf(((BonaEnum)e).ordinal());
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public String readEnum(EnumDataItem edi, AlphanumericElementaryDataItem di) throws E {
+            final String result;
+            if (isReplaced()) {
+                result = in.readEnum(edi, di);
+            } else {
+                final Object e = base();
+                result = e == null ? null : ((TokenizableEnum)e).getToken();
+            }
+            consumed();
+            return result;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public <T extends AbstractXEnumBase<T>> T readXEnum(XEnumDataItem di, XEnumFactory<T> factory) throws E {
+            final T result;
+            if (isReplaced()) {
+                result = in.readXEnum(di, factory);
+            } else {
+                final Object e = base();
+                result = e == null ? factory.getNullToken() : (T)e;
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public String readString4Xenumset(XEnumSetDataItem di) throws E {
+            final String result;
+            if (isReplaced()) {
+                result = in.readString4Xenumset(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : ((BonaStringEnumSet<?>)s).getBitmap();
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public String readString4EnumSet(AlphanumericEnumSetDataItem di) throws E {
+            final String result;
+            if (isReplaced()) {
+                result = in.readString4EnumSet(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : ((BonaStringEnumSet<?>)s).getBitmap();
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Long readLong4EnumSet(NumericEnumSetDataItem di) throws E {
+            final Long result;
+            if (isReplaced()) {
+                result = in.readLong4EnumSet(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : Long.valueOf(((BonaLongEnumSet<?>)s).getBitmap());
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Integer readInteger4EnumSet(NumericEnumSetDataItem di) throws E {
+            final Integer result;
+            if (isReplaced()) {
+                result = in.readInteger4EnumSet(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : Integer.valueOf(((BonaIntEnumSet<?>)s).getBitmap());
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Short readShort4EnumSet(NumericEnumSetDataItem di) throws E {
+            final Short result;
+            if (isReplaced()) {
+                result = in.readShort4EnumSet(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : Short.valueOf(((BonaShortEnumSet<?>)s).getBitmap());
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public Byte readByte4EnumSet(NumericEnumSetDataItem di) throws E {
+            final Byte result;
+            if (isReplaced()) {
+                result = in.readByte4EnumSet(di);
+            } else {
+                final Object s = base();
+                result = s == null ? null : Byte.valueOf(((BonaByteEnumSet<?>)s).getBitmap());
+            }
+            consumed();
+            return result;
+        }
+
+        @Override
+        public char readPrimitiveCharacter(MiscElementaryDataItem di) throws E {
+            final char result = isReplaced() ? in.readPrimitiveCharacter(di) : ((Character)base()).charValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public boolean readPrimitiveBoolean(MiscElementaryDataItem di) throws E {
+            final boolean result = isReplaced() ? in.readPrimitiveBoolean(di) : ((Boolean)base()).booleanValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public double readPrimitiveDouble(BasicNumericElementaryDataItem di) throws E {
+            final double result = isReplaced() ? in.readPrimitiveDouble(di) : ((Double)base()).doubleValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public float readPrimitiveFloat(BasicNumericElementaryDataItem di) throws E {
+            final float result = isReplaced() ? in.readPrimitiveFloat(di) : ((Float)base()).floatValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public long readPrimitiveLong(BasicNumericElementaryDataItem di) throws E {
+            final long result = isReplaced() ? in.readPrimitiveLong(di) : ((Long)base()).longValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public int readPrimitiveInteger(BasicNumericElementaryDataItem di) throws E {
+            final int result = isReplaced() ? in.readPrimitiveInteger(di) : ((Integer)base()).intValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public short readPrimitiveShort(BasicNumericElementaryDataItem di) throws E {
+            final short result = isReplaced() ? in.readPrimitiveShort(di) : ((Short)base()).shortValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public byte readPrimitiveByte(BasicNumericElementaryDataItem di) throws E {
+            final byte result = isReplaced() ? in.readPrimitiveByte(di) : ((Byte)base()).byteValue();
+            consumed();
+            return result;
+        }
+
+        @Override
+        public BonaPortable readRecord() throws E {
+            throw in.customExceptionConverter("A delta merger only supports deserialize(), not readRecord()", null);
+        }
+
+        @Override
+        public List<BonaPortable> readTransmission() throws E {
+            throw in.customExceptionConverter("A delta merger only supports deserialize(), not readTransmission()", null);
+        }
+
+        @Override
+        public void setClassName(String newClassName) {
+        }
+
+        @Override
+        public void eatParentSeparator() throws E {
+        }
+
+        @Override
+        public E enumExceptionConverter(IllegalArgumentException e) throws E {
+            return in.enumExceptionConverter(e);
+        }
+
+        @Override
+        public E customExceptionConverter(String msg, Exception e) throws E {
+            return in.customExceptionConverter(msg, e);
+        }
+    }
+}
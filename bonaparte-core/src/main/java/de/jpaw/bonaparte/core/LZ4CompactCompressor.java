@@ -0,0 +1,47 @@
+package de.jpaw.bonaparte.core;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4SafeDecompressor;
+
+/** LZ4 block compression for the compact format (format ID COMPRESSED_LZ4).
+ * Requires the (optional) dependency net.jpountz.lz4:lz4 at runtime. */
+public final class LZ4CompactCompressor implements CompactCompressor {
+    public static final LZ4CompactCompressor INSTANCE = new LZ4CompactCompressor();
+
+    private final LZ4Compressor compressor;
+    private final LZ4SafeDecompressor decompressor;      // safe flavour, because the input may come from untrusted sources
+
+    private LZ4CompactCompressor() {
+        final LZ4Factory factory = LZ4Factory.fastestInstance();
+        compressor = factory.fastCompressor();
+        decompressor = factory.safeDecompressor();
+    }
+
+    @Override
+    public int getFormat() {
+        return CompactConstants.COMPRESSED_LZ4;
+    }
+
+    @Override
+    public int maxCompressedLength(int uncompressedLength) {
+        return compressor.maxCompressedLength(uncompressedLength);
+    }
+
+    @Override
+    public long maxUncompressedLength(int compressedLength) {
+        return 255L * compressedLength;     // a single LZ4 sequence byte expands to at most 255 bytes
+    }
+
+    @Override
+    public int compress(byte [] src, int srcOffset, int length, byte [] dest, int destOffset, int maxDestLength) {
+        return compressor.compress(src, srcOffset, length, dest, destOffset, maxDestLength);
+    }
+
+    @Override
+    public void decompress(byte [] src, int srcOffset, int compressedLength, byte [] dest, int destOffset, int uncompressedLength) {
+        final int bytesWritten = decompressor.decompress(src, srcOffset, compressedLength, dest, destOffset, uncompressedLength);
+        if (bytesWritten != uncompressedLength)
+            throw new IllegalArgumentException("LZ4 block decompressed to " + bytesWritten + " bytes, but " + uncompressedLength + " were announced");
+    }
+}
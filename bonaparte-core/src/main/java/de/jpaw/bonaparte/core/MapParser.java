@@ -392,7 +392,7 @@ public class MapParser extends AbstractMessageParser<MessageParserException> imp
         if (z == null)
             return null;
         if (z instanceof String s) {
-            return spu.readAscii(di, s);
+            return canonical(di, spu.readAscii(di, s));
         }
         throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
     }
@@ -403,7 +403,7 @@ public class MapParser extends AbstractMessageParser<MessageParserException> imp
         if (z == null)
             return null;
         if (z instanceof String s) {
-            return spu.readString(di, s);
+            return canonical(di, spu.readString(di, s));
         }
         throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
     }
@@ -110,6 +110,11 @@ public class MessageParserException extends ApplicationException {
     public static final int STRING_TOO_SHORT             = OFFSET + 70;
     public static final int MISSING_CLOSING_QUOTE        = OFFSET + 71;
     public static final int INVALID_INSTANT_FORMAT       = OFFSET + 72;
+    public static final int CORRUPT_COMPRESSED           = OFFSET + 73;
+    public static final int BACKREFERENCE_TO_SKIPPED     = OFFSET + 74;
+    public static final int INVALID_CLASS_DICTIONARY_REF = OFFSET + 75;
+    public static final int INVALID_STRING_REFERENCE     = OFFSET + 76;
+    public static final int STRING_TABLE_EXCEEDED        = OFFSET + 77;
 
 
     static {
@@ -171,7 +176,7 @@ public class MessageParserException extends ApplicationException {
         registerCode(BAD_CLASS_IDS                , "No class registered for factoryId/ClassId");
         registerCode(INVALID_REFERENCES           , "Could not resolve recursive references (record for index not found)");    // mapped PersistenceException
         registerCode(UNSUPPORTED_TOKEN            , "Token not yet supported (while skipping unknown data)");
-        registerCode(UNSUPPORTED_COMPRESSED       , "Attempt to skip compressed data (not yet supported by parser version)");
+        registerCode(UNSUPPORTED_COMPRESSED       , "Compressed data of unknown format, or compression not supported by this parser");
         registerCode(JSON_EXCEPTION               , "JSON parsing exception");
         registerCode(JSON_ID                      , "Map key is not a valid JSON identifier");
         registerCode(JSON_DUPLICATE_KEY           , "Map key of JSON map occurs multiple times");
@@ -187,6 +192,11 @@ public class MessageParserException extends ApplicationException {
         registerCode(INVALID_ENUM_NAME            , "invalid name to instantiate enum");
         registerCode(MISSING_CLOSING_QUOTE        , "No closing quote found");
         registerCode(INVALID_INSTANT_FORMAT       , "Instant format is invalid, must be UNIX time or yyyy-MM-dd'T'HH:mm:ss");
+        registerCode(CORRUPT_COMPRESSED           , "Compressed data could not be decompressed to the announced length");
+        registerCode(BACKREFERENCE_TO_SKIPPED     , "Backreference to an object which has been skipped and not been parsed");
+        registerCode(INVALID_CLASS_DICTIONARY_REF , "Reference to a class which has not been defined in the class dictionary");
+        registerCode(INVALID_STRING_REFERENCE     , "Reference to a string which has not been defined in the string table");
+        registerCode(STRING_TABLE_EXCEEDED        , "More strings defined than the string table of the parser accepts");
     }
 
     /** Creates a parser exception with an explicitly defined position and class name. */
@@ -7,6 +7,8 @@ public interface MimeTypes {
     public final String MIME_TYPE_XML               = "application/xml";
     public final String MIME_TYPE_CSV               = "text/csv";
 
+    public final String MIME_PARAMETER_STRING_TABLE = "strings";    // parameter of MIME_TYPE_COMPACT_BONAPARTE: max. size of the string table accepted by the receiver
+
     public final String JSON_FIELD_FQON             = "@type";      // json-io compatible field name to define the class name
     public final String JSON_FIELD_PQON             = "@PQON";
 }
@@ -0,0 +1,208 @@
+package de.jpaw.bonaparte.core;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.function.LongFunction;
+
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.fixedpoint.FixedPointBase;
+
+/** The value of a numeric field, accumulated while a text based parser scans the field, in order to convert it into primitives
+ * without an intermediate String.
+ *
+ * The parser calls start() at the first character, append() for every accepted character (digits, sign, decimal point, exponent)
+ * and end() at the field terminator. The syntax has been validated by the parser at that time, the conversion methods below perform the
+ * semantic checks of StringParserUtil, with the same error codes. Rare cases (more than 18 digits, exponents, unusual numbers of fractional digits)
+ * are delegated to StringParserUtil, which means the text of the field is only created for those and for error messages.
+ *
+ * An instance is reused for all fields of a parser and therefore not thread safe, like the parser itself.
+ */
+abstract class NumericToken {
+    private static final long MULTMIN = Long.MIN_VALUE / 10;
+    private static final int [] POWERS_OF_TEN = { 1, 10, 100, 1000, 10000, 100000, 1000000, 10000000, 100000000, 1000000000 };
+    private static final long [] LONG_POWERS_OF_TEN = {
+        1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L, 1000000000L,
+        10000000000L, 100000000000L, 1000000000000L, 10000000000000L, 100000000000000L, 1000000000000000L,
+        10000000000000000L, 100000000000000000L, 1000000000000000000L
+    };
+
+    protected final StringParserUtil stringParser;
+    protected int start;                // index of the first character of the field
+    protected int end;                  // index of the field terminator
+    private boolean negative;
+    private long accumulator;           // the negative value of all digits, as in Long.parseLong()
+    private boolean overflow;           // more digits than fit into accumulator
+    private boolean exponent;
+    private int integralDigits;
+    private int fractionalDigits;       // -1 if there was no decimal point
+
+    protected NumericToken(StringParserUtil stringParser) {
+        this.stringParser = stringParser;
+    }
+
+    /** Returns the text of the field, the range from start to end. */
+    protected abstract String text();
+
+    final void start(int index) {
+        start = index;
+        negative = false;
+        accumulator = 0L;
+        overflow = false;
+        exponent = false;
+        integralDigits = 0;
+        fractionalDigits = -1;
+    }
+
+    final void end(int index) {
+        end = index;
+    }
+
+    final void append(int c) {
+        if (c >= '0' && c <= '9') {
+            if (exponent || overflow)
+                return;                 // only evaluated by the delegation to StringParserUtil
+            if (fractionalDigits >= 0)
+                ++fractionalDigits;
+            else
+                ++integralDigits;
+            final int digit = c - '0';
+            if (accumulator < MULTMIN || accumulator * 10L < Long.MIN_VALUE + digit) {
+                overflow = true;
+                return;
+            }
+            accumulator = accumulator * 10L - digit;
+        } else if (c == '.') {
+            fractionalDigits = 0;
+        } else if (c == '-') {
+            if (!exponent)
+                negative = true;
+        } else {
+            exponent = true;
+        }
+    }
+
+    // true if the field is a plain decimal number with digits before the point and, if there is a point, also after it, whose digits fit into a long
+    private boolean isExact() {
+        return !overflow && !exponent && integralDigits > 0 && fractionalDigits != 0 && (negative || accumulator != Long.MIN_VALUE);
+    }
+
+    private boolean isPlainInteger() {
+        return isExact() && fractionalDigits < 0;
+    }
+
+    // the value of all digits, ignoring the decimal point
+    private long value() {
+        return negative ? accumulator : -accumulator;
+    }
+
+    /** Returns the value of an unchecked integral field, such as a collection size. Values out of range throw a NumberFormatException, as Integer.parseInt(). */
+    int intValue() {
+        final long r = value();
+        if (!isPlainInteger() || r < Integer.MIN_VALUE || r > Integer.MAX_VALUE)
+            return Integer.parseInt(text());
+        return (int)r;
+    }
+
+    long readLong(BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (!isPlainInteger())
+            return stringParser.readPrimitiveLong(di, text());
+        return stringParser.primitiveLongFor(di, value(), this);
+    }
+
+    int readInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final long r = value();
+        if (!isPlainInteger() || r < Integer.MIN_VALUE || r > Integer.MAX_VALUE)
+            return stringParser.readPrimitiveInteger(di, text());
+        return stringParser.primitiveIntegerFor(di, (int)r, this);
+    }
+
+    short readShort(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final long r = value();
+        if (!isPlainInteger() || r < Short.MIN_VALUE || r > Short.MAX_VALUE)
+            return stringParser.readPrimitiveShort(di, text());
+        return stringParser.primitiveShortFor(di, (short)r, this);
+    }
+
+    byte readByte(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final long r = value();
+        if (!isPlainInteger() || r < Byte.MIN_VALUE || r > Byte.MAX_VALUE)
+            return stringParser.readPrimitiveByte(di, text());
+        return stringParser.primitiveByteFor(di, (byte)r, this);
+    }
+
+    BigDecimal readBigDecimal(NumericElementaryDataItem di) throws MessageParserException {
+        if (!isExact())
+            return stringParser.readBigDecimal(di, text());
+        return stringParser.bigDecimalFor(di, BigDecimal.valueOf(value(), fractionalDigits < 0 ? 0 : fractionalDigits), this);
+    }
+
+    <F extends FixedPointBase<F>> F readFixedPoint(BasicNumericElementaryDataItem di, LongFunction<F> factory) throws MessageParserException {
+        final int decimals = di.getDecimalDigits();
+        final int fractionals = fractionalDigits < 0 ? 0 : fractionalDigits;
+        if (!isExact() || fractionals > decimals || integralDigits + decimals >= LONG_POWERS_OF_TEN.length)
+            return stringParser.readFixedPoint(di, text(), factory);   // rounding or overflow: use the original implementation
+        return stringParser.fixedPointFor(di, value() * LONG_POWERS_OF_TEN[decimals - fractionals], factory, this);
+    }
+
+    LocalDate readDay(TemporalElementaryDataItem di) throws MessageParserException {
+        if (!isPlainInteger() || integralDigits >= POWERS_OF_TEN.length)
+            return stringParser.readDay(di, text());
+        return stringParser.dayFor(di, (int)value(), this);
+    }
+
+    LocalDateTime readDayTime(TemporalElementaryDataItem di) throws MessageParserException {
+        if (!isExact() || integralDigits >= POWERS_OF_TEN.length || fractionalDigits >= POWERS_OF_TEN.length)
+            return stringParser.readDayTime(di, text());
+        if (fractionalDigits < 0)
+            return stringParser.dayTimeFor(di, (int)value(), 0, this);
+        final long scale = POWERS_OF_TEN[fractionalDigits];
+        final long r = value();
+        return stringParser.dayTimeFor(di, (int)(r / scale), stringParser.timestampFractionalsFor(di, (int)(r % scale), fractionalDigits, this), this);
+    }
+
+    LocalTime readTime(TemporalElementaryDataItem di) throws MessageParserException {
+        if (!isExact() || integralDigits >= POWERS_OF_TEN.length || fractionalDigits > 3)
+            return stringParser.readTime(di, text());
+        if (fractionalDigits < 0)
+            return stringParser.timeFor(di, (int)value(), 0, this);
+        final long scale = POWERS_OF_TEN[fractionalDigits];
+        final long r = value();
+        return stringParser.timeFor(di, (int)(r / scale), stringParser.millisFor(di, (int)(r % scale), fractionalDigits, this), this);
+    }
+
+    Instant readInstant(TemporalElementaryDataItem di) throws MessageParserException {
+        if (stringParser.isInstantInMillis()) {
+            if (!isPlainInteger())
+                return stringParser.readInstant(di, text());
+            return Instant.ofEpochMilli(value());
+        }
+        if (!isExact() || fractionalDigits > 3)
+            return stringParser.readInstant(di, text());
+        if (fractionalDigits < 0)
+            return stringParser.instantFor(di, value(), 0);
+        final long scale = POWERS_OF_TEN[fractionalDigits];
+        final long r = value();
+        return stringParser.instantFor(di, r / scale, stringParser.millisFor(di, (int)(r % scale), fractionalDigits, this));
+    }
+
+    /** Returns the value of a hexadecimal digit, or -1 if the character is not a hex digit. Used for the parsing of UUIDs. */
+    static int hexDigit(int c) {
+        if (c >= '0' && c <= '9')
+            return c - '0';
+        if (c >= 'a' && c <= 'f')
+            return c - ('a' - 10);
+        if (c >= 'A' && c <= 'F')
+            return c - ('A' - 10);
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return text();
+    }
+}
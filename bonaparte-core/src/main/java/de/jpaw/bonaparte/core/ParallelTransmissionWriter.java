@@ -0,0 +1,224 @@
+package de.jpaw.bonaparte.core;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import de.jpaw.bonaparte.util.InstancePool;
+import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
+
+/** Composes the records of a large transmission in parallel.
+ *
+ * The list of records is split into chunks of chunkSize records, which are composed by the tasks of a ForkJoinPool into separate buffers.
+ * Every worker borrows a reused RecordComposer from a pool. The composers reset their object reuse cache for every record, therefore
+ * records do not refer to objects of other records, and the chunks can be composed independently. The chunks are returned as a list of buffers
+ * in the order of the records, framed by the transmission header and trailer, and can be written by a single gathering write.
+ * The bytes are the same as those written by a sequential composer which is reset before every record, and can be read by the usual parsers.
+ *
+ * RecordComposers for the Bonaparte and compact formats are obtained by buffered(), for CSV and other character based formats by appendable().
+ * For the compact format, the class dictionary and the string table cannot be used, because they refer to entries of previous records.
+ *
+ * Instances are thread safe, if the RecordComposers created by the factory do not share state.
+ */
+public class ParallelTransmissionWriter {
+    public static final int DEFAULT_CHUNK_SIZE = 1000;      // records per task
+    private static final int INITIAL_CHUNK_BUFFER_SIZE = 65536;
+
+    /** Composes single records into a buffer. Implementations are not thread safe, an instance is used by one task at a time. */
+    public static interface RecordComposer {
+        /** Appends the transmission header. */
+        void startTransmission(ByteBuilder out) throws Exception;
+
+        /** Appends the serialized form of a single record, without references to objects of other records. */
+        void writeRecord(BonaCustom record, ByteBuilder out) throws Exception;
+
+        /** Appends the transmission trailer. */
+        void terminateTransmission(ByteBuilder out) throws Exception;
+    }
+
+    /** Creates a RecordComposer for a composer which writes to a memory buffer, such as the ByteArrayComposer or the CompactByteArrayComposer.
+     * The composer is reset before every record, and the composed bytes are appended to the chunk. */
+    public static RecordComposer buffered(final BufferedMessageWriter<?> composer) {
+        if (composer instanceof AbstractCompactComposer cc && (cc.isUseClassDictionary() || cc.getMaxStringTableSize() > 0))
+            throw new IllegalArgumentException("The class dictionary and the string table cannot be used for parallel composition");
+        return new RecordComposer() {
+            @Override
+            public void startTransmission(ByteBuilder out) throws Exception {
+                composer.reset();
+                composer.startTransmission();
+                out.write(composer.getBuffer(), 0, composer.getLength());
+            }
+
+            @Override
+            public void writeRecord(BonaCustom record, ByteBuilder out) throws Exception {
+                composer.reset();
+                composer.writeRecord(record);
+                out.write(composer.getBuffer(), 0, composer.getLength());
+            }
+
+            @Override
+            public void terminateTransmission(ByteBuilder out) throws Exception {
+                composer.reset();
+                composer.terminateTransmission();
+                out.write(composer.getBuffer(), 0, composer.getLength());
+            }
+        };
+    }
+
+    /** Creates a RecordComposer for a composer which writes characters to a StringBuilder, such as the CSVComposer or the FixedWidthComposer.
+     * The factory is invoked once, with the StringBuilder to write to. The characters of every record are encoded in the provided character set. */
+    public static RecordComposer appendable(Function<StringBuilder, ? extends AppendableComposer> factory, final Charset charset) {
+        final StringBuilder buffer = new StringBuilder(1000);
+        final AppendableComposer composer = factory.apply(buffer);
+        return new RecordComposer() {
+            private void flush(ByteBuilder out) {
+                out.write(buffer.toString().getBytes(charset));
+                buffer.setLength(0);
+            }
+
+            @Override
+            public void startTransmission(ByteBuilder out) throws Exception {
+                composer.startTransmission();
+                flush(out);
+            }
+
+            @Override
+            public void writeRecord(BonaCustom record, ByteBuilder out) throws Exception {
+                composer.reset();
+                composer.writeRecord(record);
+                flush(out);
+            }
+
+            @Override
+            public void terminateTransmission(ByteBuilder out) throws Exception {
+                composer.terminateTransmission();
+                flush(out);
+            }
+        };
+    }
+
+    private final InstancePool<RecordComposer> composers;
+    private final ForkJoinPool pool;
+    private final int chunkSize;
+
+    public ParallelTransmissionWriter(Supplier<? extends RecordComposer> composerFactory, ForkJoinPool pool, int chunkSize) {
+        if (chunkSize <= 0)
+            throw new IllegalArgumentException("chunkSize must be positive, got " + chunkSize);
+        this.composers = new InstancePool<RecordComposer>(composerFactory);
+        this.pool = pool;
+        this.chunkSize = chunkSize;
+    }
+
+    public ParallelTransmissionWriter(Supplier<? extends RecordComposer> composerFactory) {
+        this(composerFactory, ForkJoinPool.commonPool(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /** Composes the transmission and returns its serialized form as a list of buffers, in order. The buffers are not copied, but wrap the chunk buffers. */
+    public List<ByteBuffer> compose(List<? extends BonaCustom> records) throws Exception {
+        final int numberOfChunks = (records.size() + chunkSize - 1) / chunkSize;
+        final ByteBuffer [] chunks = new ByteBuffer [numberOfChunks];
+        final RecordComposer composer = composers.borrow();
+        final ByteBuffer header;
+        final ByteBuffer trailer;
+        try {
+            final ByteBuilder out = new ByteBuilder(64, ByteArray.CHARSET_UTF8);
+            composer.startTransmission(out);
+            header = ByteBuffer.wrap(out.getBytes());
+            out.setLength(0);
+            composer.terminateTransmission(out);
+            trailer = ByteBuffer.wrap(out.getBytes());
+            if (numberOfChunks == 1)
+                chunks[0] = composeChunk(composer, records, 0);
+        } finally {
+            composers.release(composer);
+        }
+        if (numberOfChunks > 1) {
+            final AtomicReference<Exception> failure = new AtomicReference<Exception>();
+            pool.invoke(new ChunkTask(records, chunks, 0, numberOfChunks, failure));
+            if (failure.get() != null)
+                throw failure.get();
+        }
+        final List<ByteBuffer> result = new ArrayList<ByteBuffer>(numberOfChunks + 2);
+        result.add(header);
+        for (ByteBuffer chunk : chunks)
+            result.add(chunk);
+        result.add(trailer);
+        return result;
+    }
+
+    /** Composes the transmission and writes it to the channel, using gathering writes. */
+    public void writeTransmission(List<? extends BonaCustom> records, GatheringByteChannel channel) throws Exception {
+        final ByteBuffer [] buffers = compose(records).toArray(new ByteBuffer [0]);
+        long remaining = 0L;
+        for (ByteBuffer buffer : buffers)
+            remaining += buffer.remaining();
+        while (remaining > 0L)
+            remaining -= channel.write(buffers);
+    }
+
+    /** Composes the transmission and writes it to the stream. */
+    public void writeTransmission(List<? extends BonaCustom> records, OutputStream os) throws Exception {
+        for (ByteBuffer buffer : compose(records))
+            write(buffer, os);
+    }
+
+    private static void write(ByteBuffer buffer, OutputStream os) throws IOException {
+        os.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+    }
+
+    private ByteBuffer composeChunk(RecordComposer composer, List<? extends BonaCustom> records, int chunkIndex) throws Exception {
+        final int start = chunkIndex * chunkSize;
+        final int end = Math.min(start + chunkSize, records.size());
+        final ByteBuilder out = new ByteBuilder(INITIAL_CHUNK_BUFFER_SIZE, ByteArray.CHARSET_UTF8);
+        for (int i = start; i < end; ++i)
+            composer.writeRecord(records.get(i), out);
+        return ByteBuffer.wrap(out.getCurrentBuffer(), 0, out.length());
+    }
+
+    // composes the chunks from (inclusive) to to (exclusive), by splitting the range until a single chunk remains
+    private final class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final List<? extends BonaCustom> records;
+        private final ByteBuffer [] chunks;
+        private final int from;
+        private final int to;
+        private final AtomicReference<Exception> failure;
+
+        private ChunkTask(List<? extends BonaCustom> records, ByteBuffer [] chunks, int from, int to, AtomicReference<Exception> failure) {
+            this.records = records;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.failure = failure;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new ChunkTask(records, chunks, from, mid, failure), new ChunkTask(records, chunks, mid, to, failure));
+                return;
+            }
+            if (failure.get() != null)
+                return;         // another chunk failed already
+            final RecordComposer composer = composers.borrow();
+            try {
+                chunks[from] = composeChunk(composer, records, from);
+            } catch (Exception e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                composers.release(composer);
+            }
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package de.jpaw.bonaparte.core;
+
+/** Implemented by parsers which can return the records of a transmission one by one, as an alternative to MessageParser.readTransmission(),
+ * which materializes all of them in a List. Together with the TransmissionStreams utility class, this allows to process transmissions of any size
+ * with memory bounded by the size of a single record, if backreferences are limited to records (see setBackreferencesWithinRecord() of the parsers).
+ *
+ * @param <E> - the Exception possibly thrown, MessageParserException or IOException.
+ */
+public interface RecordSource<E extends Exception> {
+    /** Returns the next record, or null after the last record of the transmission. */
+    BonaPortable readNextRecord() throws E;
+}
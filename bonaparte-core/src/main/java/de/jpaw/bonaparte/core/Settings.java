@@ -17,6 +17,8 @@ package de.jpaw.bonaparte.core;
 
 import java.nio.charset.Charset;
 
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.util.StringPool;
 import de.jpaw.util.ByteArray;
 
 /**
@@ -30,12 +32,14 @@ public abstract class Settings implements StaticMeta {
     private static boolean defaultCRs = System.getProperty("line.separator").length() == 2;     // on Unix: false, on Windows: true
     private static Charset defaultCharset = ByteArray.CHARSET_UTF8;                           // always use UTF-8 unless explicitly requested differently
     private static ParseSkipNonNulls defaultSkipNonNullsBehavior = ParseSkipNonNulls.WARN;      // allow improved downwards compatibility
+    private static StringPool defaultStringPool = null;                                         // no canonicalization of parsed strings unless requested
     public static final int COLLECTION_COUNT_NULL = -1;                                         // int returned by parseArrayStart and parseMapStart to indicate a null array / map (in contrast to one with 0 entries)
     public static final int COLLECTION_COUNT_REF = -2;                                          // int used internally in the compact format which indicates the content was some external one to many relationship.
 
     private boolean writeCRs = defaultCRs;          // determines the record terminator sequence. Attempts to mimic text file line breaks of the OS
     private Charset charset = defaultCharset;       // usually UTF-8, can be explicitly set to some other encoding, if desired (usually some single-byte fixed width character set)
     private ParseSkipNonNulls skipNonNullsBehavior = defaultSkipNonNullsBehavior;
+    private StringPool stringPool = defaultStringPool;
 
     public static ParseSkipNonNulls getDefaultSkipNonNullsBehavior() {
         return defaultSkipNonNullsBehavior;
@@ -53,6 +57,30 @@ public abstract class Settings implements StaticMeta {
         this.skipNonNullsBehavior = skipNonNullsBehavior;
     }
 
+    public static StringPool getDefaultStringPool() {
+        return defaultStringPool;
+    }
+
+    /** Sets the string pool for parsers constructed in the future. The pool is thread safe and can be shared by all parsers. */
+    public static void setDefaultStringPool(StringPool defaultStringPool) {
+        Settings.defaultStringPool = defaultStringPool;
+    }
+
+    public StringPool getStringPool() {
+        return stringPool;
+    }
+
+    /** Specifies the pool of canonical instances for parsed strings of qualifying fields (see StringPool.isCandidate()), or null to disable it.
+     * Not relevant for serializers. */
+    public void setStringPool(StringPool stringPool) {
+        this.stringPool = stringPool;
+    }
+
+    /** Returns the canonical instance of a parsed string, if a string pool is configured and the field qualifies, else the parameter. */
+    protected String canonical(AlphanumericElementaryDataItem di, String s) {
+        return s == null || stringPool == null || !stringPool.isCandidate(di) ? s : stringPool.canonicalize(s);
+    }
+
     /** Returns information about how an end-of-record is encoded. Only relevant for serializers, not for deserializers.
      * @return true - if the current serializer writes a "carriage return / linefeed" end-of-record sequence (MS-WIN style), false if just a linefeed (UNIX / LINUX style). */
     public boolean getWriteCRs() {
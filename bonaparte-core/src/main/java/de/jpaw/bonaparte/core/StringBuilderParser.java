@@ -57,7 +57,7 @@ import de.jpaw.util.CharTestsASCII;
  *          Implements the deserialization for the bonaparte format using StringBuilder.
  */
 
-public final class StringBuilderParser extends AbstractPartialJsonStringParser implements MessageParser<MessageParserException>, StringBuilderConstants {
+public final class StringBuilderParser extends AbstractPartialJsonStringParser implements MessageParser<MessageParserException>, RecordSource<MessageParserException>, StringBuilderConstants {
     private static final Logger LOGGER = LoggerFactory.getLogger(StringBuilderParser.class);
     private CharSequence work;          // for parser
     private int parseIndex;             // for parser
@@ -65,6 +65,8 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
     private String currentClass;
     private final boolean useCache = true;
     private List<BonaPortable> objects;
+    private boolean inTransmission = false;     // set by readNextRecord() after the transmission header has been consumed
+    private boolean backreferencesWithinRecord = false;   // if true, backreferences do not span records (the writer must use the same setting)
 
     protected final StringParserUtil stringParser = new StringParserUtil(new ParsePositionProvider() {
 
@@ -79,6 +81,14 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         }
     });
 
+    // accumulates numeric fields, in order to avoid intermediate Strings
+    private final NumericToken numeric = new NumericToken(stringParser) {
+        @Override
+        protected String text() {
+            return work.subSequence(start, end).toString();
+        }
+    };
+
     @Override
     protected MessageParserException newMPE(int errorCode, FieldDefinition di, String msg) {
         return new MessageParserException(errorCode, di.getName(), parseIndex, currentClass, msg);
@@ -96,6 +106,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         work = src;
         parseIndex = offset;
         messageLength = length;
+        inTransmission = false;
         if (useCache)
             objects.clear();
     }
@@ -105,10 +116,26 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         work = src;
         parseIndex = 0;
         messageLength = src.length();
+        inTransmission = false;
         if (useCache)
             objects.clear();
     }
 
+    /** Returns the number of objects which can be referenced by backreferences. */
+    public int getCacheSize() {
+        return useCache ? objects.size() : 0;
+    }
+
+    public boolean getBackreferencesWithinRecord() {
+        return backreferencesWithinRecord;
+    }
+
+    /** Limits backreferences to the current record, which must match the setting of the composer which wrote the data.
+     * The parsed objects are forgotten at the start of every record, therefore the memory used by a transmission read record by record does not grow. */
+    public void setBackreferencesWithinRecord(boolean backreferencesWithinRecord) {
+        this.backreferencesWithinRecord = backreferencesWithinRecord;
+    }
+
     /** Create a processor for parsing a buffer. */
     public StringBuilderParser(CharSequence work, int offset, int length) {
         if (useCache)
@@ -153,7 +180,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
     }
     protected int readInteger(String fieldname) throws MessageParserException {
         checkForNull(fieldname, true);
-        return Integer.parseInt(nextIndexParseAscii(fieldname, false, false, false));
+        return nextIndexParseNumeric(fieldname, false, false, false).intValue();
     }
     // check for Null called for field members inside a class
     private boolean checkForNull(String fieldname, boolean isRequired) throws MessageParserException {
@@ -201,10 +228,14 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
     }
 
     private String nextIndexParseAscii(String fieldname, boolean allowSign, boolean allowDecimalPoint, boolean allowExponent) throws MessageParserException {
+        return nextIndexParseNumeric(fieldname, allowSign, allowDecimalPoint, allowExponent).text();
+    }
+
+    // scans a numeric field including its terminator, without creating objects. The value is evaluated by the returned token.
+    private NumericToken nextIndexParseNumeric(String fieldname, boolean allowSign, boolean allowDecimalPoint, boolean allowExponent) throws MessageParserException {
         final int BUFFER_SIZE = 40;
         boolean allowSignNextIteration = false;
         boolean gotAnyDigit = false;
-        StringBuilder tmp = new StringBuilder(BUFFER_SIZE);
         // skipBlanks: does not hurt!
         skipLeadingSpaces();
         if ((parseIndex < messageLength) && (work.charAt(parseIndex) == '+')) {
@@ -212,14 +243,17 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
             ++parseIndex;
             allowSign = false;
         }
+        final int start = parseIndex;
+        numeric.start(start);
         while (parseIndex < messageLength) {
             char c = work.charAt(parseIndex);
             if (c == FIELD_TERMINATOR) {
                 if (!gotAnyDigit) {
                     throw new MessageParserException(MessageParserException.NO_DIGITS_FOUND, fieldname, parseIndex, currentClass);
                 }
+                numeric.end(parseIndex);
                 ++parseIndex;  // eat it!
-                return tmp.toString();
+                return numeric;
             }
 
             if (c == '-') {
@@ -246,10 +280,10 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
             } else {
                 throw new MessageParserException(MessageParserException.ILLEGAL_CHAR_NOT_NUMERIC, fieldname, parseIndex, currentClass);
             }
-            if (tmp.length() >= BUFFER_SIZE) {
+            if (parseIndex - start >= BUFFER_SIZE) {
                 throw new MessageParserException(MessageParserException.NUMERIC_TOO_LONG, fieldname, parseIndex, currentClass);
             }
-            tmp.append(c);
+            numeric.append(c);
             ++parseIndex;
             allowSign = allowSignNextIteration;
             allowSignNextIteration = false;
@@ -265,12 +299,12 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
 
     @Override
     public String readAscii(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), false);
+        return canonical(di, readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), false));
     }
     // readString does the job for Unicode as well as ASCII
     @Override
     public String readString(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true);
+        return canonical(di, readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true));
     }
 
     protected String readString(String fieldname, boolean isRequired, int length, boolean doTrim, boolean doTruncate, boolean allowCtrls, boolean allowUnicode) throws MessageParserException {
@@ -399,14 +433,14 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readDayTime(di, nextIndexParseAscii(di.getName(), false, di.getFractionalSeconds() >= 0, false));
+        return nextIndexParseNumeric(di.getName(), false, di.getFractionalSeconds() >= 0, false).readDayTime(di);
     }
     @Override
     public LocalDate readDay(TemporalElementaryDataItem di) throws MessageParserException {
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readDay(di, nextIndexParseAscii(di.getName(), false, false, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, false, false).readDay(di);  // parse an unsigned numeric string without exponent
     }
 
     @Override
@@ -414,7 +448,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readTime(di, nextIndexParseAscii(di.getName(), false, di.getFractionalSeconds() > 0, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, di.getFractionalSeconds() > 0, false).readTime(di);  // parse an unsigned numeric string without exponent
     }
 
     @Override
@@ -422,7 +456,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readInstant(di, nextIndexParseAscii(di.getName(), false, true, false));  // parse an unsigned numeric string without exponent
+        return nextIndexParseNumeric(di.getName(), false, true, false).readInstant(di);  // parse an unsigned numeric string without exponent
     }
 
 
@@ -480,6 +514,8 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
     @Override
     public BonaPortable readRecord() throws MessageParserException {
         BonaPortable result;
+        if (useCache && backreferencesWithinRecord)
+            objects.clear();
         skipOptionalBom();
         needToken(RECORD_BEGIN);
         needToken(NULL_FIELD); // version no
@@ -494,7 +530,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readByte(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Byte.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readByte(di));
     }
 
     @Override
@@ -502,7 +538,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readShort(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Short.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readShort(di));
     }
 
     @Override
@@ -510,7 +546,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readInteger(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Integer.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readInteger(di));
     }
 
     @Override
@@ -518,7 +554,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readLong(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), false, false));
+        return Long.valueOf(nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readLong(di));
     }
 
     @Override
@@ -550,7 +586,7 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readBigDecimal(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), true, false));
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), true, false).readBigDecimal(di);
     }
 
     @Override
@@ -558,7 +594,32 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         if (checkForNull(di)) {
             return null;
         }
-        return stringParser.readFixedPoint(di, nextIndexParseAscii(di.getName(), di.getIsSigned(), true, false), factory);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), true, false).readFixedPoint(di, factory);
+    }
+
+    // primitives are never null, therefore they do not need the boxed result of the methods above
+    @Override
+    public byte readPrimitiveByte(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readByte(di);
+    }
+
+    @Override
+    public short readPrimitiveShort(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readShort(di);
+    }
+
+    @Override
+    public int readPrimitiveInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readInteger(di);
+    }
+
+    @Override
+    public long readPrimitiveLong(BasicNumericElementaryDataItem di) throws MessageParserException {
+        checkForNull(di.getName(), true);
+        return nextIndexParseNumeric(di.getName(), di.getIsSigned(), false, false).readLong(di);
     }
 
     @Override
@@ -684,11 +745,67 @@ public final class StringBuilderParser extends AbstractPartialJsonStringParser i
         return results;
     }
 
+    /** Returns the records of a transmission one by one. A sequence of records without transmission envelope is accepted as well,
+     * in which case null is returned at the end of the input. */
+    @Override
+    public BonaPortable readNextRecord() throws MessageParserException {
+        if (parseIndex >= messageLength) {
+            if (inTransmission)
+                throw new MessageParserException(MessageParserException.PREMATURE_END, "(expected transmission terminator)", parseIndex, currentClass);
+            return null;
+        }
+        if (!inTransmission && work.charAt(parseIndex) == TRANSMISSION_BEGIN) {
+            ++parseIndex;
+            needToken(NULL_FIELD);  // version
+            inTransmission = true;
+            return readNextRecord();
+        }
+        if (inTransmission && work.charAt(parseIndex) == TRANSMISSION_TERMINATOR) {
+            ++parseIndex;
+            skipChar(TRANSMISSION_TERMINATOR2);
+            inTransmission = false;
+            return null;
+        }
+        return readRecord();
+    }
+
     @Override
     public UUID readUUID(MiscElementaryDataItem di) throws MessageParserException {
+        if (checkForNull(di)) {
+            return null;
+        }
+        final UUID uuid = readCanonicalUUID();
+        if (uuid != null)
+            return uuid;
         return stringParser.readUUID(di, readString(di.getName(), di.getIsRequired(), 36, false, false, false, false));
     }
 
+    // parses the canonical form of 36 characters (8-4-4-4-12 hex digits) directly. Returns null for anything else, without consuming input.
+    private UUID readCanonicalUUID() {
+        final int end = parseIndex + 36;
+        if (end >= messageLength || work.charAt(end) != FIELD_TERMINATOR)
+            return null;
+        long msb = 0L;
+        long lsb = 0L;
+        for (int i = 0; i < 36; ++i) {
+            final char c = work.charAt(parseIndex + i);
+            if (i == 8 || i == 13 || i == 18 || i == 23) {
+                if (c != '-')
+                    return null;
+            } else {
+                final int digit = NumericToken.hexDigit(c);
+                if (digit < 0)
+                    return null;
+                if (i < 18)
+                    msb = (msb << 4) | digit;
+                else
+                    lsb = (lsb << 4) | digit;
+            }
+        }
+        parseIndex = end + 1;
+        return new UUID(msb, lsb);
+    }
+
     @Override
     public MessageParserException enumExceptionConverter(IllegalArgumentException e) {
         return new MessageParserException(MessageParserException.INVALID_ENUM_TOKEN, e.getMessage(), parseIndex, currentClass);
@@ -305,12 +305,12 @@ public final class StringCSVParser extends AbstractPartialJsonStringParser imple
 
     @Override
     public String readAscii(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), false);
+        return canonical(di, readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), false));
     }
     // readString does the job for Unicode as well as ASCII
     @Override
     public String readString(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true);
+        return canonical(di, readString(di.getName(), di.getIsRequired(), di.getLength(), di.getDoTrim(), di.getDoTruncate(), di.getAllowControlCharacters(), true));
     }
 
     protected String readString(String fieldname, boolean isRequired, int length, boolean doTrim, boolean doTruncate, boolean allowCtrls, boolean allowUnicode) throws MessageParserException {
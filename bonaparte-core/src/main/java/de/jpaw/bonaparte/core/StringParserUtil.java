@@ -62,6 +62,16 @@ public class StringParserUtil {
         return new MessageParserException(errno, di.getName(), data, parsePositionProvider);
     }
 
+    // the methods below with a parameter "source" are shared with NumericToken, which parses without intermediate Strings.
+    // The source is only converted into a String for error messages.
+    private MessageParserException err(int errno, FieldDefinition di, Object source) {
+        return err(errno, di, source.toString());
+    }
+
+    boolean isInstantInMillis() {
+        return instantInMillis;
+    }
+
     public void ensureNotNull(FieldDefinition di, String data) throws MessageParserException {
         if (data == null)
             throw new MessageParserException(MessageParserException.ILLEGAL_EXPLICIT_NULL, di.getName(), null, parsePositionProvider);
@@ -180,26 +190,30 @@ public class StringParserUtil {
         } else {
             // day and time
             date = Integer.parseInt(data.substring(0, dpoint));
-            fractional = Integer.parseInt(data.substring(dpoint + 1));
-            final int numberOfFractionals = data.length() - dpoint - 1;
-            switch (numberOfFractionals) { // i.e. number of fractional digits
-            case 6:
-                fractional *= 1000;
-                break; // precisely seconds resolution (timestamp(0))
-            case 7:
-                fractional *= 100;
-                break;
-            case 8:
-                fractional *= 10;
-                break;
-            case 9:
-                break; // maximum resolution (milliseconds)
-            default: // something weird
-                LOGGER.error("Timestamp fractionals: {} for data {}", numberOfFractionals, data.substring(dpoint));
-                throw err(MessageParserException.BAD_TIMESTAMP_FRACTIONALS, di,
-                          String.format("(found %d for %s)", numberOfFractionals, data));
-            }
+            fractional = timestampFractionalsFor(di, Integer.parseInt(data.substring(dpoint + 1)), data.length() - dpoint - 1, data);
+        }
+        return dayTimeFor(di, date, fractional, data);
+    }
+
+    // scales the fractional part of a timestamp to 9 digits (hhmmss plus milliseconds, or seconds of the day plus milliseconds)
+    int timestampFractionalsFor(TemporalElementaryDataItem di, int fractional, int numberOfFractionals, Object source) throws MessageParserException {
+        switch (numberOfFractionals) { // i.e. number of fractional digits
+        case 6:
+            return fractional * 1000;  // precisely seconds resolution (timestamp(0))
+        case 7:
+            return fractional * 100;
+        case 8:
+            return fractional * 10;
+        case 9:
+            return fractional;         // maximum resolution (milliseconds)
+        default: // something weird
+            LOGGER.error("Timestamp fractionals: {} for data {}", numberOfFractionals, source);
+            throw err(MessageParserException.BAD_TIMESTAMP_FRACTIONALS, di,
+                      String.format("(found %d for %s)", numberOfFractionals, source));
         }
+    }
+
+    LocalDateTime dayTimeFor(TemporalElementaryDataItem di, int date, int fractional, Object source) throws MessageParserException {
         // set the date and time
         int day, month, year, hour, minute, second;
         year = date / 10000;
@@ -219,11 +233,11 @@ public class StringParserUtil {
         if ((year < 1601) || (year > 2399) || (month == 0) || (month > 12) || (day == 0)
                 || (day > 31)) {
             throw err(MessageParserException.ILLEGAL_DAY, di,
-                      String.format("(found %d for %s)", year*10000+month*100+day, data));
+                      String.format("(found %d for %s)", year*10000+month*100+day, source));
         }
         if ((hour > 23) || (minute > 59) || (second > 59)) {
             throw err(MessageParserException.ILLEGAL_TIME, di,
-                      String.format("(found %d for %s)", (hour * 10000) + (minute * 100) + second, data));
+                      String.format("(found %d for %s)", (hour * 10000) + (minute * 100) + second, source));
         }
         // now set the return value
         LocalDateTime result;
@@ -233,7 +247,7 @@ public class StringParserUtil {
             // and year
             result = LocalDateTime.of(year, month, day, hour, minute, second, fractional * 1000000);
         } catch (Exception e) {
-            throw err(MessageParserException.ILLEGAL_CALENDAR_VALUE, di, data);
+            throw err(MessageParserException.ILLEGAL_CALENDAR_VALUE, di, source);
         }
         return result;
     }
@@ -241,7 +255,10 @@ public class StringParserUtil {
     public LocalDate readDay(TemporalElementaryDataItem di, String data) throws MessageParserException {
         if (data == null)
             return null;
-        int date = Integer.parseInt(data);
+        return dayFor(di, Integer.parseInt(data), data);
+    }
+
+    LocalDate dayFor(TemporalElementaryDataItem di, int date, Object source) throws MessageParserException {
         // set the date and time
         int day, month, year;
         year = date / 10000;
@@ -251,7 +268,7 @@ public class StringParserUtil {
         if ((year < 1601) || (year > 2399) || (month == 0) || (month > 12) || (day == 0)
                 || (day > 31)) {
             throw err(MessageParserException.ILLEGAL_DAY, di,
-                      String.format("(found %d for %s)", year*10000+month*100+day, data));
+                      String.format("(found %d for %s)", year*10000+month*100+day, source));
         }
         // now set the return value
         LocalDate result;
@@ -261,7 +278,7 @@ public class StringParserUtil {
             // and year
             result = LocalDate.of(year, month, day);
         } catch (Exception e) {
-            throw err(MessageParserException.ILLEGAL_CALENDAR_VALUE, di, data);
+            throw err(MessageParserException.ILLEGAL_CALENDAR_VALUE, di, source);
         }
         return result;
     }
@@ -277,21 +294,27 @@ public class StringParserUtil {
         } else {
             // seconds and millis seconds
             seconds = Integer.parseInt(data.substring(0, dpoint));
-            millis = Integer.parseInt(data.substring(dpoint + 1));
-            switch (data.length() - dpoint - 1) { // i.e. number of fractional digits
-            case 2:
-                millis *= 10;
-                break;
-            case 1:
-                millis *= 100;
-                break;
-            case 3:
-                break; // maximum resolution (milliseconds)
-            default: // something weird
-                throw err(MessageParserException.BAD_TIMESTAMP_FRACTIONALS, di,
-                          String.format("(found %d for %s)", data.length() - dpoint - 1, data));
-            }
+            millis = millisFor(di, Integer.parseInt(data.substring(dpoint + 1)), data.length() - dpoint - 1, data);
+        }
+        return timeFor(di, seconds, millis, data);
+    }
+
+    // scales 1 to 3 fractional digits of seconds to milliseconds
+    int millisFor(TemporalElementaryDataItem di, int millis, int numberOfFractionals, Object source) throws MessageParserException {
+        switch (numberOfFractionals) { // i.e. number of fractional digits
+        case 2:
+            return millis * 10;
+        case 1:
+            return millis * 100;
+        case 3:
+            return millis; // maximum resolution (milliseconds)
+        default: // something weird
+            throw err(MessageParserException.BAD_TIMESTAMP_FRACTIONALS, di,
+                      String.format("(found %d for %s)", numberOfFractionals, source));
         }
+    }
+
+    LocalTime timeFor(TemporalElementaryDataItem di, int seconds, int millis, Object source) throws MessageParserException {
         // set the date and time
         int hour, minute, second;
         if (di.getHhmmss()) {
@@ -307,7 +330,7 @@ public class StringParserUtil {
         // first checks
         if ((hour > 23) || (minute > 59) || (second > 59)) {
             throw err(MessageParserException.ILLEGAL_TIME, di,
-                      String.format("(found %d for %s)", (hour * 10000) + (minute * 100) + second, data));
+                      String.format("(found %d for %s)", (hour * 10000) + (minute * 100) + second, source));
         }
         return DayTime.timeForMillis(1000 * seconds + millis);
     }
@@ -327,21 +350,12 @@ public class StringParserUtil {
         } else {
             // seconds and millis seconds
             seconds = Long.parseLong(data.substring(0, dpoint));
-            millis = Integer.parseInt(data.substring(dpoint + 1));
-            switch (data.length() - dpoint - 1) { // i.e. number of fractional digits
-            case 2:
-                millis *= 10;
-                break;
-            case 1:
-                millis *= 100;
-                break;
-            case 3:
-                break; // maximum resolution (milliseconds)
-            default: // something weird
-                throw err(MessageParserException.BAD_TIMESTAMP_FRACTIONALS, di,
-                          String.format("(found %d for %s)", data.length() - dpoint - 1, data));
-            }
+            millis = millisFor(di, Integer.parseInt(data.substring(dpoint + 1)), data.length() - dpoint - 1, data);
         }
+        return instantFor(di, seconds, millis);
+    }
+
+    Instant instantFor(TemporalElementaryDataItem di, long seconds, int millis) {
         if (di.getFractionalSeconds() == 0) {
             // don't want millis here: trunc!  (TODO: add a flag to complain!)
             millis = 0;
@@ -409,35 +423,44 @@ public class StringParserUtil {
     public BigDecimal readBigDecimal(final NumericElementaryDataItem di, String data) throws MessageParserException {
         if (data == null)
             return null;
+        final BigDecimal r;
         try {
-            BigDecimal r = new BigDecimal(data);
-            if (!di.getIsSigned() && r.signum() < 0)
-                throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
-            int decimals = di.getDecimalDigits();
-            try {
-                if (r.scale() > decimals)
-                    r = r.setScale(decimals, di.getRounding() ? RoundingMode.HALF_EVEN : RoundingMode.UNNECESSARY);
-                if (di.getAutoScale() && r.scale() < decimals) // round for smaller as well!
-                    r = r.setScale(decimals, RoundingMode.UNNECESSARY);
-            } catch (ArithmeticException a) {
-                throw err(MessageParserException.TOO_MANY_DECIMALS, di, data);
-            }
-            // check for overflow
-            if (di.getTotalDigits() - decimals < r.precision() - r.scale())
-                throw err(MessageParserException.TOO_MANY_DIGITS, di, data);
-            return r;
+            r = new BigDecimal(data);
         } catch (NumberFormatException e) {
             throw err(MessageParserException.NUMBER_PARSING_ERROR, di, data);
         }
+        return bigDecimalFor(di, r, data);
+    }
+
+    // sign, scale and precision checks of a parsed BigDecimal
+    BigDecimal bigDecimalFor(final NumericElementaryDataItem di, BigDecimal r, Object source) throws MessageParserException {
+        if (!di.getIsSigned() && r.signum() < 0)
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
+        int decimals = di.getDecimalDigits();
+        try {
+            if (r.scale() > decimals)
+                r = r.setScale(decimals, di.getRounding() ? RoundingMode.HALF_EVEN : RoundingMode.UNNECESSARY);
+            if (di.getAutoScale() && r.scale() < decimals) // round for smaller as well!
+                r = r.setScale(decimals, RoundingMode.UNNECESSARY);
+        } catch (ArithmeticException a) {
+            throw err(MessageParserException.TOO_MANY_DECIMALS, di, source);
+        }
+        // check for overflow
+        if (di.getTotalDigits() - decimals < r.precision() - r.scale())
+            throw err(MessageParserException.TOO_MANY_DIGITS, di, source);
+        return r;
     }
 
     public <F extends FixedPointBase<F>> F readFixedPoint(BasicNumericElementaryDataItem di, String data, LongFunction<F> factory) throws MessageParserException {
         if (data == null) {
             return null;
         }
-        final long mantissa = FixedPointBase.mantissaFor(data, di.getDecimalDigits());
+        return fixedPointFor(di, FixedPointBase.mantissaFor(data, di.getDecimalDigits()), factory, data);
+    }
+
+    <F extends FixedPointBase<F>> F fixedPointFor(BasicNumericElementaryDataItem di, long mantissa, LongFunction<F> factory, Object source) throws MessageParserException {
         if (!di.getIsSigned() && mantissa < 0)
-            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
         return BigDecimalTools.check(factory.apply(mantissa), di, parsePositionProvider.getParsePosition(), parsePositionProvider.getCurrentClassName());
     }
 
@@ -519,73 +542,93 @@ public class StringParserUtil {
 
     public long readPrimitiveLong(BasicNumericElementaryDataItem di, String data) throws MessageParserException {
         ensureNotNull(di, data);
+        final long r;
         try {
-            final long r = Long.parseLong(data);
-            if (r < 0 && !di.getIsSigned())
-                throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
-            final int maxDigits = di.getTotalDigits();
-            if (maxDigits > 0) {
-                // make sure that the parsed value does not exceed the configured number of digits
-                if (r < IntegralLimits.LONG_MIN_VALUES[maxDigits] || r > IntegralLimits.LONG_MAX_VALUES[maxDigits])
-                    throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, data);
-            }
-            return r;
+            r = Long.parseLong(data);
         } catch (NumberFormatException e) {
             throw err(MessageParserException.NUMBER_PARSING_ERROR, di, data);
         }
+        return primitiveLongFor(di, r, data);
+    }
+
+    long primitiveLongFor(BasicNumericElementaryDataItem di, long r, Object source) throws MessageParserException {
+        if (r < 0 && !di.getIsSigned())
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
+        final int maxDigits = di.getTotalDigits();
+        if (maxDigits > 0) {
+            // make sure that the parsed value does not exceed the configured number of digits
+            if (r < IntegralLimits.LONG_MIN_VALUES[maxDigits] || r > IntegralLimits.LONG_MAX_VALUES[maxDigits])
+                throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, source);
+        }
+        return r;
     }
 
     public int readPrimitiveInteger(BasicNumericElementaryDataItem di, String data) throws MessageParserException {
         ensureNotNull(di, data);
+        final int r;
         try {
-            final int r = Integer.parseInt(data);
-            if (r < 0 && !di.getIsSigned())
-                throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
-            final int maxDigits = di.getTotalDigits();
-            if (maxDigits > 0) {
-                // make sure that the parsed value does not exceed the configured number of digits
-                if (r < IntegralLimits.INT_MIN_VALUES[maxDigits] || r > IntegralLimits.INT_MAX_VALUES[maxDigits])
-                    throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, data);
-            }
-            return r;
+            r = Integer.parseInt(data);
         } catch (NumberFormatException e) {
             throw err(MessageParserException.NUMBER_PARSING_ERROR, di, data);
         }
+        return primitiveIntegerFor(di, r, data);
+    }
+
+    int primitiveIntegerFor(BasicNumericElementaryDataItem di, int r, Object source) throws MessageParserException {
+        if (r < 0 && !di.getIsSigned())
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
+        final int maxDigits = di.getTotalDigits();
+        if (maxDigits > 0) {
+            // make sure that the parsed value does not exceed the configured number of digits
+            if (r < IntegralLimits.INT_MIN_VALUES[maxDigits] || r > IntegralLimits.INT_MAX_VALUES[maxDigits])
+                throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, source);
+        }
+        return r;
     }
 
     public short readPrimitiveShort(BasicNumericElementaryDataItem di, String data) throws MessageParserException {
         ensureNotNull(di, data);
+        final short r;
         try {
-            final short r = Short.parseShort(data);
-            if (r < 0 && !di.getIsSigned())
-                throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
-            final int maxDigits = di.getTotalDigits();
-            if (maxDigits > 0) {
-                // make sure that the parsed value does not exceed the configured number of digits
-                if (r < IntegralLimits.SHORT_MIN_VALUES[maxDigits] || r > IntegralLimits.SHORT_MAX_VALUES[maxDigits])
-                    throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, data);
-            }
-            return r;
+            r = Short.parseShort(data);
         } catch (NumberFormatException e) {
             throw err(MessageParserException.NUMBER_PARSING_ERROR, di, data);
         }
+        return primitiveShortFor(di, r, data);
+    }
+
+    short primitiveShortFor(BasicNumericElementaryDataItem di, short r, Object source) throws MessageParserException {
+        if (r < 0 && !di.getIsSigned())
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
+        final int maxDigits = di.getTotalDigits();
+        if (maxDigits > 0) {
+            // make sure that the parsed value does not exceed the configured number of digits
+            if (r < IntegralLimits.SHORT_MIN_VALUES[maxDigits] || r > IntegralLimits.SHORT_MAX_VALUES[maxDigits])
+                throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, source);
+        }
+        return r;
     }
 
     public byte readPrimitiveByte(BasicNumericElementaryDataItem di, String data) throws MessageParserException {
         ensureNotNull(di, data);
+        final byte r;
         try {
-            final byte r = Byte.parseByte(data);
-            if (r < 0 && !di.getIsSigned())
-                throw err(MessageParserException.SUPERFLUOUS_SIGN, di, data);
-            final int maxDigits = di.getTotalDigits();
-            if (maxDigits > 0) {
-                // make sure that the parsed value does not exceed the configured number of digits
-                if (r < IntegralLimits.BYTE_MIN_VALUES[maxDigits] || r > IntegralLimits.BYTE_MAX_VALUES[maxDigits])
-                    throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, data);
-            }
-            return r;
+            r = Byte.parseByte(data);
         } catch (NumberFormatException e) {
             throw err(MessageParserException.NUMBER_PARSING_ERROR, di, data);
         }
+        return primitiveByteFor(di, r, data);
+    }
+
+    byte primitiveByteFor(BasicNumericElementaryDataItem di, byte r, Object source) throws MessageParserException {
+        if (r < 0 && !di.getIsSigned())
+            throw err(MessageParserException.SUPERFLUOUS_SIGN, di, source);
+        final int maxDigits = di.getTotalDigits();
+        if (maxDigits > 0) {
+            // make sure that the parsed value does not exceed the configured number of digits
+            if (r < IntegralLimits.BYTE_MIN_VALUES[maxDigits] || r > IntegralLimits.BYTE_MAX_VALUES[maxDigits])
+                throw err(MessageParserException.NUMERIC_TOO_MANY_DIGITS, di, source);
+        }
+        return r;
     }
 }
@@ -129,12 +129,12 @@ public class StringProviderParser extends AbstractPartialJsonStringParser implem
 
     @Override
     public String readAscii(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return stringParser.readAscii(di, getParameter(di));
+        return canonical(di, stringParser.readAscii(di, getParameter(di)));
     }
 
     @Override
     public String readString(AlphanumericElementaryDataItem di) throws MessageParserException {
-        return stringParser.readString(di, getParameter(di));
+        return canonical(di, stringParser.readString(di, getParameter(di)));
     }
 
     @Override
@@ -0,0 +1,181 @@
+package de.jpaw.bonaparte.core;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/** Utility methods to process transmissions record by record, instead of materializing them as a List.
+ *
+ * On the reading side, the records of a RecordSource (ByteArrayParser, StringBuilderParser or any compact format parser) are provided
+ * as Iterator, Stream or Flow.Publisher. Records are parsed only on demand, therefore only a single record is held in memory at a time.
+ * Parsers keep all objects of a transmission for backreferences though, unless setBackreferencesWithinRecord(true) has been set on the composer
+ * which wrote the data and on the parser. With that setting and a CompactParser reading from an InputStream, the memory consumption is independent
+ * of the size of the transmission.
+ * Checked exceptions thrown by the parser are wrapped into a RuntimeException by the Iterator and the Stream, and passed to onError() by the Publisher.
+ *
+ * The writing side is provided by writeTransmission(), the TransmissionSubscriber, and the flushTo() methods of the ByteArrayComposer and CompactByteArrayComposer.
+ * Composers keep written objects for backreferences as well (unless ObjectReuseStrategy.NONE is used), therefore setBackreferencesWithinRecord(true)
+ * is required on that side too, in order to write transmissions of any size with constant memory.
+ */
+public final class TransmissionStreams {
+    private TransmissionStreams() {
+    }
+
+    private static RuntimeException unchecked(Exception e) {
+        return e instanceof RuntimeException re ? re : new RuntimeException(e);
+    }
+
+    /** Returns an Iterator which parses the next record when it is requested. */
+    public static Iterator<BonaPortable> iterator(final RecordSource<?> source) {
+        return new Iterator<BonaPortable>() {
+            private BonaPortable next = null;
+            private boolean done = false;
+
+            @Override
+            public boolean hasNext() {
+                if (next == null && !done) {
+                    try {
+                        next = source.readNextRecord();
+                    } catch (Exception e) {
+                        done = true;
+                        throw unchecked(e);
+                    }
+                    done = next == null;
+                }
+                return next != null;
+            }
+
+            @Override
+            public BonaPortable next() {
+                if (!hasNext())
+                    throw new NoSuchElementException();
+                final BonaPortable result = next;
+                next = null;
+                return result;
+            }
+        };
+    }
+
+    /** Returns a sequential Stream of the records, which are parsed as they are consumed. */
+    public static Stream<BonaPortable> stream(RecordSource<?> source) {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator(source), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /** Returns a Publisher which parses records only as requested by its subscriber, on the provided executor.
+     * The source can be read only once, therefore the publisher accepts a single subscriber. */
+    public static Flow.Publisher<BonaPortable> publisher(RecordSource<?> source, Executor executor) {
+        return new RecordPublisher(source, executor);
+    }
+
+    /** Writes all records of the stream as a single transmission. The records are written as they are produced by the stream. */
+    public static <E extends Exception> void writeTransmission(MessageWriter<E> writer, Stream<? extends BonaCustom> records) throws E {
+        writer.startTransmission();
+        final Iterator<? extends BonaCustom> iter = records.iterator();
+        while (iter.hasNext())
+            writer.writeRecord(iter.next());
+        writer.terminateTransmission();
+    }
+
+    private static final class RecordPublisher implements Flow.Publisher<BonaPortable> {
+        private final RecordSource<?> source;
+        private final Executor executor;
+        private final AtomicBoolean subscribed = new AtomicBoolean();
+
+        private RecordPublisher(RecordSource<?> source, Executor executor) {
+            this.source = source;
+            this.executor = executor;
+        }
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super BonaPortable> subscriber) {
+            if (subscribed.getAndSet(true)) {
+                subscriber.onSubscribe(new Flow.Subscription() {
+                    @Override
+                    public void request(long n) {
+                    }
+                    @Override
+                    public void cancel() {
+                    }
+                });
+                subscriber.onError(new IllegalStateException("The records of a transmission can be published to a single subscriber only"));
+                return;
+            }
+            subscriber.onSubscribe(new RecordSubscription(subscriber));
+        }
+
+        private final class RecordSubscription implements Flow.Subscription, Runnable {
+            private final Flow.Subscriber<? super BonaPortable> subscriber;
+            private final AtomicLong demand = new AtomicLong();
+            private final AtomicInteger pendingSignals = new AtomicInteger();   // guards run(), such that records are parsed by a single thread at a time
+            private volatile boolean cancelled = false;
+            private volatile long invalidRequest = 0L;
+
+            private RecordSubscription(Flow.Subscriber<? super BonaPortable> subscriber) {
+                this.subscriber = subscriber;
+            }
+
+            @Override
+            public void request(long n) {
+                if (n <= 0L)
+                    invalidRequest = n;
+                else
+                    demand.getAndAccumulate(n, (current, more) -> current + more < 0L ? Long.MAX_VALUE : current + more);
+                schedule();
+            }
+
+            @Override
+            public void cancel() {
+                cancelled = true;
+            }
+
+            private void schedule() {
+                if (pendingSignals.getAndIncrement() == 0)
+                    executor.execute(this);
+            }
+
+            @Override
+            public void run() {
+                int missed = 1;
+                do {
+                    if (cancelled)
+                        return;
+                    if (invalidRequest != 0L) {
+                        cancelled = true;
+                        subscriber.onError(new IllegalArgumentException("Number of requested records must be positive, got " + invalidRequest));
+                        return;
+                    }
+                    long emitted = 0L;
+                    final long requested = demand.get();
+                    while (emitted < requested && !cancelled) {
+                        final BonaPortable record;
+                        try {
+                            record = source.readNextRecord();
+                        } catch (Exception e) {
+                            cancelled = true;
+                            subscriber.onError(e);
+                            return;
+                        }
+                        if (record == null) {
+                            cancelled = true;
+                            subscriber.onComplete();
+                            return;
+                        }
+                        subscriber.onNext(record);
+                        ++emitted;
+                    }
+                    if (requested != Long.MAX_VALUE)
+                        demand.addAndGet(-emitted);
+                    missed = pendingSignals.addAndGet(-missed);
+                } while (missed != 0);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package de.jpaw.bonaparte.core;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+
+/** Subscriber which writes the received records as a transmission: startTransmission() on subscription, writeRecord() for every record,
+ * and terminateTransmission() when the publisher completes.
+ *
+ * Records are requested in batches of batchSize, with the next batch requested only after the previous one has been written,
+ * therefore a fast publisher cannot overrun a slow writer. After every batch, and after the end of the transmission, flush() is invoked.
+ * Buffered writers should override it to forward the bytes written so far, for example via the flushTo() methods of the ByteArrayComposer
+ * and the CompactByteArrayComposer, in order to write transmissions of any size with constant memory.
+ *
+ * The outcome is reported by getCompletion(). If the writer throws an exception, the subscription is cancelled.
+ */
+public class TransmissionSubscriber implements Flow.Subscriber<BonaCustom> {
+    private final MessageWriter<?> writer;
+    private final int batchSize;
+    private final CompletableFuture<Void> completion = new CompletableFuture<Void>();
+    private Flow.Subscription subscription = null;
+    private int outstanding = 0;                // number of records requested but not yet received
+
+    public TransmissionSubscriber(MessageWriter<?> writer, int batchSize) {
+        if (batchSize <= 0)
+            throw new IllegalArgumentException("batchSize must be positive, got " + batchSize);
+        this.writer = writer;
+        this.batchSize = batchSize;
+    }
+
+    /** Invoked after every batch of records, and after the transmission has been terminated. */
+    protected void flush() throws Exception {
+    }
+
+    /** Returns a future which completes once the transmission has been terminated and flushed, or exceptionally if either side failed. */
+    public CompletableFuture<Void> getCompletion() {
+        return completion;
+    }
+
+    private void fail(Throwable e) {
+        if (subscription != null)
+            subscription.cancel();
+        completion.completeExceptionally(e);
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription newSubscription) {
+        if (subscription != null) {
+            newSubscription.cancel();   // a transmission is written for a single publisher only
+            return;
+        }
+        subscription = newSubscription;
+        try {
+            writer.startTransmission();
+        } catch (Exception e) {
+            fail(e);
+            return;
+        }
+        outstanding = batchSize;
+        subscription.request(batchSize);
+    }
+
+    @Override
+    public void onNext(BonaCustom record) {
+        if (completion.isDone())
+            return;
+        try {
+            writer.writeRecord(record);
+            if (--outstanding == 0) {
+                flush();
+                outstanding = batchSize;
+                subscription.request(batchSize);
+            }
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        completion.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        if (completion.isDone())
+            return;
+        try {
+            writer.terminateTransmission();
+            flush();
+            completion.complete(null);
+        } catch (Exception e) {
+            fail(e);
+        }
+    }
+}
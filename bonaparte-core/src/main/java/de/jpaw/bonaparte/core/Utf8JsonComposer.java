@@ -0,0 +1,513 @@
+package de.jpaw.bonaparte.core;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+import de.jpaw.bonaparte.pojos.meta.MiscElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.bonaparte.util.LongTools;
+import de.jpaw.json.JsonEscaper;
+import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
+
+/** A JsonComposer which writes UTF-8 encoded JSON directly into a ByteBuilder, without an intermediate String.
+ *
+ * The output is byte by byte identical to the UTF-8 encoding of the JsonComposer output with the same settings.
+ * Field names, numbers, temporal fields, UUIDs and strings which do not need any escaping are written as bytes directly,
+ * field names use a precomputed quoted byte sequence per field.
+ * Everything else (strings with escapes or non ASCII characters, enum sets, Json fields) is written by the inherited methods
+ * and the JsonEscaper, whose characters are UTF-8 encoded into the same buffer as they are appended.
+ *
+ * Which ASCII characters can be written without escaping is determined once, by asking the JsonEscaper.
+ *
+ * Instances are not thread safe, like the other composers. The buffer can be reused for the next message after a reset().
+ */
+public class Utf8JsonComposer extends JsonComposer implements BufferedMessageComposer<IOException> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Utf8JsonComposer.class);
+    private static final byte QUOTE = '"';
+    private static final byte [] NEEDS_ESCAPER = new byte [0];          // marker in the field name cache
+    private static final boolean [] PLAIN = plainAsciiCharacters();     // printable ASCII characters which the JsonEscaper outputs unchanged
+    private static final boolean PLAIN_TEMPORALS = isPlain("0123456789-:T.");
+    private static final boolean PLAIN_UUIDS = isPlain("0123456789abcdef-");
+    private static final byte [] HEX_DIGITS = { '0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f' };
+    private static final ConcurrentHashMap<String, byte []> QUOTED_FIELD_NAMES = new ConcurrentHashMap<String, byte []>(256);
+
+    protected final ByteBuilder work;
+    private final byte [] scratch = new byte [40];                      // numbers, temporals and UUIDs are assembled here
+
+    /** Quick conversion utility method, returns the same bytes as JsonComposer.toJsonString(obj) encoded as UTF-8. (null safe) */
+    public static byte [] toJsonBytes(BonaCustom obj) {
+        return toJsonBytes(obj, true, true);
+    }
+
+    public static byte [] toJsonBytes(BonaCustom obj, boolean writeEnumOrdinals, boolean writeEnumTokens) {
+        if (obj == null)
+            return null;
+        final Utf8JsonComposer bjc = new Utf8JsonComposer();
+        bjc.writeEnumOrdinals = writeEnumOrdinals;
+        bjc.writeEnumTokens = writeEnumTokens;
+        try {
+            bjc.writeRecord(obj);
+        } catch (IOException e) {
+            LOGGER.error("Serialization exception: ", e);
+            throw new RuntimeException(e);
+        }
+        return bjc.getBytes();
+    }
+
+    /** Quick conversion utility method, for marshallers. Avoids the copy of the result. (null safe) */
+    public static ByteArray toJsonByteArray(BonaCustom obj) {
+        if (obj == null)
+            return null;
+        final Utf8JsonComposer bjc = new Utf8JsonComposer();
+        try {
+            bjc.writeRecord(obj);
+        } catch (IOException e) {
+            LOGGER.error("Serialization exception: ", e);
+            throw new RuntimeException(e);
+        }
+        return new ByteArray(bjc.getBuffer(), 0, bjc.getLength());
+    }
+
+    /** Returns the same bytes as JsonComposer.toJsonStringNoPQON(obj) encoded as UTF-8. (null safe) */
+    public static byte [] toJsonBytesNoPQON(BonaCustom obj) {
+        if (obj == null)
+            return null;
+        final Utf8JsonComposer bjc = new Utf8JsonComposer(new ByteBuilder(), false, false, false, false);
+        bjc.setWriteCRs(false);
+        try {
+            bjc.writeRecord(obj);
+        } catch (IOException e) {
+            LOGGER.error("Serialization exception: ", e);
+            throw new RuntimeException(e);
+        }
+        return bjc.getBytes();
+    }
+
+    /** Returns the same bytes as JsonComposer.toJsonString(obj) for a list of records, encoded as UTF-8. (null safe) */
+    public static byte [] toJsonBytes(Iterable<? extends BonaCustom> obj) {
+        if (obj == null)
+            return null;
+        final Utf8JsonComposer bjc = new Utf8JsonComposer();
+        try {
+            bjc.writeTransmission(obj);
+        } catch (IOException e) {
+            LOGGER.error("Serialization exception: ", e);
+            throw new RuntimeException(e);
+        }
+        return bjc.getBytes();
+    }
+
+    public Utf8JsonComposer() {
+        this(new ByteBuilder());
+    }
+
+    public Utf8JsonComposer(ByteBuilder work) {
+        this(work, false);
+    }
+
+    /** Creates a composer with the settings of new JsonComposer(appendable, writeNulls). */
+    public Utf8JsonComposer(ByteBuilder work, boolean writeNulls) {
+        this(new Utf8Appendable(work), writeNulls, false, false, true, false, false);
+    }
+
+    /** Creates a composer with the settings of new JsonComposer(appendable, writeNulls, new BonaparteJsonEscaper(appendable, writeNullsInJsonFields)). */
+    public Utf8JsonComposer(ByteBuilder work, boolean writeNulls, boolean writeNullsInJsonFields) {
+        this(new Utf8Appendable(work), writeNulls, false, false, true, true, writeNullsInJsonFields);
+    }
+
+    /** Creates a composer with the settings of new JsonComposer(appendable, writeNulls, writeTypeInfo, writePqonInfo, maybeWritePqonInfo, new BonaparteJsonEscaper(appendable)). */
+    public Utf8JsonComposer(ByteBuilder work, boolean writeNulls, boolean writeTypeInfo, boolean writePqonInfo, boolean maybeWritePqonInfo) {
+        this(new Utf8Appendable(work), writeNulls, writeTypeInfo, writePqonInfo, maybeWritePqonInfo, false, false);
+    }
+
+    private Utf8JsonComposer(Utf8Appendable out, boolean writeNulls, boolean writeTypeInfo, boolean writePqonInfo, boolean maybeWritePqonInfo,
+      boolean configuredEscaper, boolean writeNullsInJsonFields) {
+        super(out, writeNulls, writeTypeInfo, writePqonInfo, maybeWritePqonInfo,
+          configuredEscaper ? new BonaparteJsonEscaper(out, writeNullsInJsonFields) : new BonaparteJsonEscaper(out));
+        this.work = out.work;
+    }
+
+    /** Sets the current length to 0, allowing reuse of the allocated output buffer for a new message. */
+    @Override
+    public void reset() {
+        work.setLength(0);
+        needFieldSeparator = false;
+        needRecordSeparator = false;
+    }
+
+    /** Returns the number of bytes written. */
+    @Override
+    public int getLength() {
+        return work.length();
+    }
+
+    /** Returns the current buffer as a Java byte array. Only the first <code>getLength()</code> bytes of this buffer are valid. */
+    @Override
+    public byte [] getBuffer() {
+        return work.getCurrentBuffer();
+    }
+
+    /** Returns the result as a deep copy byte array of precise length of the result. */
+    @Override
+    public byte [] getBytes() {
+        return work.getBytes();
+    }
+
+    // determines the ASCII characters which are output unchanged by all escaper methods and configurations used by this class
+    private static boolean [] plainAsciiCharacters() {
+        final boolean [] plain = new boolean [128];
+        final StringBuilder buff = new StringBuilder(16);
+        final JsonEscaper [] escapers = { new BonaparteJsonEscaper(buff), new BonaparteJsonEscaper(buff, true), new BonaparteJsonEscaper(buff, false) };
+        for (int c = 0x20; c < 0x7f; ++c) {
+            final String s = String.valueOf((char)c);
+            final String quoted = "\"" + s + "\"";
+            boolean isPlain = true;
+            try {
+                for (JsonEscaper escaper : escapers) {
+                    buff.setLength(0);
+                    escaper.outputAscii(s);
+                    isPlain &= quoted.contentEquals(buff);
+                    buff.setLength(0);
+                    escaper.outputUnicodeNoControls(s);
+                    isPlain &= quoted.contentEquals(buff);
+                    buff.setLength(0);
+                    escaper.outputUnicodeWithControls(s);
+                    isPlain &= quoted.contentEquals(buff);
+                }
+            } catch (IOException e) {
+                isPlain = false;        // cannot happen, appending to a StringBuilder
+            }
+            plain[c] = isPlain;
+        }
+        return plain;
+    }
+
+    private static boolean isPlain(String s) {
+        final int len = s.length();
+        for (int i = 0; i < len; ++i) {
+            final char c = s.charAt(i);
+            if (c >= 128 || !PLAIN[c])
+                return false;
+        }
+        return true;
+    }
+
+    private static byte [] quoteFieldName(String name) {
+        if (!isPlain(name))
+            return NEEDS_ESCAPER;
+        final byte [] quoted = new byte [name.length() + 2];
+        quoted[0] = QUOTE;
+        for (int i = 0; i < name.length(); ++i)
+            quoted[i + 1] = (byte)name.charAt(i);
+        quoted[quoted.length - 1] = QUOTE;
+        return quoted;
+    }
+
+    /** Writes a string which has been verified by isPlain(). */
+    private void writeQuotedPlain(String s) {
+        work.append(QUOTE);
+        work.appendAscii(s);
+        work.append(QUOTE);
+    }
+
+    private void writeLong(long n) {
+        if (n == Long.MIN_VALUE) {
+            work.appendAscii(Long.toString(n));
+            return;
+        }
+        final boolean negative = n < 0;
+        if (negative)
+            n = -n;
+        int pos = scratch.length;
+        do {
+            scratch[--pos] = (byte)('0' + (int)(n % 10L));
+            n /= 10L;
+        } while (n != 0L);
+        if (negative)
+            scratch[--pos] = '-';
+        work.write(scratch, pos, scratch.length - pos);
+    }
+
+    private int putDigits(int pos, int value, int width) {
+        for (int i = pos + width - 1; i >= pos; --i) {
+            scratch[i] = (byte)('0' + value % 10);
+            value /= 10;
+        }
+        return pos + width;
+    }
+
+    // yyyy-MM-dd, as LOCAL_DATE_ISO
+    private int putDate(int pos, int year, int month, int day) {
+        pos = putDigits(pos, year, 4);
+        scratch[pos++] = '-';
+        pos = putDigits(pos, month, 2);
+        scratch[pos++] = '-';
+        return putDigits(pos, day, 2);
+    }
+
+    // HH:mm:ss or HH:mm:ss.SSS, as LOCAL_TIME_ISO and LOCAL_TIME_ISO_WITH_MS
+    private int putTime(int pos, int hour, int minute, int second, int nano, boolean withMillis) {
+        pos = putDigits(pos, hour, 2);
+        scratch[pos++] = ':';
+        pos = putDigits(pos, minute, 2);
+        scratch[pos++] = ':';
+        pos = putDigits(pos, second, 2);
+        if (withMillis) {
+            scratch[pos++] = '.';
+            pos = putDigits(pos, nano / 1000000, 3);
+        }
+        return pos;
+    }
+
+    // the year pattern yyyy writes 4 digits without sign for the years 1 to 9999 only
+    private static boolean isFourDigitYear(int year) {
+        return year >= 1 && year <= 9999;
+    }
+
+    @Override
+    protected void colon() throws IOException {
+        work.append((byte)':');
+        spaceIfPrettyPrint();
+    }
+
+    @Override
+    protected void writeFieldName(FieldDefinition di) throws IOException {
+        if (remFieldName == null) {
+            final String name = di.getName();
+            if (name.length() > 0) {
+                // field names are taken from the meta data, therefore the cache is limited by the number of distinct field names
+                final byte [] quotedName = QUOTED_FIELD_NAMES.computeIfAbsent(name, Utf8JsonComposer::quoteFieldName);
+                if (quotedName != NEEDS_ESCAPER) {
+                    writeSeparator();
+                    newLineandIndentIfPrettyPrint();
+                    work.write(quotedName);
+                    colon();
+                    return;
+                }
+            }
+        }
+        super.writeFieldName(di);
+    }
+
+    @Override
+    protected void writeOptionalQuotedAscii(FieldDefinition di, String s) throws IOException {
+        if (s == null || !isPlain(s)) {
+            super.writeOptionalQuotedAscii(di, s);
+            return;
+        }
+        writeOptionalFieldName(di);
+        writeQuotedPlain(s);
+    }
+
+    @Override
+    protected void writeOptionalQuotedUnicodeNoControls(FieldDefinition di, String s) throws IOException {
+        if (s == null || !isPlain(s)) {
+            super.writeOptionalQuotedUnicodeNoControls(di, s);
+            return;
+        }
+        writeOptionalFieldName(di);
+        writeQuotedPlain(s);
+    }
+
+    @Override
+    public void addField(MiscElementaryDataItem di, boolean b) throws IOException {
+        writeOptionalFieldName(di);
+        work.appendAscii(b ? "true" : "false");
+    }
+
+    @Override
+    public void addField(BasicNumericElementaryDataItem di, byte n) throws IOException {
+        writeOptionalFieldName(di);
+        writeLong(n);
+    }
+
+    @Override
+    public void addField(BasicNumericElementaryDataItem di, short n) throws IOException {
+        writeOptionalFieldName(di);
+        writeLong(n);
+    }
+
+    @Override
+    public void addField(BasicNumericElementaryDataItem di, int n) throws IOException {
+        if (di == StaticMeta.MAP_INDEX_META_INTEGER) {
+            super.addField(di, n);
+            return;
+        }
+        writeOptionalFieldName(di);
+        writeLong(n);
+    }
+
+    @Override
+    public void addField(BasicNumericElementaryDataItem di, long n) throws IOException {
+        if (di == StaticMeta.MAP_INDEX_META_LONG) {
+            super.addField(di, n);
+            return;
+        }
+        LongTools.checkLongOverflow(n);
+        writeOptionalFieldName(di);
+        writeLong(n);
+    }
+
+    @Override
+    public void addField(AlphanumericElementaryDataItem di, String s) throws IOException {
+        if (s == null || di == StaticMeta.MAP_INDEX_META_STRING || !isPlain(s)) {
+            super.addField(di, s);
+            return;
+        }
+        if (isListType(di)) {
+            writeSeparator();
+        } else {
+            writeFieldName(di);
+        }
+        writeQuotedPlain(s);
+    }
+
+    @Override
+    public void addField(MiscElementaryDataItem di, UUID n) throws IOException {
+        if (n == null || !PLAIN_UUIDS) {
+            super.addField(di, n);
+            return;
+        }
+        writeOptionalFieldName(di);
+        // same as n.toString(): 8-4-4-4-12 lowercase hex digits
+        final long msb = n.getMostSignificantBits();
+        final long lsb = n.getLeastSignificantBits();
+        scratch[0] = QUOTE;
+        int pos = 1;
+        for (int i = 0; i < 32; ++i) {
+            if (i == 8 || i == 12 || i == 16 || i == 20)
+                scratch[pos++] = '-';
+            final long bits = i < 16 ? msb : lsb;
+            scratch[pos++] = HEX_DIGITS[(int)(bits >>> (60 - 4 * (i & 15))) & 15];
+        }
+        scratch[pos++] = QUOTE;
+        work.write(scratch, 0, pos);
+    }
+
+    @Override
+    public void addField(TemporalElementaryDataItem di, LocalDate t) throws IOException {
+        if (t == null || !PLAIN_TEMPORALS || !isFourDigitYear(t.getYear())) {
+            super.addField(di, t);
+            return;
+        }
+        writeOptionalFieldName(di);
+        scratch[0] = QUOTE;
+        int pos = putDate(1, t.getYear(), t.getMonthValue(), t.getDayOfMonth());
+        scratch[pos++] = QUOTE;
+        work.write(scratch, 0, pos);
+    }
+
+    @Override
+    public void addField(TemporalElementaryDataItem di, LocalDateTime t) throws IOException {
+        if (t == null || !PLAIN_TEMPORALS || !isFourDigitYear(t.getYear())) {
+            super.addField(di, t);
+            return;
+        }
+        writeOptionalFieldName(di);
+        scratch[0] = QUOTE;
+        int pos = putDate(1, t.getYear(), t.getMonthValue(), t.getDayOfMonth());
+        scratch[pos++] = 'T';
+        pos = putTime(pos, t.getHour(), t.getMinute(), t.getSecond(), t.getNano(), di.getFractionalSeconds() > 0);
+        scratch[pos++] = QUOTE;
+        work.write(scratch, 0, pos);
+    }
+
+    @Override
+    public void addField(TemporalElementaryDataItem di, LocalTime t) throws IOException {
+        if (t == null || !PLAIN_TEMPORALS) {
+            super.addField(di, t);
+            return;
+        }
+        writeOptionalFieldName(di);
+        scratch[0] = QUOTE;
+        int pos = putTime(1, t.getHour(), t.getMinute(), t.getSecond(), t.getNano(), di.getFractionalSeconds() > 0);
+        scratch[pos++] = QUOTE;
+        work.write(scratch, 0, pos);
+    }
+
+    @Override
+    public void addField(TemporalElementaryDataItem di, Instant t) throws IOException {
+        if (t == null || instantInMillis) {
+            super.addField(di, t);
+            return;
+        }
+        // same output as JsonComposer: seconds, with milliseconds only if there are any
+        writeFieldName(di);
+        final long millis = t.toEpochMilli();
+        writeLong(millis / 1000);
+        if (di.getFractionalSeconds() > 0) {
+            final int fraction = (int)(millis % 1000);
+            if (fraction > 0) {
+                scratch[0] = '.';
+                work.write(scratch, 0, putDigits(1, fraction, 3));
+            }
+        }
+    }
+
+    /** Appendable which encodes the characters as UTF-8 into a ByteBuilder, for the output of the JsonEscaper and the inherited methods.
+     * Unpaired surrogates are replaced by '?', as by String.getBytes(). */
+    private static final class Utf8Appendable implements Appendable {
+        private final ByteBuilder work;
+        private char highSurrogate = 0;
+
+        private Utf8Appendable(ByteBuilder work) {
+            this.work = work;
+        }
+
+        @Override
+        public Appendable append(CharSequence csq) {
+            return append(csq, 0, csq.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence csq, int start, int end) {
+            for (int i = start; i < end; ++i)
+                append(csq.charAt(i));
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) {
+            if (highSurrogate != 0) {
+                final char high = highSurrogate;
+                highSurrogate = 0;
+                if (Character.isLowSurrogate(c)) {
+                    final int codePoint = Character.toCodePoint(high, c);
+                    work.append((byte)(0xf0 | (codePoint >> 18)));
+                    work.append((byte)(0x80 | ((codePoint >> 12) & 0x3f)));
+                    work.append((byte)(0x80 | ((codePoint >> 6) & 0x3f)));
+                    work.append((byte)(0x80 | (codePoint & 0x3f)));
+                    return this;
+                }
+                work.append((byte)'?');
+            }
+            if (c < 0x80) {
+                work.append((byte)c);
+            } else if (c < 0x800) {
+                work.append((byte)(0xc0 | (c >> 6)));
+                work.append((byte)(0x80 | (c & 0x3f)));
+            } else if (Character.isHighSurrogate(c)) {
+                highSurrogate = c;
+            } else if (Character.isLowSurrogate(c)) {
+                work.append((byte)'?');
+            } else {
+                work.append((byte)(0xe0 | (c >> 12)));
+                work.append((byte)(0x80 | ((c >> 6) & 0x3f)));
+                work.append((byte)(0x80 | (c & 0x3f)));
+            }
+            return this;
+        }
+    }
+}
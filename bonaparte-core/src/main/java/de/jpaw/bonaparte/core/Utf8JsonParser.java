@@ -0,0 +1,1554 @@
+package de.jpaw.bonaparte.core;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.LongFunction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.AlphanumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.BasicNumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.BinaryElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
+import de.jpaw.bonaparte.pojos.meta.EnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.EnumDefinition;
+import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
+import de.jpaw.bonaparte.pojos.meta.MiscElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.NumericEnumSetDataItem;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+import de.jpaw.bonaparte.pojos.meta.TemporalElementaryDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumDataItem;
+import de.jpaw.bonaparte.pojos.meta.XEnumSetDataItem;
+import de.jpaw.bonaparte.util.BigDecimalTools;
+import de.jpaw.bonaparte.util.Latin1Tools;
+import de.jpaw.enums.AbstractXEnumBase;
+import de.jpaw.enums.XEnumFactory;
+import de.jpaw.fixedpoint.FixedPointBase;
+import de.jpaw.json.JsonException;
+import de.jpaw.json.JsonParser;
+import de.jpaw.util.ByteArray;
+
+/** Parses UTF-8 encoded JSON directly into BonaPortables, without the intermediate Map of the JsonParser / MapParser combination.
+ *
+ * The fields are read in the order of the generated deserialize() methods, which is the order written by the JsonComposer.
+ * As long as the keys of an object arrive in that order, the parser just compares the next key with the requested field name
+ * (absent fields are the ones with null values, which are omitted by default). At the first key which does not match,
+ * the remaining members of the object are indexed once (key and offset of the value), and all further fields of that object
+ * are located via that index. Values are converted directly from the input, no tree of the JSON document is built.
+ *
+ * The accepted input and the conversions correspond to the MapParser: the desired type itself, a string, or the JSON type written by the JsonComposer.
+ * The type of an object is determined as in MapParser.allocObject() by the "@PQON" or "@type" members, or the lower bound of the reference.
+ * Maps are expected as JSON objects, keys of integral maps with the "_" prefix written by the JsonComposer.
+ *
+ * Instances are not thread safe, and intended for a single document (object, or array of objects for readTransmission()).
+ */
+public class Utf8JsonParser extends AbstractMessageParser<MessageParserException> implements MessageParser<MessageParserException> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(Utf8JsonParser.class);
+
+    // types of JSON values, as determined by their first character
+    private static final int T_NULL     = 0;        // also used for absent members
+    private static final int T_TRUE     = 1;
+    private static final int T_FALSE    = 2;
+    private static final int T_NUMBER   = 3;
+    private static final int T_STRING   = 4;
+    private static final int T_OBJECT   = 5;
+    private static final int T_ARRAY    = 6;
+
+    private final byte [] data;
+    private final int end;
+    private int pos;
+    private final boolean readEnumOrdinals;    // false: use name, true: return ordinal for non tokenizable enums
+    private final boolean readEnumTokens;      // false: use name, true: return token for tokenizable enums / xenums
+    private final StringParserUtil spu;
+
+    private String currentClass = "N/A";
+    private ObjectContext [] stack = new ObjectContext [8];
+    private int depth = 0;
+    private ObjectContext ctx = null;          // the innermost object, null at top level
+    private String pendingKey = null;          // a key of a map, which has been read but not yet been returned
+
+    // the last number scanned
+    private int numStart;
+    private int numEnd;
+    private boolean numIntegral;               // no decimal point and no exponent
+    private boolean numExact;                  // no exponent and not more than 18 digits: numUnscaled and numScale are valid
+    private long numUnscaled;
+    private int numScale;
+
+    /** Parsing state of a JSON object. Instances are reused per nesting level. */
+    private static final class ObjectContext {
+        private boolean first;                 // no member has been visited yet
+        private boolean atKey;                 // the separator of the next member has been consumed, the parse position is at its key
+        private boolean closed;                // the closing brace has been consumed
+        private int endPos;                    // position after the closing brace, valid if closed
+        private int members;                   // number of indexed members, or -1 as long as the members are read sequentially
+        private int [] index = new int [3 * 16];   // per indexed member: start of the key (after the quote), length of the key, start of the value
+        private int [] hashes = new int [16];
+        private String [] decodedKeys = new String [16];    // keys with escapes or non ASCII characters, null for plain keys
+        private int remaining;                 // number of elements (map entries) of the current collection still to be read, or -1
+        private boolean firstElement;
+        private boolean inMap;
+        private boolean expectKey;
+
+        private void reset() {
+            first = true;
+            atKey = false;
+            closed = false;
+            members = -1;
+            remaining = -1;
+            inMap = false;
+        }
+
+        private void add(int keyStart, int keyLength, String decodedKey, int hash, int valueStart) {
+            if (members == hashes.length) {
+                index = Arrays.copyOf(index, 6 * members);
+                hashes = Arrays.copyOf(hashes, 2 * members);
+                decodedKeys = Arrays.copyOf(decodedKeys, 2 * members);
+            }
+            index[3 * members] = keyStart;
+            index[3 * members + 1] = keyLength;
+            index[3 * members + 2] = valueStart;
+            hashes[members] = hash;
+            decodedKeys[members] = decodedKey;
+            ++members;
+        }
+    }
+
+    /** Creates a parser for instants in seconds, using enum tokens or ordinals (the defaults of the JsonComposer). */
+    public Utf8JsonParser(byte [] data) {
+        this(data, 0, data.length);
+    }
+
+    /** Creates a parser for instants in seconds, using enum tokens or ordinals (the defaults of the JsonComposer). */
+    public Utf8JsonParser(byte [] data, int offset, int length) {
+        this(data, offset, length, false, true, true);
+    }
+
+    /** Creates a parser for the remaining bytes of a buffer. The position of the buffer is not changed. Direct buffers are copied. */
+    public Utf8JsonParser(ByteBuffer buffer) {
+        this(arrayOf(buffer), buffer.hasArray() ? buffer.arrayOffset() + buffer.position() : 0, buffer.remaining(), false, true, true);
+    }
+
+    /** Creates a customer parser with all attributes specified separately. */
+    public Utf8JsonParser(byte [] data, int offset, int length, boolean instantInMillis, boolean readEnumOrdinals, boolean readEnumTokens) {
+        this.data = data;
+        this.pos = offset;
+        this.end = offset + length;
+        this.readEnumOrdinals = readEnumOrdinals;
+        this.readEnumTokens   = readEnumTokens;
+        this.spu = new StringParserUtil(new ParsePositionProvider() {
+
+            @Override
+            public int getParsePosition() {
+                return pos;
+            }
+
+            @Override
+            public String getCurrentClassName() {
+                return currentClass;
+            }
+        }, instantInMillis);
+    }
+
+    private static byte [] arrayOf(ByteBuffer buffer) {
+        if (buffer.hasArray())
+            return buffer.array();
+        final byte [] copy = new byte [buffer.remaining()];
+        buffer.duplicate().get(copy);
+        return copy;
+    }
+
+    /** Converts a JSON object to a BonaPortable. The class is determined by the type information in the data, or the lower bound of di. */
+    public static BonaPortable asBonaPortable(byte [] json, int offset, int length, ObjectReference di) throws MessageParserException {
+        return new Utf8JsonParser(json, offset, length).readObject(di, BonaPortable.class);
+    }
+
+    private MessageParserException err(int errno, FieldDefinition di) {
+        return new MessageParserException(errno, di.getName(), pos, currentClass);
+    }
+
+    private MessageParserException syntaxError(String msg) {
+        return new MessageParserException(MessageParserException.JSON_EXCEPTION, msg, pos, currentClass);
+    }
+
+    /***************************************************************************************************
+     * Low level scanning
+     **************************************************************************************************/
+
+    private void skipWhitespace() {
+        while (pos < end) {
+            final byte b = data[pos];
+            if (b != ' ' && b != '\n' && b != '\r' && b != '\t')
+                return;
+            ++pos;
+        }
+    }
+
+    private byte peek() throws MessageParserException {
+        if (pos >= end)
+            throw syntaxError("(unexpected end of JSON data)");
+        return data[pos];
+    }
+
+    private void expect(char c) throws MessageParserException {
+        if (peek() != c)
+            throw syntaxError("(expected '" + c + "', got '" + (char)data[pos] + "')");
+        ++pos;
+    }
+
+    private void literal(String word) throws MessageParserException {
+        final int n = word.length();
+        if (pos + n > end || !rawEquals(pos, n, word))
+            throw syntaxError("(invalid literal, expected " + word + ")");
+        pos += n;
+    }
+
+    /** Determines the type of the value at the current position. Literals are consumed, all other values are left for the specific conversion. */
+    private int valueType() throws MessageParserException {
+        switch (peek()) {
+        case '"':
+            return T_STRING;
+        case '{':
+            return T_OBJECT;
+        case '[':
+            return T_ARRAY;
+        case 'n':
+            literal("null");
+            return T_NULL;
+        case 't':
+            literal("true");
+            return T_TRUE;
+        case 'f':
+            literal("false");
+            return T_FALSE;
+        case '-':
+        case '0': case '1': case '2': case '3': case '4': case '5': case '6': case '7': case '8': case '9':
+            return T_NUMBER;
+        default:
+            throw syntaxError("(unexpected character '" + (char)data[pos] + "')");
+        }
+    }
+
+    // returns true if the range of the input equals the (ASCII) string s
+    private boolean rawEquals(int offset, int length, String s) {
+        if (length != s.length())
+            return false;
+        for (int k = 0; k < length; ++k) {
+            if (data[offset + k] != s.charAt(k))
+                return false;
+        }
+        return true;
+    }
+
+    // value of n decimal digits at offset, or -1 if one of the bytes is not a digit
+    private int digits(int offset, int n) {
+        int r = 0;
+        for (int i = offset; i < offset + n; ++i) {
+            final int d = data[i] - '0';
+            if (d < 0 || d > 9)
+                return -1;
+            r = r * 10 + d;
+        }
+        return r;
+    }
+
+    /** Scans a number at the current position. Numbers without exponent and up to 18 digits are accumulated, others are converted from their text. */
+    private void scanNumber() throws MessageParserException {
+        int i = pos;
+        numStart = i;
+        final boolean negative = data[i] == '-';
+        if (negative)
+            ++i;
+        long unscaled = 0L;
+        int digits = 0;
+        int scale = 0;
+        boolean exponent = false;
+        final int firstDigit = i;
+        for (; i < end && data[i] >= '0' && data[i] <= '9'; ++i, ++digits)
+            unscaled = unscaled * 10L + (data[i] - '0');
+        if (i == firstDigit) {
+            pos = i;
+            throw syntaxError("(digit expected)");
+        }
+        if (i < end && data[i] == '.') {
+            final int firstFractional = ++i;
+            for (; i < end && data[i] >= '0' && data[i] <= '9'; ++i, ++digits)
+                unscaled = unscaled * 10L + (data[i] - '0');
+            scale = i - firstFractional;
+            if (scale == 0) {
+                pos = i;
+                throw syntaxError("(digit expected after decimal point)");
+            }
+        }
+        if (i < end && (data[i] == 'e' || data[i] == 'E')) {
+            exponent = true;
+            ++i;
+            if (i < end && (data[i] == '+' || data[i] == '-'))
+                ++i;
+            final int firstExponentDigit = i;
+            while (i < end && data[i] >= '0' && data[i] <= '9')
+                ++i;
+            if (i == firstExponentDigit) {
+                pos = i;
+                throw syntaxError("(digit expected in exponent)");
+            }
+        }
+        pos = numEnd = i;
+        numIntegral = scale == 0 && !exponent;
+        numExact = !exponent && digits <= 18;
+        numUnscaled = negative ? -unscaled : unscaled;
+        numScale = scale;
+    }
+
+    private String numberText() {
+        return Latin1Tools.fromLatin1(data, numStart, numEnd - numStart);
+    }
+
+    private BigDecimal bigNumber() {
+        return new BigDecimal(numberText());
+    }
+
+    private long longNumber() {
+        return numExact && numIntegral ? numUnscaled : bigNumber().longValue();
+    }
+
+    private double doubleNumber() {
+        return numExact && numIntegral ? (double)numUnscaled : Double.parseDouble(numberText());
+    }
+
+    /** Decodes the string at the current position (at the opening quote). Plain ASCII strings are copied in bulk, without any decoding. */
+    private String decodeString() throws MessageParserException {
+        final int start = pos + 1;
+        for (int i = start; i < end; ++i) {
+            final byte b = data[i];
+            if (b == '"') {
+                pos = i + 1;
+                return Latin1Tools.fromLatin1(data, start, i - start);
+            }
+            if (b == '\\' || b < 0)
+                break;
+        }
+        // escapes or multi-byte characters. Escape sequences are ASCII, therefore they can be processed after the UTF-8 decoding
+        final int closingQuote = findClosingQuote(start);
+        final String raw = new String(data, start, closingQuote - start, StandardCharsets.UTF_8);
+        pos = closingQuote + 1;
+        return raw.indexOf('\\') < 0 ? raw : unescape(raw);
+    }
+
+    private int findClosingQuote(int start) throws MessageParserException {
+        for (int i = start; i < end; ++i) {
+            final byte b = data[i];
+            if (b == '"')
+                return i;
+            if (b == '\\')
+                ++i;
+        }
+        throw new MessageParserException(MessageParserException.MISSING_CLOSING_QUOTE, null, start - 1, currentClass);
+    }
+
+    private String unescape(String raw) throws MessageParserException {
+        final int length = raw.length();
+        final StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; ++i) {
+            final char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            final char e = raw.charAt(++i);     // a backslash cannot be the last character, because that would have escaped the closing quote
+            switch (e) {
+            case '"':
+            case '\\':
+            case '/':
+                sb.append(e);
+                break;
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                int u = 0;
+                for (int k = 1; k <= 4; ++k) {
+                    final int d = i + k < length ? NumericToken.hexDigit(raw.charAt(i + k)) : -1;
+                    if (d < 0)
+                        throw syntaxError("(invalid unicode escape sequence)");
+                    u = (u << 4) | d;
+                }
+                sb.append((char)u);
+                i += 4;
+                break;
+            default:
+                throw syntaxError("(invalid escape sequence \\" + e + ")");
+            }
+        }
+        return sb.toString();
+    }
+
+    private void skipString() throws MessageParserException {
+        pos = findClosingQuote(pos + 1) + 1;
+    }
+
+    /** Skips a complete value of any type, including nested objects and arrays. */
+    private void skipValue() throws MessageParserException {
+        skipWhitespace();
+        switch (peek()) {
+        case '"':
+            skipString();
+            return;
+        case '{':
+            ++pos;
+            skipWhitespace();
+            if (peek() == '}') {
+                ++pos;
+                return;
+            }
+            for (;;) {
+                skipWhitespace();
+                if (peek() != '"')
+                    throw syntaxError("(member name expected)");
+                skipString();
+                skipWhitespace();
+                expect(':');
+                skipValue();
+                skipWhitespace();
+                if (peek() == '}') {
+                    ++pos;
+                    return;
+                }
+                expect(',');
+            }
+        case '[':
+            ++pos;
+            skipWhitespace();
+            if (peek() == ']') {
+                ++pos;
+                return;
+            }
+            for (;;) {
+                skipValue();
+                skipWhitespace();
+                if (peek() == ']') {
+                    ++pos;
+                    return;
+                }
+                expect(',');
+            }
+        default:
+            if (valueType() == T_NUMBER)        // literals have been consumed already
+                scanNumber();
+        }
+    }
+
+    /** Counts the elements of an array, or the members of an object, starting after the opening bracket. The parse position is not changed. */
+    private int countElements(char closing) throws MessageParserException {
+        final int start = pos;
+        int n = 0;
+        skipWhitespace();
+        if (peek() != closing) {
+            for (;;) {
+                if (closing == '}') {
+                    skipWhitespace();
+                    if (peek() != '"')
+                        throw syntaxError("(member name expected)");
+                    skipString();
+                    skipWhitespace();
+                    expect(':');
+                }
+                skipValue();
+                ++n;
+                skipWhitespace();
+                if (peek() == closing)
+                    break;
+                expect(',');
+            }
+        }
+        pos = start;
+        return n;
+    }
+
+    /** Returns a parser for the tree of the value at the current position, and skips it. */
+    private JsonParser materialize() throws MessageParserException {
+        final int start = pos;
+        skipValue();
+        return new JsonParser(new String(data, start, pos - start, StandardCharsets.UTF_8), false);
+    }
+
+    /***************************************************************************************************
+     * Navigation within objects
+     **************************************************************************************************/
+
+    private ObjectContext push() {
+        if (depth == stack.length)
+            stack = Arrays.copyOf(stack, 2 * depth);
+        ObjectContext c = stack[depth];
+        if (c == null)
+            stack[depth] = c = new ObjectContext();
+        ++depth;
+        c.reset();
+        ctx = c;
+        return c;
+    }
+
+    private void pop() {
+        --depth;
+        ctx = depth > 0 ? stack[depth - 1] : null;
+    }
+
+    /** Advances to the key of the next member of an object. Returns false if the end of the object has been reached (the closing brace is consumed then). */
+    private boolean nextMember(ObjectContext c) throws MessageParserException {
+        if (c.closed)
+            return false;
+        if (c.atKey)
+            return true;
+        skipWhitespace();
+        if (peek() == '}') {
+            c.endPos = ++pos;
+            c.closed = true;
+            return false;
+        }
+        if (c.first) {
+            c.first = false;
+        } else {
+            expect(',');
+            skipWhitespace();
+        }
+        if (peek() != '"')
+            throw syntaxError("(member name expected)");
+        c.atKey = true;
+        return true;
+    }
+
+    /** Compares the key at the current position with a name, and on match consumes the key and the colon. Field names do not require escaping. */
+    private boolean matchKey(ObjectContext c, String name) throws MessageParserException {
+        final int start = pos + 1;
+        final int n = name.length();
+        if (start + n >= end || data[start + n] != '"' || !rawEquals(start, n, name))
+            return false;
+        pos = start + n + 1;
+        skipWhitespace();
+        expect(':');
+        c.atKey = false;
+        return true;
+    }
+
+    /** Indexes all remaining members of the object, starting at the key at the current position. */
+    private void buildIndex(ObjectContext c) throws MessageParserException {
+        c.members = 0;
+        do {
+            c.atKey = false;
+            final int keyStart = pos + 1;
+            int hash = 0;
+            int i = keyStart;
+            for (; i < end; ++i) {
+                final byte b = data[i];
+                if (b == '"' || b == '\\' || b < 0)
+                    break;
+                hash = 31 * hash + b;           // same as String.hashCode() for ASCII
+            }
+            String decodedKey = null;
+            if (i < end && data[i] == '"') {
+                pos = i + 1;
+            } else {
+                decodedKey = decodeString();
+                hash = decodedKey.hashCode();
+            }
+            final int keyLength = pos - 1 - keyStart;
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            c.add(keyStart, keyLength, decodedKey, hash, pos);
+            skipValue();
+        } while (nextMember(c));
+    }
+
+    /** Returns the start of the value of an indexed member, or -1 if there is no member of that name. */
+    private int find(ObjectContext c, String name) {
+        final int hash = name.hashCode();
+        for (int n = 0; n < c.members; ++n) {
+            if (c.hashes[n] == hash) {
+                final String decodedKey = c.decodedKeys[n];
+                if (decodedKey != null ? decodedKey.equals(name) : rawEquals(c.index[3 * n], c.index[3 * n + 1], name))
+                    return c.index[3 * n + 2];
+            }
+        }
+        return -1;
+    }
+
+    /** Positions the parser at the value of a member of the current object. Returns false if the object has no member of that name. */
+    private boolean seek(ObjectContext c, String name) throws MessageParserException {
+        if (c.members < 0) {
+            if (!nextMember(c))
+                return false;
+            if (matchKey(c, name))
+                return true;
+            // keys out of order, or the field is absent: locate all further fields via the index
+            buildIndex(c);
+        }
+        final int valueStart = find(c, name);
+        if (valueStart < 0)
+            return false;
+        pos = valueStart;
+        return true;
+    }
+
+    /** Positions the parser after the closing brace of the current object, skipping any members which have not been read. */
+    private void closeObject(ObjectContext c) throws MessageParserException {
+        if (c.members < 0) {
+            while (nextMember(c)) {
+                c.atKey = false;
+                skipString();
+                skipWhitespace();
+                expect(':');
+                skipValue();
+            }
+        }
+        pos = c.endPos;
+    }
+
+    /** Advances to the next element of the current collection. For a map key, the key is read and stored in pendingKey. */
+    private void nextElement(ObjectContext c) throws MessageParserException {
+        if (c.inMap && !c.expectKey) {
+            // the value of the current map entry, the colon has been consumed with the key
+            c.expectKey = true;
+            skipWhitespace();
+            return;
+        }
+        if (c.remaining == 0)
+            throw syntaxError("(no more elements in collection)");
+        --c.remaining;
+        skipWhitespace();
+        if (c.firstElement) {
+            c.firstElement = false;
+        } else {
+            expect(',');
+            skipWhitespace();
+        }
+        if (c.inMap) {
+            if (peek() != '"')
+                throw syntaxError("(map key expected)");
+            pendingKey = decodeString();
+            skipWhitespace();
+            expect(':');
+            c.expectKey = false;
+        }
+    }
+
+    /** Positions the parser at the next value (without required check) and returns its type. Absent members are reported as T_NULL. */
+    private int next(FieldDefinition di) throws MessageParserException {
+        final ObjectContext c = ctx;
+        if (c == null) {
+            skipWhitespace();                   // top level value
+        } else if (c.remaining >= 0) {
+            nextElement(c);
+            if (pendingKey != null)
+                return T_STRING;
+        } else if (!seek(c, di.getName())) {
+            return T_NULL;
+        } else {
+            skipWhitespace();
+        }
+        return valueType();
+    }
+
+    private int get(FieldDefinition di) throws MessageParserException {
+        final int t = next(di);
+        if (t == T_NULL && di.getIsRequired())
+            throw err(MessageParserException.ILLEGAL_EXPLICIT_NULL, di);
+        return t;
+    }
+
+    // for primitive types, null is not allowed, even if the field is not declared as required
+    private int getPrimitive(FieldDefinition di) throws MessageParserException {
+        final int t = next(di);
+        if (t == T_NULL)
+            throw err(MessageParserException.ILLEGAL_EXPLICIT_NULL, di);
+        return t;
+    }
+
+    private String readStringValue() throws MessageParserException {
+        if (pendingKey != null) {
+            final String key = pendingKey;
+            pendingKey = null;
+            return key;
+        }
+        return decodeString();
+    }
+
+    // map keys of integral type are written with a leading underscore by the JsonComposer, because JSON member names must be strings
+    private String readNumericString() throws MessageParserException {
+        if (pendingKey != null) {
+            final String key = pendingKey;
+            pendingKey = null;
+            return key.length() > 1 && key.charAt(0) == '_' ? key.substring(1) : key;
+        }
+        return decodeString();
+    }
+
+    /***************************************************************************************************
+     * Objects
+     **************************************************************************************************/
+
+    // the value of a type information member, if it is a string
+    private String typeName() throws MessageParserException {
+        skipWhitespace();
+        final int t = valueType();
+        if (t == T_STRING)
+            return decodeString();
+        if (t == T_NUMBER || t == T_OBJECT || t == T_ARRAY)
+            skipValue();
+        return null;
+    }
+
+    /** Creates the instance for the current object, as MapParser.allocObject(). The type information is usually written as the first members. */
+    private BonaPortable allocObject(ObjectContext c, ObjectReference di) throws MessageParserException {
+        String pqon = null;
+        String fqon = null;
+        // consume leading type information even if it is not required, in order to stay in sequential mode
+        while (nextMember(c)) {
+            if (matchKey(c, MimeTypes.JSON_FIELD_PQON))
+                pqon = typeName();
+            else if (matchKey(c, MimeTypes.JSON_FIELD_FQON))
+                fqon = typeName();
+            else
+                break;
+        }
+        final ClassDefinition lowerBound = di.getLowerBound();
+
+        if (di.getAllowSubclasses() == false) {
+            // no parameter required. determine by reference
+            if (lowerBound == null)
+                throw new MessageParserException(MessageParserException.JSON_BAD_OBJECTREF);
+            return BonaPortableFactory.createObject(lowerBound.getName());
+        }
+        if (pqon == null && fqon == null && nextMember(c)) {
+            // type information could be at any position
+            buildIndex(c);
+            int valueStart = find(c, MimeTypes.JSON_FIELD_PQON);
+            if (valueStart >= 0) {
+                pos = valueStart;
+                pqon = typeName();
+            }
+            valueStart = find(c, MimeTypes.JSON_FIELD_FQON);
+            if (valueStart >= 0) {
+                pos = valueStart;
+                fqon = typeName();
+            }
+        }
+        if (pqon != null)
+            return BonaPortableFactory.createObject(pqon);
+        if (fqon != null)
+            return BonaPortableFactory.createObjectByFqon(fqon);
+
+        // fallback: use the lower bound of di, if provided
+        if (lowerBound == null) {
+            // also no lower bound? Cannot work around that!
+            throw new MessageParserException(MessageParserException.JSON_NO_PQON, di.getName(), pos, currentClass);
+        }
+        // severe issue if the base class is abstract
+        if (lowerBound.getIsAbstract()) {
+            LOGGER.warn("Parsed object cannot be determined, no type information provided and base object is abstract. {}: ({}...)", di.getName(), lowerBound.getName());
+            throw new MessageParserException(MessageParserException.JSON_NO_PQON, di.getName(), pos, currentClass);
+        }
+        // issue a warning, at least, and use the base class
+        LOGGER.warn("Parsed object cannot be determined uniquely, no type information provided and subclasses allowed for {}: ({}...)", di.getName(), lowerBound.getName());
+        return BonaPortableFactory.createObject(lowerBound.getName());
+    }
+
+    /** Parses the object at the current position (at the opening brace). */
+    private BonaPortable readObjectAt(ObjectReference di) throws MessageParserException {
+        ++pos;
+        final String previousClass = currentClass;
+        final ObjectContext c = push();
+        final BonaPortable obj = allocObject(c, di);
+        obj.deserialize(this);
+        closeObject(c);
+        pop();
+        currentClass = previousClass;
+        return obj;
+    }
+
+    /***************************************************************************************************
+     * MessageParser API
+     **************************************************************************************************/
+
+    @Override
+    public MessageParserException enumExceptionConverter(IllegalArgumentException e) throws MessageParserException {
+        return new MessageParserException(MessageParserException.INVALID_ENUM_TOKEN, e.getMessage(), pos, currentClass);
+    }
+
+    @Override
+    public MessageParserException customExceptionConverter(String msg, Exception e) throws MessageParserException {
+        return new MessageParserException(MessageParserException.CUSTOM_OBJECT_EXCEPTION, e != null ? msg + e.toString() : msg, pos, currentClass);
+    }
+
+    @Override
+    public void setClassName(String newClassName) {
+        currentClass = newClassName;
+    }
+
+    @Override
+    public void eatParentSeparator() throws MessageParserException {
+    }
+
+    @Override
+    public Character readCharacter(MiscElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return spu.readCharacter(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public UUID readUUID(MiscElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return spu.readUUID(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    private boolean booleanValue(int t, MiscElementaryDataItem di) throws MessageParserException {
+        switch (t) {
+        case T_TRUE:
+            return true;
+        case T_FALSE:
+            return false;
+        case T_STRING:
+            return spu.readBoolean(di, readStringValue()).booleanValue();
+        case T_NUMBER:
+            scanNumber();
+            return doubleNumber() == 0.0;       // same as MapParser
+        default:
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        }
+    }
+
+    @Override
+    public Boolean readBoolean(MiscElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Boolean.valueOf(booleanValue(t, di));
+    }
+
+    @Override
+    public boolean readPrimitiveBoolean(MiscElementaryDataItem di) throws MessageParserException {
+        return booleanValue(getPrimitive(di), di);
+    }
+
+    private double doubleValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return doubleNumber();
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveDouble(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Double readDouble(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Double.valueOf(doubleValue(t, di));
+    }
+
+    @Override
+    public double readPrimitiveDouble(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return doubleValue(getPrimitive(di), di);
+    }
+
+    private float floatValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return numExact && numIntegral ? (float)numUnscaled : Float.parseFloat(numberText());
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveFloat(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Float readFloat(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Float.valueOf(floatValue(t, di));
+    }
+
+    @Override
+    public float readPrimitiveFloat(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return floatValue(getPrimitive(di), di);
+    }
+
+    private long longValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return longNumber();
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveLong(di, readNumericString());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Long readLong(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Long.valueOf(longValue(t, di));
+    }
+
+    @Override
+    public long readPrimitiveLong(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return longValue(getPrimitive(di), di);
+    }
+
+    private int integerValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return numExact && numIntegral ? (int)numUnscaled : bigNumber().intValue();
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveInteger(di, readNumericString());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Integer readInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Integer.valueOf(integerValue(t, di));
+    }
+
+    @Override
+    public int readPrimitiveInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return integerValue(getPrimitive(di), di);
+    }
+
+    private short shortValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return numExact && numIntegral ? (short)numUnscaled : bigNumber().shortValue();
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveShort(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Short readShort(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Short.valueOf(shortValue(t, di));
+    }
+
+    @Override
+    public short readPrimitiveShort(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return shortValue(getPrimitive(di), di);
+    }
+
+    private byte byteValue(int t, BasicNumericElementaryDataItem di) throws MessageParserException {
+        if (t == T_NUMBER) {
+            scanNumber();
+            return numExact && numIntegral ? (byte)numUnscaled : bigNumber().byteValue();
+        }
+        if (t == T_STRING)
+            return spu.readPrimitiveByte(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Byte readByte(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        return t == T_NULL ? null : Byte.valueOf(byteValue(t, di));
+    }
+
+    @Override
+    public byte readPrimitiveByte(BasicNumericElementaryDataItem di) throws MessageParserException {
+        return byteValue(getPrimitive(di), di);
+    }
+
+    @Override
+    public BigInteger readBigInteger(BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_NUMBER) {
+            scanNumber();
+            if (!numIntegral)
+                throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+            return numExact ? BigInteger.valueOf(numUnscaled) : new BigInteger(numberText());
+        }
+        if (t == T_STRING)
+            return spu.readBigInteger(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public BigDecimal readBigDecimal(NumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_NUMBER) {
+            scanNumber();
+            return numExact ? BigDecimal.valueOf(numUnscaled, numScale) : bigNumber();
+        }
+        if (t == T_STRING)
+            return spu.readBigDecimal(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public <F extends FixedPointBase<F>> F readFixedPoint(BasicNumericElementaryDataItem di, LongFunction<F> factory) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_NUMBER) {
+            scanNumber();
+            final long mantissa;
+            if (numExact) {
+                mantissa = FixedPointBase.mantissaFor(numUnscaled, numScale, di.getDecimalDigits(), numIntegral ? false : di.getRounding());
+            } else {
+                final BigDecimal bd = bigNumber();
+                mantissa = FixedPointBase.mantissaFor(bd.unscaledValue().longValue(), bd.scale(), di.getDecimalDigits(), di.getRounding());
+            }
+            return BigDecimalTools.check(factory.apply(mantissa), di, pos, currentClass);
+        }
+        if (t == T_STRING)
+            return BigDecimalTools.check(factory.apply(FixedPointBase.mantissaFor(readStringValue(), di.getDecimalDigits())), di, pos, currentClass);
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public String readAscii(AlphanumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return canonical(di, spu.readAscii(di, readStringValue()));
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public String readString(AlphanumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return canonical(di, spu.readString(di, readStringValue()));
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public ByteArray readByteArray(BinaryElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return spu.readByteArray(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public byte[] readRaw(BinaryElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING)
+            return spu.readRaw(di, readStringValue());
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public Instant readInstant(TemporalElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_NUMBER) {
+            // number of seconds, as written by the JsonComposer. Up to millisecond precision, the conversion is exact
+            scanNumber();
+            if (numExact && numScale <= 3)
+                return Instant.ofEpochMilli(numUnscaled * (numScale == 0 ? 1000L : numScale == 1 ? 100L : numScale == 2 ? 10L : 1L));
+            return Instant.ofEpochMilli((long)(doubleNumber() * 1000.0));
+        }
+        if (t == T_STRING) {
+            final String s = readStringValue();
+            final int minusPos = s.indexOf('-');
+            if (minusPos < 0) {
+                // is a number - assume UNIX timestamp
+                return spu.readInstant(di, s);      // assumes precision = 1 second, with fractionals if ms
+            }
+            // now the minus must be at pos 5, and another one at 8 (yyyy-MM-dd)
+            if (s.length() < 10 || minusPos != 4 || s.indexOf('-', minusPos + 1) != 7) {
+                // not a valid date format
+                throw err(MessageParserException.INVALID_INSTANT_FORMAT, di);
+            }
+            return Instant.parse(s);
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    // parses yyyy-MM-dd at offset, followed by the terminator. Returns null for any other format or invalid dates
+    private LocalDate parseDate(int offset, char terminator) {
+        if (offset + 10 >= end || data[offset + 10] != terminator || data[offset + 4] != '-' || data[offset + 7] != '-')
+            return null;
+        final int year = digits(offset, 4);
+        final int month = digits(offset + 5, 2);
+        final int day = digits(offset + 8, 2);
+        if ((year | month | day) < 0)
+            return null;
+        try {
+            return LocalDate.of(year, month, day);
+        } catch (DateTimeException e) {
+            return null;                        // reported by the parser of the text
+        }
+    }
+
+    // parses HH:mm:ss or HH:mm:ss.SSS at offset, followed by the closing quote (optionally a 'Z' before it). Sets the position after the quote on success
+    private LocalTime parseTime(int offset, boolean allowUtc) {
+        if (offset + 8 >= end || data[offset + 2] != ':' || data[offset + 5] != ':')
+            return null;
+        int next = offset + 8;
+        int nanos = 0;
+        if (data[next] == '.') {
+            if (next + 4 >= end)
+                return null;
+            final int millis = digits(next + 1, 3);
+            if (millis < 0)
+                return null;
+            nanos = millis * 1000000;
+            next += 4;
+        }
+        if (allowUtc && data[next] == 'Z' && next + 1 < end)
+            ++next;
+        if (data[next] != '"')
+            return null;
+        final int hour = digits(offset, 2);
+        final int minute = digits(offset + 3, 2);
+        final int second = digits(offset + 6, 2);
+        if ((hour | minute | second) < 0)
+            return null;
+        try {
+            final LocalTime result = LocalTime.of(hour, minute, second, nanos);
+            pos = next + 1;
+            return result;
+        } catch (DateTimeException e) {
+            return null;                        // reported by the parser of the text
+        }
+    }
+
+    @Override
+    public LocalDate readDay(TemporalElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING) {
+            // the format written by the JsonComposer, without intermediate String
+            final LocalDate fast = parseDate(pos + 1, '"');
+            if (fast != null) {
+                pos += 12;
+                return fast;
+            }
+            // cannot use spu, use JSON instead of Bonaparte formatting
+            try {
+                return LocalDate.parse(readStringValue());
+            } catch (IllegalArgumentException e) {
+                throw err(MessageParserException.ILLEGAL_TIME, di);
+            }
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public LocalTime readTime(TemporalElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING) {
+            final LocalTime fast = parseTime(pos + 1, false);
+            if (fast != null)
+                return fast;
+            // cannot use spu, use JSON instead of Bonaparte formatting
+            try {
+                return LocalTime.parse(readStringValue());   // a more flexible parser
+            } catch (IllegalArgumentException e) {
+                throw err(MessageParserException.ILLEGAL_TIME, di);
+            }
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public LocalDateTime readDayTime(TemporalElementaryDataItem di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING) {
+            final LocalDate fastDate = parseDate(pos + 1, 'T');
+            if (fastDate != null) {
+                final LocalTime fastTime = parseTime(pos + 12, true);
+                if (fastTime != null)
+                    return LocalDateTime.of(fastDate, fastTime);
+            }
+            // cannot use spu, use JSON instead of Bonaparte formatting
+            try {
+                // check for trailing Z as UTC time zone, and ignore it
+                String s = readStringValue();
+                final int i = s.length() - 1;
+                if (i > 0 && s.charAt(i) == 'Z') {
+                    s = s.substring(0, i);
+                }
+                return LocalDateTime.parse(s);   // a more flexible parser
+            } catch (IllegalArgumentException e) {
+                throw err(MessageParserException.ILLEGAL_TIME, di);
+            }
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    @Override
+    public <R extends BonaPortable> R readObject(ObjectReference di, Class<R> type) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t != T_OBJECT)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        final BonaPortable obj = readObjectAt(di);
+
+        if (obj.getClass().equals(type))
+            return (R)obj;
+        if (!di.getAllowSubclasses() && !type.isAssignableFrom(obj.getClass()))
+            throw new MessageParserException(MessageParserException.BAD_CLASS, String.format("(got %s, expected %s or subclass for %s)",
+                     obj.getClass().getSimpleName(), type.getSimpleName(), di.getName()), pos, currentClass);
+        return (R)obj;
+    }
+
+    @Override
+    public Map<String, Object> readJson(ObjectReference di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t != T_OBJECT)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        try {
+            return materialize().parseObject();
+        } catch (JsonException e) {
+            throw new MessageParserException(MessageParserException.JSON_EXCEPTION_MAP, di.getName(), pos, currentClass, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<Object> readArray(ObjectReference di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t != T_ARRAY)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        try {
+            return materialize().parseArray();
+        } catch (JsonException e) {
+            throw new MessageParserException(MessageParserException.JSON_EXCEPTION_ARRAY, di.getName(), pos, currentClass, e.getMessage());
+        }
+    }
+
+    @Override
+    public Object readElement(ObjectReference di) throws MessageParserException {
+        switch (get(di)) {
+        case T_NULL:
+            return null;
+        case T_TRUE:
+            return Boolean.TRUE;
+        case T_FALSE:
+            return Boolean.FALSE;
+        default:
+            if (pendingKey != null)
+                return readStringValue();
+            try {
+                return materialize().parseElement();
+            } catch (JsonException e) {
+                throw new MessageParserException(MessageParserException.JSON_EXCEPTION_OBJECT, di.getName(), pos, currentClass, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public int parseMapStart(FieldDefinition di) throws MessageParserException {
+        final ObjectContext c = ctx;
+        if (c.remaining >= 0)
+            throw new RuntimeException("Nested collection should not happen, but occurred for Map " + currentClass + "." + di.getName());
+        final int t = next(di);
+        if (t == T_NULL) {
+            if (di.getIsAggregateRequired())
+                throw err(MessageParserException.NULL_COLLECTION_NOT_ALLOWED, di);
+            return -1;
+        }
+        if (t != T_OBJECT)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        ++pos;
+        c.remaining = countElements('}');
+        c.firstElement = true;
+        c.inMap = true;
+        c.expectKey = true;
+        return c.remaining;
+    }
+
+    @Override
+    public int parseArrayStart(FieldDefinition di, int sizeOfElement) throws MessageParserException {
+        final ObjectContext c = ctx;
+        if (c.remaining >= 0)
+            throw new RuntimeException("Nested collection should not happen, but occurred for Collection " + currentClass + "." + di.getName());
+        final int t = next(di);
+        if (t == T_NULL) {
+            if (di.getIsAggregateRequired())
+                throw err(MessageParserException.NULL_COLLECTION_NOT_ALLOWED, di);
+            return -1;
+        }
+        if (t != T_ARRAY)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        ++pos;
+        c.remaining = countElements(']');
+        c.firstElement = true;
+        c.inMap = false;
+        return c.remaining;
+    }
+
+    @Override
+    public void parseArrayEnd() throws MessageParserException {
+        final ObjectContext c = ctx;
+        if (c == null || c.remaining < 0)
+            throw new RuntimeException("Cannot end collection when none has been started.");
+        if (c.remaining > 0 || (c.inMap && !c.expectKey))
+            throw new RuntimeException("Should not end collection when iterator has not been exhausted.");
+        skipWhitespace();
+        expect(c.inMap ? '}' : ']');
+        c.remaining = -1;
+        c.inMap = false;
+    }
+
+    @Override
+    public BonaPortable readRecord() throws MessageParserException {
+        skipWhitespace();
+        if (peek() != '{')
+            throw syntaxError("(object expected)");
+        return readObjectAt(StaticMeta.OUTER_BONAPORTABLE);
+    }
+
+    /** Reads a JSON array of objects, as written by JsonComposer.writeTransmission(). */
+    @Override
+    public List<BonaPortable> readTransmission() throws MessageParserException {
+        final List<BonaPortable> results = new ArrayList<BonaPortable>();
+        skipWhitespace();
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            ++pos;
+            return results;
+        }
+        for (;;) {
+            results.add(readRecord());
+            skipWhitespace();
+            if (peek() == ']') {
+                ++pos;
+                return results;
+            }
+            expect(',');
+        }
+    }
+
+    @Override
+    public <T extends AbstractXEnumBase<T>> T readXEnum(XEnumDataItem di, XEnumFactory<T> factory) throws MessageParserException {
+        final int t = next(di);
+        if (t == T_NULL) {
+            final T result = factory.getNullToken();
+            if (result == null && di.getIsRequired())
+                throw err(MessageParserException.EMPTY_BUT_REQUIRED_FIELD, di);
+            return result;
+        }
+        if (t == T_STRING) {
+            final String s = readStringValue();
+            final T value = readEnumTokens ? factory.getByToken(s) : factory.getByName(s);
+            if (value == null)
+                throw err(MessageParserException.INVALID_ENUM_TOKEN, di);
+            return value;
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+    }
+
+    // special handling of enums: access the original name, not the one with $token suffix: take care when di and when edi is used!
+    @Override
+    public Integer readEnum(EnumDataItem edi, BasicNumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(edi);
+        if (t == T_NULL)
+            return null;
+        if (t == T_NUMBER) {
+            scanNumber();
+            return Integer.valueOf(numExact && numIntegral ? (int)numUnscaled : bigNumber().intValue());
+        }
+        if (t == T_STRING) {
+            final String s = readStringValue();
+            if (readEnumOrdinals) {
+                return Integer.valueOf(spu.readPrimitiveInteger(di, s));
+            }
+            // expect a name, and map that to the ordinal
+            final int ordinal = edi.getBaseEnum().getIds().indexOf(s);
+            if (ordinal < 0) {
+                throw err(MessageParserException.INVALID_ENUM_NAME, di);
+            }
+            return ordinal;
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, edi);
+    }
+
+    // special handling of enums: access the original name, not the one with $token suffix
+    @Override
+    public String readEnum(EnumDataItem edi, AlphanumericElementaryDataItem di) throws MessageParserException {
+        final int t = get(edi);
+        if (t == T_NULL)
+            return null;
+        if (t == T_STRING) {
+            final String s = readStringValue();
+            if (readEnumTokens) {
+                return spu.readString(di, s);
+            }
+            // expect a name, and map it to the token
+            final int ordinal = edi.getBaseEnum().getIds().indexOf(s);
+            if (ordinal < 0) {
+                throw err(MessageParserException.INVALID_ENUM_NAME, di);
+            }
+            // convert the name into a token
+            return edi.getBaseEnum().getTokens().get(ordinal);
+        }
+        throw err(MessageParserException.UNSUPPORTED_CONVERSION, edi);
+    }
+
+    // enumset conversions
+
+    private String mapEnumTokens(FieldDefinition di, EnumDefinition edi) throws MessageParserException {
+        final Collection<?> values = getCollection(di);
+        if (values == null)
+            return null;
+        final ArrayList<String> tokens = new ArrayList<>(values.size());
+        final List<String> instances = edi.getIds();
+        for (Object v: values) {
+            final int ordinal = instances.indexOf(v);
+            if (ordinal < 0) {
+                throw err(MessageParserException.INVALID_ENUM_NAME, di);
+            }
+            tokens.add(edi.getTokens().get(ordinal));
+        }
+        Collections.sort(tokens);
+        final StringBuilder buff = new StringBuilder(tokens.size());
+        for (String s: tokens) {
+            buff.append(s);
+        }
+        return buff.toString();
+    }
+
+    @Override
+    public String readString4Xenumset(XEnumSetDataItem di) throws MessageParserException {
+        if (readEnumTokens) {
+            return readString(di);
+        } else {
+            // read instance names and map to tokens
+            // FIXME: currently maps values of the base enum only, must obtain dynamically collected enums
+            final EnumDefinition edi = di.getBaseXEnumset().getBaseXEnum().getBaseEnum();
+            return mapEnumTokens(di, edi);
+        }
+    }
+
+    @Override
+    public String readString4EnumSet(AlphanumericEnumSetDataItem di) throws MessageParserException {
+        if (readEnumTokens) {
+            return readString(di);
+        } else {
+            // read instance names and map to tokens
+            final EnumDefinition edi = di.getBaseEnumset().getBaseEnum();
+            return mapEnumTokens(di, edi);
+        }
+    }
+
+    private Collection<?> getCollection(FieldDefinition di) throws MessageParserException {
+        final int t = get(di);
+        if (t == T_NULL)
+            return null;
+        if (t != T_ARRAY)
+            throw err(MessageParserException.UNSUPPORTED_CONVERSION, di);
+        try {
+            return materialize().parseArray();
+        } catch (JsonException e) {
+            throw new MessageParserException(MessageParserException.JSON_EXCEPTION_ARRAY, di.getName(), pos, currentClass, e.getMessage());
+        }
+    }
+
+    private long mapToBitmap(NumericEnumSetDataItem di, Collection<?> values) throws MessageParserException {
+        long bitmap = 0L;
+        final List<String> instances = di.getBaseEnumset().getBaseEnum().getIds();
+        for (Object v: values) {
+            final int ordinal = instances.indexOf(v);
+            if (ordinal < 0) {
+                throw err(MessageParserException.INVALID_ENUM_NAME, di);
+            }
+            bitmap |= (1L << ordinal);
+        }
+        return bitmap;
+    }
+
+    @Override
+    public Long readLong4EnumSet(NumericEnumSetDataItem di) throws MessageParserException {
+        if (readEnumOrdinals)
+            return readLong(di);
+        // read instance names and map to ordinals
+        final Collection<?> values = getCollection(di);
+        return values == null ? null : Long.valueOf(mapToBitmap(di, values));
+    }
+
+    @Override
+    public Integer readInteger4EnumSet(NumericEnumSetDataItem di) throws MessageParserException {
+        if (readEnumOrdinals)
+            return readInteger(di);
+        // read instance names and map to ordinals
+        final Collection<?> values = getCollection(di);
+        return values == null ? null : Integer.valueOf((int)mapToBitmap(di, values));
+    }
+
+    @Override
+    public Short readShort4EnumSet(NumericEnumSetDataItem di) throws MessageParserException {
+        if (readEnumOrdinals)
+            return readShort(di);
+        // read instance names and map to ordinals
+        final Collection<?> values = getCollection(di);
+        return values == null ? null : Short.valueOf((short)mapToBitmap(di, values));
+    }
+
+    @Override
+    public Byte readByte4EnumSet(NumericEnumSetDataItem di) throws MessageParserException {
+        if (readEnumOrdinals)
+            return readByte(di);
+        // read instance names and map to ordinals
+        final Collection<?> values = getCollection(di);
+        return values == null ? null : Byte.valueOf((byte)mapToBitmap(di, values));
+    }
+}
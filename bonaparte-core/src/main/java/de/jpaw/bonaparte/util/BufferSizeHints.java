@@ -0,0 +1,109 @@
+package de.jpaw.bonaparte.util;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.BonaPortableClass;
+
+/** Initial output buffer sizes per class, learned from the sizes of previously serialized objects.
+ *
+ * For every class, a moving estimate of the 90th percentile of the serialized sizes is maintained (stochastic quantile approximation),
+ * therefore most objects fit into a buffer of the hinted size, without the repeated array copies of a growing buffer,
+ * while a few exceptionally big objects do not inflate the hint. The estimate adapts to changing data, increases quickly and decreases slowly.
+ * Updates take no locks, concurrent updates may lose a sample, which does not matter for an estimate.
+ *
+ * There is one instance per serialization format, the hints are exposed via getHints() for monitoring.
+ */
+public final class BufferSizeHints {
+    public static final int DEFAULT_HINT = 256;             // initial size for classes without samples
+    public static final int MAX_HINT = 1024 * 1024;         // do not preallocate more, even if objects are bigger
+    private static final int STEP_DIVISOR = 16;             // the estimate moves by up to 1/16 of its value per sample
+    private static final int SCALE = 8;                     // the estimate is kept in units of 1/256 bytes, to allow small steps for small sizes
+
+    public static final BufferSizeHints BONAPARTE = new BufferSizeHints("Bonaparte");
+    public static final BufferSizeHints COMPACT = new BufferSizeHints("compact");
+
+    private static final class Estimate {
+        private volatile int scaledSize;
+        private final LongAdder samples = new LongAdder();
+
+        private Estimate(int size) {
+            this.scaledSize = Math.max(1, Math.min(MAX_HINT, size)) << SCALE;
+            samples.increment();
+        }
+
+        private int size() {
+            return (scaledSize + (1 << SCALE) - 1) >> SCALE;
+        }
+
+        // moves up by 9 units if the sample is bigger, else down by 1 unit, which converges where 10 % of the samples are bigger
+        private void update(int actual) {
+            final int current = scaledSize;
+            final int unit = Math.max(1 << SCALE, current / STEP_DIVISOR) / 10;
+            if (actual > size())
+                scaledSize = Math.min(MAX_HINT << SCALE, current + 9 * unit);
+            else
+                scaledSize = Math.max(1 << SCALE, current - unit);
+            samples.increment();
+        }
+    }
+
+    private final String format;
+    private final ConcurrentHashMap<BonaPortableClass<?>, Estimate> estimates = new ConcurrentHashMap<BonaPortableClass<?>, Estimate>();
+
+    public BufferSizeHints(String format) {
+        this.format = format;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    /** Returns the suggested initial buffer size for objects of the class. */
+    public int getHint(BonaPortableClass<?> bclass) {
+        final Estimate e = estimates.get(bclass);
+        return e == null ? DEFAULT_HINT : e.size();
+    }
+
+    /** Returns the suggested initial buffer size for the object (null safe). */
+    public int getHint(BonaPortable obj) {
+        return obj == null ? DEFAULT_HINT : getHint(obj.ret$BonaPortableClass());
+    }
+
+    /** Records the serialized size of an object of the class. The first sample initializes the estimate. */
+    public void record(BonaPortableClass<?> bclass, int size) {
+        final Estimate e = estimates.get(bclass);
+        if (e == null)
+            estimates.putIfAbsent(bclass, new Estimate(size));
+        else
+            e.update(size);
+    }
+
+    /** Records the serialized size of the object (null safe). */
+    public void record(BonaPortable obj, int size) {
+        if (obj != null)
+            record(obj.ret$BonaPortableClass(), size);
+    }
+
+    /** Returns the current hints by PQON, for monitoring. */
+    public Map<String, Integer> getHints() {
+        final Map<String, Integer> result = new TreeMap<String, Integer>();
+        estimates.forEach((bclass, e) -> result.put(bclass.getPqon(), e.size()));
+        return result;
+    }
+
+    /** Returns the number of samples recorded by PQON, for monitoring. */
+    public Map<String, Long> getSamples() {
+        final Map<String, Long> result = new TreeMap<String, Long>();
+        estimates.forEach((bclass, e) -> result.put(bclass.getPqon(), e.samples.sum()));
+        return result;
+    }
+
+    /** Discards all estimates. */
+    public void clear() {
+        estimates.clear();
+    }
+}
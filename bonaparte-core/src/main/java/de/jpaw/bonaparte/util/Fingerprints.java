@@ -0,0 +1,153 @@
+package de.jpaw.bonaparte.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.util.ByteArray;
+import de.jpaw.util.ByteBuilder;
+
+/** 64 bit fingerprints of the contents of objects, memoized for frozen (immutable) objects, to avoid repeated deep hashCode() and equals() computations.
+ *
+ * The fingerprint is the xxHash64 of the compact serialized form of the object, written without object reuse, therefore it is computed in a single pass
+ * over the object tree. For frozen objects, it is computed once and stored in a hash table of fixed size, keyed by reference. A miss replaces the entry
+ * of the slot, therefore the table never grows, and it keeps the stored objects reachable until they are replaced. No locks are used.
+ * Objects which are not frozen can change, their fingerprint is computed for every call.
+ *
+ * Objects with different fingerprints are different, and mayBeEqual() allows to skip the deep equals() for them. The serialized form of equal objects
+ * is usually the same, exceptions are for example Maps or Sets with a different iteration order, which can give different fingerprints for equal objects.
+ * Therefore fingerprints must only be used where a missed match is acceptable, such as object reuse, caches and duplicate detection.
+ * Equal fingerprints do not prove equality, equals() must still be called.
+ */
+public final class Fingerprints {
+    public static final int DEFAULT_SIZE = 16 * 1024;               // number of slots
+
+    /** The instance used by the object reuse caches of the composers. */
+    public static final Fingerprints DEFAULT = new Fingerprints(DEFAULT_SIZE);
+
+    private static final class Entry {
+        private final BonaPortable obj;
+        private final long fingerprint;
+
+        private Entry(BonaPortable obj, long fingerprint) {
+            this.obj = obj;
+            this.fingerprint = fingerprint;
+        }
+    }
+
+    /** Wrapper which compares objects by fingerprint first, for use as key of hash based collections, for example for duplicate detection.
+     * The fingerprint is computed when the key is created, therefore the object must not be modified while the key is in use. */
+    public static final class Key {
+        private final BonaPortable obj;
+        private final long fingerprint;
+
+        private Key(BonaPortable obj, long fingerprint) {
+            this.obj = obj;
+            this.fingerprint = fingerprint;
+        }
+
+        public BonaPortable getObject() {
+            return obj;
+        }
+
+        public long getFingerprint() {
+            return fingerprint;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int)(fingerprint ^ (fingerprint >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+            final Key that = (Key)other;
+            return fingerprint == that.fingerprint && (obj == that.obj || obj.equals(that.obj));
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Creates an instance with the given number of slots (rounded up to the next power of 2). */
+    public Fingerprints(int size) {
+        int n = 1;
+        while (n < size && n < (1 << 30))
+            n <<= 1;
+        this.slots = new AtomicReferenceArray<Entry>(n);
+        this.mask = n - 1;
+    }
+
+    /** Computes the fingerprint of an object, without memoization. */
+    public static long compute(BonaPortable obj) {
+        final ByteBuilder buffer = new ByteBuilder(BufferSizeHints.COMPACT.getHint(obj), ByteArray.CHARSET_UTF8);
+        new CompactByteArrayComposer(buffer, ObjectReuseStrategy.NONE, false, true).addField(StaticMeta.OUTER_BONAPORTABLE, obj);
+        return XxHash64.hash(buffer.getCurrentBuffer(), 0, buffer.length(), 0L);
+    }
+
+    private int slotOf(BonaPortable obj) {
+        final int h = System.identityHashCode(obj) * 0x9e3779b9;       // spread the bits (Fibonacci hashing)
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns the fingerprint of an object, which is memoized if the object is frozen. */
+    public long fingerprint(BonaPortable obj) {
+        if (!obj.was$Frozen())
+            return compute(obj);
+        final int slot = slotOf(obj);
+        final Entry e = slots.get(slot);
+        if (e != null && e.obj == obj) {
+            hits.increment();
+            return e.fingerprint;
+        }
+        misses.increment();
+        final long fingerprint = compute(obj);
+        slots.lazySet(slot, new Entry(obj, fingerprint));
+        return fingerprint;
+    }
+
+    /** Returns false if the objects are known to be different, because both are frozen BonaPortables with different fingerprints, else true.
+     * For other objects, the check would cost more than it saves, and the result is always true. */
+    public boolean mayBeEqual(Object a, Object b) {
+        if (a instanceof BonaPortable pa && pa.was$Frozen() && b instanceof BonaPortable pb && pb.was$Frozen())
+            return fingerprint(pa) == fingerprint(pb);
+        return true;
+    }
+
+    /** Null safe equals() with the fingerprint check as shortcut. */
+    public boolean equals(Object a, Object b) {
+        if (a == b)
+            return true;
+        if (a == null || b == null)
+            return false;
+        return mayBeEqual(a, b) && a.equals(b);
+    }
+
+    /** Returns a key for hash based collections, which compares objects by fingerprint before equals(). */
+    public Key keyOf(BonaPortable obj) {
+        return new Key(obj, fingerprint(obj));
+    }
+
+    /** Removes all memoized fingerprints. */
+    public void clear() {
+        for (int i = 0; i < slots.length(); ++i)
+            slots.lazySet(i, null);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
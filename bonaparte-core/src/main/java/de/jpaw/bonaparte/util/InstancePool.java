@@ -0,0 +1,63 @@
+package de.jpaw.bonaparte.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/** Small bounded lock-free pool of reusable, not thread safe instances (composers, parsers, codecs and their buffers).
+ *
+ * An instance obtained by borrow() is confined to the calling thread until it is passed back via release().
+ * If the pool is empty, a new instance is created by the supplier, if it is full, released instances are dropped.
+ * The pool size is independent of the number of threads, which makes it suitable for virtual threads as well,
+ * a good choice is a small multiple of the number of processors (= carrier threads).
+ */
+public class InstancePool<T> {
+    public static final int DEFAULT_SIZE = 2 * Runtime.getRuntime().availableProcessors();
+    /** Buffers which grew beyond this size for an exceptionally big message should not be released into a pool, but dropped. */
+    public static final int MAX_RETAINED_CAPACITY = 65536;
+
+    private final AtomicReferenceArray<T> slots;
+    private final Supplier<? extends T> factory;
+
+    public InstancePool(int size, Supplier<? extends T> factory) {
+        this.slots = new AtomicReferenceArray<T>(size > 0 ? size : 1);
+        this.factory = factory;
+    }
+
+    public InstancePool(Supplier<? extends T> factory) {
+        this(DEFAULT_SIZE, factory);
+    }
+
+    // start probing at a thread specific slot, to reduce contention
+    private int startIndex(int n) {
+        return (System.identityHashCode(Thread.currentThread()) & 0x7fffffff) % n;
+    }
+
+    /** Returns a pooled instance, or a new one if none is available. */
+    public T borrow() {
+        final int n = slots.length();
+        int i = startIndex(n);
+        for (int j = 0; j < n; ++j) {
+            if (slots.get(i) != null) {
+                final T instance = slots.getAndSet(i, null);
+                if (instance != null)
+                    return instance;
+            }
+            if (++i == n)
+                i = 0;
+        }
+        return factory.get();
+    }
+
+    /** Returns an instance to the pool. The caller must not use it afterwards. */
+    public void release(T instance) {
+        final int n = slots.length();
+        int i = startIndex(n);
+        for (int j = 0; j < n; ++j) {
+            if (slots.get(i) == null && slots.compareAndSet(i, null, instance))
+                return;
+            if (++i == n)
+                i = 0;
+        }
+        // pool is full: drop the instance
+    }
+}
@@ -0,0 +1,72 @@
+package de.jpaw.bonaparte.util;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/** Bulk classification and conversion of ASCII / ISO-8859-1 (Latin-1) data, as used by the string fast paths of composers and parsers.
+ *
+ * The byte scans process 8 bytes per step, as a long word (SWAR: SIMD within a register). The conversion between Strings and bytes
+ * is delegated to the JDK, which copies Latin-1 data in bulk (for compact strings without any per character processing).
+ */
+public final class Latin1Tools {
+    private Latin1Tools() { }
+
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long LOW_BITS  = 0x0101010101010101L;
+    private static final byte UNMAPPABLE = (byte)'?';                 // replacement of the JDK encoder for characters beyond Latin-1
+
+    /** Returns the index of the first byte in the range which is not printable ASCII (less than 0x20 or greater than 0x7e), or offset + length if there is none. */
+    public static int indexOfNonPrintableAscii(byte [] data, int offset, int length) {
+        final int end = offset + length;
+        int i = offset;
+        for (; i <= end - 8; i += 8) {
+            final long w = (long)LONGS.get(data, i);
+            // high bit of a byte set for bytes >= 0x80, bytes < 0x20 and the byte 0x7f
+            if (((w | (w - 0x2020202020202020L) | ((w & ~HIGH_BITS) + LOW_BITS)) & HIGH_BITS) != 0L)
+                break;
+        }
+        for (; i < end; ++i) {
+            final int b = data[i];
+            if (b < 0x20 || b == 0x7f)          // includes negative values (>= 0x80)
+                return i;
+        }
+        return end;
+    }
+
+    /** Returns the index of the first occurrence of a byte value in the range, or -1 if it does not occur. */
+    public static int indexOf(byte [] data, int offset, int length, byte value) {
+        final int end = offset + length;
+        final long pattern = LOW_BITS * (value & 0xff);
+        int i = offset;
+        for (; i <= end - 8; i += 8) {
+            final long w = (long)LONGS.get(data, i) ^ pattern;       // matching bytes become 0
+            if (((w - LOW_BITS) & ~w & HIGH_BITS) != 0L)
+                break;
+        }
+        for (; i < end; ++i) {
+            if (data[i] == value)
+                return i;
+        }
+        return -1;
+    }
+
+    /** Returns the ISO-8859-1 encoding of a string, or null if the string contains characters beyond Latin-1.
+     * The JDK encoder replaces such characters by '?', therefore only positions of '?' have to be verified against the original string. */
+    public static byte [] toLatin1(String s) {
+        final byte [] result = s.getBytes(StandardCharsets.ISO_8859_1);
+        final int length = result.length;
+        for (int i = indexOf(result, 0, length, UNMAPPABLE); i >= 0; i = indexOf(result, i + 1, length - i - 1, UNMAPPABLE)) {
+            if (s.charAt(i) != '?')
+                return null;
+        }
+        return result;
+    }
+
+    /** Creates a string from ISO-8859-1 encoded bytes, without intermediate char array. */
+    public static String fromLatin1(byte [] data, int offset, int length) {
+        return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+    }
+}
@@ -0,0 +1,109 @@
+package de.jpaw.bonaparte.util;
+
+/** Map from objects to non negative int values, used by the composers to find objects which have been serialized before (object reuse cache).
+ *
+ * The map is an open addressing hash table with linear probing, which stores the values in an int array, therefore lookups and insertions do not box.
+ * The slots written since the last clear() are recorded, therefore clear() releases the keys in time proportional to the number of entries,
+ * independent of the capacity, which is reused for the next message.
+ *
+ * Keys are compared by identity (ObjectReuseStrategy.BY_REFERENCE) or by equals() (ObjectReuseStrategy.BY_CONTENTS).
+ * For frozen keys, the memoized fingerprints (see Fingerprints) are compared first, which avoids the deep equals() for most different objects.
+ * Null keys are not supported. Entries cannot be removed. Instances are not thread safe.
+ */
+public final class ObjectIndexMap {
+    public static final int NOT_FOUND = -1;
+    private static final int MIN_CAPACITY = 16;
+
+    private final boolean byContents;
+    private Object [] keys;             // null for unused slots
+    private int [] values;
+    private int [] usedSlots;           // the slots in use, in order of insertion
+    private int size = 0;               // number of entries
+    private int mask;                   // capacity - 1
+    private int threshold;              // maximum number of entries before the table grows
+
+    public ObjectIndexMap(int expectedSize, boolean byContents) {
+        this.byContents = byContents;
+        allocate(tableSizeFor(expectedSize));
+    }
+
+    // smallest power of 2 which keeps the load factor below 0.5
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < 2 * expectedSize && capacity < (1 << 30))
+            capacity <<= 1;
+        return capacity;
+    }
+
+    private void allocate(int capacity) {
+        keys = new Object [capacity];
+        values = new int [capacity];
+        mask = capacity - 1;
+        threshold = capacity >> 1;
+        usedSlots = new int [threshold + 1];
+    }
+
+    private int slotOf(Object key) {
+        final int h = (byContents ? key.hashCode() : System.identityHashCode(key)) * 0x9e3779b9;    // spread the bits (Fibonacci hashing)
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    private boolean matches(Object candidate, Object key) {
+        return candidate == key || (byContents && Fingerprints.DEFAULT.mayBeEqual(candidate, key) && candidate.equals(key));
+    }
+
+    /** Returns the value stored for key, or NOT_FOUND. */
+    public int get(Object key) {
+        for (int i = slotOf(key); keys[i] != null; i = (i + 1) & mask) {
+            if (matches(keys[i], key))
+                return values[i];
+        }
+        return NOT_FOUND;
+    }
+
+    /** Stores a value for key, replacing a previous one. */
+    public void put(Object key, int value) {
+        int i = slotOf(key);
+        for (; keys[i] != null; i = (i + 1) & mask) {
+            if (matches(keys[i], key)) {
+                values[i] = value;
+                return;
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        usedSlots[size] = i;
+        if (++size > threshold)
+            grow();
+    }
+
+    /** Removes all entries and releases the keys, in time proportional to the number of entries. */
+    public void clear() {
+        for (int j = 0; j < size; ++j)
+            keys[usedSlots[j]] = null;
+        size = 0;
+    }
+
+    /** Returns the number of entries. */
+    public int size() {
+        return size;
+    }
+
+    // doubles the capacity, and inserts the current entries again
+    private void grow() {
+        final Object [] oldKeys = keys;
+        final int [] oldValues = values;
+        final int [] oldUsedSlots = usedSlots;
+        final int n = size;
+        allocate(2 * oldKeys.length);
+        for (int j = 0; j < n; ++j) {
+            final int k = oldUsedSlots[j];
+            int i = slotOf(oldKeys[k]);
+            while (keys[i] != null)
+                i = (i + 1) & mask;
+            keys[i] = oldKeys[k];
+            values[i] = oldValues[k];
+            usedSlots[j] = i;
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package de.jpaw.bonaparte.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.pojos.meta.ObjectReference;
+
+/** Bounded lock-free cache of the serialized form of frozen (immutable) objects, for composers which write the same reference data objects many times.
+ *
+ * A composer which has been given a cache (see setSerializedFormCache()) looks up every frozen object before it serializes it. For a hit, the stored bytes
+ * are appended by a single array copy, for a miss, the object is serialized as usual, and its bytes are stored, unless they depend on the context:
+ * an encoding which refers to objects outside of the object (object reuse backreferences), or to a per stream class dictionary or string table,
+ * is not stored. Backreferences within the object are relative and therefore remain valid wherever the bytes are spliced in.
+ * Objects nested in a spliced object are not registered in the object reuse cache of the composer, later occurrences of them are serialized in full.
+ * The output differs from that of a composer without cache only in these cases, and can be read by the usual parsers.
+ *
+ * Objects are identified by reference and by the ObjectReference of the field, because the compact format writes objects of the declared lower bound
+ * in a shorter form. Frozen objects cannot change, therefore entries never become invalid. The cache is a hash table of fixed size,
+ * a miss replaces the entry of the slot, therefore the cache never grows. It keeps the stored objects reachable until they are replaced.
+ *
+ * The encoding depends on the format and the settings of a composer (character set, object reuse, use of factory and class ids),
+ * therefore an instance must only be shared by composers of the same class and configuration, which may run in different threads.
+ */
+public final class SerializedFormCache {
+    public static final int DEFAULT_SIZE = 4096;                    // number of slots
+    public static final int DEFAULT_MAX_BYTES = 4096;               // larger encodings are not stored
+    public static final int UNKNOWN = -1;                           // number of nested objects, if the composer did not count them
+
+    /** An immutable cache entry. */
+    public static final class Entry {
+        private final BonaPortable obj;
+        private final ObjectReference di;
+        private final byte [] bytes;
+        private final int numberOfNestedObjects;
+
+        private Entry(BonaPortable obj, ObjectReference di, byte [] bytes, int numberOfNestedObjects) {
+            this.obj = obj;
+            this.di = di;
+            this.bytes = bytes;
+            this.numberOfNestedObjects = numberOfNestedObjects;
+        }
+
+        /** Returns the serialized form. The array must not be modified. */
+        public byte [] getBytes() {
+            return bytes;
+        }
+
+        /** Returns the number of objects serialized within the object (excluding itself), or UNKNOWN. */
+        public int getNumberOfNestedObjects() {
+            return numberOfNestedObjects;
+        }
+    }
+
+    private final AtomicReferenceArray<Entry> slots;
+    private final int mask;
+    private final int maxBytes;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Creates a cache with the given number of slots (rounded up to the next power of 2), which stores encodings of up to maxBytes bytes. */
+    public SerializedFormCache(int size, int maxBytes) {
+        int n = 1;
+        while (n < size && n < (1 << 30))
+            n <<= 1;
+        this.slots = new AtomicReferenceArray<Entry>(n);
+        this.mask = n - 1;
+        this.maxBytes = maxBytes;
+    }
+
+    public SerializedFormCache() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_BYTES);
+    }
+
+    public int getMaxBytes() {
+        return maxBytes;
+    }
+
+    private int slotOf(BonaPortable obj) {
+        final int h = System.identityHashCode(obj) * 0x9e3779b9;       // spread the bits (Fibonacci hashing)
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    /** Returns the entry for the object and field, or null. */
+    public Entry get(BonaPortable obj, ObjectReference di) {
+        final Entry e = slots.get(slotOf(obj));
+        if (e != null && e.obj == obj && e.di == di) {
+            hits.increment();
+            return e;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /** Stores a copy of the serialized form of a frozen object, which is found in buffer from start (inclusive) to end (exclusive).
+     * Objects which are not frozen and too long encodings are ignored. */
+    public void put(BonaPortable obj, ObjectReference di, byte [] buffer, int start, int end, int numberOfNestedObjects) {
+        final int length = end - start;
+        if (length > maxBytes || !obj.was$Frozen())
+            return;
+        final byte [] bytes = new byte [length];
+        System.arraycopy(buffer, start, bytes, 0, length);
+        slots.lazySet(slotOf(obj), new Entry(obj, di, bytes, numberOfNestedObjects));
+    }
+
+    /** Removes all entries. */
+    public void clear() {
+        for (int i = 0; i < slots.length(); ++i)
+            slots.lazySet(i, null);
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+}
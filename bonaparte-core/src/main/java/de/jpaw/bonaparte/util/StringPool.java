@@ -0,0 +1,160 @@
+package de.jpaw.bonaparte.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.jpaw.bonaparte.pojos.meta.AlphanumericElementaryDataItem;
+
+/** Bounded lock-free pool of canonical String instances, to avoid many copies of the same low cardinality values (codes, status tokens, currencies)
+ * on the heap after parsing.
+ *
+ * The pool is a hash table of fixed size, organized in independent sets of 2 slots. A string is looked up in the set determined by its hash code.
+ * A miss replaces the older entry of the set, therefore the pool never grows and needs no eviction thread. No locks are used: concurrent updates
+ * of the same set may lose an entry, which just causes another miss later. Strings are immutable, therefore returning a pooled instance is always safe.
+ *
+ * Fields qualify for pooling if their maximum length does not exceed the configured maximum field length,
+ * or if they have been declared with the property "canonical" (see PROPERTY_CANONICAL).
+ * The same instance can be shared by all parsers (see Settings.setStringPool()) and JPA converters.
+ */
+public class StringPool {
+    public static final String PROPERTY_CANONICAL = "canonical";    // field property which enables pooling for a field, independent of its length
+    public static final int DEFAULT_SIZE = 16 * 1024;               // number of slots
+    public static final int DEFAULT_MAX_FIELD_LENGTH = 16;          // fields with a declared length up to this value are pooled
+    public static final int MAX_STRING_LENGTH = 64;                 // longer strings are never pooled, they are unlikely to repeat and would pin memory
+
+    private final AtomicReferenceArray<String> slots;
+    private final int setMask;
+    private final int maxFieldLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /** Creates a pool with the given number of slots (rounded up to the next power of 2) and the given maximum declared field length for automatic pooling. */
+    public StringPool(int size, int maxFieldLength) {
+        int n = 2;
+        while (n < size && n < (1 << 30))
+            n <<= 1;
+        this.slots = new AtomicReferenceArray<String>(n);
+        this.setMask = n - 2;                                       // index of the first slot of a set, always even
+        this.maxFieldLength = maxFieldLength;
+    }
+
+    public StringPool() {
+        this(DEFAULT_SIZE, DEFAULT_MAX_FIELD_LENGTH);
+    }
+
+    public int getMaxFieldLength() {
+        return maxFieldLength;
+    }
+
+    /** Returns true if values of the field should be pooled. */
+    public boolean isCandidate(AlphanumericElementaryDataItem di) {
+        if (di.getLength() > 0 && di.getLength() <= maxFieldLength)
+            return true;
+        final Map<String, String> properties = di.getProperties();
+        return properties != null && properties.containsKey(PROPERTY_CANONICAL);
+    }
+
+    // spread the hash code, because the low bits of String hash codes of similar strings are correlated
+    private int setIndex(int h) {
+        return (h ^ (h >>> 16)) << 1 & setMask;
+    }
+
+    /** Returns the canonical instance of a string. The parameter itself is returned (and pooled) if no equal string is in the pool. */
+    public String canonicalize(String s) {
+        if (s == null || s.length() > MAX_STRING_LENGTH)
+            return s;
+        final int i = setIndex(s.hashCode());
+        final String first = slots.get(i);
+        if (s.equals(first)) {
+            hits.increment();
+            return first;
+        }
+        final String second = slots.get(i + 1);
+        if (s.equals(second)) {
+            hits.increment();
+            return second;
+        }
+        misses.increment();
+        store(i, first, s);
+        return s;
+    }
+
+    /** Returns the canonical instance of a string provided as ISO-8859-1 encoded bytes. If the string is in the pool, no object is allocated. */
+    public String canonicalize(byte [] data, int offset, int length) {
+        if (length > MAX_STRING_LENGTH)
+            return new String(data, offset, length, StandardCharsets.ISO_8859_1);
+        int h = 0;
+        for (int k = 0; k < length; ++k)
+            h = 31 * h + (data[offset + k] & 0xff);                 // same as String.hashCode()
+        final int i = setIndex(h);
+        final String first = slots.get(i);
+        if (matches(first, data, offset, length)) {
+            hits.increment();
+            return first;
+        }
+        final String second = slots.get(i + 1);
+        if (matches(second, data, offset, length)) {
+            hits.increment();
+            return second;
+        }
+        misses.increment();
+        final String s = new String(data, offset, length, StandardCharsets.ISO_8859_1);
+        store(i, first, s);
+        return s;
+    }
+
+    private static boolean matches(String s, byte [] data, int offset, int length) {
+        if (s == null || s.length() != length)
+            return false;
+        for (int k = 0; k < length; ++k) {
+            if (s.charAt(k) != (data[offset + k] & 0xff))
+                return false;
+        }
+        return true;
+    }
+
+    // the most recent entry is kept in the first slot of a set, the previous one moves to the second slot
+    private void store(int i, String first, String s) {
+        if (first != null)
+            slots.lazySet(i + 1, first);
+        slots.lazySet(i, s);
+    }
+
+    /** Removes all strings from the pool. The statistics are not affected. */
+    public void clear() {
+        for (int i = 0; i < slots.length(); ++i)
+            slots.lazySet(i, null);
+    }
+
+    /** Returns the number of pooled strings. Requires a scan of the whole pool. */
+    public int size() {
+        int n = 0;
+        for (int i = 0; i < slots.length(); ++i) {
+            if (slots.get(i) != null)
+                ++n;
+        }
+        return n;
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /** Returns the ratio of lookups which returned a pooled instance, or 0 if there was no lookup yet. */
+    public double getHitRate() {
+        final long h = hits.sum();
+        final long total = h + misses.sum();
+        return total == 0L ? 0.0 : (double)h / total;
+    }
+
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+}
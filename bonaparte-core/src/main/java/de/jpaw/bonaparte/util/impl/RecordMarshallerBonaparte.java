@@ -5,11 +5,23 @@ import de.jpaw.bonaparte.core.ByteArrayComposer;
 import de.jpaw.bonaparte.core.ByteArrayParser;
 import de.jpaw.bonaparte.core.MimeTypes;
 import de.jpaw.bonaparte.util.IMarshaller;
+import de.jpaw.bonaparte.util.InstancePool;
 import de.jpaw.util.ApplicationException;
 import de.jpaw.util.ByteArray;
 import de.jpaw.util.ByteBuilder;
 
+/** Thread safe marshaller. Composers and parsers are taken from pools, in order to reuse their buffers and caches. */
 public class RecordMarshallerBonaparte implements IMarshaller {
+    private static final byte [] EMPTY = new byte [0];
+
+    private final InstancePool<ByteArrayComposer> composers = new InstancePool<ByteArrayComposer>(ByteArrayComposer::new);
+    private final InstancePool<ByteArrayParser> parsers = new InstancePool<ByteArrayParser>(() -> new ByteArrayParser(EMPTY, 0, 0));
+
+    // do not keep huge buffers after exceptionally big messages
+    private void release(ByteArrayComposer bac) {
+        if (bac.getBuffer().length <= InstancePool.MAX_RETAINED_CAPACITY)
+            composers.release(bac);
+    }
 
     @Override
     public String getContentType() {
@@ -18,13 +30,26 @@ public class RecordMarshallerBonaparte implements IMarshaller {
 
     @Override
     public ByteArray marshal(BonaPortable request) {
-        ByteArrayComposer bac = new ByteArrayComposer();
-        bac.writeRecord(request);
-        return new ByteArray(bac.getBuffer(), 0, bac.getLength());
+        final ByteArrayComposer bac = composers.borrow();
+        try {
+            bac.reset();
+            bac.writeRecord(request);
+            return new ByteArray(bac.getBuffer(), 0, bac.getLength());
+        } finally {
+            bac.reset();
+            release(bac);
+        }
     }
 
     @Override
     public BonaPortable unmarshal(ByteBuilder buffer) throws ApplicationException {
-        return (new ByteArrayParser(buffer.getCurrentBuffer(), 0, buffer.length())).readRecord();
+        final ByteArrayParser bap = parsers.borrow();
+        try {
+            bap.setSource(buffer.getCurrentBuffer(), 0, buffer.length());
+            return bap.readRecord();
+        } finally {
+            bap.setSource(EMPTY);
+            parsers.release(bap);
+        }
     }
 }
@@ -5,11 +5,23 @@ import de.jpaw.bonaparte.core.CompactByteArrayComposer;
 import de.jpaw.bonaparte.core.CompactByteArrayParser;
 import de.jpaw.bonaparte.core.MimeTypes;
 import de.jpaw.bonaparte.util.IMarshaller;
+import de.jpaw.bonaparte.util.InstancePool;
 import de.jpaw.util.ApplicationException;
 import de.jpaw.util.ByteArray;
 import de.jpaw.util.ByteBuilder;
 
+/** Thread safe marshaller. Composers and parsers are taken from pools, in order to reuse their buffers and caches. */
 public class RecordMarshallerCompactBonaparte implements IMarshaller {
+    private static final byte [] EMPTY = new byte [0];
+
+    private final InstancePool<CompactByteArrayComposer> composers = new InstancePool<CompactByteArrayComposer>(CompactByteArrayComposer::new);
+    private final InstancePool<CompactByteArrayParser> parsers = new InstancePool<CompactByteArrayParser>(() -> new CompactByteArrayParser(EMPTY, 0, 0));
+
+    // do not keep huge buffers after exceptionally big messages
+    private void release(CompactByteArrayComposer bac) {
+        if (bac.getBuffer().length <= InstancePool.MAX_RETAINED_CAPACITY)
+            composers.release(bac);
+    }
 
     @Override
     public String getContentType() {
@@ -18,15 +30,26 @@ public class RecordMarshallerCompactBonaparte implements IMarshaller {
 
     @Override
     public ByteArray marshal(BonaPortable request) {
-        CompactByteArrayComposer bac = new CompactByteArrayComposer();
-        bac.writeRecord(request);
-        ByteArray result = new ByteArray(bac.getBuffer(), 0, bac.getLength());
-        bac.close();
-        return result;
+        final CompactByteArrayComposer bac = composers.borrow();
+        try {
+            bac.reset();
+            bac.writeRecord(request);
+            return new ByteArray(bac.getBuffer(), 0, bac.getLength());
+        } finally {
+            bac.reset();
+            release(bac);
+        }
     }
 
     @Override
     public BonaPortable unmarshal(ByteBuilder buffer) throws ApplicationException {
-        return (new CompactByteArrayParser(buffer.getCurrentBuffer(), 0, buffer.length())).readRecord();
+        final CompactByteArrayParser cbap = parsers.borrow();
+        try {
+            cbap.setSource(buffer.getCurrentBuffer(), 0, buffer.length());
+            return cbap.readRecord();
+        } finally {
+            cbap.setSource(EMPTY);
+            parsers.release(cbap);
+        }
     }
 }
@@ -1,12 +1,11 @@
 package de.jpaw.bonaparte.util.impl;
 
 import de.jpaw.bonaparte.core.BonaPortable;
-import de.jpaw.bonaparte.core.JsonComposer;
-import de.jpaw.bonaparte.core.MapParser;
 import de.jpaw.bonaparte.core.MimeTypes;
 import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.bonaparte.core.Utf8JsonComposer;
+import de.jpaw.bonaparte.core.Utf8JsonParser;
 import de.jpaw.bonaparte.util.IMarshaller;
-import de.jpaw.json.JsonParser;
 import de.jpaw.util.ApplicationException;
 import de.jpaw.util.ByteArray;
 import de.jpaw.util.ByteBuilder;
@@ -20,13 +19,12 @@ public class RecordMarshallerJson implements IMarshaller {
 
     @Override
     public ByteArray marshal(BonaPortable request) {
-        return ByteArray.fromString(JsonComposer.toJsonString(request));
+        return Utf8JsonComposer.toJsonByteArray(request);
 //        return ByteArray.fromString(BonaparteJsonEscaper.asJson(request));
     }
 
     @Override
     public BonaPortable unmarshal(ByteBuilder buffer) throws ApplicationException {
-        final JsonParser jp = new JsonParser(new String(buffer.getCurrentBuffer(), 0, buffer.length(), ByteArray.CHARSET_UTF8), false);
-        return MapParser.asBonaPortable(jp.parseObject(), StaticMeta.OUTER_BONAPORTABLE);
+        return Utf8JsonParser.asBonaPortable(buffer.getCurrentBuffer(), 0, buffer.length(), StaticMeta.OUTER_BONAPORTABLE);
     }
 }
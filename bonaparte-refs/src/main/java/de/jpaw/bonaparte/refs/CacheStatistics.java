@@ -0,0 +1,52 @@
+package de.jpaw.bonaparte.refs;
+
+/** Snapshot of the counters of a cache. Counters are cumulative since creation of the cache, clear() does not reset them. */
+public final class CacheStatistics {
+    private final long hits;
+    private final long misses;
+    private final long evictions;
+    private final long expirations;
+    private final long size;
+
+    public CacheStatistics(long hits, long misses, long evictions, long expirations, long size) {
+        this.hits = hits;
+        this.misses = misses;
+        this.evictions = evictions;
+        this.expirations = expirations;
+        this.size = size;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    /** Returns the number of entries which have been removed because the maximum size was reached. */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    /** Returns the number of entries which have been removed because their time to live was exceeded. */
+    public long getExpirations() {
+        return expirations;
+    }
+
+    /** Returns the number of entries currently held (strongly referenced). */
+    public long getSize() {
+        return size;
+    }
+
+    public double getHitRate() {
+        final long requests = hits + misses;
+        return requests == 0L ? 1.0 : (double)hits / requests;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits=%d, misses=%d (hit rate %.1f %%), evictions=%d, expirations=%d, size=%d",
+          hits, misses, 100.0 * getHitRate(), evictions, expirations, size);
+    }
+}
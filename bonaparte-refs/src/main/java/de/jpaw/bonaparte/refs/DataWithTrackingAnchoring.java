@@ -0,0 +1,36 @@
+package de.jpaw.bonaparte.refs;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.ObjectValidationException;
+import de.jpaw.bonaparte.pojos.api.DataWithTracking;
+import de.jpaw.bonaparte.pojos.api.TrackingBase;
+
+/** Anchoring for caches of DataWithTracking wrappers, of which the application references the DTO only.
+ * While an entry is evicted, the DTO is weakly referenced, and a shallow copy of the wrapper without the DTO holds the tracking data. */
+public class DataWithTrackingAnchoring<DTO extends BonaPortable, TRACKING extends TrackingBase, V extends DataWithTracking<DTO, TRACKING>>
+  implements SegmentedLruCache.Anchoring<V, DTO> {
+
+    @Override
+    public DTO anchorOf(V value) {
+        return value.getData();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public V detach(V value) {
+        try {
+            final BonaPortable wrapper = value;    // generated classes may narrow the throws clause
+            final V detached = (V) wrapper.ret$MutableClone(false, false);
+            detached.setData(null);
+            return detached;
+        } catch (ObjectValidationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public V reattach(V detached, DTO anchor) {
+        detached.setData(anchor);
+        return detached;
+    }
+}
@@ -0,0 +1,27 @@
+package de.jpaw.bonaparte.refs;
+
+/** Thread safe cache for objects by primitive long keys, as used as first level cache by the RefResolvers.
+ * Implementations may be bounded, but must be identity safe: as long as a value obtained from the cache is referenced
+ * by the application, and it has neither been removed nor expired, get() must return the same instance for its key.
+ * For wrappers of which the application references the wrapped object only, this applies to the wrapped object. */
+public interface LongKeyCache<V> {
+    /** Returns the cached value, or null if none is cached. */
+    V get(long key);
+
+    /** Stores the value, unless a value is cached for the key already. Returns the value which is cached after the operation. */
+    V putIfAbsent(long key, V value);
+
+    /** Stores the value, replacing any previous one. */
+    void put(long key, V value);
+
+    /** Removes the key from the cache. Returns the previously cached value, or null. */
+    V remove(long key);
+
+    /** Removes all entries. */
+    void clear();
+
+    /** Returns the number of entries currently held (strongly referenced). */
+    long size();
+
+    CacheStatistics getStatistics();
+}
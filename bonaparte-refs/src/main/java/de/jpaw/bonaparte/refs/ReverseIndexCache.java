@@ -0,0 +1,174 @@
+package de.jpaw.bonaparte.refs;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Bounded cache of index (alternate key) to artificial key mappings, as used by the RefResolvers.getRef() methods.
+ * Entries are evicted in LRU order per stripe. For every artificial key, the index values pointing to it are tracked,
+ * which allows to invalidate all of them after an update or removal of the referenced record.
+ * Artificial keys are assumed to be positive, 0 is returned if no mapping is cached. */
+public class ReverseIndexCache<I> {
+    public static final int DEFAULT_NUMBER_OF_STRIPES = 16;
+
+    private final Stripe<I> [] stripes;
+    private final int stripeMask;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public ReverseIndexCache(int maximumSize, int numberOfStripes) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive, but is " + maximumSize);
+        final int n = Integer.highestOneBit(Math.max(1, Math.min(numberOfStripes, maximumSize)));
+        stripes = new Stripe [n];
+        for (int i = 0; i < n; ++i)
+            stripes[i] = new Stripe<I>(evictions, (maximumSize + n - 1) / n);
+        stripeMask = n - 1;
+    }
+
+    public ReverseIndexCache(int maximumSize) {
+        this(maximumSize, DEFAULT_NUMBER_OF_STRIPES);
+    }
+
+    private Stripe<I> stripeFor(I index) {
+        final int h = index.hashCode() * 0x9e3779b9;
+        return stripes[(h ^ (h >>> 16)) & stripeMask];
+    }
+
+    /** Returns the artificial key for the index, or 0 if none is cached. */
+    public long get(I index) {
+        final long key = stripeFor(index).get(index);
+        if (key > 0L)
+            hits.increment();
+        else
+            misses.increment();
+        return key;
+    }
+
+    /** Stores the mapping. Non-positive keys are ignored. */
+    public void put(I index, long key) {
+        if (key > 0L)
+            stripeFor(index).put(index, key);
+    }
+
+    /** Removes all index entries which point to the given artificial key. */
+    public void invalidate(long key) {
+        for (Stripe<I> stripe : stripes)
+            stripe.invalidate(key);
+    }
+
+    public void clear() {
+        for (Stripe<I> stripe : stripes)
+            stripe.clear();
+    }
+
+    public long size() {
+        long size = 0L;
+        for (Stripe<I> stripe : stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), 0L, size());
+    }
+
+    private static final class Stripe<I> {
+        private final LongAdder evictions;
+        private final Map<Long, Object> indexesByKey = new HashMap<Long, Object>();   // value is an I, or a List<I> for multiple indexes
+        private final LinkedHashMap<I, Long> keysByIndex;
+
+        private Stripe(LongAdder evictions, final int capacity) {
+            this.evictions = evictions;
+            this.keysByIndex = new LinkedHashMap<I, Long>(16, 0.75f, true) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<I, Long> eldest) {
+                    if (size() <= capacity)
+                        return false;
+                    unregister(eldest.getValue(), eldest.getKey());
+                    Stripe.this.evictions.increment();
+                    return true;
+                }
+            };
+        }
+
+        private synchronized long get(I index) {
+            final Long key = keysByIndex.get(index);
+            return key == null ? 0L : key.longValue();
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized void put(I index, long key) {
+            final Long boxedKey = Long.valueOf(key);
+            final Long previousKey = keysByIndex.put(index, boxedKey);
+            if (previousKey != null) {
+                if (previousKey.longValue() == key)
+                    return;
+                unregister(previousKey, index);
+            }
+            final Object others = indexesByKey.get(boxedKey);
+            if (others == null) {
+                indexesByKey.put(boxedKey, index);
+            } else if (others instanceof IndexList) {
+                ((List<I>)others).add(index);
+            } else {
+                final List<I> indexes = new IndexList<I>();
+                indexes.add((I)others);
+                indexes.add(index);
+                indexesByKey.put(boxedKey, indexes);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private synchronized void invalidate(long key) {
+            final Object indexes = indexesByKey.remove(Long.valueOf(key));
+            if (indexes == null)
+                return;
+            if (indexes instanceof IndexList) {
+                for (I index : (List<I>)indexes)
+                    keysByIndex.remove(index);
+            } else {
+                keysByIndex.remove(indexes);
+            }
+        }
+
+        private synchronized void clear() {
+            keysByIndex.clear();
+            indexesByKey.clear();
+        }
+
+        private synchronized int size() {
+            return keysByIndex.size();
+        }
+
+        // removes the back link from the key to the index
+        @SuppressWarnings("unchecked")
+        private void unregister(Long key, I index) {
+            final Object indexes = indexesByKey.get(key);
+            if (indexes instanceof IndexList) {
+                final List<I> list = (List<I>)indexes;
+                list.remove(index);
+                if (list.size() == 1)
+                    indexesByKey.put(key, list.get(0));
+            } else if (indexes != null) {
+                indexesByKey.remove(key);
+            }
+        }
+    }
+
+    // a distinct type, because index values could be lists themselves
+    private static final class IndexList<I> extends ArrayList<I> {
+        private static final long serialVersionUID = 1L;
+
+        private IndexList() {
+            super(4);
+        }
+    }
+}
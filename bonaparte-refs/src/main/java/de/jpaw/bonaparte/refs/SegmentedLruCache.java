@@ -0,0 +1,425 @@
+package de.jpaw.bonaparte.refs;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/** Bounded LongKeyCache with segmented LRU eviction and an optional time to live. Keys are primitive longs, they are not boxed.
+ *
+ * The keys are distributed over independently locked stripes. Within a stripe, new entries are placed into a probationary segment,
+ * entries which are hit again are promoted to a protected segment, which is limited to 80 % of the capacity.
+ * The least recently used entry of the probationary segment is evicted first, therefore a scan over many records which are read once
+ * does not displace the frequently used ones.
+ *
+ * Evicted values are kept weakly referenced: as long as the application still references an evicted value, get() returns the same
+ * instance again (identity safety), otherwise the garbage collector reclaims it. Expired entries are dropped, because their data is considered stale.
+ * If the application does not reference the cached values themselves, but objects wrapped by them (for example the DTO of a DataWithTracking),
+ * an Anchoring must be provided: then the wrapped object is kept weakly referenced, and the remaining data of the wrapper strongly.
+ */
+public class SegmentedLruCache<V> implements LongKeyCache<V> {
+    public static final int DEFAULT_NUMBER_OF_STRIPES = 16;
+    private static final int MAX_NUMBER_OF_STRIPES = 1024;
+    private static final int PROBATION = 0;
+    private static final int PROTECTED = 1;
+    private static final int DETACHED = 2;             // evicted: the value (or its anchor) is weakly referenced only
+
+    /** Splits a cached value into the object referenced by the application (the anchor) and the remaining data.
+     * Evicted entries survive as long as their anchor is referenced. */
+    public interface Anchoring<V, A> {
+        /** Returns the object of the value which is referenced by the application. */
+        A anchorOf(V value);
+
+        /** Returns the remaining data, which is held strongly while the entry is evicted. It must not reference the anchor. */
+        V detach(V value);
+
+        /** Combines the remaining data and the anchor to a value again. */
+        V reattach(V detached, A anchor);
+    }
+
+    private final Stripe<V> [] stripes;
+    private final int stripeShift;
+    private final long timeToLiveNanos;                 // 0 if entries do not expire
+    private final Anchoring<V, Object> anchoring;       // null if the values themselves are referenced by the application
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expirations = new LongAdder();
+
+    /** Creates a cache which holds up to maximumSize entries. A timeToLiveMillis of 0 means no expiry.
+     * The anchoring is null if the application references the cached values themselves. */
+    @SuppressWarnings("unchecked")
+    public SegmentedLruCache(int maximumSize, long timeToLiveMillis, int numberOfStripes, Anchoring<V, ?> anchoring) {
+        if (maximumSize <= 0)
+            throw new IllegalArgumentException("maximumSize must be positive, but is " + maximumSize);
+        final int n = Integer.highestOneBit(Math.max(1, Math.min(Math.min(numberOfStripes, MAX_NUMBER_OF_STRIPES), maximumSize)));
+        stripes = new Stripe [n];
+        for (int i = 0; i < n; ++i)
+            stripes[i] = new Stripe<V>(this, (maximumSize + n - 1) / n);
+        stripeShift = 32 - Integer.numberOfTrailingZeros(n);     // the stripe is selected by the upper bits of the hash
+        timeToLiveNanos = timeToLiveMillis > 0L ? TimeUnit.MILLISECONDS.toNanos(timeToLiveMillis) : 0L;
+        this.anchoring = (Anchoring<V, Object>)anchoring;
+    }
+
+    public SegmentedLruCache(int maximumSize, long timeToLiveMillis, int numberOfStripes) {
+        this(maximumSize, timeToLiveMillis, numberOfStripes, null);
+    }
+
+    public SegmentedLruCache(int maximumSize, Anchoring<V, ?> anchoring) {
+        this(maximumSize, 0L, DEFAULT_NUMBER_OF_STRIPES, anchoring);
+    }
+
+    public SegmentedLruCache(int maximumSize, long timeToLiveMillis) {
+        this(maximumSize, timeToLiveMillis, DEFAULT_NUMBER_OF_STRIPES, null);
+    }
+
+    public SegmentedLruCache(int maximumSize) {
+        this(maximumSize, 0L, DEFAULT_NUMBER_OF_STRIPES, null);
+    }
+
+    private static int hash(long key) {
+        final long h = key * 0x9e3779b97f4a7c15L;
+        return (int)(h ^ (h >>> 32));
+    }
+
+    private Stripe<V> stripeFor(int h) {
+        return stripeShift == 32 ? stripes[0] : stripes[h >>> stripeShift];
+    }
+
+    private long now() {
+        return timeToLiveNanos == 0L ? 0L : System.nanoTime();
+    }
+
+    @Override
+    public V get(long key) {
+        final int h = hash(key);
+        final V value = stripeFor(h).get(key, h, now());
+        if (value == null)
+            misses.increment();
+        else
+            hits.increment();
+        return value;
+    }
+
+    @Override
+    public V putIfAbsent(long key, V value) {
+        final int h = hash(key);
+        return stripeFor(h).putIfAbsent(key, h, value, now());
+    }
+
+    @Override
+    public void put(long key, V value) {
+        final int h = hash(key);
+        stripeFor(h).put(key, h, value, now());
+    }
+
+    @Override
+    public V remove(long key) {
+        final int h = hash(key);
+        return stripeFor(h).remove(key, h);
+    }
+
+    @Override
+    public void clear() {
+        for (Stripe<V> stripe : stripes)
+            stripe.clear();
+    }
+
+    @Override
+    public long size() {
+        long size = 0L;
+        for (Stripe<V> stripe : stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    @Override
+    public CacheStatistics getStatistics() {
+        return new CacheStatistics(hits.sum(), misses.sum(), evictions.sum(), expirations.sum(), size());
+    }
+
+    private static final class Entry<V> {
+        private final long key;
+        private final int hash;
+        private final long writeTime;
+        private V value;                        // null if detached
+        private WeakValue weakValue;            // non null if detached, references the value or its anchor
+        private V detached;                     // the value without its anchor, if detached with an anchoring
+        private int segment;
+        private Entry<V> nextInBucket;
+        private Entry<V> prev;                  // LRU list of the segment, the least recently used entry is the first one
+        private Entry<V> next;
+
+        private Entry(long key, int hash, V value, long writeTime) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+    }
+
+    private static final class WeakValue extends WeakReference<Object> {
+        private final long key;
+        private final int hash;
+
+        private WeakValue(Object referent, long key, int hash, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.key = key;
+            this.hash = hash;
+        }
+    }
+
+    /** A separately locked part of the cache: a hash table with chaining, and two LRU lists. */
+    private static final class Stripe<V> {
+        private final SegmentedLruCache<V> owner;
+        private final int capacity;
+        private final int protectedCapacity;
+        private final Entry<V> probation = newSentinel();
+        private final Entry<V> protectedSegment = newSentinel();
+        private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+        private Entry<V> [] table;
+        private int numberOfEntries = 0;        // all entries in the table, including detached ones
+        private int probationSize = 0;
+        private int protectedSize = 0;
+
+        private Stripe(SegmentedLruCache<V> owner, int capacity) {
+            this.owner = owner;
+            this.capacity = capacity;
+            this.protectedCapacity = Math.max(1, (int)(capacity * 0.8));
+            this.table = newTable(16);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <V> Entry<V> [] newTable(int size) {
+            return new Entry [size];
+        }
+
+        private static <V> Entry<V> newSentinel() {
+            final Entry<V> sentinel = new Entry<V>(0L, 0, null, 0L);
+            sentinel.prev = sentinel;
+            sentinel.next = sentinel;
+            return sentinel;
+        }
+
+        private synchronized V get(long key, int h, long now) {
+            expungeCollectedValues();
+            final Entry<V> e = find(key, h);
+            if (e == null)
+                return null;
+            if (isExpired(e, now)) {
+                owner.expirations.increment();
+                removeEntry(e);
+                return null;
+            }
+            if (e.segment == DETACHED)
+                return reattach(e);
+            touch(e);
+            return e.value;
+        }
+
+        private synchronized V putIfAbsent(long key, int h, V value, long now) {
+            expungeCollectedValues();
+            final Entry<V> e = find(key, h);
+            if (e != null) {
+                if (!isExpired(e, now)) {
+                    if (e.segment != DETACHED) {
+                        touch(e);
+                        return e.value;
+                    }
+                    final V previousValue = reattach(e);
+                    if (previousValue != null)
+                        return previousValue;
+                } else {
+                    owner.expirations.increment();
+                    removeEntry(e);
+                }
+            }
+            insert(key, h, value, now);
+            return value;
+        }
+
+        private synchronized void put(long key, int h, V value, long now) {
+            expungeCollectedValues();
+            final Entry<V> e = find(key, h);
+            if (e != null)
+                removeEntry(e);
+            insert(key, h, value, now);
+        }
+
+        private synchronized V remove(long key, int h) {
+            final Entry<V> e = find(key, h);
+            if (e == null)
+                return null;
+            final V value = e.segment == DETACHED ? detachedValue(e) : e.value;
+            removeEntry(e);
+            return value;
+        }
+
+        private synchronized void clear() {
+            table = newTable(16);
+            numberOfEntries = 0;
+            probation.prev = probation.next = probation;
+            protectedSegment.prev = protectedSegment.next = protectedSegment;
+            probationSize = 0;
+            protectedSize = 0;
+        }
+
+        private synchronized int size() {
+            return probationSize + protectedSize;
+        }
+
+        private boolean isExpired(Entry<V> e, long now) {
+            return owner.timeToLiveNanos != 0L && now - e.writeTime > owner.timeToLiveNanos;
+        }
+
+        private Entry<V> find(long key, int h) {
+            for (Entry<V> e = table[h & (table.length - 1)]; e != null; e = e.nextInBucket)
+                if (e.key == key)
+                    return e;
+            return null;
+        }
+
+        private void insert(long key, int h, V value, long now) {
+            final Entry<V> e = new Entry<V>(key, h, value, now);
+            final int index = h & (table.length - 1);
+            e.nextInBucket = table[index];
+            table[index] = e;
+            if (++numberOfEntries > table.length * 3 / 4)
+                resize();
+            e.segment = PROBATION;
+            linkLast(probation, e);
+            ++probationSize;
+            evictIfRequired();
+        }
+
+        // the value of an evicted entry, or null if it has been garbage collected
+        @SuppressWarnings("unchecked")
+        private V detachedValue(Entry<V> e) {
+            final Object referent = e.weakValue.get();
+            if (referent == null)
+                return null;
+            return owner.anchoring == null ? (V)referent : owner.anchoring.reattach(e.detached, referent);
+        }
+
+        // an evicted entry is used again: if the value is still alive, it becomes a regular entry again
+        private V reattach(Entry<V> e) {
+            final V value = detachedValue(e);
+            if (value == null) {
+                removeEntry(e);
+                return null;
+            }
+            e.value = value;
+            e.weakValue = null;
+            e.detached = null;
+            e.segment = PROBATION;
+            linkLast(probation, e);
+            ++probationSize;
+            evictIfRequired();
+            return value;
+        }
+
+        // records a hit: entries of the probationary segment are promoted
+        private void touch(Entry<V> e) {
+            unlink(e);
+            if (e.segment == PROBATION) {
+                --probationSize;
+                e.segment = PROTECTED;
+                ++protectedSize;
+                if (protectedSize > protectedCapacity) {
+                    // demote the least recently used protected entry
+                    final Entry<V> demoted = protectedSegment.next;
+                    unlink(demoted);
+                    --protectedSize;
+                    demoted.segment = PROBATION;
+                    linkLast(probation, demoted);
+                    ++probationSize;
+                }
+            }
+            linkLast(protectedSegment, e);
+        }
+
+        private void evictIfRequired() {
+            while (probationSize + protectedSize > capacity) {
+                final Entry<V> victim;
+                if (probationSize > 0) {
+                    victim = probation.next;
+                    --probationSize;
+                } else {
+                    victim = protectedSegment.next;
+                    --protectedSize;
+                }
+                unlink(victim);
+                if (owner.anchoring == null) {
+                    victim.weakValue = new WeakValue(victim.value, victim.key, victim.hash, queue);
+                } else {
+                    // the application references the anchor only, the wrapper could be collected while the anchor is still in use
+                    victim.weakValue = new WeakValue(owner.anchoring.anchorOf(victim.value), victim.key, victim.hash, queue);
+                    victim.detached = owner.anchoring.detach(victim.value);
+                }
+                victim.value = null;
+                victim.segment = DETACHED;
+                owner.evictions.increment();
+            }
+        }
+
+        private void removeEntry(Entry<V> e) {
+            final int index = e.hash & (table.length - 1);
+            if (table[index] == e) {
+                table[index] = e.nextInBucket;
+            } else {
+                Entry<V> p = table[index];
+                while (p.nextInBucket != e)
+                    p = p.nextInBucket;
+                p.nextInBucket = e.nextInBucket;
+            }
+            --numberOfEntries;
+            if (e.segment == PROBATION) {
+                unlink(e);
+                --probationSize;
+            } else if (e.segment == PROTECTED) {
+                unlink(e);
+                --protectedSize;
+            }
+        }
+
+        // removes detached entries whose values have been garbage collected
+        private void expungeCollectedValues() {
+            Reference<?> ref;
+            while ((ref = queue.poll()) != null) {
+                final WeakValue w = (WeakValue)ref;
+                final Entry<V> e = find(w.key, w.hash);
+                if (e != null && e.weakValue == w)
+                    removeEntry(e);
+            }
+        }
+
+        private void resize() {
+            final Entry<V> [] oldTable = table;
+            table = newTable(2 * oldTable.length);
+            final int mask = table.length - 1;
+            for (Entry<V> e : oldTable) {
+                while (e != null) {
+                    final Entry<V> next = e.nextInBucket;
+                    e.nextInBucket = table[e.hash & mask];
+                    table[e.hash & mask] = e;
+                    e = next;
+                }
+            }
+        }
+
+        private static <V> void linkLast(Entry<V> sentinel, Entry<V> e) {
+            e.prev = sentinel.prev;
+            e.next = sentinel;
+            sentinel.prev.next = e;
+            sentinel.prev = e;
+        }
+
+        private static <V> void unlink(Entry<V> e) {
+            e.prev.next = e.next;
+            e.next.prev = e.prev;
+            e.prev = null;
+            e.next = null;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package de.jpaw.bonaparte.refsp;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import de.jpaw.bonaparte.pojos.api.AbstractRef;
@@ -22,6 +23,29 @@ public interface RefResolver<REF extends AbstractRef, DTO extends REF, TRACKING
      */
     DTO getDTO(long ref) throws ApplicationException;
 
+    /**
+     * Returns the DTOs for a number of primary keys, in the same order. The result contains null for keys <= 0. Throws an exception if any key does not exist.
+     * Implementations should retrieve all uncached records with a single request to the backend.
+     */
+    default List<DTO> getDTOs(long [] refs) throws ApplicationException {
+        final List<DTO> result = new ArrayList<DTO>(refs.length);
+        for (long ref : refs)
+            result.add(ref > 0L ? getDTO(ref) : null);
+        return result;
+    }
+
+    /**
+     * Returns the keys for a number of unique indexes, in the same order. The result contains 0 for null entries. Throws an exception if any reference does not exist.
+     */
+    default long [] getRefs(List<REF> refObjects) throws ApplicationException {
+        final long [] result = new long [refObjects.size()];
+        int i = 0;
+        for (REF refObject : refObjects) {
+            result[i++] = getRef(refObject);
+        }
+        return result;
+    }
+
     /**
      * Returns a frozen copy of the tracking columns (to avoid tampering with them) for a given primary key.
      */
@@ -1,5 +1,8 @@
 package de.jpaw.bonaparte.refsp;
 
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -8,6 +11,7 @@ import org.slf4j.LoggerFactory;
 import de.jpaw.bonaparte.core.BonaPortable;
 import de.jpaw.bonaparte.core.CompactByteArrayParser;
 import de.jpaw.bonaparte.core.MessageParserException;
+import de.jpaw.bonaparte.core.StaticMeta;
 import de.jpaw.bonaparte.pojos.api.AbstractRef;
 import de.jpaw.bonaparte.pojos.meta.ClassDefinition;
 import de.jpaw.bonaparte.pojos.meta.FieldDefinition;
@@ -18,6 +22,7 @@ public class ReferencingParser extends CompactByteArrayParser {
     private static final Logger LOGGER = LoggerFactory.getLogger(ReferencingParser.class);
     private final Map<ClassDefinition,RefResolver<AbstractRef, ?, ?>> resolvers;
     private boolean doSkipNext;        // skip the resolving for the next object (required if the outer object is in the map itself)
+    private Map<RefResolver<AbstractRef, ?, ?>, Batch> batches = null;  // not null while an object is parsed with batched resolution
 
     public ReferencingParser(byte[] buffer, int offset, int length, Map<ClassDefinition,RefResolver<AbstractRef, ?, ?>> resolvers, boolean skipFirst) {
         super(buffer, offset, length);
@@ -29,6 +34,58 @@ public class ReferencingParser extends CompactByteArrayParser {
         doSkipNext = true;
     }
 
+    /** The references of a single resolver, collected during the first pass of a batched read. */
+    private static final class Batch {
+        private final Map<Long, BonaPortable> dtos = new HashMap<Long, BonaPortable>();
+        private boolean resolved = false;
+
+        private void resolve(RefResolver<AbstractRef, ?, ?> r) throws ApplicationException {
+            final long [] refs = new long [dtos.size()];
+            int i = 0;
+            for (Long ref : dtos.keySet())
+                refs[i++] = ref.longValue();
+            final List<? extends BonaPortable> results = r.getDTOs(refs);
+            for (i = 0; i < refs.length; ++i)
+                dtos.put(Long.valueOf(refs[i]), results.get(i));
+            resolved = true;
+        }
+    }
+
+    /** Reads an object, resolving its references with a single getDTOs() call per resolver instead of one getDTO() call per reference.
+     * The data is parsed twice: the first pass collects the keys of all references, which are then resolved in bulk,
+     * and the second pass builds the final object graph from the resolved DTOs. */
+    public <R extends BonaPortable> R readObjectBatched(ObjectReference di, Class<R> type) throws MessageParserException {
+        final int start = getParseIndex();
+        final int cacheSize = getCacheSize();
+        final int dictionarySize = getClassDictionarySize();
+        final int stringTableSize = getStringTableSize();
+        final boolean skipFirst = doSkipNext;
+        batches = new IdentityHashMap<RefResolver<AbstractRef, ?, ?>, Batch>();
+        try {
+            readObject(di, type);       // first pass: collects the references
+            try {
+                for (Map.Entry<RefResolver<AbstractRef, ?, ?>, Batch> e : batches.entrySet())
+                    e.getValue().resolve(e.getKey());
+            } catch (ApplicationException e) {
+                throw newMPE(MessageParserException.INVALID_REFERENCES, e.getMessage());
+            }
+            // second pass: parse the same data again
+            rewind(start);
+            truncateCache(cacheSize);
+            truncateClassDictionary(dictionarySize);
+            truncateStringTable(stringTableSize);
+            doSkipNext = skipFirst;
+            return readObject(di, type);
+        } finally {
+            batches = null;
+        }
+    }
+
+    /** Reads a record, resolving its references in bulk, see readObjectBatched(). */
+    public BonaPortable readRecordBatched() throws MessageParserException {
+        return readObjectBatched(StaticMeta.OUTER_BONAPORTABLE, BonaPortable.class);
+    }
+
     protected RefResolver<AbstractRef, ?, ?> getReferencedResolver(ObjectReference di) {
         return di.getLowerBound() == null ? null : resolvers.get(di.getLowerBound());
     }
@@ -50,7 +107,22 @@ public class ReferencingParser extends CompactByteArrayParser {
             return null;        // mapping 0 => null
 
         try {
-            BonaPortable newObject = r.getDTO(ref);
+            final BonaPortable newObject;
+            if (batches == null) {
+                newObject = r.getDTO(ref);
+            } else {
+                Batch batch = batches.get(r);
+                if (batch == null) {
+                    batch = new Batch();
+                    batches.put(r, batch);
+                }
+                if (!batch.resolved) {
+                    // first pass of a batched read: just remember the key
+                    batch.dtos.put(Long.valueOf(ref), null);
+                    return null;
+                }
+                newObject = batch.dtos.get(Long.valueOf(ref));
+            }
             if (newObject.getClass() != type) {
                 // check if it is a superclass
                 if (!di.getAllowSubclasses() || !type.isAssignableFrom(newObject.getClass())) {
@@ -1,8 +1,8 @@
 package de.jpaw.bonaparte.refsw.impl;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ConcurrentMap;
 
 import de.jpaw.bonaparte.core.ObjectValidationException;
 import de.jpaw.bonaparte.pojos.api.AbstractRef;
@@ -10,7 +10,12 @@ import de.jpaw.bonaparte.pojos.api.SearchFilter;
 import de.jpaw.bonaparte.pojos.api.SortColumn;
 import de.jpaw.bonaparte.pojos.api.TrackingBase;
 import de.jpaw.bonaparte.pojos.apiw.DataWithTrackingW;
+import de.jpaw.bonaparte.refs.CacheStatistics;
+import de.jpaw.bonaparte.refs.DataWithTrackingAnchoring;
+import de.jpaw.bonaparte.refs.LongKeyCache;
 import de.jpaw.bonaparte.refs.PersistenceException;
+import de.jpaw.bonaparte.refs.ReverseIndexCache;
+import de.jpaw.bonaparte.refs.SegmentedLruCache;
 import de.jpaw.bonaparte.refsw.RefResolver;
 import de.jpaw.util.ApplicationException;
 import de.jpaw.util.ByteBuilder;
@@ -22,8 +27,8 @@ import de.jpaw.util.ByteBuilder;
  *
  * The first topic is operation of a first level cache (on heap) for data objects. Similar to the JPA entity manager, its task is to provide a unique identity
  * for subsequent queries to the same object within a single transaction. It also improves read performance when the data object is of significant size, because
- * no repeated deserializations have to be done. No caching is performed on index values, because the index is assumed to be small and the overhead of cache
- * operation may be higher than actual updates or lookups itself.
+ * no repeated deserializations have to be done. The cache is bounded (by default a segmented LRU cache, see setCache()), evicted objects remain identity-safe
+ * as long as they are referenced by the application. Index lookups are cached in a bounded reverse index cache, which is invalidated on updates and removals.
  *
  * The second aspect is the maintenance of change tracking fields for audit purposes. The tracking fields are available in read/write mode to the application,
  * most operations work on the business fields only (DTO). Tracking data is provided upon request, and in that case, a read-only copy is created and handed
@@ -36,7 +41,12 @@ import de.jpaw.util.ByteBuilder;
  * @param <TRACKING>
  */
 public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends REF, TRACKING extends TrackingBase> implements RefResolver<REF, DTO, TRACKING> {
-    private ConcurrentMap<Long,DataWithTrackingW<DTO, TRACKING>> cache = new ConcurrentHashMap<Long, DataWithTrackingW<DTO, TRACKING>>(1024 * 1024);
+    public static final int DEFAULT_CACHE_SIZE = 1024 * 1024;
+    public static final int DEFAULT_INDEX_CACHE_SIZE = 64 * 1024;
+
+    private LongKeyCache<DataWithTrackingW<DTO, TRACKING>> cache = new SegmentedLruCache<DataWithTrackingW<DTO, TRACKING>>(DEFAULT_CACHE_SIZE,
+      new DataWithTrackingAnchoring<DTO, TRACKING, DataWithTrackingW<DTO, TRACKING>>());
+    private ReverseIndexCache<REF> indexCache = new ReverseIndexCache<REF>(DEFAULT_INDEX_CACHE_SIZE);
 
     protected ByteBuilder builder;
     protected String entityName;
@@ -50,12 +60,53 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
         return hash;
     }
 
+    /** Replaces the first level cache, for example to configure a different size or a time to live. Must be called before the resolver is used.
+     * The application references the DTOs only, therefore a SegmentedLruCache must be created with a DataWithTrackingAnchoring to remain identity-safe. */
+    protected void setCache(LongKeyCache<DataWithTrackingW<DTO, TRACKING>> cache) {
+        this.cache = cache;
+    }
+
+    /** Replaces the reverse index cache. A null parameter disables caching of index lookups. Must be called before the resolver is used. */
+    protected void setIndexCache(ReverseIndexCache<REF> indexCache) {
+        this.indexCache = indexCache;
+    }
+
+    public CacheStatistics getCacheStatistics() {
+        return cache.getStatistics();
+    }
+
+    /** Returns the statistics of the reverse index cache, or null if index lookups are not cached. */
+    public CacheStatistics getIndexCacheStatistics() {
+        return indexCache == null ? null : indexCache.getStatistics();
+    }
+
     /** Look up a primary key by some unique index. */
     protected abstract Long getUncachedKey(REF refObject) throws PersistenceException;
 
     /** Return an object stored in the DB by its primary key. */
     protected abstract DataWithTrackingW<DTO, TRACKING> getUncached(Long ref);
 
+    /** Return objects stored in the DB by their primary keys, in the same order, with null entries for keys which do not exist.
+     * The default implementation performs individual lookups, backends which support multi-gets should override it. */
+    protected List<DataWithTrackingW<DTO, TRACKING>> getUncached(long [] refs) {
+        final List<DataWithTrackingW<DTO, TRACKING>> result = new ArrayList<DataWithTrackingW<DTO, TRACKING>>(refs.length);
+        for (long ref : refs)
+            result.add(getUncached(Long.valueOf(ref)));
+        return result;
+    }
+
+    /** Look up the primary keys for a number of unique indexes, in the same order, with 0 entries for indexes which do not exist.
+     * The default implementation performs individual lookups, backends which support multi-gets should override it. */
+    protected long [] getUncachedKeys(List<REF> refObjects) throws PersistenceException {
+        final long [] result = new long [refObjects.size()];
+        int i = 0;
+        for (REF refObject : refObjects) {
+            final Long key = getUncachedKey(refObject);
+            result[i++] = key == null ? 0L : key.longValue();
+        }
+        return result;
+    }
+
     /** Update some object fwt to have obj as the data portion. (Update tracking and then update the DB and possibly indexes.) */
     protected abstract void uncachedUpdate(DataWithTrackingW<DTO, TRACKING> dwt, DTO obj) throws PersistenceException;
 
@@ -73,22 +124,76 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
         if (key != null)
             return key;
         // shortcuts not possible, try the local reverse cache
-        // key = indexCache.get(refObject);
-        // if (key > 0)
-        // return key;
+        final ReverseIndexCache<REF> indexCache = this.indexCache;
+        if (indexCache != null) {
+            final long cachedKey = indexCache.get(refObject);
+            if (cachedKey > 0L)
+                return cachedKey;
+        }
         // not in cache either, consult second level (in-memory DB)
         key = getUncachedKey(refObject);
         if (key == null)
             throw new PersistenceException(PersistenceException.NO_RECORD_FOR_INDEX, 0L, entityName, refObject.ret$PQON(), refObject.toString());
-        // if (key > 0)
-        // indexCache.put(refObject, key);
+        if (indexCache != null && key.longValue() > 0L)
+            cacheIndex(indexCache, refObject, key.longValue());
         return key;
     }
 
+    @Override
+    public final long [] getRefs(List<REF> refObjects) throws PersistenceException {
+        final long [] result = new long [refObjects.size()];
+        final ReverseIndexCache<REF> indexCache = this.indexCache;
+        List<REF> missing = null;
+        int [] missingPositions = null;
+        int i = 0;
+        for (REF refObject : refObjects) {
+            if (refObject != null) {
+                final Long ownKey = refObject.ret$RefW();
+                long key = ownKey == null ? 0L : ownKey.longValue();
+                if (key <= 0L && indexCache != null)
+                    key = indexCache.get(refObject);
+                if (key > 0L) {
+                    result[i] = key;
+                } else {
+                    if (missing == null) {
+                        missing = new ArrayList<REF>();
+                        missingPositions = new int [result.length - i];
+                    }
+                    missingPositions[missing.size()] = i;
+                    missing.add(refObject);
+                }
+            }
+            ++i;
+        }
+        if (missing != null) {
+            // resolve all indexes which are not cached with a single request
+            final long [] keys = getUncachedKeys(missing);
+            for (int j = 0; j < keys.length; ++j) {
+                final REF refObject = missing.get(j);
+                if (keys[j] <= 0L)
+                    throw new PersistenceException(PersistenceException.NO_RECORD_FOR_INDEX, 0L, entityName, refObject.ret$PQON(), refObject.toString());
+                result[missingPositions[j]] = keys[j];
+                if (indexCache != null)
+                    cacheIndex(indexCache, refObject, keys[j]);
+            }
+        }
+        return result;
+    }
+
+    /** Stores an index lookup result. The index object is frozen, because the caller could modify it later. */
+    @SuppressWarnings("unchecked")
+    private void cacheIndex(ReverseIndexCache<REF> indexCache, REF refObject, long key) {
+        try {
+            indexCache.put(refObject.was$Frozen() ? refObject : (REF) refObject.ret$FrozenClone(), key);
+        } catch (ObjectValidationException e) {
+            // cannot be frozen, do not cache it
+        }
+    }
+
     /** return data for a key. Returns null if no record exists. */
     protected final DataWithTrackingW<DTO, TRACKING> getDTONoCacheUpd(Long ref) {
         // first, try to retrieve a value from the cache, in order to be identity-safe
-        DataWithTrackingW<DTO, TRACKING> value = cache.get(ref);
+        DataWithTrackingW<DTO, TRACKING> value = cache.get(ref.longValue());
         if (value != null)
             return value;
         // not here, consult second level (in-memory DB)
@@ -106,13 +211,49 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
     public final DTO getDTO(Long ref) throws PersistenceException {
         if (ref == null)
             return null;
-        DataWithTrackingW<DTO, TRACKING> value = getDTONoCacheUpd(ref);
-        if (value != null) {
-            cache.put(ref, value);
-            return value.getData();
-        } else {
-            throw new PersistenceException(PersistenceException.RECORD_DOES_NOT_EXIST, ref.longValue(), entityName);
+        DataWithTrackingW<DTO, TRACKING> value = cache.get(ref.longValue());
+        if (value == null) {
+            value = getUncached(ref);
+            if (value == null)
+                throw new PersistenceException(PersistenceException.RECORD_DOES_NOT_EXIST, ref.longValue(), entityName);
+            // another thread may have loaded the same record meanwhile: use the cached instance in that case, to remain identity-safe
+            value = cache.putIfAbsent(ref.longValue(), value);
+        }
+        return value.getData();
+    }
+
+    @Override
+    public final List<DTO> getDTOs(long [] refs) throws PersistenceException {
+        final List<DTO> result = new ArrayList<DTO>(refs.length);
+        long [] missingRefs = null;
+        int [] missingPositions = null;
+        int numMissing = 0;
+        for (int i = 0; i < refs.length; ++i) {
+            final long ref = refs[i];
+            final DataWithTrackingW<DTO, TRACKING> value = ref > 0L ? cache.get(ref) : null;
+            result.add(value == null ? null : value.getData());
+            if (value == null && ref > 0L) {
+                if (missingRefs == null) {
+                    missingRefs = new long [refs.length - i];
+                    missingPositions = new int [refs.length - i];
+                }
+                missingRefs[numMissing] = ref;
+                missingPositions[numMissing++] = i;
+            }
+        }
+        if (numMissing > 0) {
+            // retrieve all records which are not cached with a single request
+            final List<DataWithTrackingW<DTO, TRACKING>> loaded = getUncached(numMissing == missingRefs.length ? missingRefs : Arrays.copyOf(missingRefs, numMissing));
+            for (int j = 0; j < numMissing; ++j) {
+                DataWithTrackingW<DTO, TRACKING> value = loaded.get(j);
+                if (value == null)
+                    throw new PersistenceException(PersistenceException.RECORD_DOES_NOT_EXIST, missingRefs[j], entityName);
+                // use cache.putIfAbsent, in order to remain identity-safe if another thread or a duplicate key has loaded the record meanwhile
+                value = cache.putIfAbsent(missingRefs[j], value);
+                result.set(missingPositions[j], value.getData());
+            }
         }
+        return result;
     }
 
     @Override
@@ -124,6 +265,8 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
         if (dwt == null)
             throw new PersistenceException(PersistenceException.RECORD_DOES_NOT_EXIST, key, entityName);
         uncachedUpdate(dwt, obj);
+        if (indexCache != null)
+            indexCache.invalidate(key.longValue());
         // it's already in the cache, and the umbrella object hasn't changed, so no cache update required
     }
 
@@ -132,7 +275,9 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
         DataWithTrackingW<DTO, TRACKING> value = getDTONoCacheUpd(key);
         if (value != null) {
             // must remove it
-            cache.remove(key);
+            cache.remove(key.longValue());
+            if (indexCache != null)
+                indexCache.invalidate(key.longValue());
             uncachedRemove(value);
         }
     }
@@ -142,7 +287,7 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
         if (obj.ret$RefW() == null)
             throw new PersistenceException(PersistenceException.NO_PRIMARY_KEY, 0L, entityName);
         DataWithTrackingW<DTO, TRACKING> dwt = uncachedCreate(obj);
-        cache.put(obj.ret$RefW(), dwt);
+        cache.put(obj.ret$RefW().longValue(), dwt);
     }
 
     @Override
@@ -162,6 +307,8 @@ public abstract class AbstractRefResolver<REF extends AbstractRef, DTO extends R
     @Override
     public final void clear() {
         cache.clear();
+        if (indexCache != null)
+            indexCache.clear();
     }
 
     @Override
@@ -0,0 +1,53 @@
+package de.jpaw.bonaparte.refs.tests;
+
+import java.lang.ref.WeakReference;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import de.jpaw.bonaparte.pojos.api.SortColumn;
+import de.jpaw.bonaparte.pojos.api.WriteTracking;
+import de.jpaw.bonaparte.pojos.apiw.DataWithTrackingW;
+import de.jpaw.bonaparte.refs.DataWithTrackingAnchoring;
+import de.jpaw.bonaparte.refs.SegmentedLruCache;
+
+public class SegmentedLruCacheTest {
+
+    private static DataWithTrackingW<SortColumn, WriteTracking> wrap(String fieldName) {
+        final SortColumn dto = new SortColumn();
+        dto.setFieldName(fieldName);
+        final DataWithTrackingW<SortColumn, WriteTracking> dwt = new DataWithTrackingW<SortColumn, WriteTracking>();
+        dwt.setData(dto);
+        dwt.setTracking(new WriteTracking());
+        return dwt;
+    }
+
+    // the wrapper is created in a separate method, in order not to keep it on the stack of the test
+    private static SortColumn cacheAndEvict(SegmentedLruCache<DataWithTrackingW<SortColumn, WriteTracking>> cache, WeakReference<Object> [] wrapperRef) {
+        final DataWithTrackingW<SortColumn, WriteTracking> dwt = wrap("first");
+        wrapperRef[0] = new WeakReference<Object>(dwt);
+        cache.put(1L, dwt);
+        cache.put(2L, wrap("second"));          // evicts the first entry
+        return dwt.getData();
+    }
+
+    @Test
+    public void testEvictedDtoRemainsIdentitySafe() throws Exception {
+        final SegmentedLruCache<DataWithTrackingW<SortColumn, WriteTracking>> cache = new SegmentedLruCache<DataWithTrackingW<SortColumn, WriteTracking>>(1,
+          new DataWithTrackingAnchoring<SortColumn, WriteTracking, DataWithTrackingW<SortColumn, WriteTracking>>());
+        @SuppressWarnings("unchecked")
+        final WeakReference<Object> [] wrapperRef = new WeakReference [1];
+        final SortColumn dto = cacheAndEvict(cache, wrapperRef);
+        Assertions.assertEquals(1L, cache.getStatistics().getEvictions());
+
+        // only the DTO is referenced now: the original wrapper can be collected, but the DTO must not be replaced
+        for (int i = 0; i < 20 && wrapperRef[0].get() != null; ++i) {
+            System.gc();
+            Thread.sleep(10L);
+        }
+        final DataWithTrackingW<SortColumn, WriteTracking> again = cache.get(1L);
+        Assertions.assertNotNull(again);
+        Assertions.assertSame(dto, again.getData());
+        Assertions.assertNotNull(again.getTracking());
+    }
+}
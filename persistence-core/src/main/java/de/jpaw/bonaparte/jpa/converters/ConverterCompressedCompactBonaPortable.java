@@ -0,0 +1,35 @@
+package de.jpaw.bonaparte.jpa.converters;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+import de.jpaw.bonaparte.core.BonaPortable;
+import de.jpaw.bonaparte.core.CompactByteArrayComposer;
+import de.jpaw.bonaparte.core.CompactByteArrayParser;
+import de.jpaw.bonaparte.core.CompactCompressors;
+import de.jpaw.bonaparte.core.CompactConstants;
+import de.jpaw.bonaparte.core.ObjectReuseStrategy;
+import de.jpaw.bonaparte.core.StaticMeta;
+import de.jpaw.util.ByteBuilder;
+
+// persists a serialized object in a BLOB / bytea, using LZ4 compression for big objects (if available).
+// Data written by ConverterCompactBonaPortable can be read by this converter and vice versa, because the parser decompresses transparently.
+@Converter(autoApply = false)
+public class ConverterCompressedCompactBonaPortable implements AttributeConverter<BonaPortable, byte[]> {
+    public static final int COMPRESSION_THRESHOLD = 1024;
+
+    @Override
+    public byte[] convertToDatabaseColumn(BonaPortable obj) {
+        if (obj == null)
+            return null;
+        final CompactByteArrayComposer cbac = new CompactByteArrayComposer(new ByteBuilder(), ObjectReuseStrategy.defaultStrategy, false, false);
+        cbac.setCompression(CompactCompressors.get(CompactConstants.COMPRESSED_LZ4), COMPRESSION_THRESHOLD);
+        cbac.addField(StaticMeta.OUTER_BONAPORTABLE, obj);
+        return cbac.getBytes();
+    }
+
+    @Override
+    public BonaPortable convertToEntityAttribute(byte[] data) {
+        return CompactByteArrayParser.unmarshal(data, StaticMeta.OUTER_BONAPORTABLE, BonaPortable.class);
+    }
+}
@@ -0,0 +1,41 @@
+package de.jpaw.bonaparte.jpa.converters;
+
+import jakarta.persistence.AttributeConverter;
+
+import de.jpaw.bonaparte.util.StringPool;
+
+// returns canonical strings from a bounded pool (other than ConverterInternString / ConverterUnifyString, the memory use is limited)
+// @Converter(autoApply = true)
+public class ConverterPooledString implements AttributeConverter<String, String> {
+    private static volatile StringPool pool = new StringPool();
+
+    @Override
+    public String convertToDatabaseColumn(final String obj) {
+        return obj;
+    }
+
+    @Override
+    public String convertToEntityAttribute(final String data) {
+        return pool.canonicalize(data);
+    }
+
+    /** Returns the pool, for statistics. */
+    public static StringPool getPool() {
+        return pool;
+    }
+
+    /** Replaces the pool, for example by the one used by the message parsers (see Settings.setDefaultStringPool()). */
+    public static void setPool(StringPool newPool) {
+        pool = newPool;
+    }
+
+    /** Clears the pool. */
+    public static void clear() {
+        pool.clear();
+    }
+
+    /** Returns the number of pooled strings. */
+    public static int size() {
+        return pool.size();
+    }
+}